@@ -0,0 +1,45 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.tasks.benchmarks;
+
+/**
+ * A benchmark of a single provider operation, run by a {@link BenchmarkRunner}.
+ *
+ * @author agent
+ */
+public interface Benchmark
+{
+    /**
+     * Prepares the database of a fork. This is not measured.
+     *
+     * @param fixture
+     *         The {@link ProviderFixture} of the fork, the provider is fresh and the database is empty.
+     * @param operations
+     *         The total number of times {@link #run(ProviderFixture, int)} will be called in this fork, including warmup.
+     */
+    void setUp(ProviderFixture fixture, int operations) throws Exception;
+
+    /**
+     * Performs a single measured operation.
+     *
+     * @param fixture
+     *         The {@link ProviderFixture} of the fork.
+     * @param operation
+     *         The number of the operation within the fork, starting at {@code 0}.
+     */
+    void run(ProviderFixture fixture, int operation) throws Exception;
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.tasks.benchmarks;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.dmfs.provider.tasks.metrics.LatencyHistogram;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+
+/**
+ * Runs {@link Benchmark}s in a JMH like fashion and writes the results as JSON.
+ * <p>
+ * Each benchmark is run in a number of forks. Every fork gets a fresh provider and an empty database, runs a number of warmup iterations and then the
+ * measured iterations. Each iteration consists of a fixed number of operations, the latency of each operation is recorded. Note that, unlike with JMH, the
+ * forks share a JVM. Gradle runs each benchmark class in a JVM of its own though.
+ * <p>
+ * The defaults can be overridden with the system properties {@code benchmark.forks}, {@code benchmark.warmup} and {@code benchmark.iterations}. The results
+ * are written to the directory given in {@code benchmark.output} as {@code <benchmark name>.json}, which is the only output of a run. A one line summary of
+ * each benchmark is logged.
+ *
+ * @author agent
+ */
+public final class BenchmarkRunner
+{
+    private final static String TAG = "BenchmarkRunner";
+
+    private final Context mContext;
+    private final int mForks;
+    private final int mWarmupIterations;
+    private final int mIterations;
+    private final File mOutputDirectory;
+
+
+    public BenchmarkRunner(Context context)
+    {
+        this(context,
+                Integer.getInteger("benchmark.forks", 2),
+                Integer.getInteger("benchmark.warmup", 3),
+                Integer.getInteger("benchmark.iterations", 5),
+                new File(System.getProperty("benchmark.output", "build/benchmark-results")));
+    }
+
+
+    public BenchmarkRunner(Context context, int forks, int warmupIterations, int iterations, File outputDirectory)
+    {
+        mContext = context;
+        mForks = forks;
+        mWarmupIterations = warmupIterations;
+        mIterations = iterations;
+        mOutputDirectory = outputDirectory;
+    }
+
+
+    /**
+     * Runs the given {@link Benchmark} and writes the result.
+     *
+     * @param name
+     *         The name of the benchmark, also used for the name of the result file.
+     * @param operationsPerIteration
+     *         The number of operations of each iteration.
+     * @param benchmark
+     *         The {@link Benchmark} to run.
+     *
+     * @return The result as a {@link JSONObject}.
+     */
+    public JSONObject run(String name, int operationsPerIteration, Benchmark benchmark) throws Exception
+    {
+        LatencyHistogram latency = new LatencyHistogram();
+        JSONArray throughput = new JSONArray();
+        int operationsPerFork = (mWarmupIterations + mIterations) * operationsPerIteration;
+
+        for (int fork = 0; fork < mForks; ++fork)
+        {
+            try (ProviderFixture fixture = new ProviderFixture(mContext))
+            {
+                benchmark.setUp(fixture, operationsPerFork);
+                int operation = 0;
+                for (int i = 0; i < mWarmupIterations; ++i)
+                {
+                    for (int j = 0; j < operationsPerIteration; ++j)
+                    {
+                        benchmark.run(fixture, operation++);
+                    }
+                }
+                for (int i = 0; i < mIterations; ++i)
+                {
+                    long iterationStart = System.nanoTime();
+                    for (int j = 0; j < operationsPerIteration; ++j)
+                    {
+                        long start = System.nanoTime();
+                        benchmark.run(fixture, operation++);
+                        latency.record(System.nanoTime() - start);
+                    }
+                    throughput.put(operationsPerIteration * 1e9 / (System.nanoTime() - iterationStart));
+                }
+            }
+        }
+
+        JSONObject result = result(name, operationsPerIteration, latency, throughput);
+        write(name, result);
+        Log.i(TAG, String.format(Locale.ENGLISH, "%-24s p50 %8d us  p90 %8d us  p99 %8d us  max %8d us",
+                name, latency.percentile(50), latency.percentile(90), latency.percentile(99), latency.max()));
+        return result;
+    }
+
+
+    private JSONObject result(String name, int operationsPerIteration, LatencyHistogram latency, JSONArray throughput) throws JSONException
+    {
+        JSONObject result = new JSONObject();
+        result.put("benchmark", name);
+        result.put("forks", mForks);
+        result.put("warmup_iterations", mWarmupIterations);
+        result.put("iterations", mIterations);
+        result.put("operations_per_iteration", operationsPerIteration);
+        result.put("count", latency.count());
+        result.put("mean_us", latency.count() == 0 ? 0 : latency.sum() / latency.count());
+        result.put("p50_us", latency.percentile(50));
+        result.put("p90_us", latency.percentile(90));
+        result.put("p99_us", latency.percentile(99));
+        result.put("max_us", latency.max());
+        result.put("throughput_ops_per_s", throughput);
+        return result;
+    }
+
+
+    private void write(String name, JSONObject result) throws IOException, JSONException
+    {
+        if (!mOutputDirectory.isDirectory() && !mOutputDirectory.mkdirs())
+        {
+            throw new IOException(String.format("Can't create output directory %s", mOutputDirectory));
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(new File(mOutputDirectory, name + ".json")), Charset.forName("UTF-8")))
+        {
+            writer.write(result.toString(2));
+        }
+    }
+}
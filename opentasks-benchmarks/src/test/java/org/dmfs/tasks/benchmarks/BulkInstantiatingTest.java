@@ -0,0 +1,136 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.tasks.benchmarks;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.opentaskstestpal.SyntheticDataset;
+import org.dmfs.provider.tasks.TaskDatabaseHelper;
+import org.dmfs.provider.tasks.processors.tasks.BulkInstantiating;
+import org.dmfs.provider.tasks.processors.tasks.Instantiating;
+import org.dmfs.tasks.contract.TaskContract;
+import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+
+/**
+ * Test {@link BulkInstantiating} against {@link Instantiating}.
+ *
+ * @author agent
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class BulkInstantiatingTest
+{
+
+    @Test
+    public void testSameInstancesAsInstantiating() throws Exception
+    {
+        List<String> expected = updatedInstances(fixture ->
+        {
+            ContentValues values = new ContentValues(1);
+            Instantiating.addUpdateRequest(values);
+            fixture.provider().update(
+                    Tasks.getContentUri(fixture.authority()).buildUpon().appendQueryParameter(TaskContract.CALLER_IS_SYNCADAPTER, "true").build(),
+                    values, null, null);
+        });
+
+        for (int threads : new int[] { 1, 4 })
+        {
+            List<String> actual = updatedInstances(fixture ->
+            {
+                SQLiteDatabase db = fixture.provider().getDatabaseHelper().getWritableDatabase();
+                db.beginTransaction();
+                try
+                {
+                    new BulkInstantiating(threads).update(db, null, null);
+                    db.setTransactionSuccessful();
+                }
+                finally
+                {
+                    db.endTransaction();
+                }
+            });
+            assertThat(actual, is(expected));
+        }
+    }
+
+
+    /**
+     * Returns the rows of the instances table after the given update has been applied to a database with outdated instances.
+     */
+    private List<String> updatedInstances(Update update) throws Exception
+    {
+        try (ProviderFixture fixture = new ProviderFixture(RuntimeEnvironment.application))
+        {
+            fixture.load(new SyntheticDataset(fixture.authority(), fixture.account(), 3, 2, 300, 0.3f));
+            SQLiteDatabase db = fixture.provider().getDatabaseHelper().getWritableDatabase();
+            List<String> before = instances(db);
+            // change the tasks behind the back of the processors, so all instances are outdated
+            // every third recurring task gets more instances than BulkInstantiating calculates in advance
+            db.execSQL("UPDATE " + TaskDatabaseHelper.Tables.TASKS + " SET "
+                    + Tasks.DTSTART + " = " + Tasks.DTSTART + " + 3600000, "
+                    + Tasks.DUE + " = " + Tasks.DUE + " + 3600000, "
+                    + Tasks.RRULE + " = CASE WHEN " + Tasks._ID + " % 3 = 0 THEN 'FREQ=DAILY;COUNT=500' ELSE " + Tasks.RRULE + " END"
+                    + " WHERE " + Tasks.RRULE + " IS NOT NULL");
+
+            update.apply(fixture);
+
+            List<String> after = instances(db);
+            // make sure the update actually did something
+            assertThat(after, not(before));
+            return after;
+        }
+    }
+
+
+    private List<String> instances(SQLiteDatabase db)
+    {
+        List<String> result = new ArrayList<>();
+        try (Cursor cursor = db.query(TaskDatabaseHelper.Tables.INSTANCES, null, null, null, null, null, Instances._ID))
+        {
+            while (cursor.moveToNext())
+            {
+                ContentValues values = new ContentValues();
+                DatabaseUtils.cursorRowToContentValues(cursor, values);
+                result.add(values.toString());
+            }
+        }
+        return result;
+    }
+
+
+    private interface Update
+    {
+        void apply(ProviderFixture fixture) throws Exception;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.tasks.benchmarks;
+
+import android.accounts.Account;
+import android.content.ContentProviderClient;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+
+import org.dmfs.android.contentpal.Operation;
+import org.dmfs.android.contentpal.OperationsQueue;
+import org.dmfs.android.contentpal.queues.BasicOperationsQueue;
+import org.dmfs.provider.tasks.AuthorityUtil;
+import org.dmfs.provider.tasks.TaskProvider;
+import org.dmfs.tasks.contract.TaskContract;
+import org.dmfs.tasks.contract.TaskContract.TaskLists;
+import org.robolectric.Robolectric;
+
+
+/**
+ * A fresh {@link TaskProvider} with an empty database, running on Robolectric's native SQLite.
+ *
+ * @author agent
+ */
+public final class ProviderFixture implements AutoCloseable
+{
+    /**
+     * The name of the database file of the {@link TaskProvider}.
+     */
+    private final static String DATABASE_NAME = "tasks.db";
+
+    private final static Account ACCOUNT = new Account("benchmark", "org.dmfs.tasks.benchmarks");
+
+    private final Context mContext;
+    private final String mAuthority;
+    private final TaskProvider mProvider;
+
+
+    public ProviderFixture(Context context)
+    {
+        mContext = context;
+        mAuthority = AuthorityUtil.taskAuthority(context);
+        // make sure we start with an empty database
+        context.deleteDatabase(DATABASE_NAME);
+        mProvider = Robolectric.buildContentProvider(TaskProvider.class).create(mAuthority).get();
+    }
+
+
+    public TaskProvider provider()
+    {
+        return mProvider;
+    }
+
+
+    public String authority()
+    {
+        return mAuthority;
+    }
+
+
+    /**
+     * Returns the {@link Account} of the benchmark lists.
+     */
+    public Account account()
+    {
+        return ACCOUNT;
+    }
+
+
+    /**
+     * Applies the given batches of {@link Operation}s, e.g. a {@link org.dmfs.opentaskstestpal.SyntheticDataset}.
+     *
+     * @param batches
+     *         The batches to apply, each batch is committed in a single transaction.
+     */
+    public void load(Iterable<? extends Iterable<Operation<?>>> batches) throws Exception
+    {
+        ContentProviderClient client = mContext.getContentResolver().acquireContentProviderClient(mAuthority);
+        try
+        {
+            OperationsQueue queue = new BasicOperationsQueue(client);
+            for (Iterable<Operation<?>> batch : batches)
+            {
+                queue.enqueue(batch);
+            }
+            queue.flush();
+        }
+        finally
+        {
+            client.release();
+        }
+    }
+
+
+    /**
+     * Returns the given {@link Uri} with the parameters of a sync adapter of the benchmark account.
+     */
+    public Uri asSyncAdapter(Uri uri)
+    {
+        return uri.buildUpon()
+                .appendQueryParameter(TaskContract.CALLER_IS_SYNCADAPTER, "true")
+                .appendQueryParameter(TaskContract.ACCOUNT_NAME, ACCOUNT.name)
+                .appendQueryParameter(TaskContract.ACCOUNT_TYPE, ACCOUNT.type)
+                .build();
+    }
+
+
+    /**
+     * Creates a new task list in the benchmark account.
+     *
+     * @param name
+     *         The name of the list.
+     *
+     * @return The id of the new list.
+     */
+    public long createList(String name)
+    {
+        ContentValues values = new ContentValues(4);
+        values.put(TaskLists.LIST_NAME, name);
+        values.put(TaskLists.LIST_COLOR, 0xff0000ff);
+        values.put(TaskLists.VISIBLE, 1);
+        values.put(TaskLists.SYNC_ENABLED, 1);
+        return ContentUris.parseId(mProvider.insert(asSyncAdapter(TaskLists.getContentUri(mAuthority)), values));
+    }
+
+
+    @Override
+    public void close()
+    {
+        mProvider.getDatabaseHelper().close();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+}
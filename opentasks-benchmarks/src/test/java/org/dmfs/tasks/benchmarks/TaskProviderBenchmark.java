@@ -0,0 +1,546 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.tasks.benchmarks;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import org.dmfs.opentaskstestpal.SyntheticDataset;
+import org.dmfs.provider.tasks.processors.tasks.BulkInstantiating;
+import org.dmfs.provider.tasks.processors.tasks.BulkResorting;
+import org.dmfs.provider.tasks.processors.tasks.Instantiating;
+import org.dmfs.tasks.contract.TaskContract;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+
+
+/**
+ * Benchmarks of the hot paths of the task provider.
+ * <p>
+ * Run with {@code ./gradlew :opentasks-benchmarks:testDebugUnitTest}, the results are written to {@code opentasks-benchmarks/build/benchmark-results}.
+ *
+ * @author agent
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class TaskProviderBenchmark
+{
+    private final static String[] WORDS = new String[] {
+            "call", "buy", "milk", "report", "meeting", "review", "dentist", "birthday", "present", "taxes", "invoice", "garden", "laundry", "groceries",
+            "project", "release", "backup", "email", "doctor", "flight", "hotel", "insurance", "car", "repair", "library", "books", "school", "homework" };
+
+    /**
+     * The time of all dates, 2017-12-01T00:00:00Z, so runs are comparable.
+     */
+    private final static long DATE = 1512086400000L;
+    private final static long DAY = 24 * 3600 * 1000L;
+
+    private BenchmarkRunner mRunner;
+
+
+    @Before
+    public void setUp()
+    {
+        mRunner = new BenchmarkRunner(RuntimeEnvironment.application);
+    }
+
+
+    @Test
+    public void insert() throws Exception
+    {
+        mRunner.run("insert", 200, new Benchmark()
+        {
+            private final Random mRandom = new Random(1);
+            private long mListId;
+
+
+            @Override
+            public void setUp(ProviderFixture fixture, int operations)
+            {
+                mListId = fixture.createList("insert");
+            }
+
+
+            @Override
+            public void run(ProviderFixture fixture, int operation)
+            {
+                fixture.provider().insert(Tasks.getContentUri(fixture.authority()), task(mRandom, mListId, operation));
+            }
+        });
+    }
+
+
+    @Test
+    public void update() throws Exception
+    {
+        mRunner.run("update", 200, new Benchmark()
+        {
+            private final Random mRandom = new Random(2);
+            private long[] mTaskIds;
+
+
+            @Override
+            public void setUp(ProviderFixture fixture, int operations)
+            {
+                mTaskIds = insertTasks(fixture, mRandom, fixture.createList("update"), 1000);
+            }
+
+
+            @Override
+            public void run(ProviderFixture fixture, int operation)
+            {
+                ContentValues values = new ContentValues(2);
+                values.put(Tasks.TITLE, title(mRandom));
+                values.put(Tasks.DUE, DATE + (operation % 100) * DAY);
+                fixture.provider().update(
+                        ContentUris.withAppendedId(Tasks.getContentUri(fixture.authority()), mTaskIds[operation % mTaskIds.length]), values, null, null);
+            }
+        });
+    }
+
+
+    @Test
+    public void delete() throws Exception
+    {
+        mRunner.run("delete", 200, new Benchmark()
+        {
+            private final Random mRandom = new Random(3);
+            private long[] mTaskIds;
+
+
+            @Override
+            public void setUp(ProviderFixture fixture, int operations)
+            {
+                // every operation deletes a task of its own
+                mTaskIds = insertTasks(fixture, mRandom, fixture.createList("delete"), operations);
+            }
+
+
+            @Override
+            public void run(ProviderFixture fixture, int operation)
+            {
+                fixture.provider().delete(ContentUris.withAppendedId(Tasks.getContentUri(fixture.authority()), mTaskIds[operation]), null, null);
+            }
+        });
+    }
+
+
+    @Test
+    public void applyBatch() throws Exception
+    {
+        mRunner.run("applyBatch", 10, new Benchmark()
+        {
+            private final Random mRandom = new Random(4);
+            private long mListId;
+
+
+            @Override
+            public void setUp(ProviderFixture fixture, int operations)
+            {
+                mListId = fixture.createList("applyBatch");
+            }
+
+
+            @Override
+            public void run(ProviderFixture fixture, int operation) throws Exception
+            {
+                // a batch of 100 inserts, like a sync adapter would perform it
+                Uri tasks = fixture.asSyncAdapter(Tasks.getContentUri(fixture.authority()));
+                ArrayList<ContentProviderOperation> batch = new ArrayList<>(100);
+                for (int i = 0; i < 100; ++i)
+                {
+                    batch.add(ContentProviderOperation.newInsert(tasks).withValues(task(mRandom, mListId, operation * 100 + i)).build());
+                }
+                fixture.provider().applyBatch(batch);
+            }
+        });
+    }
+
+
+    @Test
+    public void applyBatchDirty() throws Exception
+    {
+        mRunner.run("applyBatchDirty", 5, new Benchmark()
+        {
+            private final Random mRandom = new Random(7);
+            private long mListId;
+
+
+            @Override
+            public void setUp(ProviderFixture fixture, int operations)
+            {
+                mListId = fixture.createList("applyBatchDirty");
+            }
+
+
+            @Override
+            public void run(ProviderFixture fixture, int operation) throws Exception
+            {
+                // a batch of 1000 dirty tasks, like an import would insert them, every task write used to update the list row
+                Uri tasks = Tasks.getContentUri(fixture.authority());
+                ArrayList<ContentProviderOperation> batch = new ArrayList<>(1000);
+                for (int i = 0; i < 1000; ++i)
+                {
+                    batch.add(ContentProviderOperation.newInsert(tasks)
+                            .withValues(task(mRandom, mListId, operation * 1000 + i))
+                            .withYieldAllowed(i % 100 == 0)
+                            .build());
+                }
+                fixture.provider().applyBatch(batch);
+            }
+        });
+    }
+
+
+    @Test
+    public void notificationSync() throws Exception
+    {
+        // the work of TaskNotificationService.syncChanged after a broadcast which reports a single changed task
+        mRunner.run("notificationSync", 200, new NotificationSyncBenchmark(false));
+    }
+
+
+    @Test
+    public void notificationSyncAll() throws Exception
+    {
+        // the work of TaskNotificationService.syncAll after a broadcast without changed ids, this is the baseline of notificationSync
+        mRunner.run("notificationSyncAll", 200, new NotificationSyncBenchmark(true));
+    }
+
+
+    @Test
+    public void recurrenceExpansion() throws Exception
+    {
+        mRunner.run("recurrenceExpansion", 50, new Benchmark()
+        {
+            private final Random mRandom = new Random(5);
+            private long mListId;
+
+
+            @Override
+            public void setUp(ProviderFixture fixture, int operations)
+            {
+                mListId = fixture.createList("recurrence");
+            }
+
+
+            @Override
+            public void run(ProviderFixture fixture, int operation)
+            {
+                ContentValues values = task(mRandom, mListId, operation);
+                values.put(Tasks.DTSTART, values.getAsLong(Tasks.DUE) - DAY);
+                values.put(Tasks.TZ, "Europe/Berlin");
+                values.put(Tasks.RRULE, "FREQ=DAILY;COUNT=100");
+                fixture.provider().insert(Tasks.getContentUri(fixture.authority()), values);
+            }
+        });
+    }
+
+
+    @Test
+    public void search() throws Exception
+    {
+        mRunner.run("search", 100, new Benchmark()
+        {
+            private final Random mRandom = new Random(6);
+
+
+            @Override
+            public void setUp(ProviderFixture fixture, int operations)
+            {
+                insertTasks(fixture, mRandom, fixture.createList("search"), 2000);
+            }
+
+
+            @Override
+            public void run(ProviderFixture fixture, int operation)
+            {
+                String query = WORDS[operation % WORDS.length] + " " + WORDS[(operation * 7) % WORDS.length];
+                try (Cursor cursor = fixture.provider().query(Tasks.getSearchUri(fixture.authority(), query), null, null, null, null))
+                {
+                    // make sure all results are loaded
+                    cursor.moveToLast();
+                }
+            }
+        });
+    }
+
+
+    @Test
+    public void updateTimezone() throws Exception
+    {
+        mRunner.run("updateTimezone", 1, new Benchmark()
+        {
+            @Override
+            public void setUp(ProviderFixture fixture, int operations) throws Exception
+            {
+                // a realistic mix of recurring tasks, overrides and subtask trees
+                fixture.load(new SyntheticDataset(fixture.authority(), fixture.account(), 7, 4, 2000, 0.1f));
+            }
+
+
+            @Override
+            public void run(ProviderFixture fixture, int operation)
+            {
+                // the serial update of every task through the processor chain, this is the baseline of the bulkInstantiating benchmarks
+                ContentValues values = new ContentValues(1);
+                Instantiating.addUpdateRequest(values);
+                fixture.provider().update(
+                        Tasks.getContentUri(fixture.authority()).buildUpon().appendQueryParameter(TaskContract.CALLER_IS_SYNCADAPTER, "true").build(),
+                        values, null, null);
+            }
+        });
+    }
+
+
+    @Test
+    public void bulkInstantiating() throws Exception
+    {
+        // this is what ContentOperation.UPDATE_INSTANCES does, with different numbers of threads to show the speed-up
+        for (final int threads : new int[] { 1, 4, 8 })
+        {
+            mRunner.run("bulkInstantiating-" + threads, 1, new Benchmark()
+            {
+                @Override
+                public void setUp(ProviderFixture fixture, int operations) throws Exception
+                {
+                    // the same data as in updateTimezone
+                    fixture.load(new SyntheticDataset(fixture.authority(), fixture.account(), 7, 4, 2000, 0.1f));
+                }
+
+
+                @Override
+                public void run(ProviderFixture fixture, int operation)
+                {
+                    SQLiteDatabase db = fixture.provider().getDatabaseHelper().getWritableDatabase();
+                    db.beginTransaction();
+                    try
+                    {
+                        new BulkInstantiating(threads).update(db, null, null);
+                        db.setTransactionSuccessful();
+                    }
+                    finally
+                    {
+                        db.endTransaction();
+                    }
+                }
+            });
+        }
+    }
+
+
+    @Test
+    public void bulkResorting() throws Exception
+    {
+        // this is what ContentOperation.UPDATE_TIMEZONE does for the instances of tasks without an UNTIL date
+        mRunner.run("bulkResorting", 1, new Benchmark()
+        {
+            @Override
+            public void setUp(ProviderFixture fixture, int operations) throws Exception
+            {
+                // the same data as in updateTimezone
+                fixture.load(new SyntheticDataset(fixture.authority(), fixture.account(), 7, 4, 2000, 0.1f));
+            }
+
+
+            @Override
+            public void run(ProviderFixture fixture, int operation)
+            {
+                SQLiteDatabase db = fixture.provider().getDatabaseHelper().getWritableDatabase();
+                db.beginTransaction();
+                try
+                {
+                    // a time zone which differs from the one the sorting values have been calculated in, at least most of the year
+                    TimeZone timeZone = TimeZone.getTimeZone(TimeZone.getDefault().getRawOffset() == 0 ? "America/New_York" : "UTC");
+                    new BulkResorting().update(db, timeZone);
+                    db.setTransactionSuccessful();
+                }
+                finally
+                {
+                    db.endTransaction();
+                }
+            }
+        });
+    }
+
+
+    /**
+     * Updates one of 500 pinned tasks and queries the instances the notifications are synced with.
+     */
+    /**
+     * Replays the queries {@code TaskNotificationService} runs to synchronize the notifications with the database, including the comparison with the stored
+     * notifications. The service lives in the app module, which this module can't depend on. All tasks are pinned and notified. The provider write which
+     * triggers the broadcast is not measured, it's covered by the update benchmark.
+     */
+    private final static class NotificationSyncBenchmark implements Benchmark
+    {
+        private final static int PINNED_TASKS = 500;
+
+        /**
+         * The instance values {@code TaskNotificationService} compares the notifications with.
+         */
+        private final static String[] PROJECTION = new String[] {
+                TaskContract.Instances._ID, Tasks.VERSION, Tasks.PINNED, Tasks.IS_CLOSED, Tasks.DUE, Tasks.DTSTART, Tasks.DURATION };
+
+        private final boolean mSyncAll;
+        private final Random mRandom = new Random(8);
+        private long[] mTaskIds;
+
+        /**
+         * The instance ids of the stored notifications, sorted.
+         */
+        private long[] mNotifiedInstanceIds;
+
+
+        NotificationSyncBenchmark(boolean syncAll)
+        {
+            mSyncAll = syncAll;
+        }
+
+
+        @Override
+        public void setUp(ProviderFixture fixture, int operations)
+        {
+            mTaskIds = insertTasks(fixture, mRandom, fixture.createList("notificationSync"), PINNED_TASKS);
+            ContentValues values = new ContentValues(1);
+            values.put(Tasks.PINNED, 1);
+            fixture.provider().update(Tasks.getContentUri(fixture.authority()), values, null, null);
+
+            try (Cursor cursor = fixture.provider().query(TaskContract.Instances.getContentUri(fixture.authority()),
+                    new String[] { TaskContract.Instances._ID }, null, null, TaskContract.Instances._ID))
+            {
+                mNotifiedInstanceIds = new long[cursor.getCount()];
+                while (cursor.moveToNext())
+                {
+                    mNotifiedInstanceIds[cursor.getPosition()] = cursor.getLong(0);
+                }
+            }
+        }
+
+
+        @Override
+        public void run(ProviderFixture fixture, int operation)
+        {
+            Uri instances = TaskContract.Instances.getContentUri(fixture.authority());
+            Set<Long> changedIds = null;
+            String selection;
+            if (mSyncAll)
+            {
+                // syncAll selects every pinned or notified instance
+                selection = Tasks.PINNED + "=1 or " + inSelection(TaskContract.Instances._ID, mNotifiedInstanceIds);
+            }
+            else
+            {
+                // syncChanged resolves the instances of the changed tasks first, then selects the changed instances only
+                long taskId = mTaskIds[operation % mTaskIds.length];
+                changedIds = new HashSet<>();
+                try (Cursor cursor = fixture.provider().query(instances, new String[] { TaskContract.Instances._ID },
+                        TaskContract.Instances.TASK_ID + " in (" + taskId + ")", null, null))
+                {
+                    while (cursor.moveToNext())
+                    {
+                        changedIds.add(cursor.getLong(0));
+                    }
+                }
+                long[] ids = new long[changedIds.size()];
+                int i = 0;
+                for (Long id : changedIds)
+                {
+                    ids[i++] = id;
+                }
+                selection = inSelection(TaskContract.Instances._ID, ids);
+            }
+
+            // compare the sorted notifications to the sorted instances, like the Diff of the service
+            try (Cursor cursor = fixture.provider().query(instances, PROJECTION, selection, null, TaskContract.Instances._ID))
+            {
+                int notification = 0;
+                while (cursor.moveToNext())
+                {
+                    long instanceId = cursor.getLong(0);
+                    while (notification < mNotifiedInstanceIds.length
+                            && (mNotifiedInstanceIds[notification] < instanceId
+                            || changedIds != null && !changedIds.contains(mNotifiedInstanceIds[notification])))
+                    {
+                        ++notification;
+                    }
+                }
+            }
+        }
+
+
+        private static String inSelection(String column, long[] ids)
+        {
+            StringBuilder result = new StringBuilder(ids.length * 8 + 16);
+            result.append(column).append(" in (");
+            for (int i = 0; i < ids.length; ++i)
+            {
+                if (i > 0)
+                {
+                    result.append(',');
+                }
+                result.append(ids[i]);
+            }
+            return result.append(')').toString();
+        }
+    }
+
+
+    private static long[] insertTasks(ProviderFixture fixture, Random random, long listId, int count)
+    {
+        long[] result = new long[count];
+        Uri tasks = Tasks.getContentUri(fixture.authority());
+        for (int i = 0; i < count; ++i)
+        {
+            result[i] = ContentUris.parseId(fixture.provider().insert(tasks, task(random, listId, i)));
+        }
+        return result;
+    }
+
+
+    private static ContentValues task(Random random, long listId, int number)
+    {
+        ContentValues values = new ContentValues(5);
+        values.put(Tasks.LIST_ID, listId);
+        values.put(Tasks.TITLE, title(random));
+        values.put(Tasks.DESCRIPTION, title(random) + " " + title(random) + " " + title(random));
+        values.put(Tasks.TZ, "UTC");
+        values.put(Tasks.DUE, DATE + (number % 100) * DAY);
+        return values;
+    }
+
+
+    private static String title(Random random)
+    {
+        return WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+    }
+}
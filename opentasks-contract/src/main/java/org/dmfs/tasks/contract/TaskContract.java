@@ -70,6 +70,43 @@ public final class TaskContract
      */
     public static final String ACCOUNT_TYPE = "account_type";
 
+    /**
+     * URI parameter to limit the number of rows returned by a query. This is supported by the {@link Tasks} and {@link Instances} directory Uris.
+     */
+    public static final String LIMIT = "limit";
+
+    /**
+     * URI parameter to skip the given number of rows at the beginning of the result. This is only supported in combination with {@link #LIMIT}.
+     * <p>
+     * Note, the skipped rows still have to be computed by the provider. When iterating large results prefer keyset paging with {@link #AFTER_ID}.
+     */
+    public static final String OFFSET = "offset";
+
+    /**
+     * URI parameter for keyset paging on the {@link Tasks} and {@link Instances} directory Uris. The value is the {@code _id} of the last row of the previous
+     * page. Only rows which are sorted after that row are returned.
+     * <p>
+     * Keyset paging requires a sort order with a single column, optionally followed by {@code ASC} or {@code DESC}. The provider sorts the rows by that
+     * column and by {@code _id} (in the same direction). The value of the sort column of the last row of the previous page must be given in {@link
+     * #AFTER_VALUE}, unless it was {@code null}.
+     */
+    public static final String AFTER_ID = "after_id";
+
+    /**
+     * URI parameter with the value of the sort column of the last row of the previous page, see {@link #AFTER_ID}. Omit this parameter if that value was
+     * {@code null}.
+     */
+    public static final String AFTER_VALUE = "after_value";
+
+    /**
+     * URI parameter to allow the provider to serve the result of a query from a cache, if the very same query has been run before and the data it depends
+     * on has not been changed since. Use {@code "true"} as the value. This is meant for clients which repeat identical queries, like widgets. Caching is only
+     * supported for task lists, tasks, instances, categories and properties. Large results are never cached.
+     * <p>
+     * Note, a cached result is a snapshot. It's not updated when the data changes, but clients receive the usual notifications.
+     */
+    public static final String CACHE = "cache";
+
     /**
      * Account name for local, unsynced task lists.
      */
@@ -140,6 +177,24 @@ public final class TaskContract
      */
     public final static String EXTRA_OPERATIONS = "org.dmfs.tasks.OPERATIONS";
 
+    /**
+     * The name of the {@link Intent#ACTION_PROVIDER_CHANGED} extra that contains a {@code long[]} with the row ids of {@link Instances} which have been
+     * inserted, updated or removed by the transaction that triggered the broadcast, in addition to the instances of the tasks in {@link
+     * #EXTRA_CHANGED_TASK_IDS}. That's usually instances which no longer exist.
+     * <p>
+     * This extra is optional. If it's absent, receivers must assume that any instance may have changed. Providers will omit it if too many instances have been
+     * changed at once. It's always sent together with {@link #EXTRA_CHANGED_TASK_IDS}.
+     */
+    public final static String EXTRA_CHANGED_INSTANCE_IDS = "org.dmfs.tasks.CHANGED_INSTANCE_IDS";
+
+    /**
+     * The name of the {@link Intent#ACTION_PROVIDER_CHANGED} extra that contains a {@code long[]} with the row ids of the {@link Tasks} which have been
+     * inserted, updated or removed by the transaction that triggered the broadcast. Receivers must take all current instances of these tasks into account.
+     * <p>
+     * This extra is optional. It's always sent together with {@link #EXTRA_CHANGED_INSTANCE_IDS}.
+     */
+    public final static String EXTRA_CHANGED_TASK_IDS = "org.dmfs.tasks.CHANGED_TASK_IDS";
+
 
     /**
      * Private constructor to prevent instantiation.
@@ -847,6 +902,40 @@ public final class TaskContract
          * </p>
          */
         String PINNED = "pinned";
+
+        /**
+         * The number of direct subtasks of this task. This field is read only as it's set automatically.
+         * <p>
+         * Value: Integer
+         * </p>
+         * <p>
+         * read-only
+         * </p>
+         */
+        String CHILD_COUNT = "child_count";
+
+        /**
+         * The number of direct subtasks of this task which are closed (see {@link #IS_CLOSED}). This field is read only as it's set automatically.
+         * <p>
+         * Value: Integer
+         * </p>
+         * <p>
+         * read-only
+         * </p>
+         */
+        String CLOSED_CHILD_COUNT = "closed_child_count";
+
+        /**
+         * The mean {@link #PERCENT_COMPLETE} of the direct subtasks of this task, subtasks without a value count as {@code 0}. This is {@code null} if the
+         * task has no subtasks. This field is read only as it's set automatically.
+         * <p>
+         * Value: Integer
+         * </p>
+         * <p>
+         * read-only
+         * </p>
+         */
+        String CHILD_PERCENT_COMPLETE = "child_percent_complete";
     }
 
 
@@ -1213,6 +1302,55 @@ public final class TaskContract
 
         public static final String CONTENT_URI_PATH = "instances";
 
+        /**
+         * The path of the instance range {@link Uri}, see {@link #getRangeUri(String, long, long)}.
+         */
+        public static final String RANGE_PATH = "range";
+
+        /**
+         * URI parameter with the time stamp of the start of an instance range (inclusive).
+         */
+        public static final String RANGE_START = "range_start";
+
+        /**
+         * URI parameter with the time stamp of the end of an instance range (exclusive).
+         */
+        public static final String RANGE_END = "range_end";
+
+        /**
+         * The {@link android.content.ContentProvider#call(String, String, android.os.Bundle)} method that closes all instances of a recurring task up to a
+         * given time in one operation. The argument is the {@link Tasks#_ID} of the master task, the time is given in the {@link #CLOSE_UNTIL} extra.
+         * <p>
+         * By default the instances are detached as completed tasks, just like completing them one by one would do. Use {@link #CLOSE_STATUS} to cancel them
+         * instead or {@link #CLOSE_SKIP} to drop them without leaving a task. The start of the master task is moved to the first remaining instance. The
+         * result contains the number of closed instances in {@link #CLOSE_COUNT}.
+         * <p>
+         * The caller needs the write permission of the provider.
+         */
+        public static final String CALL_CLOSE_INSTANCES = "close_instances";
+
+        /**
+         * The time stamp of the last instance (by its original time) to close, inclusive. Required by {@link #CALL_CLOSE_INSTANCES}.
+         */
+        public static final String CLOSE_UNTIL = "until";
+
+        /**
+         * The status of the closed instances, either {@link Tasks#STATUS_COMPLETED} (the default) or {@link Tasks#STATUS_CANCELLED}. Used by {@link
+         * #CALL_CLOSE_INSTANCES}.
+         */
+        public static final String CLOSE_STATUS = "status";
+
+        /**
+         * A boolean to skip the instances, i.e. to remove them from the recurring task without leaving a closed task. Instances which are already closed
+         * are detached anyway. Used by {@link #CALL_CLOSE_INSTANCES}.
+         */
+        public static final String CLOSE_SKIP = "skip";
+
+        /**
+         * The number of closed instances in the result of {@link #CALL_CLOSE_INSTANCES}.
+         */
+        public static final String CLOSE_COUNT = "count";
+
         public static final String DEFAULT_SORT_ORDER = INSTANCE_DUE_SORTING;
 
 
@@ -1229,9 +1367,536 @@ public final class TaskContract
             return getUriFactory(authority).getUri(CONTENT_URI_PATH);
         }
 
+
+        /**
+         * Get the {@link Uri} of all instances due in the given range. Instances without a due date are in the range if their start is. Instances with
+         * neither are never in a range.
+         * <p>
+         * In contrast to {@link #getContentUri(String)} this returns all instances of recurring tasks within the range, not just the next upcoming one. The
+         * instances which don't exist in the instances table are calculated on the fly, they have no {@link #_ID} and share all task values with the last
+         * existing instance of their task. Hence, for these instances the selection is applied to the last existing instance. Don't select by the instance
+         * columns, use the range instead.
+         * <p>
+         * The result is always sorted by {@link #INSTANCE_DUE_SORTING} (or {@link #INSTANCE_START_SORTING} if there is no due date), the sort order
+         * parameter is ignored.
+         *
+         * @param authority
+         *         The authority.
+         * @param start
+         *         The time stamp of the start of the range (inclusive).
+         * @param end
+         *         The time stamp of the end of the range (exclusive).
+         *
+         * @return A {@link Uri}.
+         */
+        public static Uri getRangeUri(String authority, long start, long end)
+        {
+            return getContentUri(authority).buildUpon()
+                    .appendPath(RANGE_PATH)
+                    .appendQueryParameter(RANGE_START, String.valueOf(start))
+                    .appendQueryParameter(RANGE_END, String.valueOf(end))
+                    .build();
+        }
+
+    }
+
+
+    /**
+     * Columns of the instance aggregates.
+     */
+    public interface InstanceAggregateColumns
+    {
+
+        /**
+         * The key of the group this row belongs to. The meaning depends on the {@link InstanceAggregates#GROUP_BY} parameter. This is {@code null} for the
+         * group of instances without a value and for the single row of an ungrouped query.
+         * <p>
+         * Value: Long
+         * </p>
+         * <p>
+         * read-only
+         * </p>
+         */
+        String GROUP_KEY = "group_key";
+
+        /**
+         * The number of instances in the group.
+         * <p>
+         * Value: Integer
+         * </p>
+         * <p>
+         * read-only
+         * </p>
+         */
+        String COUNT = "count";
+
+        /**
+         * The earliest {@link Instances#INSTANCE_DUE} in the group or {@code null} if no instance in the group has a due date.
+         * <p>
+         * Value: Long
+         * </p>
+         * <p>
+         * read-only
+         * </p>
+         */
+        String MIN_DUE = "min_due";
+
+        /**
+         * The number of instances in the group which are not closed and have an {@link Instances#INSTANCE_DUE} in the past.
+         * <p>
+         * Value: Integer
+         * </p>
+         * <p>
+         * read-only
+         * </p>
+         */
+        String OVERDUE_COUNT = "overdue_count";
+    }
+
+
+    /**
+     * Counts of task instances, optionally grouped by one of the {@code GROUP_BY_*} values.
+     * <p>
+     * This returns one row per group, which is much cheaper than loading all instances of a group just to count them. The selection applies to the {@link
+     * Instances} columns. Like {@link Instances} this doesn't contain deleted tasks.
+     * <p>
+     * Grouping by a date column groups by the local time (see {@link Instances#INSTANCE_DUE_SORTING}). Use {@link #BOUNDARIES} to group by ranges instead
+     * of distinct values.
+     * <p>
+     * This is read-only.
+     */
+    public static final class InstanceAggregates implements InstanceAggregateColumns
+    {
+
+        public static final String CONTENT_URI_PATH = "instance_aggregates";
+
+        /**
+         * URI parameter to specify the grouping, one of the {@code GROUP_BY_*} values. Without this parameter the result contains a single row with the
+         * aggregates of all instances matching the selection.
+         */
+        public static final String GROUP_BY = "group_by";
+
+        /**
+         * URI parameter with a comma separated list of ascending numbers. If present, the groups are the ranges between these boundaries and {@link
+         * #GROUP_KEY} contains the number of boundaries less or equal to the value, i.e. the index of the range. Instances without a value are in the {@code
+         * null} group.
+         */
+        public static final String BOUNDARIES = "boundaries";
+
+        /**
+         * URI parameter with the time stamp to determine overdue instances. Defaults to the current time.
+         */
+        public static final String NOW = "now";
+
+        /**
+         * Group by {@link Instances#LIST_ID}.
+         */
+        public static final String GROUP_BY_LIST = "list";
+
+        /**
+         * Group by {@link Instances#PRIORITY}. Instances without a priority are in group {@code 0}, which means "undefined" as well.
+         */
+        public static final String GROUP_BY_PRIORITY = "priority";
+
+        /**
+         * Group by {@link Instances#INSTANCE_DUE_SORTING}, usually in combination with {@link #BOUNDARIES}.
+         */
+        public static final String GROUP_BY_DUE = "due";
+
+        /**
+         * Group by {@link Instances#INSTANCE_START_SORTING}, usually in combination with {@link #BOUNDARIES}.
+         */
+        public static final String GROUP_BY_START = "start";
+
+        /**
+         * Group by the id of the {@link Categories}. Instances with more than one category are counted in each of their categories.
+         */
+        public static final String GROUP_BY_CATEGORY = "category";
+
+
+        /**
+         * Get the instance aggregates content {@link Uri} using the given authority.
+         *
+         * @param authority
+         *         The authority.
+         *
+         * @return A {@link Uri}.
+         */
+        public static Uri getContentUri(String authority)
+        {
+            return getUriFactory(authority).getUri(CONTENT_URI_PATH);
+        }
+
+
+        /**
+         * Get the instance aggregates content {@link Uri} using the given authority and grouping.
+         *
+         * @param authority
+         *         The authority.
+         * @param groupBy
+         *         One of the {@code GROUP_BY_*} values.
+         *
+         * @return A {@link Uri}.
+         */
+        public static Uri getContentUri(String authority, String groupBy)
+        {
+            return getContentUri(authority).buildUpon().appendQueryParameter(GROUP_BY, groupBy).build();
+        }
+    }
+
+
+    /**
+     * Additional columns of the {@link TaskTree}.
+     */
+    public interface TaskTreeColumns
+    {
+
+        /**
+         * The number of levels between this task and the task the tree has been queried for. This is {@code 0} for the task itself, {@code 1} for its
+         * direct subtasks (or its parent when querying the ancestors) and so on.
+         * <p>
+         * Value: Integer
+         * </p>
+         * <p>
+         * read-only
+         * </p>
+         */
+        String TREE_DEPTH = "tree_depth";
+
+        /**
+         * The number of all direct and indirect subtasks of this task.
+         * <p>
+         * Value: Integer
+         * </p>
+         * <p>
+         * read-only
+         * </p>
+         */
+        String DESCENDANT_COUNT = "descendant_count";
+    }
+
+
+    /**
+     * The subtask hierarchy of a task. A subtree {@link Uri} returns the task itself and all of its direct and indirect subtasks, an ancestors {@link Uri}
+     * returns the task itself and all of its parents up to the root task. Each row contains all {@link Tasks} columns and the {@link TaskTreeColumns}. The
+     * rows are sorted by {@link #TREE_DEPTH} by default.
+     * <p>
+     * This allows to load a complete tree of nested tasks with a single query. Like {@link Tasks} this doesn't contain deleted tasks unless queried by a sync
+     * adapter.
+     * <p>
+     * This is read-only.
+     */
+    public static final class TaskTree implements TaskColumns, CommonSyncColumns, TaskSyncColumns, TaskTreeColumns
+    {
+
+        public static final String CONTENT_URI_PATH = "task_tree";
+
+        public static final String ANCESTORS_PATH = "ancestors";
+
+        /**
+         * URI parameter to limit a subtree to the given number of levels below the task, e.g. {@code 1} to get only the direct subtasks.
+         */
+        public static final String MAX_DEPTH = "max_depth";
+
+        public static final String DEFAULT_SORT_ORDER = TREE_DEPTH;
+
+
+        /**
+         * Get the {@link Uri} of the subtree of the given task.
+         *
+         * @param authority
+         *         The authority.
+         * @param taskId
+         *         The id of the root task of the subtree.
+         *
+         * @return A {@link Uri}.
+         */
+        public static Uri getSubtreeUri(String authority, long taskId)
+        {
+            return getUriFactory(authority).getUri(CONTENT_URI_PATH).buildUpon().appendPath(String.valueOf(taskId)).build();
+        }
+
+
+        /**
+         * Get the {@link Uri} of the ancestors of the given task. The root task is the row with the largest {@link #TREE_DEPTH}.
+         *
+         * @param authority
+         *         The authority.
+         * @param taskId
+         *         The id of the task.
+         *
+         * @return A {@link Uri}.
+         */
+        public static Uri getAncestorsUri(String authority, long taskId)
+        {
+            return getSubtreeUri(authority, taskId).buildUpon().appendPath(ANCESTORS_PATH).build();
+        }
+    }
+
+
+    /**
+     * Columns of the search index statistics.
+     */
+    public interface SearchIndexColumns
+    {
+
+        /**
+         * The number of distinct n-grams in the search index.
+         * <p>
+         * Value: Long
+         * </p>
+         */
+        String NGRAM_COUNT = "ngram_count";
+
+        /**
+         * The number of links between n-grams and the searchable texts of tasks.
+         * <p>
+         * Value: Long
+         * </p>
+         */
+        String LINK_COUNT = "link_count";
+
+        /**
+         * The number of n-grams which have lost their last link and are waiting to be removed.
+         * <p>
+         * Value: Long
+         * </p>
+         */
+        String ORPHANED_NGRAM_COUNT = "orphaned_ngram_count";
+
+        /**
+         * The size of the entire database file in bytes.
+         * <p>
+         * Value: Long
+         * </p>
+         */
+        String DATABASE_SIZE = "database_size";
+
+        /**
+         * The number of unused bytes in the database file, which can be reclaimed by vacuuming the database.
+         * <p>
+         * Value: Long
+         * </p>
+         */
+        String FREE_SIZE = "free_size";
+    }
+
+
+    /**
+     * Statistics of the full text search index. This contains a single row with the {@link SearchIndexColumns}. Unreferenced n-grams are removed
+     * automatically when the provider is idle.
+     * <p>
+     * This is read-only.
+     */
+    public static final class SearchIndex implements SearchIndexColumns
+    {
+
+        public static final String CONTENT_URI_PATH = "search_index";
+
+
+        /**
+         * Get the search index statistics {@link Uri} using the given authority.
+         *
+         * @param authority
+         *         The authority.
+         *
+         * @return A {@link Uri}.
+         */
+        public static Uri getContentUri(String authority)
+        {
+            return getUriFactory(authority).getUri(CONTENT_URI_PATH);
+        }
+    }
+
+    /**
+     * Columns of the {@link ChangeLog}.
+     */
+    public interface ChangeLogColumns
+    {
+
+        /**
+         * The sequence number of the change. Sequence numbers are assigned in ascending order and never reused, so the sequence number of the last change a
+         * consumer has seen serves as a token to continue from.
+         * <p>
+         * Value: Long
+         * </p>
+         */
+        String SEQUENCE = "sequence";
+
+        /**
+         * The kind of the changed row. This is either {@link Tasks#CONTENT_URI_PATH} or {@link TaskLists#CONTENT_URI_PATH}.
+         * <p>
+         * Value: String
+         * </p>
+         */
+        String ENTITY = "entity";
+
+        /**
+         * The row id of the changed task or task list.
+         * <p>
+         * Value: Long
+         * </p>
+         */
+        String ENTITY_ID = "entity_id";
+
+        /**
+         * The row id of the task list the changed row belongs to. For task lists this equals {@link #ENTITY_ID}.
+         * <p>
+         * Value: Long
+         * </p>
+         */
+        String LIST_ID = "list_id";
+
+        /**
+         * The kind of change, one of {@link ChangeLog#OPERATION_INSERT}, {@link ChangeLog#OPERATION_UPDATE} or {@link ChangeLog#OPERATION_DELETE}.
+         * <p>
+         * Value: Integer
+         * </p>
+         */
+        String OPERATION = "operation";
+
+        /**
+         * Whether the change has been made by a sync adapter. Sync adapters usually want to skip their own changes.
+         * <p>
+         * Value: Integer (0 or 1)
+         * </p>
+         */
+        String SYNC_ADAPTER = "sync_adapter";
+
+        /**
+         * The account name of the task list the changed row belonged to at the time of the change. This is retained when the task list is removed.
+         * <p>
+         * Value: String
+         * </p>
+         */
+        String ACCOUNT_NAME = "account_name";
+
+        /**
+         * The account type of the task list the changed row belonged to at the time of the change. This is retained when the task list is removed.
+         * <p>
+         * Value: String
+         * </p>
+         */
+        String ACCOUNT_TYPE = "account_type";
     }
 
 
+    /**
+     * An append-only log of the changes to {@link Tasks} and {@link TaskLists}. This allows sync adapters and other consumers to find the local changes since
+     * the last time they've looked, without scanning all the tasks for the dirty flag.
+     * <p>
+     * Changes are only logged while at least one consumer is registered in {@link ChangeLogConsumers}. Entries are removed once all registered consumers have
+     * acknowledged them, so consumers that don't register may miss changes.
+     * <p>
+     * A sync adapter which specifies {@link TaskContract#ACCOUNT_NAME} and {@link TaskContract#ACCOUNT_TYPE} only receives the changes of the task lists of
+     * that account. Changes to properties are not logged separately. Removing a task list logs the removal of each of its tasks before the removal of the list.
+     * <p>
+     * This is read-only. Rows are returned in the order of their {@link #SEQUENCE} unless another sort order has been given.
+     */
+    public static final class ChangeLog implements ChangeLogColumns
+    {
+
+        public static final String CONTENT_URI_PATH = "changes";
+
+        /**
+         * URI parameter with a {@link #SEQUENCE} number. Only changes after that sequence number are returned.
+         */
+        public static final String SINCE = "since";
+
+        public static final int OPERATION_INSERT = 0;
+
+        public static final int OPERATION_UPDATE = 1;
+
+        public static final int OPERATION_DELETE = 2;
+
+        public static final String DEFAULT_SORT_ORDER = SEQUENCE;
+
+
+        /**
+         * Get the change log {@link Uri} using the given authority.
+         *
+         * @param authority
+         *         The authority.
+         *
+         * @return A {@link Uri}.
+         */
+        public static Uri getContentUri(String authority)
+        {
+            return getUriFactory(authority).getUri(CONTENT_URI_PATH);
+        }
+
+
+        /**
+         * Get a {@link Uri} of all changes after the change with the given sequence number.
+         *
+         * @param authority
+         *         The authority.
+         * @param sequence
+         *         The {@link #SEQUENCE} of the last change that has been seen already.
+         *
+         * @return A {@link Uri}.
+         */
+        public static Uri getChangesSinceUri(String authority, long sequence)
+        {
+            return getContentUri(authority).buildUpon().appendQueryParameter(SINCE, String.valueOf(sequence)).build();
+        }
+    }
+
+
+    /**
+     * Columns of the {@link ChangeLogConsumers}.
+     */
+    public interface ChangeLogConsumerColumns
+    {
+
+        /**
+         * A unique name of the consumer, e.g. the package name or the account of a sync adapter.
+         * <p>
+         * Value: String
+         * </p>
+         */
+        String CONSUMER = "consumer";
+
+        /**
+         * The {@link ChangeLog#SEQUENCE} of the last change the consumer has processed. All changes up to this one may be removed from the {@link ChangeLog}
+         * unless another consumer still needs them.
+         * <p>
+         * Value: Long
+         * </p>
+         */
+        String ACKNOWLEDGED = "acknowledged";
+    }
+
+
+    /**
+     * The consumers of the {@link ChangeLog}.
+     * <p>
+     * Inserting a {@link #CONSUMER} registers a consumer. Unless {@link #ACKNOWLEDGED} is given, all changes up to that moment are considered acknowledged, so
+     * the consumer receives all the changes that follow. Registering an existing consumer again replaces its row. Consumers acknowledge changes by updating
+     * {@link #ACKNOWLEDGED}, which can not move backwards. Deleting a consumer releases all the changes it hasn't acknowledged yet.
+     */
+    public static final class ChangeLogConsumers implements ChangeLogConsumerColumns
+    {
+
+        public static final String CONTENT_URI_PATH = "change_consumers";
+
+
+        /**
+         * Get the change log consumers {@link Uri} using the given authority.
+         *
+         * @param authority
+         *         The authority.
+         *
+         * @return A {@link Uri}.
+         */
+        public static Uri getContentUri(String authority)
+        {
+            return getUriFactory(authority).getUri(CONTENT_URI_PATH);
+        }
+    }
+
+
+
     /**
      * Available values in Categories.
      * <p>
@@ -1710,6 +2375,11 @@ public final class TaskContract
             uriFactory.addUri(Categories.CONTENT_URI_PATH);
             uriFactory.addUri(Alarms.CONTENT_URI_PATH);
             uriFactory.addUri(Properties.CONTENT_URI_PATH);
+            uriFactory.addUri(InstanceAggregates.CONTENT_URI_PATH);
+            uriFactory.addUri(TaskTree.CONTENT_URI_PATH);
+            uriFactory.addUri(SearchIndex.CONTENT_URI_PATH);
+            uriFactory.addUri(ChangeLog.CONTENT_URI_PATH);
+            uriFactory.addUri(ChangeLogConsumers.CONTENT_URI_PATH);
             sUriFactories.put(authority, uriFactory);
 
         }
@@ -17,11 +17,21 @@
 package org.dmfs.provider.tasks;
 
 import android.accounts.Account;
+import android.content.BroadcastReceiver;
 import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
 import android.os.Build;
+import android.os.Bundle;
 
 import org.dmfs.android.contentpal.Operation;
 import org.dmfs.android.contentpal.OperationsQueue;
@@ -51,6 +61,7 @@ import org.dmfs.opentaskspal.tables.TaskListScoped;
 import org.dmfs.opentaskspal.tables.TaskListsTable;
 import org.dmfs.opentaskspal.tables.TasksTable;
 import org.dmfs.opentaskspal.tasklists.NameData;
+import org.dmfs.opentaskspal.tasks.DueData;
 import org.dmfs.opentaskspal.tasks.OriginalInstanceData;
 import org.dmfs.opentaskspal.tasks.OriginalInstanceSyncIdData;
 import org.dmfs.opentaskspal.tasks.RRuleTaskData;
@@ -64,6 +75,9 @@ import org.dmfs.rfc5545.DateTime;
 import org.dmfs.rfc5545.Duration;
 import org.dmfs.rfc5545.recur.InvalidRecurrenceRuleException;
 import org.dmfs.rfc5545.recur.RecurrenceRule;
+import org.dmfs.tasks.contract.TaskContract;
+import org.dmfs.tasks.contract.TaskContract.ChangeLog;
+import org.dmfs.tasks.contract.TaskContract.ChangeLogConsumers;
 import org.dmfs.tasks.contract.TaskContract.Instances;
 import org.dmfs.tasks.contract.TaskContract.TaskLists;
 import org.dmfs.tasks.contract.TaskContract.Tasks;
@@ -72,14 +86,25 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import androidx.test.InstrumentationRegistry;
 import androidx.test.runner.AndroidJUnit4;
 
 import static org.dmfs.android.contenttestpal.ContentMatcher.resultsIn;
 import static org.dmfs.optional.Absent.absent;
+import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 
 /**
@@ -942,4 +967,917 @@ public class TaskProviderTest
                         )));
     }
 
+
+    /**
+     * Create 1 local task list and 5 tasks, read them in pages of 2 using {@link TaskContract#LIMIT} and {@link TaskContract#AFTER_ID}.
+     */
+    @Test
+    public void testKeysetPaging() throws Exception
+    {
+        RowSnapshot<TaskLists> taskList = new VirtualRowSnapshot<>(new LocalTaskListsTable(mAuthority));
+        OperationsQueue queue = new BasicOperationsQueue(mClient);
+        queue.enqueue(new SingletonIterable<Operation<?>>(new Put<>(taskList, new NameData("list1"))));
+        for (int i = 0; i < 5; ++i)
+        {
+            queue.enqueue(new SingletonIterable<Operation<?>>(
+                    new Put<>(new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority))), new TitleData("task" + i))));
+        }
+        queue.flush();
+
+        int total = 0;
+        int pages = 0;
+        long lastId = -1;
+        while (true)
+        {
+            Uri.Builder builder = Tasks.getContentUri(mAuthority).buildUpon().appendQueryParameter(TaskContract.LIMIT, "2");
+            if (lastId >= 0)
+            {
+                builder.appendQueryParameter(TaskContract.AFTER_ID, String.valueOf(lastId));
+            }
+            Cursor cursor = mClient.query(builder.build(), new String[] { Tasks._ID }, null, null, Tasks._ID);
+            try
+            {
+                if (cursor.getCount() == 0)
+                {
+                    break;
+                }
+                while (cursor.moveToNext())
+                {
+                    long id = cursor.getLong(0);
+                    assertThat(id > lastId, is(true));
+                    lastId = id;
+                }
+                total += cursor.getCount();
+                pages += 1;
+            }
+            finally
+            {
+                cursor.close();
+            }
+        }
+
+        assertThat(total, is(5));
+        assertThat(pages, is(3));
+    }
+
+
+    /**
+     * Create 1 local task list and 9 tasks with partly equal, numeric or missing titles, read them sorted by title in pages of 2 using {@link
+     * TaskContract#LIMIT}, {@link TaskContract#AFTER_ID} and {@link TaskContract#AFTER_VALUE}.
+     */
+    @Test
+    public void testKeysetPagingByValue() throws Exception
+    {
+        RowSnapshot<TaskLists> taskList = new VirtualRowSnapshot<>(new LocalTaskListsTable(mAuthority));
+        OperationsQueue queue = new BasicOperationsQueue(mClient);
+        queue.enqueue(new SingletonIterable<Operation<?>>(new Put<>(taskList, new NameData("list1"))));
+        queue.flush();
+
+        long listId;
+        Cursor cursor = mClient.query(TaskLists.getContentUri(mAuthority), new String[] { TaskLists._ID }, null, null, null);
+        try
+        {
+            cursor.moveToFirst();
+            listId = cursor.getLong(0);
+        }
+        finally
+        {
+            cursor.close();
+        }
+
+        // "007" ends the first page, it must not be compared as the number 7, which would skip "5" and "7"
+        for (String title : new String[] { "b", "a", null, "7", "a", "b", "007", "a", "5" })
+        {
+            ContentValues values = new ContentValues();
+            values.put(Tasks.LIST_ID, listId);
+            values.put(Tasks.TITLE, title);
+            mClient.insert(Tasks.getContentUri(mAuthority), values);
+        }
+
+        assertThat(pagedTitles(Tasks.TITLE), is(Arrays.asList(null, "007", "5", "7", "a", "a", "a", "b", "b")));
+        assertThat(pagedTitles(Tasks.TITLE + " DESC"), is(Arrays.asList("b", "b", "a", "a", "a", "7", "5", "007", null)));
+    }
+
+
+    /**
+     * Returns the titles of all tasks in the given order, read in pages of 2.
+     */
+    private List<String> pagedTitles(String sortOrder) throws Exception
+    {
+        List<String> titles = new ArrayList<>();
+        Set<Long> ids = new HashSet<>();
+        long lastId = -1;
+        String lastTitle = null;
+        while (true)
+        {
+            Uri.Builder builder = Tasks.getContentUri(mAuthority).buildUpon().appendQueryParameter(TaskContract.LIMIT, "2");
+            if (lastId >= 0)
+            {
+                builder.appendQueryParameter(TaskContract.AFTER_ID, String.valueOf(lastId));
+                if (lastTitle != null)
+                {
+                    builder.appendQueryParameter(TaskContract.AFTER_VALUE, lastTitle);
+                }
+            }
+            Cursor cursor = mClient.query(builder.build(), new String[] { Tasks._ID, Tasks.TITLE }, null, null, sortOrder);
+            try
+            {
+                if (cursor.getCount() == 0)
+                {
+                    return titles;
+                }
+                while (cursor.moveToNext())
+                {
+                    lastId = cursor.getLong(0);
+                    lastTitle = cursor.getString(1);
+                    // no row must be returned twice
+                    assertThat(ids.add(lastId), is(true));
+                    titles.add(lastTitle);
+                }
+            }
+            finally
+            {
+                cursor.close();
+            }
+        }
+    }
+
+
+    /**
+     * Create 1 local task list and 3 tasks, 2 of them overdue but 1 of these completed, check the {@link TaskContract.InstanceAggregates}.
+     */
+    @Test
+    public void testInstanceAggregates() throws Exception
+    {
+        RowSnapshot<TaskLists> taskList = new VirtualRowSnapshot<>(new LocalTaskListsTable(mAuthority));
+        RowSnapshot<Tasks> task1 = new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority)));
+        RowSnapshot<Tasks> task2 = new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority)));
+        RowSnapshot<Tasks> task3 = new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority)));
+        DateTime past = DateTime.now().addDuration(new Duration(-1, 2, 0));
+
+        OperationsQueue queue = new BasicOperationsQueue(mClient);
+        queue.enqueue(new Seq<Operation<?>>(
+                new Put<>(taskList, new NameData("list1")),
+                new Put<>(task1, new Composite<>(new TitleData("task1"), new DueData<>(past))),
+                new Put<>(task2, new Composite<>(new TitleData("task2"), new DueData<>(past), new StatusData<>(Tasks.STATUS_COMPLETED))),
+                new Put<>(task3, new TitleData("task3"))));
+        queue.flush();
+
+        Cursor cursor = mClient.query(TaskContract.InstanceAggregates.getContentUri(mAuthority),
+                new String[] { TaskContract.InstanceAggregates.COUNT, TaskContract.InstanceAggregates.OVERDUE_COUNT, TaskContract.InstanceAggregates.MIN_DUE },
+                null, null, null);
+        try
+        {
+            assertThat(cursor.getCount(), is(1));
+            cursor.moveToFirst();
+            assertThat(cursor.getInt(0), is(3));
+            assertThat(cursor.getInt(1), is(1));
+            assertThat(cursor.getLong(2), is(past.getTimestamp()));
+        }
+        finally
+        {
+            cursor.close();
+        }
+    }
+
+
+    /**
+     * Create 1 local task list with a daily recurring task and a single task, check the instances in a range of 5 days.
+     */
+    @Test
+    public void testInstanceRange() throws Exception
+    {
+        RowSnapshot<TaskLists> taskList = new VirtualRowSnapshot<>(new LocalTaskListsTable(mAuthority));
+        RowSnapshot<Tasks> recurring = new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority)));
+        RowSnapshot<Tasks> single = new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority)));
+        DateTime start = DateTime.now().addDuration(new Duration(1, 1, 0)).shiftTimeZone(TimeZone.getTimeZone("UTC"));
+        Duration hour = new Duration(1, 0, 3600);
+        Duration day = new Duration(1, 1, 0);
+
+        OperationsQueue queue = new BasicOperationsQueue(mClient);
+        queue.enqueue(new Seq<Operation<?>>(
+                new Put<>(taskList, new NameData("list1")),
+                new Put<>(recurring,
+                        new Composite<>(new TitleData("recurring"), new TimeData<>(start, start.addDuration(hour)),
+                                new RRuleTaskData(new RecurrenceRule("FREQ=DAILY")))),
+                new Put<>(single, new Composite<>(new TitleData("single"), new DueData<>(start.addDuration(day).addDuration(new Duration(1, 0, 7200)))))));
+        queue.flush();
+
+        // the range starts with the first instance and ends right before the 6th instance
+        Cursor cursor = mClient.query(Instances.getRangeUri(mAuthority, start.getTimestamp(), start.getTimestamp() + 5 * 24 * 3600 * 1000L),
+                new String[] { Instances.TITLE, Instances.INSTANCE_DUE, Instances.INSTANCE_ORIGINAL_TIME, Instances.DISTANCE_FROM_CURRENT },
+                null, null, null);
+        try
+        {
+            // 5 instances of the recurring task, 1 of which is stored, and the single task sorted between the 2nd and 3rd instance
+            assertThat(cursor.getCount(), is(6));
+            String[] titles = { "recurring", "recurring", "single", "recurring", "recurring", "recurring" };
+            int[] days = { 0, 1, -1, 2, 3, 4 };
+            int distance = 0;
+            for (int i = 0; i < 6; ++i)
+            {
+                cursor.moveToPosition(i);
+                assertThat(cursor.getString(0), is(titles[i]));
+                if (days[i] >= 0)
+                {
+                    DateTime instanceStart = start.addDuration(new Duration(1, days[i], 0));
+                    assertThat(cursor.getLong(1), is(instanceStart.addDuration(hour).getTimestamp()));
+                    assertThat(cursor.getLong(2), is(instanceStart.getTimestamp()));
+                    assertThat(cursor.getInt(3), is(distance++));
+                }
+            }
+        }
+        finally
+        {
+            cursor.close();
+        }
+    }
+
+
+    /**
+     * Create a daily recurring task which started 5 days ago, close the overdue instances in one call and check the detached tasks, the new start of the
+     * recurring task and the changed tasks and instances reported by the provider changed broadcast.
+     */
+    @Test
+    public void testCloseInstances() throws Exception
+    {
+        RowSnapshot<TaskLists> taskList = new VirtualRowSnapshot<>(new LocalTaskListsTable(mAuthority));
+        RowSnapshot<Tasks> recurring = new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority)));
+        DateTime start = DateTime.now().addDuration(new Duration(-1, 5, 0)).shiftTimeZone(TimeZone.getTimeZone("UTC"));
+        Duration hour = new Duration(1, 0, 3600);
+
+        OperationsQueue queue = new BasicOperationsQueue(mClient);
+        queue.enqueue(new Seq<Operation<?>>(
+                new Put<>(taskList, new NameData("list1")),
+                new Put<>(recurring,
+                        new Composite<>(new TitleData("recurring"), new TimeData<>(start, start.addDuration(hour)),
+                                new RRuleTaskData(new RecurrenceRule("FREQ=DAILY"))))));
+        queue.flush();
+
+        long masterId = taskId("recurring");
+        Set<Long> masterInstanceIds = new HashSet<>();
+        Cursor instances = mClient.query(Instances.getContentUri(mAuthority), new String[] { Instances._ID }, Instances.TASK_ID + "=" + masterId, null,
+                null);
+        try
+        {
+            while (instances.moveToNext())
+            {
+                masterInstanceIds.add(instances.getLong(0));
+            }
+        }
+        finally
+        {
+            instances.close();
+        }
+
+        // collect the provider changed broadcasts, they are delivered asynchronously
+        BlockingQueue<Intent> broadcasts = new LinkedBlockingQueue<>();
+        BroadcastReceiver receiver = new BroadcastReceiver()
+        {
+            @Override
+            public void onReceive(Context context, Intent intent)
+            {
+                broadcasts.add(intent);
+            }
+        };
+        IntentFilter filter = new IntentFilter(Intent.ACTION_PROVIDER_CHANGED);
+        filter.addDataScheme("content");
+        filter.addDataAuthority(mAuthority, null);
+        mContext.registerReceiver(receiver, filter);
+
+        Set<Long> changedTaskIds = new HashSet<>();
+        try
+        {
+            Bundle extras = new Bundle();
+            // close the first 5 instances
+            extras.putLong(Instances.CLOSE_UNTIL, start.addDuration(new Duration(1, 4, 0)).getTimestamp());
+            Bundle result = mClient.call(Instances.CALL_CLOSE_INSTANCES, String.valueOf(masterId), extras);
+            assertThat(result.getInt(Instances.CLOSE_COUNT), is(5));
+
+            Cursor cursor = mClient.query(Tasks.getContentUri(mAuthority),
+                    new String[] { Tasks._ID, Tasks.DTSTART, Tasks.STATUS, Tasks.RRULE },
+                    Tasks.TITLE + "=?", new String[] { "recurring" }, Tasks.DTSTART);
+            try
+            {
+                assertThat(cursor.getCount(), is(6));
+                for (int i = 0; i < 6; ++i)
+                {
+                    cursor.moveToPosition(i);
+                    assertThat(cursor.getLong(1), is(start.addDuration(new Duration(1, i, 0)).getTimestamp()));
+                    changedTaskIds.add(cursor.getLong(0));
+                    if (i < 5)
+                    {
+                        // a detached completed task
+                        assertThat(cursor.getInt(2), is(Tasks.STATUS_COMPLETED));
+                        assertThat(cursor.isNull(3), is(true));
+                    }
+                    else
+                    {
+                        // the recurring task starts with the first open instance now
+                        assertThat(cursor.getLong(0), is(masterId));
+                        assertThat(cursor.getString(3), is("FREQ=DAILY"));
+                    }
+                }
+            }
+            finally
+            {
+                cursor.close();
+            }
+
+            // the broadcast must report the master, the detached tasks and the former instances of the master
+            Intent intent;
+            while ((intent = broadcasts.poll(10, TimeUnit.SECONDS)) != null)
+            {
+                long[] taskIds = intent.getLongArrayExtra(TaskContract.EXTRA_CHANGED_TASK_IDS);
+                long[] instanceIds = intent.getLongArrayExtra(TaskContract.EXTRA_CHANGED_INSTANCE_IDS);
+                if (taskIds != null && instanceIds != null && ids(taskIds).containsAll(changedTaskIds) && ids(instanceIds).containsAll(masterInstanceIds))
+                {
+                    break;
+                }
+            }
+            assertThat(intent != null, is(true));
+        }
+        finally
+        {
+            mContext.unregisterReceiver(receiver);
+        }
+    }
+
+
+    /**
+     * Create 1 local task list and a tree of 4 tasks, check the subtree of the root and the ancestors of the leaf in {@link TaskContract.TaskTree}.
+     */
+    @Test
+    public void testTaskTree() throws Exception
+    {
+        RowSnapshot<TaskLists> taskList = new VirtualRowSnapshot<>(new LocalTaskListsTable(mAuthority));
+        RowSnapshot<Tasks> root = new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority)));
+        RowSnapshot<Tasks> child = new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority)));
+        RowSnapshot<Tasks> sibling = new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority)));
+        RowSnapshot<Tasks> leaf = new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority)));
+
+        OperationsQueue queue = new BasicOperationsQueue(mClient);
+        queue.enqueue(new Seq<Operation<?>>(
+                new Put<>(taskList, new NameData("list1")),
+                new Put<>(root, new TitleData("root")),
+                new Put<>(child, new Composite<>(new TitleData("child"), new Referring<>(Tasks.PARENT_ID, root))),
+                new Put<>(sibling, new Composite<>(new TitleData("sibling"), new Referring<>(Tasks.PARENT_ID, root))),
+                new Put<>(leaf, new Composite<>(new TitleData("leaf"), new Referring<>(Tasks.PARENT_ID, child)))));
+        queue.flush();
+
+        long rootId = taskId("root");
+        long leafId = taskId("leaf");
+
+        Cursor cursor = mClient.query(TaskContract.TaskTree.getSubtreeUri(mAuthority, rootId),
+                new String[] { Tasks.TITLE, TaskContract.TaskTree.TREE_DEPTH, TaskContract.TaskTree.DESCENDANT_COUNT },
+                null, null, TaskContract.TaskTree.TREE_DEPTH + ", " + Tasks.TITLE);
+        try
+        {
+            assertThat(cursor.getCount(), is(4));
+            cursor.moveToNext();
+            assertThat(cursor.getString(0), is("root"));
+            assertThat(cursor.getInt(1), is(0));
+            assertThat(cursor.getInt(2), is(3));
+            cursor.moveToNext();
+            assertThat(cursor.getString(0), is("child"));
+            assertThat(cursor.getInt(1), is(1));
+            assertThat(cursor.getInt(2), is(1));
+            cursor.moveToNext();
+            assertThat(cursor.getString(0), is("sibling"));
+            assertThat(cursor.getInt(1), is(1));
+            assertThat(cursor.getInt(2), is(0));
+            cursor.moveToNext();
+            assertThat(cursor.getString(0), is("leaf"));
+            assertThat(cursor.getInt(1), is(2));
+            assertThat(cursor.getInt(2), is(0));
+        }
+        finally
+        {
+            cursor.close();
+        }
+
+        cursor = mClient.query(TaskContract.TaskTree.getAncestorsUri(mAuthority, leafId),
+                new String[] { Tasks.TITLE, TaskContract.TaskTree.TREE_DEPTH }, null, null, null);
+        try
+        {
+            assertThat(cursor.getCount(), is(3));
+            cursor.moveToLast();
+            assertThat(cursor.getString(0), is("root"));
+            assertThat(cursor.getInt(1), is(2));
+        }
+        finally
+        {
+            cursor.close();
+        }
+    }
+
+
+    /**
+     * Create 1 local task list with two roots, move a subtree from one root to the other and check the subtrees.
+     */
+    @Test
+    public void testTaskTreeReparenting() throws Exception
+    {
+        RowSnapshot<TaskLists> taskList = new VirtualRowSnapshot<>(new LocalTaskListsTable(mAuthority));
+        RowSnapshot<Tasks> root1 = new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority)));
+        RowSnapshot<Tasks> root2 = new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority)));
+        RowSnapshot<Tasks> child = new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority)));
+        RowSnapshot<Tasks> leaf = new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority)));
+
+        OperationsQueue queue = new BasicOperationsQueue(mClient);
+        queue.enqueue(new Seq<Operation<?>>(
+                new Put<>(taskList, new NameData("list1")),
+                new Put<>(root1, new TitleData("root1")),
+                new Put<>(root2, new TitleData("root2")),
+                new Put<>(child, new Composite<>(new TitleData("child"), new Referring<>(Tasks.PARENT_ID, root1))),
+                new Put<>(leaf, new Composite<>(new TitleData("leaf"), new Referring<>(Tasks.PARENT_ID, child)))));
+        queue.flush();
+
+        // move the child, including its leaf, to the other root
+        queue.enqueue(new SingletonIterable<Operation<?>>(new Put<>(child, new Referring<>(Tasks.PARENT_ID, root2))));
+        queue.flush();
+
+        assertSubtree(taskId("root1"), "root1:0:0");
+        assertSubtree(taskId("root2"), "root2:0:2", "child:1:1", "leaf:2:0");
+    }
+
+
+    /**
+     * Asserts the subtree of the given task. Each row is given as {@code "title:depth:descendant count"}, sorted by depth and title.
+     */
+    private void assertSubtree(long taskId, String... rows) throws Exception
+    {
+        Cursor cursor = mClient.query(TaskContract.TaskTree.getSubtreeUri(mAuthority, taskId),
+                new String[] { Tasks.TITLE, TaskContract.TaskTree.TREE_DEPTH, TaskContract.TaskTree.DESCENDANT_COUNT },
+                null, null, TaskContract.TaskTree.TREE_DEPTH + ", " + Tasks.TITLE);
+        try
+        {
+            assertThat(cursor.getCount(), is(rows.length));
+            for (String row : rows)
+            {
+                assertThat(cursor.moveToNext(), is(true));
+                assertThat(cursor.getString(0) + ":" + cursor.getInt(1) + ":" + cursor.getInt(2), is(row));
+            }
+        }
+        finally
+        {
+            cursor.close();
+        }
+    }
+
+
+    /**
+     * Create 1 local task list and a parent with 3 subtasks, check the progress of the parent while the subtasks are completed and moved. The progress must
+     * not change the version of the parent.
+     */
+    @Test
+    public void testParentProgress() throws Exception
+    {
+        RowSnapshot<TaskLists> taskList = new VirtualRowSnapshot<>(new LocalTaskListsTable(mAuthority));
+        RowSnapshot<Tasks> parent = new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority)));
+        RowSnapshot<Tasks> child1 = new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority)));
+        RowSnapshot<Tasks> child2 = new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority)));
+        RowSnapshot<Tasks> child3 = new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority)));
+
+        OperationsQueue queue = new BasicOperationsQueue(mClient);
+        queue.enqueue(new Seq<Operation<?>>(
+                new Put<>(taskList, new NameData("list1")),
+                new Put<>(parent, new TitleData("parent")),
+                new Put<>(child1, new Composite<>(new TitleData("child1"), new StatusData<>(Tasks.STATUS_COMPLETED), new Referring<>(Tasks.PARENT_ID, parent))),
+                new Put<>(child2, new Composite<>(new TitleData("child2"), new Referring<>(Tasks.PARENT_ID, parent))),
+                new Put<>(child3, new Composite<>(new TitleData("child3"), new Referring<>(Tasks.PARENT_ID, parent)))));
+        queue.flush();
+
+        long parentId = taskId("parent");
+        assertProgress(parentId, 3, 1, 33);
+        int parentVersion = taskVersion(parentId);
+
+        queue.enqueue(new Seq<Operation<?>>(
+                new Put<>(child2, new StatusData<>(Tasks.STATUS_COMPLETED)),
+                new Put<>(child3, new Referring<>(Tasks.PARENT_ID, child1))));
+        queue.flush();
+
+        assertProgress(parentId, 2, 2, 100);
+        assertThat(taskVersion(parentId), is(parentVersion));
+    }
+
+
+    /**
+     * Create 1 local task list and 1 task, rename the task and check that the n-grams of the old title are reported as orphaned in {@link
+     * TaskContract.SearchIndex}.
+     */
+    @Test
+    public void testSearchIndex() throws Exception
+    {
+        RowSnapshot<TaskLists> taskList = new VirtualRowSnapshot<>(new LocalTaskListsTable(mAuthority));
+        RowSnapshot<Tasks> task = new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority)));
+
+        OperationsQueue queue = new BasicOperationsQueue(mClient);
+        queue.enqueue(new Seq<Operation<?>>(
+                new Put<>(taskList, new NameData("list1")),
+                new Put<>(task, new TitleData("abcdef"))));
+        queue.flush();
+        queue.enqueue(new SingletonIterable<Operation<?>>(new Put<>(task, new TitleData("uvwxyz"))));
+        queue.flush();
+
+        Cursor cursor = mClient.query(TaskContract.SearchIndex.getContentUri(mAuthority),
+                new String[] { TaskContract.SearchIndex.NGRAM_COUNT, TaskContract.SearchIndex.LINK_COUNT, TaskContract.SearchIndex.ORPHANED_NGRAM_COUNT,
+                        TaskContract.SearchIndex.DATABASE_SIZE }, null, null, null);
+        try
+        {
+            assertThat(cursor.getCount(), is(1));
+            cursor.moveToFirst();
+            // the old n-grams are still there, but none of them is linked
+            assertThat(cursor.getLong(0), is(cursor.getLong(1) + cursor.getLong(2)));
+            assertThat(cursor.getLong(2) > 0, is(true));
+            assertThat(cursor.getLong(3) > 0, is(true));
+        }
+        finally
+        {
+            cursor.close();
+        }
+    }
+
+
+    /**
+     * Create 1 local task list and 1 task, rename the task, run the database maintenance and check that the orphaned n-grams have been removed.
+     */
+    @Test
+    public void testDatabaseMaintenance() throws Exception
+    {
+        RowSnapshot<TaskLists> taskList = new VirtualRowSnapshot<>(new LocalTaskListsTable(mAuthority));
+        RowSnapshot<Tasks> task = new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority)));
+
+        OperationsQueue queue = new BasicOperationsQueue(mClient);
+        queue.enqueue(new Seq<Operation<?>>(
+                new Put<>(taskList, new NameData("list1")),
+                new Put<>(task, new TitleData("abcdef"))));
+        queue.flush();
+        queue.enqueue(new SingletonIterable<Operation<?>>(new Put<>(task, new TitleData("uvwxyz"))));
+        queue.flush();
+
+        Bundle result = mClient.call(TaskProvider.CALL_MAINTAIN_DATABASE, null, null);
+        assertThat(result.getLong(DatabaseMaintenance.STEP_SEARCH_GARBAGE) > 0, is(true));
+        assertThat(result.containsKey(DatabaseMaintenance.STEP_INCREMENTAL_VACUUM), is(true));
+
+        Cursor cursor = mClient.query(TaskContract.SearchIndex.getContentUri(mAuthority),
+                new String[] { TaskContract.SearchIndex.NGRAM_COUNT, TaskContract.SearchIndex.LINK_COUNT, TaskContract.SearchIndex.ORPHANED_NGRAM_COUNT },
+                null, null, null);
+        try
+        {
+            cursor.moveToFirst();
+            assertThat(cursor.getLong(0), is(cursor.getLong(1)));
+            assertThat(cursor.getLong(2), is(0L));
+        }
+        finally
+        {
+            cursor.close();
+        }
+    }
+
+
+    /**
+     * Register a change log consumer, create 1 local task list and 1 task, rename the task and check the change log. Then acknowledge the changes and check
+     * that they have been removed.
+     */
+    @Test
+    public void testChangeLog() throws Exception
+    {
+        ContentValues consumer = new ContentValues();
+        consumer.put(ChangeLogConsumers.CONSUMER, "test");
+        mClient.insert(ChangeLogConsumers.getContentUri(mAuthority), consumer);
+
+        RowSnapshot<TaskLists> taskList = new VirtualRowSnapshot<>(new LocalTaskListsTable(mAuthority));
+        RowSnapshot<Tasks> task = new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority)));
+
+        OperationsQueue queue = new BasicOperationsQueue(mClient);
+        queue.enqueue(new Seq<Operation<?>>(
+                new Put<>(taskList, new NameData("list1")),
+                new Put<>(task, new TitleData("task1"))));
+        queue.flush();
+        queue.enqueue(new SingletonIterable<Operation<?>>(new Put<>(task, new TitleData("task2"))));
+        queue.flush();
+
+        long lastSequence;
+        Cursor cursor = mClient.query(ChangeLog.getChangesSinceUri(mAuthority, 0),
+                new String[] { ChangeLog.SEQUENCE, ChangeLog.ENTITY, ChangeLog.OPERATION, ChangeLog.SYNC_ADAPTER }, null, null, null);
+        try
+        {
+            assertThat(cursor.getCount(), is(3));
+            cursor.moveToNext();
+            assertThat(cursor.getString(1), is(TaskLists.CONTENT_URI_PATH));
+            assertThat(cursor.getInt(2), is(ChangeLog.OPERATION_INSERT));
+            cursor.moveToNext();
+            assertThat(cursor.getString(1), is(Tasks.CONTENT_URI_PATH));
+            assertThat(cursor.getInt(2), is(ChangeLog.OPERATION_INSERT));
+            cursor.moveToNext();
+            assertThat(cursor.getString(1), is(Tasks.CONTENT_URI_PATH));
+            assertThat(cursor.getInt(2), is(ChangeLog.OPERATION_UPDATE));
+            assertThat(cursor.getInt(3), is(0));
+            lastSequence = cursor.getLong(0);
+        }
+        finally
+        {
+            cursor.close();
+        }
+
+        ContentValues acknowledgement = new ContentValues();
+        acknowledgement.put(ChangeLogConsumers.ACKNOWLEDGED, lastSequence);
+        assertThat(mClient.update(ChangeLogConsumers.getContentUri(mAuthority), acknowledgement, ChangeLogConsumers.CONSUMER + "=?",
+                new String[] { "test" }), is(1));
+
+        cursor = mClient.query(ChangeLog.getContentUri(mAuthority), null, null, null, null);
+        try
+        {
+            assertThat(cursor.getCount(), is(0));
+        }
+        finally
+        {
+            cursor.close();
+        }
+
+        assertThat(mClient.delete(ChangeLogConsumers.getContentUri(mAuthority), null, null), is(1));
+    }
+
+
+    /**
+     * Register a change log consumer, create a synced task list with 1 task, remove the list and check that a sync adapter of the account still sees the
+     * removal of the task and the list.
+     */
+    @Test
+    public void testChangeLogListDelete() throws Exception
+    {
+        ContentValues consumer = new ContentValues();
+        consumer.put(ChangeLogConsumers.CONSUMER, "test");
+        mClient.insert(ChangeLogConsumers.getContentUri(mAuthority), consumer);
+
+        Table<TaskLists> taskListsTable = new Synced<>(testAccount, new TaskListsTable(mAuthority));
+        RowSnapshot<TaskLists> taskList = new VirtualRowSnapshot<>(taskListsTable);
+        RowSnapshot<Tasks> task = new VirtualRowSnapshot<>(new TaskListScoped(taskList, new Synced<>(testAccount, new TasksTable(mAuthority))));
+
+        OperationsQueue queue = new BasicOperationsQueue(mClient);
+        queue.enqueue(new Seq<Operation<?>>(
+                new Put<>(taskList, new NameData("list1")),
+                new Put<>(task, new TitleData("task1"))));
+        queue.flush();
+        queue.enqueue(new SingletonIterable<Operation<?>>(new Delete<>(taskList)));
+        queue.flush();
+
+        Uri uri = ChangeLog.getContentUri(mAuthority).buildUpon()
+                .appendQueryParameter(TaskContract.CALLER_IS_SYNCADAPTER, "true")
+                .appendQueryParameter(TaskContract.ACCOUNT_NAME, testAccount.name)
+                .appendQueryParameter(TaskContract.ACCOUNT_TYPE, testAccount.type)
+                .build();
+        Cursor cursor = mClient.query(uri, new String[] { ChangeLog.ENTITY, ChangeLog.OPERATION }, null, null, null);
+        try
+        {
+            assertThat(cursor.getCount(), is(4));
+            cursor.moveToPosition(2);
+            assertThat(cursor.getString(0), is(Tasks.CONTENT_URI_PATH));
+            assertThat(cursor.getInt(1), is(ChangeLog.OPERATION_DELETE));
+            cursor.moveToNext();
+            assertThat(cursor.getString(0), is(TaskLists.CONTENT_URI_PATH));
+            assertThat(cursor.getInt(1), is(ChangeLog.OPERATION_DELETE));
+        }
+        finally
+        {
+            cursor.close();
+        }
+
+        assertThat(mClient.delete(ChangeLogConsumers.getContentUri(mAuthority), null, null), is(1));
+    }
+
+
+    /**
+     * Create 1 local task list and 1 task, update the task and delete it, check the dirty counter of the list after each step.
+     */
+    @Test
+    public void testListDirty() throws Exception
+    {
+        RowSnapshot<TaskLists> taskList = new VirtualRowSnapshot<>(new LocalTaskListsTable(mAuthority));
+        RowSnapshot<Tasks> task = new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority)));
+
+        OperationsQueue queue = new BasicOperationsQueue(mClient);
+        queue.enqueue(new Seq<Operation<?>>(
+                new Put<>(taskList, new NameData("list1")),
+                new Put<>(task, new TitleData("task1"))));
+        queue.flush();
+        // the new task is dirty
+        assertListDirty(1);
+
+        queue.enqueue(new SingletonIterable<Operation<?>>(new Put<>(task, new TitleData("task2"))));
+        queue.flush();
+        assertListDirty(2);
+
+        // local tasks are removed right away, so this doesn't add anything
+        queue.enqueue(new SingletonIterable<Operation<?>>(new Delete<>(task)));
+        queue.flush();
+        assertListDirty(2);
+    }
+
+
+    /**
+     * Insert tasks in a batch with yield points while another thread contends for the database and let the batch fail at the end. Tasks which have been
+     * committed at a yield point must still be accounted for in the dirty counter of the list.
+     */
+    @Test
+    public void testListDirtyBatchYieldAndFail() throws Exception
+    {
+        RowSnapshot<TaskLists> taskList = new VirtualRowSnapshot<>(new LocalTaskListsTable(mAuthority));
+        OperationsQueue queue = new BasicOperationsQueue(mClient);
+        queue.enqueue(new SingletonIterable<Operation<?>>(new Put<>(taskList, new NameData("list1"))));
+        queue.flush();
+
+        long listId;
+        Cursor cursor = mClient.query(TaskLists.getContentUri(mAuthority), new String[] { TaskLists._ID }, null, null, null);
+        try
+        {
+            cursor.moveToFirst();
+            listId = cursor.getLong(0);
+        }
+        finally
+        {
+            cursor.close();
+        }
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for (int i = 0; i < 200; ++i)
+        {
+            operations.add(ContentProviderOperation.newInsert(Tasks.getContentUri(mAuthority))
+                    .withValue(Tasks.LIST_ID, listId)
+                    .withValue(Tasks.TITLE, "task" + i)
+                    .withYieldAllowed(i % 20 == 0)
+                    .build());
+        }
+        // this fails the batch after a couple of yield points
+        operations.add(ContentProviderOperation.newAssertQuery(Tasks.getContentUri(mAuthority)).withExpectedCount(-1).build());
+
+        // keep another thread waiting for the database, so the batch actually yields
+        final SQLiteDatabase db = ((TaskProvider) mClient.getLocalContentProvider()).getDatabaseHelper().getWritableDatabase();
+        final AtomicBoolean contending = new AtomicBoolean(true);
+        Thread contender = new Thread(() ->
+        {
+            while (contending.get())
+            {
+                db.beginTransaction();
+                db.endTransaction();
+            }
+        });
+        contender.start();
+        try
+        {
+            mClient.applyBatch(operations);
+            fail("the batch didn't fail");
+        }
+        catch (OperationApplicationException e)
+        {
+            // expected
+        }
+        finally
+        {
+            contending.set(false);
+            contender.join();
+        }
+
+        // every committed task is dirty and must have been added to the list
+        cursor = mClient.query(Tasks.getContentUri(mAuthority), new String[] { Tasks._ID }, Tasks._DIRTY + "=1", null, null);
+        try
+        {
+            assertListDirty(cursor.getCount());
+        }
+        finally
+        {
+            cursor.close();
+        }
+    }
+
+
+    /**
+     * Test that cached query results are served until the data changes.
+     */
+    @Test
+    public void testQueryResultCache() throws Exception
+    {
+        RowSnapshot<TaskLists> taskList = new VirtualRowSnapshot<>(new LocalTaskListsTable(mAuthority));
+        OperationsQueue queue = new BasicOperationsQueue(mClient);
+        queue.enqueue(new Seq<Operation<?>>(
+                new Put<>(taskList, new NameData("list1")),
+                new Put<>(new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority))), new TitleData("task1"))));
+        queue.flush();
+
+        Uri uri = Tasks.getContentUri(mAuthority).buildUpon().appendQueryParameter(TaskContract.CACHE, "true").build();
+        long hits = queryResultCacheHits();
+        assertTitles(uri, "task1");
+        assertThat(queryResultCacheHits(), is(hits));
+        // the same query again, this time from the cache
+        assertTitles(uri, "task1");
+        assertThat(queryResultCacheHits(), is(hits + 1));
+
+        queue.enqueue(new SingletonIterable<Operation<?>>(
+                new Put<>(new VirtualRowSnapshot<>(new TaskListScoped(taskList, new TasksTable(mAuthority))), new TitleData("task2"))));
+        queue.flush();
+        // the change invalidated the cached result
+        assertTitles(uri, "task1", "task2");
+        assertThat(queryResultCacheHits(), is(hits + 1));
+    }
+
+
+    private long queryResultCacheHits() throws Exception
+    {
+        return mClient.call(SQLiteContentProvider.CALL_METHOD_METRICS, null, null).getBundle("cache query results").getLong("hits");
+    }
+
+
+    private void assertTitles(Uri uri, String... titles) throws Exception
+    {
+        Cursor cursor = mClient.query(uri, new String[] { Tasks.TITLE }, null, null, Tasks.TITLE);
+        try
+        {
+            assertThat(cursor.getCount(), is(titles.length));
+            for (String title : titles)
+            {
+                assertThat(cursor.moveToNext(), is(true));
+                assertThat(cursor.getString(0), is(title));
+            }
+        }
+        finally
+        {
+            cursor.close();
+        }
+    }
+
+
+    private void assertListDirty(int dirty) throws Exception
+    {
+        Cursor cursor = mClient.query(TaskLists.getContentUri(mAuthority), new String[] { TaskLists._DIRTY }, null, null, null);
+        try
+        {
+            assertThat(cursor.getCount(), is(1));
+            cursor.moveToFirst();
+            assertThat(cursor.getInt(0), is(dirty));
+        }
+        finally
+        {
+            cursor.close();
+        }
+    }
+
+
+    private void assertProgress(long taskId, int childCount, int closedChildCount, int childPercentComplete) throws Exception
+    {
+        Cursor cursor = mClient.query(ContentUris.withAppendedId(Tasks.getContentUri(mAuthority), taskId),
+                new String[] { Tasks.CHILD_COUNT, Tasks.CLOSED_CHILD_COUNT, Tasks.CHILD_PERCENT_COMPLETE }, null, null, null);
+        try
+        {
+            assertThat(cursor.moveToFirst(), is(true));
+            assertThat(cursor.getInt(0), is(childCount));
+            assertThat(cursor.getInt(1), is(closedChildCount));
+            assertThat(cursor.getInt(2), is(childPercentComplete));
+        }
+        finally
+        {
+            cursor.close();
+        }
+    }
+
+    private int taskVersion(long taskId) throws Exception
+    {
+        Cursor cursor = mClient.query(ContentUris.withAppendedId(Tasks.getContentUri(mAuthority), taskId), new String[] { Tasks.VERSION }, null, null, null);
+        try
+        {
+            assertThat(cursor.moveToFirst(), is(true));
+            return cursor.getInt(0);
+        }
+        finally
+        {
+            cursor.close();
+        }
+    }
+
+
+    private long taskId(String title) throws Exception
+    {
+        Cursor cursor = mClient.query(Tasks.getContentUri(mAuthority), new String[] { Tasks._ID }, Tasks.TITLE + "=?", new String[] { title }, null);
+        try
+        {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        }
+        finally
+        {
+            cursor.close();
+        }
+    }
+
+
+    private static Set<Long> ids(long[] ids)
+    {
+        Set<Long> result = new HashSet<>();
+        for (long id : ids)
+        {
+            result.add(id);
+        }
+        return result;
+    }
+
 }
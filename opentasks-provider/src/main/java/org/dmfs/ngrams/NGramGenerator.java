@@ -107,6 +107,21 @@ public final class NGramGenerator
     }
 
 
+    /**
+     * Returns the given String the way it's analyzed by {@link #getNgrams(String)}, i.e. converted to lower case using the {@link Locale} of this
+     * generator, unless {@link #setAllLowercase(boolean)} has been called with <code>false</code>.
+     *
+     * @param data
+     *         The String to normalize, must not be <code>null</code>.
+     *
+     * @return The normalized String.
+     */
+    public String normalized(String data)
+    {
+        return mAllLowercase ? data.toLowerCase(mLocale) : data;
+    }
+
+
     /**
      * Get all N-grams contained in the given String.
      *
@@ -122,10 +137,7 @@ public final class NGramGenerator
             return Collections.emptySet();
         }
 
-        if (mAllLowercase)
-        {
-            data = data.toLowerCase(mLocale);
-        }
+        data = normalized(data);
 
         String[] words = mReturnNumbers ? SEPARATOR_PATTERN.split(data) : SEPARATOR_PATTERN_NO_NUMBERS.split(data);
 
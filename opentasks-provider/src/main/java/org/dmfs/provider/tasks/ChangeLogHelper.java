@@ -0,0 +1,252 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.tasks.contract.TaskContract.ChangeLog;
+import org.dmfs.tasks.contract.TaskContract.ChangeLogConsumers;
+import org.dmfs.tasks.contract.TaskContract.TaskLists;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+
+
+/**
+ * Supports the {@link TaskDatabaseHelper} in the matter of the {@link ChangeLog}.
+ * <p>
+ * The change log is written by the processor chains. To keep the cost low when nobody is interested, changes are only logged while at least one consumer is
+ * registered. Entries are removed as soon as all consumers have acknowledged them.
+ *
+ * @author agent
+ */
+public final class ChangeLogHelper
+{
+    /**
+     * SQL command to create the change log table. {@code AUTOINCREMENT} makes sure sequence numbers are not reused after the table has been compacted.
+     */
+    private final static String SQL_CREATE_CHANGE_LOG_TABLE =
+            "CREATE TABLE " + Tables.CHANGE_LOG + " ( "
+                    + ChangeLog.SEQUENCE + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + ChangeLog.ENTITY + " TEXT NOT NULL, "
+                    + ChangeLog.ENTITY_ID + " INTEGER NOT NULL, "
+                    + ChangeLog.LIST_ID + " INTEGER, "
+                    + ChangeLog.OPERATION + " INTEGER NOT NULL, "
+                    + ChangeLog.SYNC_ADAPTER + " INTEGER NOT NULL DEFAULT 0, "
+                    + ChangeLog.ACCOUNT_NAME + " TEXT, "
+                    + ChangeLog.ACCOUNT_TYPE + " TEXT);";
+
+    /**
+     * SQL command to create the change log consumers table.
+     */
+    private final static String SQL_CREATE_CHANGE_LOG_CONSUMERS_TABLE =
+            "CREATE TABLE " + Tables.CHANGE_LOG_CONSUMERS + " ( "
+                    + ChangeLogConsumers.CONSUMER + " TEXT PRIMARY KEY, "
+                    + ChangeLogConsumers.ACKNOWLEDGED + " INTEGER NOT NULL DEFAULT 0);";
+
+    /**
+     * The head of the SQL commands which log changes.
+     */
+    private final static String SQL_INSERT_CHANGE =
+            "INSERT INTO " + Tables.CHANGE_LOG + " ( "
+                    + ChangeLog.ENTITY + ", "
+                    + ChangeLog.ENTITY_ID + ", "
+                    + ChangeLog.LIST_ID + ", "
+                    + ChangeLog.OPERATION + ", "
+                    + ChangeLog.SYNC_ADAPTER + ", "
+                    + ChangeLog.ACCOUNT_NAME + ", "
+                    + ChangeLog.ACCOUNT_TYPE + ") ";
+
+    /**
+     * SQL command to log a change. The account is taken from the list, so it's retained when the list is removed later on. Nothing is inserted if there are
+     * no consumers.
+     */
+    private final static String SQL_LOG_CHANGE =
+            SQL_INSERT_CHANGE + "SELECT ?, ?, ?, ?, ?, "
+                    + "(SELECT " + TaskLists.ACCOUNT_NAME + " FROM " + Tables.LISTS + " WHERE " + TaskLists._ID + " = ?), "
+                    + "(SELECT " + TaskLists.ACCOUNT_TYPE + " FROM " + Tables.LISTS + " WHERE " + TaskLists._ID + " = ?) "
+                    + "WHERE EXISTS (SELECT 1 FROM " + Tables.CHANGE_LOG_CONSUMERS + ");";
+
+    /**
+     * SQL command to log the removal of all the tasks of a list which have not been removed yet. Nothing is inserted if there are no consumers.
+     */
+    private final static String SQL_LOG_LIST_TASKS_DELETE =
+            SQL_INSERT_CHANGE + "SELECT '" + Tasks.CONTENT_URI_PATH + "', " + Tables.TASKS + "." + Tasks._ID + ", " + Tasks.LIST_ID + ", "
+                    + ChangeLog.OPERATION_DELETE + ", ?, " + TaskLists.ACCOUNT_NAME + ", " + TaskLists.ACCOUNT_TYPE
+                    + " FROM " + Tables.TASKS + " JOIN " + Tables.LISTS + " ON (" + Tasks.LIST_ID + " = " + Tables.LISTS + "." + TaskLists._ID + ")"
+                    + " WHERE " + Tasks.LIST_ID + " = ? AND " + Tasks._DELETED + " = 0"
+                    + " AND EXISTS (SELECT 1 FROM " + Tables.CHANGE_LOG_CONSUMERS + ");";
+
+    /**
+     * SQL command to remove all the changes that have been acknowledged by all consumers, or all changes if there are no consumers.
+     */
+    private final static String SQL_COMPACT =
+            "DELETE FROM " + Tables.CHANGE_LOG + " WHERE " + ChangeLog.SEQUENCE + " <= (SELECT coalesce(min(" + ChangeLogConsumers.ACKNOWLEDGED + "), "
+                    + Long.MAX_VALUE + ") FROM " + Tables.CHANGE_LOG_CONSUMERS + ");";
+
+
+    private ChangeLogHelper()
+    {
+    }
+
+
+    public static void onCreate(SQLiteDatabase db)
+    {
+        db.execSQL(SQL_CREATE_CHANGE_LOG_TABLE);
+        db.execSQL(SQL_CREATE_CHANGE_LOG_CONSUMERS_TABLE);
+    }
+
+
+    public static void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion)
+    {
+        if (oldVersion < 26)
+        {
+            onCreate(db);
+        }
+    }
+
+
+    /**
+     * Logs a change, if there is at least one consumer.
+     *
+     * @param db
+     *         The database.
+     * @param entity
+     *         The kind of the changed row, see {@link ChangeLog#ENTITY}.
+     * @param entityId
+     *         The row id of the changed row.
+     * @param listId
+     *         The row id of the list the changed row belongs to.
+     * @param operation
+     *         One of {@link ChangeLog#OPERATION_INSERT}, {@link ChangeLog#OPERATION_UPDATE} or {@link ChangeLog#OPERATION_DELETE}.
+     * @param isSyncAdapter
+     *         Whether the change has been made by a sync adapter.
+     */
+    public static void log(SQLiteDatabase db, String entity, long entityId, Long listId, int operation, boolean isSyncAdapter)
+    {
+        db.execSQL(SQL_LOG_CHANGE, new Object[] { entity, entityId, listId, operation, isSyncAdapter ? 1 : 0, listId, listId });
+    }
+
+
+    /**
+     * Logs the removal of all the tasks of the given list, if there is at least one consumer. This must be called before the list is removed, because the
+     * tasks are removed with it.
+     *
+     * @param db
+     *         The database.
+     * @param listId
+     *         The row id of the list which is about to be removed.
+     * @param isSyncAdapter
+     *         Whether the change has been made by a sync adapter.
+     */
+    public static void logListTasksDeleted(SQLiteDatabase db, long listId, boolean isSyncAdapter)
+    {
+        db.execSQL(SQL_LOG_LIST_TASKS_DELETE, new Object[] { isSyncAdapter ? 1 : 0, listId });
+    }
+
+
+    /**
+     * Registers a consumer. Unless the values contain {@link ChangeLogConsumers#ACKNOWLEDGED}, all changes up to now are considered acknowledged by the new
+     * consumer.
+     *
+     * @return The row id of the consumer.
+     */
+    public static long register(SQLiteDatabase db, ContentValues values)
+    {
+        if (TextUtils.isEmpty(values.getAsString(ChangeLogConsumers.CONSUMER)))
+        {
+            throw new IllegalArgumentException("missing consumer name");
+        }
+        if (values.size() > (values.containsKey(ChangeLogConsumers.ACKNOWLEDGED) ? 2 : 1))
+        {
+            throw new IllegalArgumentException("only CONSUMER and ACKNOWLEDGED can be written");
+        }
+        if (!values.containsKey(ChangeLogConsumers.ACKNOWLEDGED))
+        {
+            values = new ContentValues(values);
+            // sqlite_sequence contains the largest sequence number ever used, even if the change log is empty
+            values.put(ChangeLogConsumers.ACKNOWLEDGED, DatabaseUtils.longForQuery(db,
+                    "SELECT coalesce(max(seq), 0) FROM sqlite_sequence WHERE name = ?", new String[] { Tables.CHANGE_LOG }));
+        }
+        long rowId = db.replace(Tables.CHANGE_LOG_CONSUMERS, null, values);
+        compact(db);
+        return rowId;
+    }
+
+
+    /**
+     * Updates the {@link ChangeLogConsumers#ACKNOWLEDGED} value of the selected consumers and removes all changes which are no longer needed. An
+     * acknowledgement never moves backwards.
+     *
+     * @return The number of updated consumers.
+     */
+    public static int acknowledge(SQLiteDatabase db, ContentValues values, String selection, String[] selectionArgs)
+    {
+        Long acknowledged = values.getAsLong(ChangeLogConsumers.ACKNOWLEDGED);
+        if (acknowledged == null || values.size() != 1)
+        {
+            throw new IllegalArgumentException("only ACKNOWLEDGED can be updated");
+        }
+
+        SQLiteStatement statement = db.compileStatement(
+                "UPDATE " + Tables.CHANGE_LOG_CONSUMERS + " SET " + ChangeLogConsumers.ACKNOWLEDGED + " = max(" + ChangeLogConsumers.ACKNOWLEDGED + ", ?)"
+                        + (TextUtils.isEmpty(selection) ? "" : " WHERE " + selection));
+        try
+        {
+            statement.bindLong(1, acknowledged);
+            if (selectionArgs != null)
+            {
+                for (int i = 0; i < selectionArgs.length; ++i)
+                {
+                    statement.bindString(i + 2, selectionArgs[i]);
+                }
+            }
+            int count = statement.executeUpdateDelete();
+            compact(db);
+            return count;
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+
+    /**
+     * Removes the selected consumers and all changes which are no longer needed.
+     *
+     * @return The number of removed consumers.
+     */
+    public static int unregister(SQLiteDatabase db, String selection, String[] selectionArgs)
+    {
+        int count = db.delete(Tables.CHANGE_LOG_CONSUMERS, selection, selectionArgs);
+        compact(db);
+        return count;
+    }
+
+
+    /**
+     * Removes all changes which have been acknowledged by all consumers.
+     */
+    private static void compact(SQLiteDatabase db)
+    {
+        db.execSQL(SQL_COMPACT);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.tasks.contract.TaskContract;
+
+import java.util.HashSet;
+import java.util.Set;
+
+
+/**
+ * Collects the ids of the tasks and instances which have been changed in a transaction, to be sent along with the provider changed broadcast.
+ * <p>
+ * Like {@link DirtyLists}, the ids are collected per thread, because every transaction is bound to the thread which started it. The ids of changes which
+ * have been committed at a yield point are kept when the rest of the transaction is rolled back. The instances of changed tasks are not resolved here,
+ * that's left to the receivers of the broadcast, see {@link TaskContract#EXTRA_CHANGED_TASK_IDS}.
+ *
+ * @author agent
+ */
+public final class ChangedTasks implements SQLiteContentProvider.TransactionEndTask
+{
+    private final int mMaxIds;
+
+    private final ThreadLocal<Set<Long>> mPendingTaskIds = new HashSetThreadLocal();
+    private final ThreadLocal<Set<Long>> mPendingInstanceIds = new HashSetThreadLocal();
+    private final ThreadLocal<Set<Long>> mTaskIds = new HashSetThreadLocal();
+    private final ThreadLocal<Set<Long>> mInstanceIds = new HashSetThreadLocal();
+
+
+    /**
+     * @param maxIds
+     *         The maximum number of task ids and of instance ids to report. If more tasks or instances have been changed, receivers will have to perform a
+     *         full update.
+     */
+    public ChangedTasks(int maxIds)
+    {
+        mMaxIds = maxIds;
+    }
+
+
+    /**
+     * Remembers the given task as changed in the current transaction. Receivers will take all of its instances into account.
+     *
+     * @param taskId
+     *         The row id of the changed task.
+     */
+    public void addTask(long taskId)
+    {
+        mPendingTaskIds.get().add(taskId);
+    }
+
+
+    /**
+     * Remembers the given instance as changed in the current transaction. Use this for instances which may no longer exist when the transaction ends.
+     *
+     * @param instanceId
+     *         The row id of the changed instance.
+     */
+    public void addInstance(long instanceId)
+    {
+        mPendingInstanceIds.get().add(instanceId);
+    }
+
+
+    @Override
+    public void execute(SQLiteDatabase database)
+    {
+        mTaskIds.get().addAll(mPendingTaskIds.get());
+        mInstanceIds.get().addAll(mPendingInstanceIds.get());
+        mPendingTaskIds.get().clear();
+        mPendingInstanceIds.get().clear();
+    }
+
+
+    @Override
+    public void rollback()
+    {
+        mPendingTaskIds.get().clear();
+        mPendingInstanceIds.get().clear();
+    }
+
+
+    /**
+     * Returns the ids of the tasks which have been changed by the transaction of the current thread or {@code null} if too many tasks or instances have been
+     * changed. Call {@link #clear()} once the transaction has ended.
+     *
+     * @return An array of task ids or {@code null}.
+     */
+    public long[] taskIds()
+    {
+        return tooMany() ? null : toArray(mTaskIds.get());
+    }
+
+
+    /**
+     * Returns the ids of the instances which have been changed by the transaction of the current thread or {@code null} if too many tasks or instances have
+     * been changed. Call {@link #clear()} once the transaction has ended.
+     *
+     * @return An array of instance ids or {@code null}.
+     */
+    public long[] instanceIds()
+    {
+        return tooMany() ? null : toArray(mInstanceIds.get());
+    }
+
+
+    /**
+     * Forgets all changes of the transaction of the current thread.
+     */
+    public void clear()
+    {
+        mTaskIds.get().clear();
+        mInstanceIds.get().clear();
+    }
+
+
+    private boolean tooMany()
+    {
+        return mTaskIds.get().size() > mMaxIds || mInstanceIds.get().size() > mMaxIds;
+    }
+
+
+    private static long[] toArray(Set<Long> ids)
+    {
+        long[] result = new long[ids.size()];
+        int i = 0;
+        for (Long id : ids)
+        {
+            result[i++] = id;
+        }
+        return result;
+    }
+
+
+    private final static class HashSetThreadLocal extends ThreadLocal<Set<Long>>
+    {
+        @Override
+        protected Set<Long> initialValue()
+        {
+            return new HashSet<>();
+        }
+    }
+}
@@ -24,6 +24,7 @@ import android.content.SharedPreferences;
 import android.content.SharedPreferences.Editor;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.Handler;
@@ -33,7 +34,8 @@ import org.dmfs.provider.tasks.model.CursorContentValuesInstanceAdapter;
 import org.dmfs.provider.tasks.model.CursorContentValuesTaskAdapter;
 import org.dmfs.provider.tasks.model.InstanceAdapter;
 import org.dmfs.provider.tasks.model.TaskAdapter;
-import org.dmfs.provider.tasks.processors.tasks.Instantiating;
+import org.dmfs.provider.tasks.processors.tasks.BulkInstantiating;
+import org.dmfs.provider.tasks.processors.tasks.BulkResorting;
 import org.dmfs.rfc5545.DateTime;
 import org.dmfs.tasks.contract.TaskContract;
 import org.dmfs.tasks.contract.TaskContract.Instances;
@@ -47,6 +49,9 @@ public enum ContentOperation
     /**
      * When the local timezone has been changed we need to update the due and start sorting values. This handler will take care of running the appropriate
      * update. In addition it fires an operation to update all notifications.
+     * <p>
+     * Only the instances of tasks which are not all-day are re-sorted and only the ones with a different sorting value are written. The instances of
+     * recurring tasks with an UNTIL date are recalculated, because the recurrence end of some of them depends on the local time zone.
      */
     UPDATE_TIMEZONE(new OperationHandler()
     {
@@ -55,14 +60,58 @@ public enum ContentOperation
         {
             long start = System.currentTimeMillis();
 
-            // request an update of all instance values
-            ContentValues vals = new ContentValues(1);
-            Instantiating.addUpdateRequest(vals);
+            int tasks;
+            int instances;
+            db.beginTransaction();
+            try
+            {
+                tasks = new BulkInstantiating().update(db, Tasks.RRULE + " like '%UNTIL=%'", null);
+                instances = new BulkResorting().update(db, TimeZone.getDefault());
+                db.setTransactionSuccessful();
+            }
+            finally
+            {
+                db.endTransaction();
+            }
+            if (tasks + instances > 0)
+            {
+                context.getContentResolver().notifyChange(TaskContract.getContentUri(uri.getAuthority()), null);
+                Utils.sendActionProviderChangedBroadCast(context, uri.getAuthority());
+            }
 
-            // execute update that triggers a recalculation of all due and start sorting values
-            int count = context.getContentResolver().update(
-                    TaskContract.Tasks.getContentUri(uri.getAuthority()).buildUpon().appendQueryParameter(TaskContract.CALLER_IS_SYNCADAPTER, "true").build(),
-                    vals, null, null);
+            Log.i("TaskProvider",
+                    "time to update " + tasks + " tasks and re-sort " + instances + " instances: " + (System.currentTimeMillis() - start) + " ms");
+
+            // now update alarms as well
+            UPDATE_NOTIFICATION_ALARM.fire(context, null);
+        }
+    }),
+
+    /**
+     * Recalculates the instances of all tasks, like after a database upgrade which changed the way instances are stored. In addition it fires an operation
+     * to update all notifications.
+     */
+    UPDATE_INSTANCES(new OperationHandler()
+    {
+        @Override
+        public void handleOperation(Context context, Uri uri, SQLiteDatabase db, ContentValues values)
+        {
+            long start = System.currentTimeMillis();
+
+            // recalculate all instances, this updates all due and start sorting values
+            int count;
+            db.beginTransaction();
+            try
+            {
+                count = new BulkInstantiating().update(db, null, null);
+                db.setTransactionSuccessful();
+            }
+            finally
+            {
+                db.endTransaction();
+            }
+            context.getContentResolver().notifyChange(TaskContract.getContentUri(uri.getAuthority()), null);
+            Utils.sendActionProviderChangedBroadCast(context, uri.getAuthority());
 
             Log.i("TaskProvider", "time to update " + count + " tasks: " + (System.currentTimeMillis() - start) + " ms");
 
@@ -280,6 +329,53 @@ public enum ContentOperation
             return new DateTime(TimeZone.getDefault(), prefs.getLong(PREFS_KEY_LAST_ALARM_TIMESTAMP, System.currentTimeMillis()));
         }
 
+    }),
+
+    /**
+     * Removes the n-grams which are no longer linked to any searchable entry from the search index. The removal candidates are processed in small chunks,
+     * each in its own transaction, so writers never have to wait long for this to finish. The n-gram index is compacted by the {@link DatabaseMaintenance},
+     * which can be interrupted by writers.
+     */
+    COLLECT_SEARCH_GARBAGE(new OperationHandler()
+    {
+        /**
+         * The number of removal candidates to process per transaction.
+         */
+        private final static int CHUNK_SIZE = 500;
+
+
+        @Override
+        public void handleOperation(Context context, Uri uri, SQLiteDatabase db, ContentValues values)
+        {
+            long ngrams = DatabaseUtils.queryNumEntries(db, FTSDatabaseHelper.FTS_NGRAM_TABLE);
+            long orphans = DatabaseUtils.queryNumEntries(db, FTSDatabaseHelper.FTS_NGRAM_ORPHANS_TABLE);
+            if (orphans == 0)
+            {
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            int chunk;
+            do
+            {
+                db.beginTransaction();
+                try
+                {
+                    chunk = FTSDatabaseHelper.deleteOrphanedNgrams(db, CHUNK_SIZE);
+                    db.setTransactionSuccessful();
+                }
+                finally
+                {
+                    db.endTransaction();
+                }
+            }
+            while (chunk > 0);
+
+            long removed = ngrams - DatabaseUtils.queryNumEntries(db, FTSDatabaseHelper.FTS_NGRAM_TABLE);
+            context.getContentResolver().notifyChange(TaskContract.SearchIndex.getContentUri(uri.getAuthority()), null);
+
+            Log.i("TaskProvider", "time to remove " + removed + " of " + orphans + " orphaned n-grams: " + (System.currentTimeMillis() - start) + " ms");
+        }
     });
 
     /**
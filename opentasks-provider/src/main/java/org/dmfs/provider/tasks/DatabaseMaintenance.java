@@ -0,0 +1,304 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.util.Log;
+
+import org.dmfs.provider.tasks.metrics.ProviderMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Keeps the database in shape. This removes orphaned n-grams, compacts the n-gram index, updates the statistics of the query planner, returns unused
+ * pages to the file system and checkpoints the write-ahead log.
+ * <p>
+ * All the work is done in small steps, each of which is a single statement or a short transaction, so writers never have to wait long for the database. In
+ * addition, a running statement is interrupted when the given {@link CancellationSignal} is cancelled. The provider cancels the maintenance whenever a write
+ * operation begins.
+ * <p>
+ * The duration and result of each step are recorded to the {@link ProviderMetrics#maintenance(String)} metrics.
+ *
+ * @author agent
+ */
+public final class DatabaseMaintenance
+{
+    private final static String TAG = "DatabaseMaintenance";
+
+    public final static String STEP_SEARCH_GARBAGE = "search_garbage";
+    public final static String STEP_SEARCH_COMPACTION = "search_compaction";
+    public final static String STEP_OPTIMIZE = "optimize";
+    public final static String STEP_AUTO_VACUUM = "auto_vacuum";
+    public final static String STEP_INCREMENTAL_VACUUM = "incremental_vacuum";
+    public final static String STEP_CHECKPOINT = "checkpoint";
+
+    /**
+     * The result key of the total duration in milliseconds.
+     */
+    public final static String RESULT_DURATION = "duration_ms";
+
+    /**
+     * The number of orphaned n-grams to remove per transaction.
+     */
+    private final static int NGRAMS_PER_STEP = 100;
+
+    /**
+     * The number of pages to return to the file system per step.
+     */
+    private final static int PAGES_PER_STEP = 32;
+
+    /**
+     * The approximate number of rows {@code PRAGMA optimize} examines per index.
+     */
+    private final static int ANALYSIS_LIMIT = 400;
+
+    /**
+     * The value of {@code PRAGMA auto_vacuum} in incremental mode.
+     */
+    private final static int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private final ProviderMetrics mMetrics;
+
+
+    public DatabaseMaintenance(ProviderMetrics metrics)
+    {
+        mMetrics = metrics;
+    }
+
+
+    /**
+     * Runs all maintenance steps. A failing step doesn't stop the others.
+     *
+     * @param db
+     *         The writable {@link SQLiteDatabase}, which must not be in a transaction.
+     * @param cancellationSignal
+     *         The {@link CancellationSignal} which stops the maintenance.
+     *
+     * @return A {@link Bundle} with the number of units each step has processed (using the step names as keys) and the total duration.
+     *
+     * @throws OperationCanceledException
+     *         if the maintenance has been cancelled.
+     */
+    public Bundle run(SQLiteDatabase db, CancellationSignal cancellationSignal)
+    {
+        long start = System.currentTimeMillis();
+        Bundle result = new Bundle();
+        step(result, STEP_SEARCH_GARBAGE, () -> collectSearchGarbage(db, cancellationSignal), cancellationSignal);
+        step(result, STEP_SEARCH_COMPACTION, () -> compactSearchIndex(db, cancellationSignal), cancellationSignal);
+        step(result, STEP_OPTIMIZE, () -> optimize(db, cancellationSignal), cancellationSignal);
+        step(result, STEP_AUTO_VACUUM, () -> enableAutoVacuum(db, cancellationSignal), cancellationSignal);
+        step(result, STEP_INCREMENTAL_VACUUM, () -> incrementalVacuum(db, cancellationSignal), cancellationSignal);
+        step(result, STEP_CHECKPOINT, () -> checkpoint(db, cancellationSignal), cancellationSignal);
+        result.putLong(RESULT_DURATION, System.currentTimeMillis() - start);
+        Log.i(TAG, "database maintenance finished: " + result);
+        return result;
+    }
+
+
+    private void step(Bundle result, String name, Step step, CancellationSignal cancellationSignal)
+    {
+        cancellationSignal.throwIfCanceled();
+        long start = System.nanoTime();
+        try
+        {
+            long units = step.run();
+            mMetrics.maintenance(name).record(System.nanoTime() - start, units);
+            result.putLong(name, units);
+        }
+        catch (SQLiteException e)
+        {
+            mMetrics.maintenance(name).recordFailure(System.nanoTime() - start);
+            Log.e(TAG, "maintenance step " + name + " failed", e);
+        }
+    }
+
+
+    /**
+     * Removes the orphaned n-grams from the search index, see {@link FTSDatabaseHelper#deleteOrphanedNgrams(SQLiteDatabase, int)}.
+     */
+    private long collectSearchGarbage(SQLiteDatabase db, CancellationSignal cancellationSignal)
+    {
+        long count = 0;
+        int chunk;
+        do
+        {
+            cancellationSignal.throwIfCanceled();
+            db.beginTransaction();
+            try
+            {
+                chunk = FTSDatabaseHelper.deleteOrphanedNgrams(db, NGRAMS_PER_STEP);
+                db.setTransactionSuccessful();
+            }
+            finally
+            {
+                db.endTransaction();
+            }
+            count += chunk;
+        }
+        while (chunk > 0);
+        return count;
+    }
+
+
+    /**
+     * Rebuilds the index of the n-gram table, which gets sparse when many n-grams have been removed. The n-gram table has a single index, so this is one
+     * statement, which is interrupted like any other step if a writer comes along.
+     *
+     * @return The number of n-grams in the rebuilt index.
+     */
+    private long compactSearchIndex(SQLiteDatabase db, CancellationSignal cancellationSignal)
+    {
+        execute(db, "REINDEX " + FTSDatabaseHelper.FTS_NGRAM_TABLE, cancellationSignal);
+        return DatabaseUtils.queryNumEntries(db, FTSDatabaseHelper.FTS_NGRAM_TABLE);
+    }
+
+
+    /**
+     * Updates the statistics of the query planner. SQLite 3.18 and newer only analyze the tables which need it. Older versions don't support {@code PRAGMA
+     * optimize}, so we analyze one table at a time. SQLite 3.32 and newer also limit the number of rows which are examined per index.
+     *
+     * @return The number of analyzed tables or {@code 0} if SQLite decides that.
+     */
+    private long optimize(SQLiteDatabase db, CancellationSignal cancellationSignal)
+    {
+        if (sqliteVersionAtLeast(db, 3, 18))
+        {
+            if (sqliteVersionAtLeast(db, 3, 32))
+            {
+                execute(db, "PRAGMA analysis_limit = " + ANALYSIS_LIMIT, cancellationSignal);
+            }
+            execute(db, "PRAGMA optimize", cancellationSignal);
+            return 0;
+        }
+
+        List<String> tables = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'table' AND name NOT LIKE 'sqlite_%' AND name != 'android_metadata'",
+                null, cancellationSignal))
+        {
+            while (cursor.moveToNext())
+            {
+                tables.add(cursor.getString(0));
+            }
+        }
+        for (String table : tables)
+        {
+            execute(db, "ANALYZE " + table, cancellationSignal);
+        }
+        return tables.size();
+    }
+
+
+    /**
+     * Switches the database to incremental auto vacuum. The mode of an existing database can only be changed by vacuuming the entire database once, which
+     * usually takes a moment, but this is interrupted like any other step if a writer comes along.
+     *
+     * @return The number of pages of the database which have been vacuumed.
+     */
+    private long enableAutoVacuum(SQLiteDatabase db, CancellationSignal cancellationSignal)
+    {
+        if (DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null) == AUTO_VACUUM_INCREMENTAL)
+        {
+            return 0;
+        }
+        execute(db, "PRAGMA auto_vacuum = " + AUTO_VACUUM_INCREMENTAL, cancellationSignal);
+        execute(db, "VACUUM", cancellationSignal);
+        return DatabaseUtils.longForQuery(db, "PRAGMA page_count", null);
+    }
+
+
+    /**
+     * Returns the free pages of the database to the file system.
+     *
+     * @return The number of pages which have been removed from the database file.
+     */
+    private long incrementalVacuum(SQLiteDatabase db, CancellationSignal cancellationSignal)
+    {
+        if (DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null) != AUTO_VACUUM_INCREMENTAL)
+        {
+            return 0;
+        }
+        long initial = DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+        long previous = initial;
+        long remaining = initial;
+        while (remaining > 0)
+        {
+            execute(db, "PRAGMA incremental_vacuum(" + PAGES_PER_STEP + ")", cancellationSignal);
+            remaining = DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+            if (remaining >= previous)
+            {
+                // no progress, don't loop forever
+                break;
+            }
+            previous = remaining;
+        }
+        return initial - remaining;
+    }
+
+
+    /**
+     * Checkpoints the write-ahead log, if there is one. This doesn't wait for readers or writers.
+     *
+     * @return The number of checkpointed frames.
+     */
+    private long checkpoint(SQLiteDatabase db, CancellationSignal cancellationSignal)
+    {
+        if (!db.isWriteAheadLoggingEnabled())
+        {
+            return 0;
+        }
+        try (Cursor cursor = db.rawQuery("PRAGMA wal_checkpoint(PASSIVE)", null, cancellationSignal))
+        {
+            // the columns are: busy, frames in the log, checkpointed frames
+            return cursor.moveToFirst() ? Math.max(0, cursor.getLong(2)) : 0;
+        }
+    }
+
+
+    /**
+     * Executes the given statement, which can be interrupted using the given {@link CancellationSignal}.
+     */
+    private static void execute(SQLiteDatabase db, String sql, CancellationSignal cancellationSignal)
+    {
+        try (Cursor cursor = db.rawQuery(sql, null, cancellationSignal))
+        {
+            // stepping through the result executes the statement to completion
+            cursor.getCount();
+        }
+    }
+
+
+    private static boolean sqliteVersionAtLeast(SQLiteDatabase db, int major, int minor)
+    {
+        String[] version = DatabaseUtils.stringForQuery(db, "SELECT sqlite_version()", null).split("\\.");
+        int actualMajor = Integer.parseInt(version[0]);
+        return actualMajor > major || actualMajor == major && version.length > 1 && Integer.parseInt(version[1]) >= minor;
+    }
+
+
+    private interface Step
+    {
+        long run();
+    }
+}
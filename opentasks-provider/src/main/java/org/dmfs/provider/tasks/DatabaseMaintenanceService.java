@@ -0,0 +1,122 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+import android.os.OperationCanceledException;
+import android.util.Log;
+
+import org.dmfs.tasks.contract.TaskContract;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A {@link JobService} which runs the {@link DatabaseMaintenance} once a day while the device is idle and charging.
+ * <p>
+ * The maintenance runs on a worker thread. If the job is stopped or a writer comes along, the maintenance is cancelled and the job is rescheduled.
+ *
+ * @author agent
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public final class DatabaseMaintenanceService extends JobService
+{
+    private final static String TAG = "DatabaseMaintenance";
+
+    /**
+     * The id of the maintenance job. Job ids are shared with the app which hosts the provider, so this is kept far away from the ids of the tasks app (which
+     * uses small offsets from 0x7461736b).
+     */
+    private final static int JOB_ID = 0x7461736b + 0x1000;
+
+    private final static long INTERVAL = TimeUnit.DAYS.toMillis(1);
+
+
+    /**
+     * Schedules the maintenance job unless it's already scheduled. This does nothing on devices without a {@link JobScheduler}.
+     *
+     * @param context
+     *         A {@link Context}.
+     */
+    static void schedule(Context context)
+    {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP)
+        {
+            return;
+        }
+
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo job : scheduler.getAllPendingJobs())
+        {
+            if (job.getId() == JOB_ID)
+            {
+                return;
+            }
+        }
+        scheduler.schedule(new JobInfo.Builder(JOB_ID, new ComponentName(context, DatabaseMaintenanceService.class))
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .setPeriodic(INTERVAL)
+                .build());
+    }
+
+
+    @Override
+    public boolean onStartJob(final JobParameters params)
+    {
+        new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                boolean reschedule = false;
+                try
+                {
+                    getContentResolver().call(TaskContract.getContentUri(AuthorityUtil.taskAuthority(DatabaseMaintenanceService.this)),
+                            TaskProvider.CALL_MAINTAIN_DATABASE, null, null);
+                }
+                catch (OperationCanceledException e)
+                {
+                    Log.i(TAG, "database maintenance cancelled");
+                    reschedule = true;
+                }
+                catch (RuntimeException e)
+                {
+                    // don't crash the app, the job runs again in the next interval anyway
+                    Log.e(TAG, "database maintenance failed", e);
+                }
+                jobFinished(params, reschedule);
+            }
+        }, "DatabaseMaintenance").start();
+        return true;
+    }
+
+
+    @Override
+    public boolean onStopJob(JobParameters params)
+    {
+        getContentResolver().call(TaskContract.getContentUri(AuthorityUtil.taskAuthority(this)), TaskProvider.CALL_CANCEL_MAINTENANCE, null, null);
+        return true;
+    }
+}
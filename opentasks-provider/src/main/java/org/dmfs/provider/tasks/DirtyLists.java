@@ -0,0 +1,109 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.tasks.contract.TaskContract.TaskLists;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Collects the task lists which received dirty or deleted tasks during a transaction and updates their {@link TaskLists#_DIRTY} counter once, right before
+ * the transaction is committed. This replaces triggers which updated the list row for every single task that has been written.
+ * <p>
+ * The dirt is collected per thread, because every transaction is bound to the thread which started it. It's applied right before every yield point too, so
+ * a rollback only drops the dirt of changes which are rolled back with it. Processors which write tasks directly, bypassing {@link
+ * org.dmfs.provider.tasks.processors.tasks.ListDirtying}, have to add their dirty or deleted tasks themselves.
+ *
+ * @author agent
+ */
+public final class DirtyLists implements SQLiteContentProvider.TransactionEndTask
+{
+    private final static String SQL_MARK_DIRTY =
+            "UPDATE " + Tables.LISTS + " SET " + TaskLists._DIRTY + " = " + TaskLists._DIRTY + " + ? WHERE " + TaskLists._ID + " = ?";
+
+    /**
+     * The number of dirty or deleted task writes by list id of the transaction of the current thread.
+     */
+    private final ThreadLocal<Map<Long, Integer>> mDirt = new ThreadLocal<Map<Long, Integer>>()
+    {
+        @Override
+        protected Map<Long, Integer> initialValue()
+        {
+            return new HashMap<>();
+        }
+    };
+
+
+    /**
+     * Adds the given number of dirty or deleted task writes to the given list.
+     *
+     * @param listId
+     *         The row id of the task list.
+     * @param dirt
+     *         The number to add to the {@link TaskLists#_DIRTY} counter of the list.
+     */
+    public void add(long listId, int dirt)
+    {
+        if (dirt == 0)
+        {
+            return;
+        }
+        Map<Long, Integer> listDirt = mDirt.get();
+        Integer current = listDirt.get(listId);
+        listDirt.put(listId, current == null ? dirt : current + dirt);
+    }
+
+
+    @Override
+    public void execute(SQLiteDatabase database)
+    {
+        Map<Long, Integer> dirt = mDirt.get();
+        if (dirt.isEmpty())
+        {
+            return;
+        }
+
+        SQLiteStatement statement = database.compileStatement(SQL_MARK_DIRTY);
+        try
+        {
+            for (Map.Entry<Long, Integer> entry : dirt.entrySet())
+            {
+                statement.bindLong(1, entry.getValue());
+                statement.bindLong(2, entry.getKey());
+                statement.executeUpdateDelete();
+            }
+        }
+        finally
+        {
+            statement.close();
+            dirt.clear();
+        }
+    }
+
+
+    @Override
+    public void rollback()
+    {
+        mDirt.get().clear();
+    }
+}
@@ -18,7 +18,10 @@ package org.dmfs.provider.tasks;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.os.CancellationSignal;
 import android.text.TextUtils;
 
 import org.dmfs.jems.iterable.decorators.Chunked;
@@ -32,8 +35,11 @@ import org.dmfs.tasks.contract.TaskContract.Tasks;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 
@@ -53,6 +59,12 @@ public class FTSDatabaseHelper
 
     private final static float SEARCH_RESULTS_MIN_SCORE = 0.33f;
 
+    /**
+     * The maximum number of candidates a search is restricted to. If a search has more candidates than that, restricting the search to these candidates
+     * doesn't pay off.
+     */
+    private final static int MAX_SEARCH_CANDIDATES = 2000;
+
     /**
      * A Generator for 3-grams.
      */
@@ -126,6 +138,12 @@ public class FTSDatabaseHelper
     public static final String FTS_TASK_VIEW = "FTS_Task_View";
     public static final String FTS_TASK_PROPERTY_VIEW = "FTS_Task_Property_View";
 
+    /**
+     * A table of n-grams which may have lost their last link to a searchable entry. These are removed by {@link #deleteOrphanedNgrams(SQLiteDatabase,
+     * int)}.
+     */
+    public static final String FTS_NGRAM_ORPHANS_TABLE = "FTS_Ngram_Orphans";
+
     /**
      * SQL command to create the table for full text search and contains relationships between ngrams and tasks
      */
@@ -141,6 +159,34 @@ public class FTSDatabaseHelper
     private final static String SQL_CREATE_NGRAM_TABLE = "CREATE TABLE " + FTS_NGRAM_TABLE + "( " + NGramColumns.NGRAM_ID
             + " Integer PRIMARY KEY AUTOINCREMENT, " + NGramColumns.TEXT + " Text)";
 
+    /**
+     * SQL command to create the table of n-gram removal candidates.
+     */
+    private final static String SQL_CREATE_NGRAM_ORPHANS_TABLE = "CREATE TABLE " + FTS_NGRAM_ORPHANS_TABLE + "( " + NGramColumns.NGRAM_ID
+            + " Integer PRIMARY KEY)";
+
+    /**
+     * SQL command to create a trigger which records an n-gram as a removal candidate when its last link has been removed. This way we never have to scan the
+     * entire n-gram table to find the unused ones.
+     */
+    private final static String SQL_CREATE_NGRAM_ORPHAN_TRIGGER = "CREATE TRIGGER search_ngram_orphan_trigger AFTER DELETE ON " + FTS_CONTENT_TABLE
+            + " WHEN NOT EXISTS (SELECT 1 FROM " + FTS_CONTENT_TABLE + " WHERE " + FTSContentColumns.NGRAM_ID + " = old." + FTSContentColumns.NGRAM_ID
+            + ") BEGIN INSERT OR IGNORE INTO " + FTS_NGRAM_ORPHANS_TABLE + " VALUES (old." + FTSContentColumns.NGRAM_ID + "); END";
+
+    /**
+     * SQL command to record all n-grams without any link as removal candidates.
+     */
+    private final static String SQL_INSERT_NGRAM_ORPHANS = "INSERT OR IGNORE INTO " + FTS_NGRAM_ORPHANS_TABLE + " SELECT " + NGramColumns.NGRAM_ID
+            + " FROM " + FTS_NGRAM_TABLE + " WHERE NOT EXISTS (SELECT 1 FROM " + FTS_CONTENT_TABLE + " WHERE " + FTS_CONTENT_TABLE + "."
+            + FTSContentColumns.NGRAM_ID + " = " + FTS_NGRAM_TABLE + "." + NGramColumns.NGRAM_ID + ")";
+
+    /**
+     * SQL command to delete the n-grams with the given ids, unless they have been linked again in the meantime.
+     */
+    private final static String SQL_DELETE_ORPHANED_NGRAMS = "DELETE FROM " + FTS_NGRAM_TABLE + " WHERE " + NGramColumns.NGRAM_ID + " in (%s) AND NOT EXISTS"
+            + " (SELECT 1 FROM " + FTS_CONTENT_TABLE + " WHERE " + FTS_CONTENT_TABLE + "." + FTSContentColumns.NGRAM_ID + " = " + FTS_NGRAM_TABLE + "."
+            + NGramColumns.NGRAM_ID + ")";
+
     // FIXME: at present the minimum score is hard coded can we leave that decision to the caller?
     private final static String SQL_RAW_QUERY_SEARCH_TASK = "SELECT %s " + ", (1.0*count(DISTINCT " + NGramColumns.NGRAM_ID + ")/?) as " + TaskContract.Tasks.SCORE + " from "
             + FTS_NGRAM_TABLE + " join " + FTS_CONTENT_TABLE + " on (" + FTS_NGRAM_TABLE + "." + NGramColumns.NGRAM_ID + "=" + FTS_CONTENT_TABLE + "."
@@ -148,6 +194,13 @@ public class FTSDatabaseHelper
             + FTSContentColumns.TASK_ID + ") where %s group by " + TaskContract.Instances.TASK_ID + " having " + TaskContract.Tasks.SCORE + " >= " + SEARCH_RESULTS_MIN_SCORE
             + " and " + Tasks.VISIBLE + " = 1 order by %s;";
 
+    private final static String SQL_RAW_QUERY_NGRAM_FREQUENCIES = "SELECT " + NGramColumns.NGRAM_ID + ", " + NGramColumns.TEXT + ", (SELECT count(*) from "
+            + FTS_CONTENT_TABLE + " where " + FTS_CONTENT_TABLE + "." + FTSContentColumns.NGRAM_ID + " = " + FTS_NGRAM_TABLE + "." + NGramColumns.NGRAM_ID
+            + ") from " + FTS_NGRAM_TABLE + " where " + NGramColumns.TEXT + " in (%s);";
+
+    private final static String SQL_RAW_QUERY_SEARCH_CANDIDATES = "SELECT DISTINCT " + FTSContentColumns.TASK_ID + " from " + FTS_CONTENT_TABLE + " where "
+            + FTSContentColumns.NGRAM_ID + " in (%s);";
+
     private final static String SQL_RAW_QUERY_SEARCH_TASK_DEFAULT_PROJECTION = Tables.INSTANCE_VIEW + ".* ," + FTS_NGRAM_TABLE + "." + NGramColumns.TEXT;
 
     private final static String SQL_CREATE_SEARCH_TASK_DELETE_TRIGGER = "CREATE TRIGGER search_task_delete_trigger AFTER DELETE ON " + Tables.TASKS + " BEGIN "
@@ -192,6 +245,7 @@ public class FTSDatabaseHelper
     public static void onCreate(SQLiteDatabase db)
     {
         initializeFTS(db);
+        initializeNgramOrphans(db);
     }
 
 
@@ -207,6 +261,12 @@ public class FTSDatabaseHelper
             db.execSQL(TaskDatabaseHelper.createIndexString(FTS_CONTENT_TABLE, true, FTSContentColumns.TYPE, FTSContentColumns.TASK_ID,
                     FTSContentColumns.PROPERTY_ID));
         }
+        if (oldVersion < 25)
+        {
+            initializeNgramOrphans(db);
+            // the unused n-grams of the past are candidates too
+            db.execSQL(SQL_INSERT_NGRAM_ORPHANS);
+        }
     }
 
 
@@ -236,6 +296,19 @@ public class FTSDatabaseHelper
     }
 
 
+    /**
+     * Creates the table and trigger which track the n-grams that may have lost their last link.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     */
+    private static void initializeNgramOrphans(SQLiteDatabase db)
+    {
+        db.execSQL(SQL_CREATE_NGRAM_ORPHANS_TABLE);
+        db.execSQL(SQL_CREATE_NGRAM_ORPHAN_TRIGGER);
+    }
+
+
     /**
      * Creates the FTS entries for the existing tasks.
      *
@@ -534,6 +607,36 @@ public class FTSDatabaseHelper
     public static Cursor getTaskSearchCursor(SQLiteDatabase db, String searchString, String[] projection, String selection, String[] selectionArgs,
                                              String sortOrder)
     {
+        return getTaskSearchCursor(db, searchString, projection, selection, selectionArgs, sortOrder, null);
+    }
+
+
+    /**
+     * Queries the task database to get a cursor with the search results.
+     * <p>
+     * Unless there are too many of them, the search is restricted to the candidate tasks, i.e. the tasks which contain at least one of the most selective
+     * n-grams, before the matching n-grams are counted.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param searchString
+     *         The search query string.
+     * @param projection
+     *         The database projection for the query.
+     * @param selection
+     *         The selection for the query.
+     * @param selectionArgs
+     *         The arguments for the query.
+     * @param sortOrder
+     *         The sorting order of the query.
+     * @param cancellationSignal
+     *         A {@link CancellationSignal} to cancel the search or {@code null}.
+     *
+     * @return A cursor of the task database with the search result.
+     */
+    public static Cursor getTaskSearchCursor(SQLiteDatabase db, String searchString, String[] projection, String selection, String[] selectionArgs,
+                                             String sortOrder, CancellationSignal cancellationSignal)
+    {
 
         StringBuilder selectionBuilder = new StringBuilder(1024);
 
@@ -587,25 +690,44 @@ public class FTSDatabaseHelper
                 System.arraycopy(temp, 0, queryArgs, 1, temp.length);
             }
             selectionBuilder.append(" ) ");
+
+            Set<Long> candidates = searchCandidates(db, ngrams, cancellationSignal);
+            if (candidates != null)
+            {
+                selectionBuilder.append(" AND ");
+                selectionBuilder.append(FTS_CONTENT_TABLE);
+                selectionBuilder.append(".");
+                selectionBuilder.append(FTSContentColumns.TASK_ID);
+                selectionBuilder.append(" in (");
+                selectionBuilder.append(TextUtils.join(",", candidates));
+                selectionBuilder.append(") ");
+            }
         }
         else
         {
+            // Search for all n-grams starting with a space and the search string. Since the n-grams are sorted by the index on the n-gram column, we
+            // select them by range rather than using LIKE, which can't use the index.
+            String prefix = " " + (searchString == null ? "" : TRIGRAM_GENERATOR.normalized(searchString));
+            selectionBuilder.append(NGramColumns.TEXT);
+            selectionBuilder.append(" >= ? and ");
             selectionBuilder.append(NGramColumns.TEXT);
-            selectionBuilder.append(" like ?");
+            selectionBuilder.append(" < ?");
 
             // selection arguments
             if (selectionArgs != null && selectionArgs.length > 0)
             {
-                queryArgs = new String[selectionArgs.length + 2];
+                queryArgs = new String[selectionArgs.length + 3];
                 queryArgs[0] = String.valueOf(ngrams.size());
                 System.arraycopy(selectionArgs, 0, queryArgs, 1, selectionArgs.length);
-                queryArgs[queryArgs.length - 1] = " " + searchString + "%";
+                queryArgs[queryArgs.length - 2] = prefix;
+                queryArgs[queryArgs.length - 1] = prefixUpperBound(prefix);
             }
             else
             {
-                queryArgs = new String[2];
+                queryArgs = new String[3];
                 queryArgs[0] = String.valueOf(ngrams.size());
-                queryArgs[1] = " " + searchString + "%";
+                queryArgs[1] = prefix;
+                queryArgs[2] = prefixUpperBound(prefix);
             }
 
         }
@@ -623,8 +745,208 @@ public class FTSDatabaseHelper
             sortOrder = Tasks.SCORE + " desc, " + sortOrder;
         }
         Cursor c = db.rawQueryWithFactory(null,
-                String.format(SQL_RAW_QUERY_SEARCH_TASK, SQL_RAW_QUERY_SEARCH_TASK_DEFAULT_PROJECTION, selectionBuilder.toString(), sortOrder), queryArgs,
-                null);
+                String.format(SQL_RAW_QUERY_SEARCH_TASK, SQL_RAW_QUERY_SEARCH_TASK_DEFAULT_PROJECTION, selectionBuilder.toString(), sortOrder),
+                queryArgs, null, cancellationSignal);
         return c;
     }
+
+
+    /**
+     * Returns the smallest String which is larger than all Strings starting with the given prefix. Trailing {@link Character#MAX_VALUE}s can't be
+     * incremented, so they are dropped and the preceding character is incremented instead.
+     *
+     * @param prefix
+     *         A prefix which contains at least one character other than {@link Character#MAX_VALUE}.
+     *
+     * @return The exclusive upper bound of all Strings with the given prefix.
+     */
+    static String prefixUpperBound(String prefix)
+    {
+        int last = prefix.length() - 1;
+        while (last >= 0 && prefix.charAt(last) == Character.MAX_VALUE)
+        {
+            --last;
+        }
+        if (last < 0)
+        {
+            throw new IllegalArgumentException(String.format("Prefix \"%s\" has no upper bound", prefix));
+        }
+        return prefix.substring(0, last) + (char) (prefix.charAt(last) + 1);
+    }
+
+
+    /**
+     * Returns the ids of the candidate tasks of a search with the given n-grams or {@code null} if the search should not be restricted to any candidates.
+     * <p>
+     * A result has to match at least {@code m = ceil(minScore * |ngrams|)} of the n-grams, so it must contain at least one of any {@code |ngrams| - m + 1}
+     * n-grams. Hence, the candidates are determined using only the most selective n-grams, i.e. the ones which belong to the fewest tasks. N-grams which are
+     * not known at all are the most selective ones, since no task contains them.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param ngrams
+     *         The n-grams of the search string.
+     * @param cancellationSignal
+     *         A {@link CancellationSignal} to cancel the search or {@code null}.
+     *
+     * @return The ids of the candidate tasks or {@code null}.
+     */
+    private static Set<Long> searchCandidates(SQLiteDatabase db, Set<String> ngrams, CancellationSignal cancellationSignal)
+    {
+        if (ngrams.isEmpty())
+        {
+            return null;
+        }
+
+        // get id and frequency of all known ngrams
+        final Map<String, long[]> frequencies = new HashMap<>(ngrams.size() * 2);
+        for (Iterable<String> chunk : new Chunked<>(NGRAM_SEARCH_CHUNK_SIZE, ngrams))
+        {
+            List<String> arguments = new ArrayList<>(NGRAM_SEARCH_CHUNK_SIZE);
+            for (String ngram : chunk)
+            {
+                arguments.add(ngram);
+            }
+
+            try (Cursor c = db.rawQuery(String.format(SQL_RAW_QUERY_NGRAM_FREQUENCIES, TextUtils.join(",", Collections.nCopies(arguments.size(), "?"))),
+                    arguments.toArray(new String[0]), cancellationSignal))
+            {
+                while (c.moveToNext())
+                {
+                    frequencies.put(c.getString(1), new long[] { c.getLong(0), c.getLong(2) });
+                }
+            }
+        }
+
+        List<String> selectiveNgrams = selectiveNgrams(ngrams, frequencies);
+        List<Long> selectiveNgramIds = new ArrayList<>(selectiveNgrams.size());
+        long candidateCount = 0;
+        for (String ngram : selectiveNgrams)
+        {
+            long[] frequency = frequencies.get(ngram);
+            if (frequency != null)
+            {
+                selectiveNgramIds.add(frequency[0]);
+                candidateCount += frequency[1];
+            }
+        }
+
+        Set<Long> taskIds = new HashSet<>(64);
+        if (candidateCount > 0)
+        {
+            try (Cursor c = db.rawQuery(String.format(SQL_RAW_QUERY_SEARCH_CANDIDATES, TextUtils.join(",", selectiveNgramIds)), null, cancellationSignal))
+            {
+                while (c.moveToNext())
+                {
+                    taskIds.add(c.getLong(0));
+                }
+            }
+        }
+
+        if (taskIds.size() > MAX_SEARCH_CANDIDATES)
+        {
+            // too many candidates, don't restrict the search
+            return null;
+        }
+
+        return taskIds;
+    }
+
+
+    /**
+     * Returns the most selective of the given n-grams, i.e. the {@code |ngrams| - ceil(minScore * |ngrams|) + 1} n-grams which belong to the fewest tasks,
+     * ordered by their frequency. Unknown n-grams come first.
+     *
+     * @param ngrams
+     *         The n-grams of the search string.
+     * @param frequencies
+     *         A {@link Map} of the known n-grams to their id and the number of entries containing them.
+     *
+     * @return The most selective n-grams.
+     */
+    static List<String> selectiveNgrams(Set<String> ngrams, final Map<String, long[]> frequencies)
+    {
+        List<String> sortedNgrams = new ArrayList<>(ngrams);
+        Collections.sort(sortedNgrams, new Comparator<String>()
+        {
+            @Override
+            public int compare(String lhs, String rhs)
+            {
+                long[] left = frequencies.get(lhs);
+                long[] right = frequencies.get(rhs);
+                return Long.compare(left == null ? -1 : left[1], right == null ? -1 : right[1]);
+            }
+        });
+
+        int minMatches = (int) Math.ceil(SEARCH_RESULTS_MIN_SCORE * ngrams.size());
+        return sortedNgrams.subList(0, ngrams.size() - minMatches + 1);
+    }
+
+
+    /**
+     * Deletes up to the given number of n-grams which have lost their last link to a searchable entry. N-grams which have been linked again in the meantime
+     * are kept. The caller is responsible for running this in a transaction.
+     *
+     * @param db
+     *         The writable {@link SQLiteDatabase}.
+     * @param limit
+     *         The maximum number of removal candidates to process.
+     *
+     * @return The number of removal candidates that have been processed, {@code 0} if there are none left.
+     */
+    public static int deleteOrphanedNgrams(SQLiteDatabase db, int limit)
+    {
+        List<Long> candidates = new ArrayList<>(Math.min(limit, NGRAM_SEARCH_CHUNK_SIZE));
+        try (Cursor c = db.query(FTS_NGRAM_ORPHANS_TABLE, new String[] { NGramColumns.NGRAM_ID }, null, null, null, null, null, String.valueOf(limit)))
+        {
+            while (c.moveToNext())
+            {
+                candidates.add(c.getLong(0));
+            }
+        }
+
+        for (Iterable<Long> chunk : new Chunked<>(NGRAM_SEARCH_CHUNK_SIZE, candidates))
+        {
+            String ids = TextUtils.join(",", chunk);
+            db.execSQL(String.format(SQL_DELETE_ORPHANED_NGRAMS, ids));
+            db.delete(FTS_NGRAM_ORPHANS_TABLE, NGramColumns.NGRAM_ID + " in (" + ids + ")", null);
+        }
+        return candidates.size();
+    }
+
+
+    /**
+     * Returns a {@link Cursor} with a single row containing the statistics of the search index, see {@link TaskContract.SearchIndexColumns}.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param projection
+     *         The columns to return or {@code null} to return all columns.
+     *
+     * @return A {@link Cursor}.
+     */
+    public static Cursor getIndexStatisticsCursor(SQLiteDatabase db, String[] projection)
+    {
+        long pageSize = DatabaseUtils.longForQuery(db, "PRAGMA page_size", null);
+        Map<String, Long> statistics = new HashMap<>(8);
+        statistics.put(TaskContract.SearchIndex.NGRAM_COUNT, DatabaseUtils.queryNumEntries(db, FTS_NGRAM_TABLE));
+        statistics.put(TaskContract.SearchIndex.LINK_COUNT, DatabaseUtils.queryNumEntries(db, FTS_CONTENT_TABLE));
+        statistics.put(TaskContract.SearchIndex.ORPHANED_NGRAM_COUNT, DatabaseUtils.queryNumEntries(db, FTS_NGRAM_ORPHANS_TABLE));
+        statistics.put(TaskContract.SearchIndex.DATABASE_SIZE, DatabaseUtils.longForQuery(db, "PRAGMA page_count", null) * pageSize);
+        statistics.put(TaskContract.SearchIndex.FREE_SIZE, DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null) * pageSize);
+
+        String[] columns = projection == null ? statistics.keySet().toArray(new String[0]) : projection;
+        Object[] row = new Object[columns.length];
+        for (int i = 0; i < columns.length; ++i)
+        {
+            if (!statistics.containsKey(columns[i]))
+            {
+                throw new IllegalArgumentException("Unknown column " + columns[i]);
+            }
+            row[i] = statistics.get(columns[i]);
+        }
+        MatrixCursor cursor = new MatrixCursor(columns, 1);
+        cursor.addRow(row);
+        return cursor;
+    }
 }
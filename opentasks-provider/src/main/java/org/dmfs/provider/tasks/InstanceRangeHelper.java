@@ -0,0 +1,424 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.os.CancellationSignal;
+
+import org.dmfs.jems.single.Single;
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.provider.tasks.model.ContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.utils.InstanceValuesIterable;
+import org.dmfs.provider.tasks.utils.TaskInstanceIterable;
+import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+
+/**
+ * Queries the instances in a time range, see {@link Instances#getRangeUri(String, long, long)}.
+ * <p>
+ * The instances table contains only the next upcoming instance of a recurring task. The range query returns the existing instances in the range merged
+ * with the instances of the recurring tasks which are calculated on the fly. Every recurring task contributes a sorted stream of instances, so the result
+ * is a k-way merge of these streams and the sorted existing instances. The calculated instances are never stored in the database.
+ *
+ * @author agent
+ */
+public final class InstanceRangeHelper
+{
+    /**
+     * The time an instance is in the range by.
+     */
+    private final static String RANGE_TIME = "coalesce(" + Instances.INSTANCE_DUE + ", " + Instances.INSTANCE_START + ")";
+
+    /**
+     * The time instances are sorted by.
+     */
+    private final static String SORTING_TIME = "coalesce(" + Instances.INSTANCE_DUE_SORTING + ", " + Instances.INSTANCE_START_SORTING + ")";
+
+    /**
+     * The sort order of the existing instances, this must be the order of {@link Source#compareTo(Source)}.
+     */
+    private final static String SORT_ORDER = SORTING_TIME + ", " + Instances.TASK_ID + ", " + Instances.INSTANCE_ORIGINAL_TIME;
+
+    /**
+     * Selects the last existing instance of each recurring task.
+     */
+    private final static String LAST_INSTANCES = Instances._ID + " in (select " + Instances._ID + " from (select " + Instances._ID + ", max("
+            + Instances.INSTANCE_ORIGINAL_TIME + ") from " + Tables.INSTANCES + " where " + Instances.TASK_ID + " in (select " + Tasks._ID + " from "
+            + Tables.TASKS + " where (" + Tasks.RRULE + " is not null or " + Tasks.RDATE + " is not null) and " + Tasks.ORIGINAL_INSTANCE_ID
+            + " is null) group by " + Instances.TASK_ID + "))";
+
+    private final static String[] TASK_PROJECTION = {
+            Tasks._ID, Tasks.DTSTART, Tasks.DUE, Tasks.DURATION, Tasks.IS_CLOSED, Tasks.TZ, Tasks.IS_ALLDAY, Tasks.RRULE, Tasks.RDATE, Tasks.EXDATE,
+            Tasks.ORIGINAL_INSTANCE_TIME };
+
+    private final static String[] OVERRIDE_PROJECTION = { Tasks.ORIGINAL_INSTANCE_TIME, Tasks.IS_CLOSED };
+
+    /**
+     * The maximum number of instances in the range we return per task, a safety net for rules with very short intervals.
+     */
+    private final static int MAX_INSTANCES = 10000;
+
+
+    private InstanceRangeHelper()
+    {
+    }
+
+
+    /**
+     * Returns a {@link Cursor} of the instances in the given range.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param start
+     *         The time stamp of the start of the range (inclusive).
+     * @param end
+     *         The time stamp of the end of the range (exclusive).
+     * @param projection
+     *         The projection, only plain column names are supported. May be {@code null} to return all columns.
+     * @param selection
+     *         The selection.
+     * @param selectionArgs
+     *         The arguments of the selection.
+     * @param isSyncAdapter
+     *         Whether the caller is a sync adapter, only sync adapters see deleted instances.
+     * @param offset
+     *         The number of instances to skip.
+     * @param limit
+     *         The maximum number of instances to return or {@code -1} to return all instances.
+     * @param cancellationSignal
+     *         A {@link CancellationSignal} or {@code null}.
+     *
+     * @return A {@link Cursor} of the instances in the range.
+     */
+    public static Cursor getInstanceRangeCursor(SQLiteDatabase db, long start, long end, String[] projection, String selection, String[] selectionArgs,
+                                                boolean isSyncAdapter, int offset, int limit, CancellationSignal cancellationSignal)
+    {
+        SQLiteQueryBuilder sqlBuilder = new SQLiteQueryBuilder();
+        sqlBuilder.setTables(Tables.INSTANCE_CLIENT_VIEW);
+        sqlBuilder.appendWhere(" 1=1 ");
+        if (!isSyncAdapter)
+        {
+            // do not return deleted rows if caller is not a sync adapter
+            sqlBuilder.appendWhere(" AND ");
+            sqlBuilder.appendWhere(Tasks._DELETED);
+            sqlBuilder.appendWhere("=0");
+        }
+
+        PriorityQueue<Source> sources = new PriorityQueue<>();
+        try (Cursor lastInstances = sqlBuilder.query(db, null, "(" + LAST_INSTANCES + ")" + (selection == null ? "" : " AND (" + selection + ")"),
+                selectionArgs, null, null, null, null, cancellationSignal))
+        {
+            while (lastInstances.moveToNext())
+            {
+                Source source = new ExpandedSource(db, lastInstances, start, end);
+                if (source.moveToNext())
+                {
+                    sources.add(source);
+                }
+            }
+        }
+
+        sqlBuilder.appendWhere(" AND " + RANGE_TIME + ">=" + start + " AND " + RANGE_TIME + "<" + end);
+        try (Cursor existing = sqlBuilder.query(db, null, selection, selectionArgs, null, null, SORT_ORDER,
+                limit < 0 ? null : String.valueOf(offset + limit), cancellationSignal))
+        {
+            String[] columns = projection == null ? existing.getColumnNames() : projection;
+            int[] columnIndexes = new int[columns.length];
+            for (int i = 0; i < columns.length; ++i)
+            {
+                columnIndexes[i] = existing.getColumnIndexOrThrow(columns[i]);
+            }
+
+            Source existingSource = new ExistingSource(existing);
+            if (existingSource.moveToNext())
+            {
+                sources.add(existingSource);
+            }
+
+            // the k-way merge
+            MatrixCursor result = new MatrixCursor(columns);
+            int skip = offset;
+            int count = 0;
+            while (!sources.isEmpty() && (limit < 0 || count < limit))
+            {
+                if (cancellationSignal != null)
+                {
+                    cancellationSignal.throwIfCanceled();
+                }
+                Source source = sources.poll();
+                if (skip > 0)
+                {
+                    skip -= 1;
+                }
+                else
+                {
+                    Object[] row = new Object[columnIndexes.length];
+                    for (int i = 0; i < columnIndexes.length; ++i)
+                    {
+                        row[i] = source.row[columnIndexes[i]];
+                    }
+                    result.addRow(row);
+                    count += 1;
+                }
+                if (source.moveToNext())
+                {
+                    sources.add(source);
+                }
+            }
+            return result;
+        }
+    }
+
+
+    /**
+     * A sorted stream of instance rows in the column layout of the {@link Tables#INSTANCE_CLIENT_VIEW}.
+     */
+    private static abstract class Source implements Comparable<Source>
+    {
+        Object[] row;
+        long sortingTime;
+        long taskId;
+        long originalTime;
+
+
+        /**
+         * Moves to the next row, returns {@code false} if there is none.
+         */
+        abstract boolean moveToNext();
+
+
+        @Override
+        public final int compareTo(Source other)
+        {
+            if (sortingTime != other.sortingTime)
+            {
+                return sortingTime < other.sortingTime ? -1 : 1;
+            }
+            if (taskId != other.taskId)
+            {
+                return taskId < other.taskId ? -1 : 1;
+            }
+            return originalTime < other.originalTime ? -1 : originalTime == other.originalTime ? 0 : 1;
+        }
+    }
+
+
+    /**
+     * The existing instances in the range, sorted by the database.
+     */
+    private final static class ExistingSource extends Source
+    {
+        private final Cursor mCursor;
+        private final int mDueSortingIdx;
+        private final int mStartSortingIdx;
+        private final int mTaskIdIdx;
+        private final int mOriginalTimeIdx;
+
+
+        ExistingSource(Cursor cursor)
+        {
+            mCursor = cursor;
+            mDueSortingIdx = cursor.getColumnIndexOrThrow(Instances.INSTANCE_DUE_SORTING);
+            mStartSortingIdx = cursor.getColumnIndexOrThrow(Instances.INSTANCE_START_SORTING);
+            mTaskIdIdx = cursor.getColumnIndexOrThrow(Instances.TASK_ID);
+            mOriginalTimeIdx = cursor.getColumnIndexOrThrow(Instances.INSTANCE_ORIGINAL_TIME);
+        }
+
+
+        @Override
+        boolean moveToNext()
+        {
+            if (!mCursor.moveToNext())
+            {
+                return false;
+            }
+            row = values(mCursor);
+            sortingTime = mCursor.isNull(mDueSortingIdx) ? mCursor.getLong(mStartSortingIdx) : mCursor.getLong(mDueSortingIdx);
+            taskId = mCursor.getLong(mTaskIdIdx);
+            originalTime = mCursor.getLong(mOriginalTimeIdx);
+            return true;
+        }
+    }
+
+
+    /**
+     * The instances of a recurring task after its last existing instance, calculated on the fly. All task values are taken from the last existing
+     * instance.
+     */
+    private final static class ExpandedSource extends Source
+    {
+        private final long mStart;
+        private final long mEnd;
+        private final Object[] mTemplate;
+        private final int mIdIdx;
+        private final int[] mStartIdx;
+        private final int[] mDueIdx;
+        private final int mStartSortingIdx;
+        private final int mDueSortingIdx;
+        private final int mDurationIdx;
+        private final int[] mOriginalTimeIdx;
+        private final int mDistanceIdx;
+        private final boolean mIsClosed;
+        private final Map<Long, Boolean> mOverrides = new HashMap<>();
+        private final Iterator<Single<ContentValues>> mInstances;
+        private int mDistance;
+        private int mCount;
+
+
+        ExpandedSource(SQLiteDatabase db, Cursor lastInstance, long start, long end)
+        {
+            mStart = start;
+            mEnd = end;
+            mTemplate = values(lastInstance);
+            mIdIdx = lastInstance.getColumnIndexOrThrow(Instances._ID);
+            // the client view contains start, due and original time twice, as instance column and as task column
+            mStartIdx = new int[] {
+                    lastInstance.getColumnIndexOrThrow(Instances.INSTANCE_START), lastInstance.getColumnIndexOrThrow(Tasks.DTSTART) };
+            mDueIdx = new int[] { lastInstance.getColumnIndexOrThrow(Instances.INSTANCE_DUE), lastInstance.getColumnIndexOrThrow(Tasks.DUE) };
+            mStartSortingIdx = lastInstance.getColumnIndexOrThrow(Instances.INSTANCE_START_SORTING);
+            mDueSortingIdx = lastInstance.getColumnIndexOrThrow(Instances.INSTANCE_DUE_SORTING);
+            mDurationIdx = lastInstance.getColumnIndexOrThrow(Instances.INSTANCE_DURATION);
+            mOriginalTimeIdx = new int[] {
+                    lastInstance.getColumnIndexOrThrow(Instances.INSTANCE_ORIGINAL_TIME),
+                    lastInstance.getColumnIndexOrThrow(Tasks.ORIGINAL_INSTANCE_TIME) };
+            mDistanceIdx = lastInstance.getColumnIndexOrThrow(Instances.DISTANCE_FROM_CURRENT);
+            mDistance = lastInstance.getInt(mDistanceIdx);
+
+            taskId = lastInstance.getLong(lastInstance.getColumnIndexOrThrow(Instances.TASK_ID));
+            long lastOriginalTime = lastInstance.getLong(mOriginalTimeIdx[0]);
+
+            TaskAdapter task;
+            try (Cursor cursor = db.query(Tables.TASKS, TASK_PROJECTION, Tasks._ID + "=" + taskId, null, null, null, null))
+            {
+                cursor.moveToFirst();
+                ContentValues values = new ContentValues(TASK_PROJECTION.length);
+                DatabaseUtils.cursorRowToContentValues(cursor, values);
+                task = new ContentValuesTaskAdapter(taskId, values);
+            }
+            mIsClosed = task.valueOf(TaskAdapter.IS_CLOSED);
+
+            // the overridden instances are not calculated but we need to know whether they're closed to count the distance
+            try (Cursor cursor = db.query(Tables.TASKS, OVERRIDE_PROJECTION, Tasks.ORIGINAL_INSTANCE_ID + "=" + taskId, null, null, null, null))
+            {
+                while (cursor.moveToNext())
+                {
+                    mOverrides.put(cursor.getLong(0), cursor.getInt(1) != 0);
+                }
+            }
+
+            mInstances = new InstanceValuesIterable(task, new TaskInstanceIterable(task, lastOriginalTime + 1, end)).iterator();
+        }
+
+
+        @Override
+        boolean moveToNext()
+        {
+            // the instances before the range are not counted, we can't skip them anyway since they contribute to the distance
+            while (mCount < MAX_INSTANCES && mInstances.hasNext())
+            {
+                ContentValues values = mInstances.next().value();
+                Long instanceOriginalTime = values.getAsLong(Instances.INSTANCE_ORIGINAL_TIME);
+                Boolean overrideClosed = mOverrides.get(instanceOriginalTime);
+                if (overrideClosed != null)
+                {
+                    // the override has an instance of its own
+                    if (!mIsClosed && !overrideClosed)
+                    {
+                        mDistance += 1;
+                    }
+                    continue;
+                }
+                if (!mIsClosed)
+                {
+                    mDistance += 1;
+                }
+
+                Long instanceStart = values.getAsLong(Instances.INSTANCE_START);
+                Long instanceDue = values.getAsLong(Instances.INSTANCE_DUE);
+                long rangeTime = instanceDue == null ? instanceStart : instanceDue;
+                if (rangeTime >= mEnd)
+                {
+                    // instances are sorted, there are no more instances in the range
+                    return false;
+                }
+                if (rangeTime < mStart)
+                {
+                    continue;
+                }
+                mCount += 1;
+
+                Long startSorting = values.getAsLong(Instances.INSTANCE_START_SORTING);
+                Long dueSorting = values.getAsLong(Instances.INSTANCE_DUE_SORTING);
+                row = mTemplate.clone();
+                row[mIdIdx] = null;
+                row[mStartIdx[0]] = row[mStartIdx[1]] = instanceStart;
+                row[mDueIdx[0]] = row[mDueIdx[1]] = instanceDue;
+                row[mStartSortingIdx] = startSorting;
+                row[mDueSortingIdx] = dueSorting;
+                row[mDurationIdx] = values.getAsLong(Instances.INSTANCE_DURATION);
+                row[mOriginalTimeIdx[0]] = row[mOriginalTimeIdx[1]] = instanceOriginalTime;
+                row[mDistanceIdx] = mIsClosed ? -1 : mDistance;
+                sortingTime = dueSorting == null ? startSorting : dueSorting;
+                originalTime = instanceOriginalTime;
+                return true;
+            }
+            return false;
+        }
+    }
+
+
+    /**
+     * Returns the values of the current row of the given {@link Cursor}.
+     */
+    private static Object[] values(Cursor cursor)
+    {
+        Object[] values = new Object[cursor.getColumnCount()];
+        for (int i = 0; i < values.length; ++i)
+        {
+            switch (cursor.getType(i))
+            {
+                case Cursor.FIELD_TYPE_INTEGER:
+                    values[i] = cursor.getLong(i);
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    values[i] = cursor.getDouble(i);
+                    break;
+                case Cursor.FIELD_TYPE_STRING:
+                    values[i] = cursor.getString(i);
+                    break;
+                case Cursor.FIELD_TYPE_BLOB:
+                    values[i] = cursor.getBlob(i);
+                    break;
+                default:
+                    values[i] = null;
+            }
+        }
+        return values;
+    }
+}
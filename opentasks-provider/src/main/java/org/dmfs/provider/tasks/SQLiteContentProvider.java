@@ -23,19 +23,19 @@ import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.OperationApplicationException;
+import android.content.UriMatcher;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.net.Uri;
+import android.os.Bundle;
 
-import org.dmfs.iterables.SingletonIterable;
-import org.dmfs.jems.fragile.Fragile;
-import org.dmfs.jems.iterable.composite.Joined;
-import org.dmfs.jems.single.Single;
-import org.dmfs.provider.tasks.utils.Profiled;
+import org.dmfs.provider.tasks.metrics.OperationMetrics;
+import org.dmfs.provider.tasks.metrics.ProviderMetrics;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.Locale;
 import java.util.Set;
 
 
@@ -55,7 +55,23 @@ abstract class SQLiteContentProvider extends ContentProvider
 
     interface TransactionEndTask
     {
+        /**
+         * Called right before the changes of the current thread are committed. Note, this is also called before every yield point of a batch, because the
+         * database may commit the transaction at that point.
+         */
         void execute(SQLiteDatabase database);
+
+        /**
+         * Called instead of {@link #execute(SQLiteDatabase)} when the transaction is about to be rolled back, so the task can drop any state it has collected
+         * during the transaction.
+         */
+        void rollback();
+    }
+
+
+    interface TransactionTask<T>
+    {
+        T execute(SQLiteDatabase database);
     }
 
 
@@ -73,13 +89,30 @@ abstract class SQLiteContentProvider extends ContentProvider
      */
     private static final int MAX_OPERATIONS_PER_YIELD_POINT = 500;
 
+    /**
+     * The number of values {@link #bulkInsert(Uri, ContentValues[])} inserts between two yield points.
+     */
+    private static final int VALUES_PER_YIELD_POINT = 50;
+
+    /**
+     * The {@link #call(String, String, Bundle)} method that returns the {@link ProviderMetrics}.
+     */
+    public static final String CALL_METHOD_METRICS = "metrics";
+
+    /**
+     * The {@link #call(String, String, Bundle)} method that enables or disables the metrics of the entity processor stages. The argument must be {@code
+     * "true"} to enable them, anything else disables them.
+     */
+    public static final String CALL_METHOD_STAGE_METRICS = "stage_metrics";
+
     private final Iterable<TransactionEndTask> mTransactionEndTasks;
 
+    private final ProviderMetrics mMetrics = new ProviderMetrics();
+
 
     protected SQLiteContentProvider(Iterable<TransactionEndTask> transactionEndTasks)
     {
-        // append a task to set the transaction to successful
-        mTransactionEndTasks = new Joined<>(transactionEndTasks, new SingletonIterable<>(new SuccessfulTransactionEndTask()));
+        mTransactionEndTasks = transactionEndTasks;
     }
 
 
@@ -137,6 +170,21 @@ abstract class SQLiteContentProvider extends ContentProvider
     }
 
 
+    /**
+     * Called before any write operation acquires the database. Subclasses can use this to get long running background work out of the way of the writer.
+     */
+    protected void onBeforeWrite()
+    {
+    }
+
+
+    private SQLiteDatabase writableDatabase()
+    {
+        onBeforeWrite();
+        return mOpenHelper.getWritableDatabase();
+    }
+
+
     private boolean applyingBatch()
     {
         return mApplyingBatch.get() != null && mApplyingBatch.get();
@@ -146,23 +194,33 @@ abstract class SQLiteContentProvider extends ContentProvider
     @Override
     public Uri insert(Uri uri, ContentValues values)
     {
-        return new Profiled("Insert").run((Single<Uri>) () ->
+        OperationMetrics metrics = mMetrics.operation(ProviderMetrics.Operation.INSERT, matchCode(uri), uri);
+        long start = System.nanoTime();
+        try
         {
             Uri result;
             boolean callerIsSyncAdapter = isCallerSyncAdapter(uri);
             boolean applyingBatch = applyingBatch();
-            SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+            SQLiteDatabase db = writableDatabase();
             if (!applyingBatch)
             {
                 db.beginTransaction();
+                long transactionStart = System.nanoTime();
+                boolean successful = false;
                 try
                 {
                     result = insertInTransaction(db, uri, values, callerIsSyncAdapter);
                     endTransaction(db);
+                    successful = true;
                 }
                 finally
                 {
+                    if (!successful)
+                    {
+                        rollback();
+                    }
                     db.endTransaction();
+                    mMetrics.recordTransaction(System.nanoTime() - transactionStart);
                 }
                 onEndTransaction(callerIsSyncAdapter);
             }
@@ -170,59 +228,99 @@ abstract class SQLiteContentProvider extends ContentProvider
             {
                 result = insertInTransaction(db, uri, values, callerIsSyncAdapter);
             }
+            metrics.record(System.nanoTime() - start, result == null ? 0 : 1);
             return result;
-        });
+        }
+        catch (RuntimeException e)
+        {
+            metrics.recordFailure(System.nanoTime() - start);
+            throw e;
+        }
     }
 
 
     @Override
     public int bulkInsert(Uri uri, ContentValues[] values)
     {
-        return new Profiled("BulkInsert").run((Single<Integer>) () ->
+        OperationMetrics metrics = mMetrics.operation(ProviderMetrics.Operation.BULK_INSERT, matchCode(uri), uri);
+        long start = System.nanoTime();
+        try
         {
             int numValues = values.length;
             boolean callerIsSyncAdapter = isCallerSyncAdapter(uri);
-            SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+            SQLiteDatabase db = writableDatabase();
             db.beginTransaction();
+            long transactionStart = System.nanoTime();
+            boolean successful = false;
             try
             {
                 for (int i = 0; i < numValues; i++)
                 {
                     insertInTransaction(db, uri, values[i], callerIsSyncAdapter);
-                    db.yieldIfContendedSafely();
+                    // yield every now and then only, every yield point flushes the transaction end tasks
+                    if ((i + 1) % VALUES_PER_YIELD_POINT == 0 && yieldIfContended(db, 0))
+                    {
+                        // the transaction has been committed and a new one has been started
+                        long now = System.nanoTime();
+                        mMetrics.recordTransaction(now - transactionStart);
+                        mMetrics.recordYield();
+                        transactionStart = now;
+                    }
                 }
                 endTransaction(db);
+                successful = true;
             }
             finally
             {
+                if (!successful)
+                {
+                    rollback();
+                }
                 db.endTransaction();
+                mMetrics.recordTransaction(System.nanoTime() - transactionStart);
             }
             onEndTransaction(callerIsSyncAdapter);
+            metrics.record(System.nanoTime() - start, numValues);
             return numValues;
-        });
+        }
+        catch (RuntimeException e)
+        {
+            metrics.recordFailure(System.nanoTime() - start);
+            throw e;
+        }
     }
 
 
     @Override
     public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs)
     {
-        return new Profiled("Update").run((Single<Integer>) () ->
+        OperationMetrics metrics = mMetrics.operation(ProviderMetrics.Operation.UPDATE, matchCode(uri), uri);
+        long start = System.nanoTime();
+        try
         {
             int count;
             boolean callerIsSyncAdapter = isCallerSyncAdapter(uri);
             boolean applyingBatch = applyingBatch();
-            SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+            SQLiteDatabase db = writableDatabase();
             if (!applyingBatch)
             {
                 db.beginTransaction();
+                long transactionStart = System.nanoTime();
+                boolean successful = false;
                 try
                 {
                     count = updateInTransaction(db, uri, values, selection, selectionArgs, callerIsSyncAdapter);
                     endTransaction(db);
+                    successful = true;
                 }
                 finally
                 {
+                    if (!successful)
+                    {
+                        rollback();
+                    }
                     db.endTransaction();
+                    mMetrics.recordTransaction(System.nanoTime() - transactionStart);
                 }
                 onEndTransaction(callerIsSyncAdapter);
             }
@@ -230,31 +328,84 @@ abstract class SQLiteContentProvider extends ContentProvider
             {
                 count = updateInTransaction(db, uri, values, selection, selectionArgs, callerIsSyncAdapter);
             }
+            metrics.record(System.nanoTime() - start, count);
             return count;
-        });
+        }
+        catch (RuntimeException e)
+        {
+            metrics.recordFailure(System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+
+    /**
+     * Executes the given {@link TransactionTask} in a transaction, just like {@link #update(Uri, ContentValues, String, String[])} executes {@link
+     * #updateInTransaction(SQLiteDatabase, Uri, ContentValues, String, String[], boolean)}. This is meant for {@link #call(String, String, Bundle)} methods
+     * which modify the database.
+     */
+    protected <T> T executeInTransaction(TransactionTask<T> task, boolean callerIsSyncAdapter)
+    {
+        SQLiteDatabase db = writableDatabase();
+        if (applyingBatch())
+        {
+            return task.execute(db);
+        }
+
+        T result;
+        db.beginTransaction();
+        long transactionStart = System.nanoTime();
+        boolean successful = false;
+        try
+        {
+            result = task.execute(db);
+            endTransaction(db);
+            successful = true;
+        }
+        finally
+        {
+            if (!successful)
+            {
+                rollback();
+            }
+            db.endTransaction();
+            mMetrics.recordTransaction(System.nanoTime() - transactionStart);
+        }
+        onEndTransaction(callerIsSyncAdapter);
+        return result;
     }
 
 
     @Override
     public int delete(Uri uri, String selection, String[] selectionArgs)
     {
-        return new Profiled("Delete").run((Single<Integer>) () ->
+        OperationMetrics metrics = mMetrics.operation(ProviderMetrics.Operation.DELETE, matchCode(uri), uri);
+        long start = System.nanoTime();
+        try
         {
             int count;
             boolean callerIsSyncAdapter = isCallerSyncAdapter(uri);
             boolean applyingBatch = applyingBatch();
-            SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+            SQLiteDatabase db = writableDatabase();
             if (!applyingBatch)
             {
                 db.beginTransaction();
+                long transactionStart = System.nanoTime();
+                boolean successful = false;
                 try
                 {
                     count = deleteInTransaction(db, uri, selection, selectionArgs, callerIsSyncAdapter);
                     endTransaction(db);
+                    successful = true;
                 }
                 finally
                 {
+                    if (!successful)
+                    {
+                        rollback();
+                    }
                     db.endTransaction();
+                    mMetrics.recordTransaction(System.nanoTime() - transactionStart);
                 }
                 onEndTransaction(callerIsSyncAdapter);
             }
@@ -262,59 +413,145 @@ abstract class SQLiteContentProvider extends ContentProvider
             {
                 count = deleteInTransaction(db, uri, selection, selectionArgs, callerIsSyncAdapter);
             }
+            metrics.record(System.nanoTime() - start, count);
             return count;
-        });
+        }
+        catch (RuntimeException e)
+        {
+            metrics.recordFailure(System.nanoTime() - start);
+            throw e;
+        }
     }
 
 
     @Override
     public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations) throws OperationApplicationException
     {
-        return new Profiled(String.format(Locale.ENGLISH, "Batch of %d operations", operations.size())).run(
-                (Fragile<ContentProviderResult[], OperationApplicationException>) () ->
+        // batches are not specific to a URI, we use the URI of the first operation to name them
+        Uri firstUri = operations.isEmpty() ? Uri.EMPTY : operations.get(0).getUri();
+        OperationMetrics metrics = mMetrics.operation(ProviderMetrics.Operation.BATCH, matchCode(firstUri), firstUri);
+        long start = System.nanoTime();
+        boolean successful = false;
+
+        int ypCount = 0;
+        int opCount = 0;
+        boolean callerIsSyncAdapter = false;
+        SQLiteDatabase db = writableDatabase();
+        db.beginTransaction();
+        long transactionStart = System.nanoTime();
+        try
+        {
+            mApplyingBatch.set(true);
+            final int numOperations = operations.size();
+            final ContentProviderResult[] results = new ContentProviderResult[numOperations];
+            for (int i = 0; i < numOperations; i++)
+            {
+                if (++opCount >= MAX_OPERATIONS_PER_YIELD_POINT)
                 {
-                    int ypCount = 0;
-                    int opCount = 0;
-                    boolean callerIsSyncAdapter = false;
-                    SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-                    db.beginTransaction();
-                    try
-                    {
-                        mApplyingBatch.set(true);
-                        final int numOperations = operations.size();
-                        final ContentProviderResult[] results = new ContentProviderResult[numOperations];
-                        for (int i = 0; i < numOperations; i++)
-                        {
-                            if (++opCount >= MAX_OPERATIONS_PER_YIELD_POINT)
-                            {
-                                throw new OperationApplicationException("Too many content provider operations between yield points. "
-                                        + "The maximum number of operations per yield point is " + MAX_OPERATIONS_PER_YIELD_POINT, ypCount);
-                            }
-                            final ContentProviderOperation operation = operations.get(i);
-                            if (!callerIsSyncAdapter && isCallerSyncAdapter(operation.getUri()))
-                            {
-                                callerIsSyncAdapter = true;
-                            }
-                            if (i > 0 && operation.isYieldAllowed())
-                            {
-                                opCount = 0;
-                                if (db.yieldIfContendedSafely(SLEEP_AFTER_YIELD_DELAY))
-                                {
-                                    ypCount++;
-                                }
-                            }
-                            results[i] = operation.apply(this, results, i);
-                        }
-                        endTransaction(db);
-                        return results;
-                    }
-                    finally
+                    throw new OperationApplicationException("Too many content provider operations between yield points. "
+                            + "The maximum number of operations per yield point is " + MAX_OPERATIONS_PER_YIELD_POINT, ypCount);
+                }
+                final ContentProviderOperation operation = operations.get(i);
+                if (!callerIsSyncAdapter && isCallerSyncAdapter(operation.getUri()))
+                {
+                    callerIsSyncAdapter = true;
+                }
+                if (i > 0 && operation.isYieldAllowed())
+                {
+                    opCount = 0;
+                    if (yieldIfContended(db, SLEEP_AFTER_YIELD_DELAY))
                     {
-                        mApplyingBatch.set(false);
-                        db.endTransaction();
-                        onEndTransaction(callerIsSyncAdapter);
+                        ypCount++;
+                        // the transaction has been committed and a new one has been started
+                        long now = System.nanoTime();
+                        mMetrics.recordTransaction(now - transactionStart);
+                        mMetrics.recordYield();
+                        transactionStart = now;
                     }
-                });
+                }
+                results[i] = operation.apply(this, results, i);
+            }
+            endTransaction(db);
+            successful = true;
+            return results;
+        }
+        finally
+        {
+            mApplyingBatch.set(false);
+            if (!successful)
+            {
+                rollback();
+            }
+            db.endTransaction();
+            mMetrics.recordTransaction(System.nanoTime() - transactionStart);
+            onEndTransaction(callerIsSyncAdapter);
+            if (successful)
+            {
+                metrics.record(System.nanoTime() - start, operations.size());
+            }
+            else
+            {
+                metrics.recordFailure(System.nanoTime() - start);
+            }
+        }
+    }
+
+
+    /**
+     * Returns the code the given {@link Uri} matches. This is used to keep separate metrics for each kind of {@link Uri}.
+     *
+     * @param uri
+     *         A {@link Uri}.
+     *
+     * @return The code of the {@link Uri} or {@link UriMatcher#NO_MATCH}.
+     */
+    protected int matchCode(Uri uri)
+    {
+        return UriMatcher.NO_MATCH;
+    }
+
+
+    /**
+     * Returns the {@link ProviderMetrics} of this provider.
+     */
+    protected ProviderMetrics metrics()
+    {
+        return mMetrics;
+    }
+
+
+    /**
+     * Returns the {@link ProviderMetrics} in a {@link Bundle} if the method is {@link #CALL_METHOD_METRICS}. The caller needs the read permission of this
+     * provider. {@link #CALL_METHOD_STAGE_METRICS} switches the stage metrics and requires the write permission.
+     */
+    @Override
+    public Bundle call(String method, String arg, Bundle extras)
+    {
+        if (CALL_METHOD_METRICS.equals(method))
+        {
+            if (getReadPermission() != null)
+            {
+                getContext().enforceCallingOrSelfPermission(getReadPermission(), "reading provider metrics requires the read permission");
+            }
+            return mMetrics.toBundle();
+        }
+        if (CALL_METHOD_STAGE_METRICS.equals(method))
+        {
+            if (getWritePermission() != null)
+            {
+                getContext().enforceCallingOrSelfPermission(getWritePermission(), "switching stage metrics requires the write permission");
+            }
+            mMetrics.setStageMetricsEnabled(Boolean.parseBoolean(arg));
+            return null;
+        }
+        return super.call(method, arg, extras);
+    }
+
+
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args)
+    {
+        mMetrics.dump(writer);
     }
 
 
@@ -342,6 +579,24 @@ abstract class SQLiteContentProvider extends ContentProvider
 
 
     private void endTransaction(SQLiteDatabase database)
+    {
+        executeTransactionEndTasks(database);
+        database.setTransactionSuccessful();
+    }
+
+
+    /**
+     * Yields the transaction if the database is contended. Yielding commits the changes made so far, so the {@link TransactionEndTask}s are executed
+     * first. Otherwise a later rollback would drop the state of changes which have already been committed.
+     */
+    private boolean yieldIfContended(SQLiteDatabase database, long sleepAfterYieldDelay)
+    {
+        executeTransactionEndTasks(database);
+        return database.yieldIfContendedSafely(sleepAfterYieldDelay);
+    }
+
+
+    private void executeTransactionEndTasks(SQLiteDatabase database)
     {
         for (TransactionEndTask task : mTransactionEndTasks)
         {
@@ -350,15 +605,11 @@ abstract class SQLiteContentProvider extends ContentProvider
     }
 
 
-    /**
-     * A {@link TransactionEndTask} which sets the transaction to be successful.
-     */
-    private static class SuccessfulTransactionEndTask implements TransactionEndTask
+    private void rollback()
     {
-        @Override
-        public void execute(SQLiteDatabase database)
+        for (TransactionEndTask task : mTransactionEndTasks)
         {
-            database.setTransactionSuccessful();
+            task.rollback();
         }
     }
 }
@@ -18,18 +18,14 @@ package org.dmfs.provider.tasks;
 
 import android.content.ContentValues;
 import android.content.Context;
-import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
 import org.dmfs.jems.optional.adapters.First;
 import org.dmfs.jems.predicate.elementary.Equals;
-import org.dmfs.provider.tasks.model.CursorContentValuesTaskAdapter;
-import org.dmfs.provider.tasks.model.TaskAdapter;
-import org.dmfs.provider.tasks.processors.EntityProcessor;
-import org.dmfs.provider.tasks.processors.NoOpProcessor;
-import org.dmfs.provider.tasks.processors.tasks.Instantiating;
+import org.dmfs.provider.tasks.processors.tasks.BulkInstantiating;
 import org.dmfs.provider.tasks.utils.TableColumns;
 import org.dmfs.tasks.contract.TaskContract;
 import org.dmfs.tasks.contract.TaskContract.Properties;
@@ -71,7 +67,12 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
     /**
      * The database version.
      */
-    private static final int DATABASE_VERSION = 22;
+    private static final int DATABASE_VERSION = 28;
+
+    /**
+     * The maximum number of levels of the subtask hierarchy we take into account when populating the closure table.
+     */
+    private static final int MAX_TASK_TREE_DEPTH = 64;
 
 
     /**
@@ -108,6 +109,14 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
         String ALARMS = "Alarms";
 
         String SYNCSTATE = "SyncState";
+
+        String TASK_CLOSURE = "Task_Closure";
+
+        String TASK_PROGRESS = "Task_Progress";
+
+        String CHANGE_LOG = "Change_Log";
+
+        String CHANGE_LOG_CONSUMERS = "Change_Log_Consumers";
     }
 
 
@@ -125,6 +134,35 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
     }
 
 
+    /**
+     * Columns of the internal closure table of the subtask hierarchy. The table contains one row for every pair of a task and one of its (direct or
+     * indirect) subtasks, including a row for each task with itself.
+     */
+    public interface TaskClosure
+    {
+        String ANCESTOR = "ancestor";
+
+        String DESCENDANT = "descendant";
+
+        String TREE_DEPTH = TaskContract.TaskTree.TREE_DEPTH;
+    }
+
+
+    /**
+     * Columns of the internal table which is required to maintain the progress of the subtasks. It contains one row for each task which ever had a subtask.
+     * This is not part of the tasks table, so it doesn't show up in the projections of the clients.
+     */
+    public interface TaskProgress
+    {
+        String TASK_ID = "task_id";
+
+        /**
+         * The sum of the {@link Tasks#PERCENT_COMPLETE} values of all subtasks, required to update {@link Tasks#CHILD_PERCENT_COMPLETE} incrementally.
+         */
+        String CHILD_PERCENT_COMPLETE_SUM = "child_percent_complete_sum";
+    }
+
+
     /**
      * SQL command to create a view that combines tasks with some data from the list they belong to.
      */
@@ -308,6 +346,120 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
     private final static String SQL_DROP_TASKS_CLEANUP_TRIGGER =
             "DROP TRIGGER task_cleanup_trigger;";
 
+    /**
+     * SQL command to create the closure table of the subtask hierarchy.
+     */
+    private final static String SQL_CREATE_TASK_CLOSURE_TABLE =
+            "CREATE TABLE " + Tables.TASK_CLOSURE + " ( "
+                    + TaskClosure.ANCESTOR + " INTEGER NOT NULL, "
+                    + TaskClosure.DESCENDANT + " INTEGER NOT NULL, "
+                    + TaskClosure.TREE_DEPTH + " INTEGER NOT NULL, "
+                    + "PRIMARY KEY (" + TaskClosure.ANCESTOR + ", " + TaskClosure.DESCENDANT + "));";
+
+    /**
+     * SQL command to create a trigger that adds a new task to the closure table, i.e. a row for the task itself and one for each ancestor of its parent.
+     */
+    private final static String SQL_CREATE_TASK_CLOSURE_INSERT_TRIGGER =
+            "CREATE TRIGGER task_closure_insert_trigger AFTER INSERT ON " + Tables.TASKS
+                    + " BEGIN "
+                    + " INSERT INTO " + Tables.TASK_CLOSURE + " VALUES (new." + Tasks._ID + ", new." + Tasks._ID + ", 0);"
+                    + " INSERT OR IGNORE INTO " + Tables.TASK_CLOSURE
+                    + " SELECT " + TaskClosure.ANCESTOR + ", new." + Tasks._ID + ", " + TaskClosure.TREE_DEPTH + " + 1 FROM " + Tables.TASK_CLOSURE
+                    + " WHERE " + TaskClosure.DESCENDANT + " = new." + Tasks.PARENT_ID + ";"
+                    + " END;";
+
+    /**
+     * SQL command to create a trigger that moves a subtree in the closure table when the parent of a task changes. It removes the links between the old
+     * ancestors and the subtree and links the subtree to the new ancestors.
+     */
+    private final static String SQL_CREATE_TASK_CLOSURE_UPDATE_TRIGGER =
+            "CREATE TRIGGER task_closure_update_trigger AFTER UPDATE OF " + Tasks.PARENT_ID + " ON " + Tables.TASKS
+                    + " WHEN old." + Tasks.PARENT_ID + " IS NOT new." + Tasks.PARENT_ID
+                    + " BEGIN "
+                    + " DELETE FROM " + Tables.TASK_CLOSURE
+                    + " WHERE " + TaskClosure.DESCENDANT + " IN (SELECT " + TaskClosure.DESCENDANT + " FROM " + Tables.TASK_CLOSURE
+                    + " WHERE " + TaskClosure.ANCESTOR + " = new." + Tasks._ID + ")"
+                    + " AND " + TaskClosure.ANCESTOR + " IN (SELECT " + TaskClosure.ANCESTOR + " FROM " + Tables.TASK_CLOSURE
+                    + " WHERE " + TaskClosure.DESCENDANT + " = new." + Tasks._ID + " AND " + TaskClosure.ANCESTOR + " <> new." + Tasks._ID + ");"
+                    + " INSERT OR IGNORE INTO " + Tables.TASK_CLOSURE
+                    + " SELECT a." + TaskClosure.ANCESTOR + ", d." + TaskClosure.DESCENDANT + ", a." + TaskClosure.TREE_DEPTH + " + d." + TaskClosure.TREE_DEPTH
+                    + " + 1 FROM " + Tables.TASK_CLOSURE + " a, " + Tables.TASK_CLOSURE + " d"
+                    + " WHERE a." + TaskClosure.DESCENDANT + " = new." + Tasks.PARENT_ID + " AND d." + TaskClosure.ANCESTOR + " = new." + Tasks._ID + ";"
+                    + " END;";
+
+    /**
+     * SQL command to create a trigger that removes a deleted task from the closure table. Subtasks of a deleted task become roots of their own subtrees.
+     */
+    private final static String SQL_CREATE_TASK_CLOSURE_DELETE_TRIGGER =
+            "CREATE TRIGGER task_closure_delete_trigger AFTER DELETE ON " + Tables.TASKS
+                    + " BEGIN "
+                    + " DELETE FROM " + Tables.TASK_CLOSURE
+                    + " WHERE " + TaskClosure.DESCENDANT + " IN (SELECT " + TaskClosure.DESCENDANT + " FROM " + Tables.TASK_CLOSURE
+                    + " WHERE " + TaskClosure.ANCESTOR + " = old." + Tasks._ID + ")"
+                    + " AND " + TaskClosure.ANCESTOR + " IN (SELECT " + TaskClosure.ANCESTOR + " FROM " + Tables.TASK_CLOSURE
+                    + " WHERE " + TaskClosure.DESCENDANT + " = old." + Tasks._ID + ");"
+                    + " END;";
+
+    /**
+     * SQL command to create a trigger that adds a new subtask to the progress of its parent.
+     */
+    private final static String SQL_CREATE_TASK_PROGRESS_INSERT_TRIGGER =
+            "CREATE TRIGGER task_progress_insert_trigger AFTER INSERT ON " + Tables.TASKS
+                    + " BEGIN "
+                    + updateParentProgress("new", 1)
+                    + " END;";
+
+    /**
+     * SQL command to create a trigger that updates the progress of the parent when the state or the parent of a subtask changes. The subtask is removed
+     * from the progress of its old parent and added to the progress of its new parent.
+     */
+    private final static String SQL_CREATE_TASK_PROGRESS_UPDATE_TRIGGER =
+            "CREATE TRIGGER task_progress_update_trigger AFTER UPDATE OF "
+                    + Tasks.PARENT_ID + ", " + Tasks.IS_CLOSED + ", " + Tasks.PERCENT_COMPLETE + ", " + Tasks._DELETED + " ON " + Tables.TASKS
+                    + " WHEN old." + Tasks.PARENT_ID + " IS NOT new." + Tasks.PARENT_ID
+                    + " OR old." + Tasks.IS_CLOSED + " IS NOT new." + Tasks.IS_CLOSED
+                    + " OR old." + Tasks.PERCENT_COMPLETE + " IS NOT new." + Tasks.PERCENT_COMPLETE
+                    + " OR old." + Tasks._DELETED + " IS NOT new." + Tasks._DELETED
+                    + " BEGIN "
+                    + updateParentProgress("old", -1)
+                    + updateParentProgress("new", 1)
+                    + " END;";
+
+    /**
+     * SQL command to create a trigger that removes a deleted subtask from the progress of its parent.
+     */
+    private final static String SQL_CREATE_TASK_PROGRESS_DELETE_TRIGGER =
+            "CREATE TRIGGER task_progress_delete_trigger AFTER DELETE ON " + Tables.TASKS
+                    + " BEGIN "
+                    + updateParentProgress("old", -1)
+                    + " DELETE FROM " + Tables.TASK_PROGRESS + " WHERE " + TaskProgress.TASK_ID + " = old." + Tasks._ID + ";"
+                    + " END;";
+
+    /**
+     * SQL command to create the internal progress table.
+     */
+    private final static String SQL_CREATE_TASK_PROGRESS_TABLE =
+            "CREATE TABLE " + Tables.TASK_PROGRESS + " ( "
+                    + TaskProgress.TASK_ID + " INTEGER PRIMARY KEY, "
+                    + TaskProgress.CHILD_PERCENT_COMPLETE_SUM + " INTEGER NOT NULL DEFAULT 0);";
+
+    /**
+     * SQL command to initialize the percent complete sums of all tasks from their subtasks.
+     */
+    private final static String SQL_INIT_TASK_PROGRESS_SUMS =
+            "INSERT INTO " + Tables.TASK_PROGRESS + " SELECT " + Tasks.PARENT_ID + ", sum(ifnull(" + Tasks.PERCENT_COMPLETE + ", 0)) FROM " + Tables.TASKS
+                    + " WHERE " + Tasks.PARENT_ID + " IS NOT NULL AND " + Tasks._DELETED + " = 0 GROUP BY " + Tasks.PARENT_ID + ";";
+
+    /**
+     * SQL command to initialize the progress of all tasks with subtasks. The progress of all other tasks has the default values already.
+     */
+    private final static String SQL_INIT_TASK_PROGRESS =
+            "UPDATE " + Tables.TASKS + " SET "
+                    + Tasks.CHILD_COUNT + " = (SELECT count(*)" + childrenOf(Tables.TASKS) + "), "
+                    + Tasks.CLOSED_CHILD_COUNT + " = (SELECT ifnull(sum(c." + Tasks.IS_CLOSED + "), 0)" + childrenOf(Tables.TASKS) + "), "
+                    + Tasks.CHILD_PERCENT_COMPLETE + " = (SELECT sum(ifnull(c." + Tasks.PERCENT_COMPLETE + ", 0)) / count(*)" + childrenOf(Tables.TASKS) + ")"
+                    + " WHERE " + Tasks._ID + " IN (SELECT " + TaskProgress.TASK_ID + " FROM " + Tables.TASK_PROGRESS + ");";
+
     /**
      * SQL command that counts and sets the alarm on deletion
      */
@@ -376,10 +528,15 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
                     + " END;";
 
     /**
-     * SQL command to create a trigger to increment task version number on every update.
+     * SQL command to create a trigger to increment task version number on every update. Updates of the progress of a parent task, which are made by the
+     * progress triggers only, don't change the task itself and don't increment the version.
      */
     private final static String SQL_CREATE_TASK_VERSION_TRIGGER =
-            "CREATE TRIGGER task_version_trigger BEFORE UPDATE ON " + Tables.TASKS + " BEGIN "
+            "CREATE TRIGGER task_version_trigger BEFORE UPDATE ON " + Tables.TASKS
+                    + " WHEN old." + Tasks.CHILD_COUNT + " IS new." + Tasks.CHILD_COUNT
+                    + " AND old." + Tasks.CLOSED_CHILD_COUNT + " IS new." + Tasks.CLOSED_CHILD_COUNT
+                    + " AND old." + Tasks.CHILD_PERCENT_COMPLETE + " IS new." + Tasks.CHILD_PERCENT_COMPLETE
+                    + " BEGIN "
                     + " UPDATE " + Tables.TASKS + " SET " + Tasks.VERSION + " = OLD." + Tasks.VERSION + " + 1 where " + Tasks._ID + " = NEW." + Tasks._ID + ";"
                     + " END;";
 
@@ -447,6 +604,9 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
                     + TaskContract.Tasks.HAS_ALARMS + " INTEGER,"
                     + TaskContract.Tasks.HAS_PROPERTIES + " INTEGER,"
                     + TaskContract.Tasks.PINNED + " INTEGER,"
+                    + TaskContract.Tasks.CHILD_COUNT + " INTEGER DEFAULT 0,"
+                    + TaskContract.Tasks.CLOSED_CHILD_COUNT + " INTEGER DEFAULT 0,"
+                    + TaskContract.Tasks.CHILD_PERCENT_COMPLETE + " INTEGER,"
                     + TaskContract.Tasks.ORIGINAL_INSTANCE_SYNC_ID + " TEXT,"
                     + TaskContract.Tasks.ORIGINAL_INSTANCE_ID + " INTEGER,"
                     + TaskContract.Tasks.ORIGINAL_INSTANCE_TIME + " INTEGER,"
@@ -577,6 +737,103 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
     }
 
 
+    /**
+     * Builds a trigger statement that adds the given row of the tasks table to (or removes it from) the progress of its parent. Deleted tasks don't
+     * contribute to the progress of their parent.
+     *
+     * @param row
+     *         The row to add or remove, either {@code "new"} or {@code "old"}.
+     * @param sign
+     *         {@code 1} to add the row, {@code -1} to remove it.
+     *
+     * @return An SQL statement.
+     */
+    private static String updateParentProgress(String row, int sign)
+    {
+        String op = sign > 0 ? " + " : " - ";
+        String closed = "ifnull(" + row + "." + Tasks.IS_CLOSED + ", 0)";
+        String percent = "ifnull(" + row + "." + Tasks.PERCENT_COMPLETE + ", 0)";
+        String parentCondition = row + "." + Tasks.PARENT_ID + " IS NOT NULL AND " + row + "." + Tasks._DELETED + " = 0";
+        // update the sum first, the update of the tasks table reads the new sum, while all expressions on the tasks table refer to the values before the update
+        return " INSERT OR IGNORE INTO " + Tables.TASK_PROGRESS + " SELECT " + row + "." + Tasks.PARENT_ID + ", 0 WHERE " + parentCondition + ";"
+                + " UPDATE " + Tables.TASK_PROGRESS + " SET "
+                + TaskProgress.CHILD_PERCENT_COMPLETE_SUM + " = " + TaskProgress.CHILD_PERCENT_COMPLETE_SUM + op + percent
+                + " WHERE " + TaskProgress.TASK_ID + " = " + row + "." + Tasks.PARENT_ID + " AND " + parentCondition + ";"
+                + " UPDATE " + Tables.TASKS + " SET "
+                + Tasks.CHILD_COUNT + " = " + Tasks.CHILD_COUNT + op + "1, "
+                + Tasks.CLOSED_CHILD_COUNT + " = " + Tasks.CLOSED_CHILD_COUNT + op + closed + ", "
+                + Tasks.CHILD_PERCENT_COMPLETE + " = (SELECT " + TaskProgress.CHILD_PERCENT_COMPLETE_SUM + " FROM " + Tables.TASK_PROGRESS
+                + " WHERE " + TaskProgress.TASK_ID + " = " + row + "." + Tasks.PARENT_ID + ") / nullif(" + Tasks.CHILD_COUNT + op + "1, 0)"
+                + " WHERE " + Tasks._ID + " = " + row + "." + Tasks.PARENT_ID + " AND " + parentCondition + ";";
+    }
+
+
+    /**
+     * Returns the FROM and WHERE clause of a sub-query for the non-deleted subtasks (aliased {@code c}) of the tasks in the given table.
+     */
+    private static String childrenOf(String table)
+    {
+        return " FROM " + Tables.TASKS + " c WHERE c." + Tasks.PARENT_ID + " = " + table + "." + Tasks._ID + " AND c." + Tasks._DELETED + " = 0";
+    }
+
+
+    /**
+     * Creates the closure table of the subtask hierarchy, its index and the triggers that keep it in sync with {@link Tasks#PARENT_ID}.
+     */
+    private static void createTaskClosure(SQLiteDatabase db)
+    {
+        db.execSQL(SQL_CREATE_TASK_CLOSURE_TABLE);
+        db.execSQL(createIndexString(Tables.TASK_CLOSURE, false, TaskClosure.DESCENDANT));
+        db.execSQL(SQL_CREATE_TASK_CLOSURE_INSERT_TRIGGER);
+        db.execSQL(SQL_CREATE_TASK_CLOSURE_UPDATE_TRIGGER);
+        db.execSQL(SQL_CREATE_TASK_CLOSURE_DELETE_TRIGGER);
+    }
+
+
+    /**
+     * Creates the progress table and the triggers that maintain the {@link Tasks#CHILD_COUNT}, {@link Tasks#CLOSED_CHILD_COUNT} and {@link
+     * Tasks#CHILD_PERCENT_COMPLETE} of the parent tasks.
+     */
+    private static void createTaskProgress(SQLiteDatabase db)
+    {
+        db.execSQL(SQL_CREATE_TASK_PROGRESS_TABLE);
+        db.execSQL(SQL_CREATE_TASK_PROGRESS_INSERT_TRIGGER);
+        db.execSQL(SQL_CREATE_TASK_PROGRESS_UPDATE_TRIGGER);
+        db.execSQL(SQL_CREATE_TASK_PROGRESS_DELETE_TRIGGER);
+    }
+
+
+    /**
+     * Populates the closure table with the existing tasks.
+     * <p>
+     * Older SQLite versions don't support recursive queries, so this adds one level of the hierarchy at a time until no more rows are added. The number of
+     * levels is limited to prevent an endless loop in case the existing data contains cycles.
+     */
+    private static void populateTaskClosure(SQLiteDatabase db)
+    {
+        db.execSQL("INSERT INTO " + Tables.TASK_CLOSURE + " SELECT " + Tasks._ID + ", " + Tasks._ID + ", 0 FROM " + Tables.TASKS + ";");
+        SQLiteStatement statement = db.compileStatement("INSERT OR IGNORE INTO " + Tables.TASK_CLOSURE
+                + " SELECT c." + TaskClosure.ANCESTOR + ", t." + Tasks._ID + ", c." + TaskClosure.TREE_DEPTH + " + 1"
+                + " FROM " + Tables.TASKS + " t JOIN " + Tables.TASK_CLOSURE + " c ON c." + TaskClosure.DESCENDANT + " = t." + Tasks.PARENT_ID
+                + " WHERE c." + TaskClosure.TREE_DEPTH + " = ?");
+        try
+        {
+            for (int depth = 0; depth < MAX_TASK_TREE_DEPTH; ++depth)
+            {
+                statement.bindLong(1, depth);
+                if (statement.executeUpdateDelete() == 0)
+                {
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+
     private final OnDatabaseOperationListener mListener;
 
 
@@ -606,16 +863,6 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
         // create task table
         db.execSQL(SQL_CREATE_TASKS_TABLE);
 
-        // trigger that marks a list as dirty if a task in that list gets marked as dirty or deleted
-        db.execSQL("CREATE TRIGGER task_list_make_dirty_on_update AFTER UPDATE ON " + Tables.TASKS + " BEGIN UPDATE " + Tables.LISTS + " SET "
-                + TaskContract.TaskLists._DIRTY + "=" + TaskContract.TaskLists._DIRTY + " + " + "new." + TaskContract.Tasks._DIRTY + " + " + "new."
-                + TaskContract.Tasks._DELETED + " WHERE " + TaskContract.TaskLists._ID + "= new." + TaskContract.Tasks.LIST_ID + "; END");
-
-        // trigger that marks a list as dirty if a task in that list gets marked as dirty or deleted
-        db.execSQL("CREATE TRIGGER task_list_make_dirty_on_insert AFTER INSERT ON " + Tables.TASKS + " BEGIN UPDATE " + Tables.LISTS + " SET "
-                + TaskContract.TaskLists._DIRTY + "=" + TaskContract.TaskLists._DIRTY + " + " + "new." + TaskContract.Tasks._DIRTY + " + " + "new."
-                + TaskContract.Tasks._DELETED + " WHERE " + TaskContract.TaskLists._ID + "= new." + TaskContract.Tasks.LIST_ID + "; END");
-
         // create task version update trigger
         db.execSQL(SQL_CREATE_TASK_VERSION_TRIGGER);
 
@@ -678,9 +925,18 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
         // add cleanup trigger for orphaned properties
         db.execSQL(SQL_CREATE_TASK_PROPERTY_CLEANUP_TRIGGER);
 
+        // create the closure table of the subtask hierarchy and the triggers that maintain it
+        createTaskClosure(db);
+
+        // triggers that roll up the progress of subtasks to their parents
+        createTaskProgress(db);
+
         // initialize FTS
         FTSDatabaseHelper.onCreate(db);
 
+        // create the change log
+        ChangeLogHelper.onCreate(db);
+
         if (mListener != null)
         {
             mListener.onDatabaseCreated(db);
@@ -851,22 +1107,22 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
             try
             {
                 // make sure we upgrade the instances of every recurring task
-                EntityProcessor<TaskAdapter> processor = new Instantiating(new NoOpProcessor<>());
-                try (Cursor c = db.query(Tables.TASKS,
-                        new String[] {
-                                TaskContract.Tasks._ID, Tasks.ORIGINAL_INSTANCE_ID, Tasks.DTSTART, Tasks.DUE, Tasks.DURATION, Tasks.IS_CLOSED, Tasks.TZ,
-                                Tasks.IS_ALLDAY, Tasks.RRULE, Tasks.RDATE, Tasks.EXDATE, Tasks.ORIGINAL_INSTANCE_TIME, Tasks.ORIGINAL_INSTANCE_ALLDAY },
-                        String.format(Locale.ENGLISH, "%s is null", TaskContract.Tasks.ORIGINAL_INSTANCE_ID),
-                        null, null, null, null))
-                {
-                    while (c.moveToNext())
-                    {
-                        ContentValues values = new ContentValues();
-                        Instantiating.addUpdateRequest(values);
-                        TaskAdapter adapter = new CursorContentValuesTaskAdapter(c, values);
-                        processor.update(db, adapter, false);
-                    }
-                }
+                new BulkInstantiating().update(db, String.format(Locale.ENGLISH, "%s is null", TaskContract.Tasks.ORIGINAL_INSTANCE_ID), null);
+                db.setTransactionSuccessful();
+            }
+            finally
+            {
+                db.endTransaction();
+            }
+        }
+
+        if (oldVersion < 23)
+        {
+            db.beginTransaction();
+            try
+            {
+                createTaskClosure(db);
+                populateTaskClosure(db);
                 db.setTransactionSuccessful();
             }
             finally
@@ -875,9 +1131,41 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
             }
         }
 
+        if (oldVersion < 24)
+        {
+            db.execSQL("alter table " + Tables.TASKS + " add column " + Tasks.CHILD_COUNT + " integer default 0;");
+            db.execSQL("alter table " + Tables.TASKS + " add column " + Tasks.CLOSED_CHILD_COUNT + " integer default 0;");
+            db.execSQL("alter table " + Tables.TASKS + " add column " + Tasks.CHILD_PERCENT_COMPLETE + " integer;");
+            createTaskProgress(db);
+            // the progress is no synced state, make sure initializing it neither marks any lists dirty nor increments any task versions
+            db.execSQL("DROP TRIGGER IF EXISTS task_list_make_dirty_on_update;");
+            db.execSQL("DROP TRIGGER IF EXISTS task_list_make_dirty_on_insert;");
+            db.execSQL("DROP TRIGGER IF EXISTS task_version_trigger;");
+            db.execSQL(SQL_CREATE_TASK_VERSION_TRIGGER);
+            db.execSQL(SQL_INIT_TASK_PROGRESS_SUMS);
+            db.execSQL(SQL_INIT_TASK_PROGRESS);
+        }
+
+        if (oldVersion < 27)
+        {
+            // lists are marked dirty by the provider when a transaction ends, see DirtyLists
+            db.execSQL("DROP TRIGGER IF EXISTS task_list_make_dirty_on_update;");
+            db.execSQL("DROP TRIGGER IF EXISTS task_list_make_dirty_on_insert;");
+        }
+
+        if (oldVersion < 28)
+        {
+            // don't increment the version of a task when the progress of its subtasks changes
+            db.execSQL("DROP TRIGGER IF EXISTS task_version_trigger;");
+            db.execSQL(SQL_CREATE_TASK_VERSION_TRIGGER);
+        }
+
         // upgrade FTS
         FTSDatabaseHelper.onUpgrade(db, oldVersion, newVersion);
 
+        // upgrade change log
+        ChangeLogHelper.onUpgrade(db, oldVersion, newVersion);
+
         if (mListener != null)
         {
             mListener.onDatabaseUpdate(db, oldVersion, newVersion);
@@ -19,6 +19,7 @@ package org.dmfs.provider.tasks;
 import android.accounts.Account;
 import android.accounts.AccountManager;
 import android.accounts.OnAccountsUpdateListener;
+import android.annotation.TargetApi;
 import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
@@ -33,16 +34,20 @@ import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Bundle;
+import android.os.CancellationSignal;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.text.TextUtils;
 import android.util.Log;
 
-import org.dmfs.iterables.EmptyIterable;
 import org.dmfs.provider.tasks.TaskDatabaseHelper.OnDatabaseOperationListener;
 import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.provider.tasks.TaskDatabaseHelper.TaskClosure;
 import org.dmfs.provider.tasks.handler.PropertyHandler;
 import org.dmfs.provider.tasks.handler.PropertyHandlerFactory;
+import org.dmfs.provider.tasks.metrics.OperationMetrics;
+import org.dmfs.provider.tasks.metrics.ProviderMetrics;
 import org.dmfs.provider.tasks.model.ContentValuesListAdapter;
 import org.dmfs.provider.tasks.model.ContentValuesTaskAdapter;
 import org.dmfs.provider.tasks.model.CursorContentValuesInstanceAdapter;
@@ -51,12 +56,16 @@ import org.dmfs.provider.tasks.model.CursorContentValuesTaskAdapter;
 import org.dmfs.provider.tasks.model.InstanceAdapter;
 import org.dmfs.provider.tasks.model.ListAdapter;
 import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.model.adapters.LongFieldAdapter;
 import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.provider.tasks.processors.Timing;
 import org.dmfs.provider.tasks.processors.instances.Detaching;
 import org.dmfs.provider.tasks.processors.instances.TaskValueDelegate;
 import org.dmfs.provider.tasks.processors.lists.ListCommitProcessor;
 import org.dmfs.provider.tasks.processors.tasks.AutoCompleting;
+import org.dmfs.provider.tasks.processors.tasks.ChangeLogging;
 import org.dmfs.provider.tasks.processors.tasks.Instantiating;
+import org.dmfs.provider.tasks.processors.tasks.ListDirtying;
 import org.dmfs.provider.tasks.processors.tasks.Moving;
 import org.dmfs.provider.tasks.processors.tasks.Originating;
 import org.dmfs.provider.tasks.processors.tasks.Relating;
@@ -64,26 +73,38 @@ import org.dmfs.provider.tasks.processors.tasks.Reparenting;
 import org.dmfs.provider.tasks.processors.tasks.Searchable;
 import org.dmfs.provider.tasks.processors.tasks.TaskCommitProcessor;
 import org.dmfs.provider.tasks.processors.tasks.Validating;
+import org.dmfs.provider.tasks.utils.QueryResultCache;
+import org.dmfs.provider.tasks.utils.RecurrencePlans;
 import org.dmfs.tasks.contract.TaskContract;
 import org.dmfs.tasks.contract.TaskContract.Alarms;
 import org.dmfs.tasks.contract.TaskContract.Categories;
 import org.dmfs.tasks.contract.TaskContract.CategoriesColumns;
+import org.dmfs.tasks.contract.TaskContract.ChangeLog;
+import org.dmfs.tasks.contract.TaskContract.ChangeLogConsumers;
+import org.dmfs.tasks.contract.TaskContract.InstanceAggregates;
 import org.dmfs.tasks.contract.TaskContract.Instances;
 import org.dmfs.tasks.contract.TaskContract.Properties;
 import org.dmfs.tasks.contract.TaskContract.PropertyColumns;
+import org.dmfs.tasks.contract.TaskContract.SearchIndex;
 import org.dmfs.tasks.contract.TaskContract.SyncState;
 import org.dmfs.tasks.contract.TaskContract.TaskColumns;
 import org.dmfs.tasks.contract.TaskContract.TaskListColumns;
 import org.dmfs.tasks.contract.TaskContract.TaskListSyncColumns;
 import org.dmfs.tasks.contract.TaskContract.TaskLists;
+import org.dmfs.tasks.contract.TaskContract.TaskTree;
 import org.dmfs.tasks.contract.TaskContract.Tasks;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
 
 
 /**
@@ -109,6 +130,10 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
     private static final int TASK_ID = 102;
     private static final int INSTANCES = 103;
     private static final int INSTANCE_ID = 104;
+    private static final int INSTANCE_AGGREGATES = 105;
+    private static final int TASK_SUBTREE = 106;
+    private static final int TASK_ANCESTORS = 107;
+    private static final int INSTANCE_RANGE = 108;
     private static final int CATEGORIES = 1001;
     private static final int CATEGORY_ID = 1002;
     private static final int PROPERTIES = 1003;
@@ -118,9 +143,30 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
     private static final int SEARCH = 1007;
     private static final int SYNCSTATE = 1008;
     private static final int SYNCSTATE_ID = 1009;
+    private static final int SEARCH_INDEX = 1010;
+    private static final int CHANGE_LOG = 1011;
+    private static final int CHANGE_LOG_CONSUMERS = 1012;
 
     private static final int OPERATIONS = 100000;
 
+    /**
+     * The {@link #call(String, String, Bundle)} method that runs the {@link DatabaseMaintenance} and returns its results. The call returns {@code null} if
+     * the maintenance is already running. This requires the write permission.
+     */
+    static final String CALL_MAINTAIN_DATABASE = "maintain_database";
+
+    /**
+     * The {@link #call(String, String, Bundle)} method that cancels a running {@link DatabaseMaintenance}. This requires the write permission.
+     */
+    static final String CALL_CANCEL_MAINTENANCE = "cancel_maintenance";
+
+    private final static LongFieldAdapter<InstanceAdapter> ORIGINAL_INSTANCE_ID = new LongFieldAdapter<>(Instances.ORIGINAL_INSTANCE_ID);
+
+    /**
+     * A {@link Pattern} of valid sort columns for keyset paging.
+     */
+    private final static Pattern SORT_COLUMN_PATTERN = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
     private final static Set<String> TASK_LIST_SYNC_COLUMNS = new HashSet<String>(Arrays.asList(TaskLists.SYNC_ADAPTER_COLUMNS));
     private static final String TAG = "TaskProvider";
 
@@ -139,6 +185,11 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
      */
     private EntityProcessor<ListAdapter> mListProcessorChain;
 
+    /**
+     * The {@link Detaching} stage of the instance processor chain, which also closes the instances of {@link Instances#CALL_CLOSE_INSTANCES}.
+     */
+    private Detaching mDetaching;
+
     /**
      * Our authority.
      */
@@ -173,11 +224,66 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
      */
     private AtomicReference<Set<Account>> mAccountCache = new AtomicReference<>(Collections.emptySet());
 
+    /**
+     * The maximum number of changed task ids and of changed instance ids to send with a provider changed broadcast. If more tasks or instances have been
+     * changed, receivers will have to perform a full update. Note, this must not exceed the SQLite variable limit.
+     */
+    private final static int MAX_CHANGED_INSTANCE_IDS = 500;
+
+    /**
+     * The time in milliseconds without any changes after which orphaned n-grams are removed from the search index.
+     */
+    private final static long SEARCH_GARBAGE_COLLECTION_DELAY = 60000;
+
+    /**
+     * Removes orphaned n-grams from the search index, see {@link ContentOperation#COLLECT_SEARCH_GARBAGE}. This is posted with a delay after every change,
+     * so it only runs when the provider is idle.
+     */
+    private final Runnable mSearchGarbageCollection = () -> ContentOperation.COLLECT_SEARCH_GARBAGE.fire(getContext(), null);
+
+    /**
+     * The {@link CancellationSignal} of the running {@link DatabaseMaintenance} or {@code null} if no maintenance is running.
+     */
+    private final AtomicReference<CancellationSignal> mMaintenanceSignal = new AtomicReference<>();
+
+    /**
+     * The task lists which need to be marked dirty before the current transaction ends.
+     */
+    private final DirtyLists mDirtyLists;
+
+    /**
+     * The tasks and instances which have been changed in the current transaction.
+     */
+    private final ChangedTasks mChangedTasks;
+
+    /**
+     * The maximum number of bytes of all cached query results.
+     */
+    private final static int QUERY_CACHE_SIZE = 1024 * 1024;
+
+    /**
+     * The maximum number of bytes of a single cached query result.
+     */
+    private final static int QUERY_CACHE_ENTRY_SIZE = 256 * 1024;
+
+    /**
+     * The results of queries with the {@link TaskContract#CACHE} parameter.
+     */
+    private final QueryResultCache mQueryResultCache = new QueryResultCache(QUERY_CACHE_SIZE, QUERY_CACHE_ENTRY_SIZE);
+
 
     public TaskProvider()
     {
-        // for now we don't have anything specific to execute before the transaction ends.
-        super(EmptyIterable.instance());
+        this(new DirtyLists(), new ChangedTasks(MAX_CHANGED_INSTANCE_IDS));
+    }
+
+
+    private TaskProvider(DirtyLists dirtyLists, ChangedTasks changedTasks)
+    {
+        // mark the lists dirty once per transaction instead of once per task and collect the changes for the provider changed broadcast
+        super(Arrays.<TransactionEndTask>asList(dirtyLists, changedTasks));
+        mDirtyLists = dirtyLists;
+        mChangedTasks = changedTasks;
     }
 
 
@@ -186,13 +292,30 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
     {
         mAuthority = AuthorityUtil.taskAuthority(getContext());
 
-        mTaskProcessorChain = new Validating(
-                new AutoCompleting(new Relating(new Reparenting(new Instantiating(new Searchable(new Moving(new Originating(new TaskCommitProcessor()))))))));
-
-        mListProcessorChain = new org.dmfs.provider.tasks.processors.lists.Validating(new ListCommitProcessor());
-
-        mInstanceProcessorChain = new org.dmfs.provider.tasks.processors.instances.Validating(
-                new Detaching(new TaskValueDelegate(mTaskProcessorChain), mTaskProcessorChain));
+        // every stage is wrapped in a Timing decorator, which just delegates unless stage metrics have been enabled at runtime
+        ProviderMetrics metrics = metrics();
+        mTaskProcessorChain = new Timing<>(metrics, new Validating(
+                new Timing<>(metrics, new AutoCompleting(
+                        new Timing<>(metrics, new Relating(
+                                new Timing<>(metrics, new Reparenting(
+                                        new Timing<>(metrics, new Instantiating(
+                                                new Timing<>(metrics, new Searchable(
+                                                        new Timing<>(metrics, new Moving(mDirtyLists,
+                                                                new Timing<>(metrics, new Originating(
+                                                                        new Timing<>(metrics, new ChangeLogging(
+                                                                                new Timing<>(metrics, new ListDirtying(mDirtyLists,
+                                                                                        new Timing<>(metrics, new TaskCommitProcessor())))))))))))))))))))));
+
+        mListProcessorChain = new Timing<>(metrics, new org.dmfs.provider.tasks.processors.lists.Validating(
+                new Timing<>(metrics, new org.dmfs.provider.tasks.processors.lists.ChangeLogging(
+                        new Timing<>(metrics, new ListCommitProcessor())))));
+
+        mDetaching = new Detaching(new Timing<>(metrics, new TaskValueDelegate(mTaskProcessorChain)), mTaskProcessorChain, mDirtyLists);
+        mInstanceProcessorChain = new Timing<>(metrics, new org.dmfs.provider.tasks.processors.instances.Validating(
+                new Timing<>(metrics, mDetaching)));
+
+        metrics.addCache(RecurrencePlans.shared().metrics());
+        metrics.addCache(mQueryResultCache.metrics());
 
         mUriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
         mUriMatcher.addURI(mAuthority, TaskContract.TaskLists.CONTENT_URI_PATH, LISTS);
@@ -204,6 +327,11 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
 
         mUriMatcher.addURI(mAuthority, TaskContract.Instances.CONTENT_URI_PATH, INSTANCES);
         mUriMatcher.addURI(mAuthority, TaskContract.Instances.CONTENT_URI_PATH + "/#", INSTANCE_ID);
+        mUriMatcher.addURI(mAuthority, TaskContract.Instances.CONTENT_URI_PATH + "/" + TaskContract.Instances.RANGE_PATH, INSTANCE_RANGE);
+        mUriMatcher.addURI(mAuthority, TaskContract.InstanceAggregates.CONTENT_URI_PATH, INSTANCE_AGGREGATES);
+
+        mUriMatcher.addURI(mAuthority, TaskContract.TaskTree.CONTENT_URI_PATH + "/#", TASK_SUBTREE);
+        mUriMatcher.addURI(mAuthority, TaskContract.TaskTree.CONTENT_URI_PATH + "/#/" + TaskContract.TaskTree.ANCESTORS_PATH, TASK_ANCESTORS);
 
         mUriMatcher.addURI(mAuthority, TaskContract.Properties.CONTENT_URI_PATH, PROPERTIES);
         mUriMatcher.addURI(mAuthority, TaskContract.Properties.CONTENT_URI_PATH + "/#", PROPERTY_ID);
@@ -215,6 +343,10 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
         mUriMatcher.addURI(mAuthority, TaskContract.Alarms.CONTENT_URI_PATH + "/#", ALARM_ID);
 
         mUriMatcher.addURI(mAuthority, TaskContract.Tasks.SEARCH_URI_PATH, SEARCH);
+        mUriMatcher.addURI(mAuthority, TaskContract.SearchIndex.CONTENT_URI_PATH, SEARCH_INDEX);
+
+        mUriMatcher.addURI(mAuthority, TaskContract.ChangeLog.CONTENT_URI_PATH, CHANGE_LOG);
+        mUriMatcher.addURI(mAuthority, TaskContract.ChangeLogConsumers.CONTENT_URI_PATH, CHANGE_LOG_CONSUMERS);
 
         mUriMatcher.addURI(mAuthority, TaskContract.SyncState.CONTENT_URI_PATH, SYNCSTATE);
         mUriMatcher.addURI(mAuthority, TaskContract.SyncState.CONTENT_URI_PATH + "/#", SYNCSTATE_ID);
@@ -233,6 +365,8 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
 
         updateNotifications();
 
+        mAsyncHandler.post(() -> DatabaseMaintenanceService.schedule(getContext()));
+
         return result;
     }
 
@@ -500,6 +634,251 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
     }
 
 
+    /**
+     * Returns the keyset paging selection for the given {@link Uri} or {@code null} if the {@link Uri} doesn't contain a {@link TaskContract#AFTER_ID}
+     * parameter.
+     *
+     * @param idColumn
+     *         The name of the id column which is used as a tie breaker.
+     * @param uri
+     *         The {@link Uri} that contains the paging parameters.
+     * @param sortOrder
+     *         The requested sort order, may be {@code null} to sort by id.
+     *
+     * @return The selection of the page or {@code null}.
+     */
+    protected String pageSelection(String idColumn, Uri uri, String sortOrder)
+    {
+        String afterId = uri.getQueryParameter(TaskContract.AFTER_ID);
+        if (afterId == null)
+        {
+            return null;
+        }
+
+        long id = Long.parseLong(afterId);
+        String[] sortTerms = pageSortTerms(idColumn, sortOrder);
+        String column = sortTerms[0];
+        boolean descending = sortTerms.length == 2 && "DESC".equalsIgnoreCase(sortTerms[1]);
+        String afterValue = uri.getQueryParameter(TaskContract.AFTER_VALUE);
+
+        // note, SQLite sorts null values before any other value
+        if (idColumn.equals(column))
+        {
+            // sorting by id, the id is the key
+            return idColumn + (descending ? " < " : " > ") + id;
+        }
+        else if (afterValue == null)
+        {
+            return descending
+                    // only nulls with a smaller id remain
+                    ? column + " is null AND " + idColumn + " < " + id
+                    // all non-null values and nulls with a larger id remain
+                    : column + " is not null OR " + idColumn + " > " + id;
+        }
+        else
+        {
+            String operator = descending ? " < " : " > ";
+            String value = sqlValue(afterValue);
+            return column + operator + value + " OR " + column + " = " + value + " AND " + idColumn + operator + id
+                    // nulls come last when sorting in descending order
+                    + (descending ? " OR " + column + " is null" : "");
+        }
+    }
+
+
+    /**
+     * Returns the sort order of a query with the given {@link Uri}. If the {@link Uri} contains a {@link TaskContract#AFTER_ID} parameter, the id column
+     * is added as a tie breaker.
+     *
+     * @param idColumn
+     *         The name of the id column which is used as a tie breaker.
+     * @param uri
+     *         The {@link Uri} that contains the paging parameters.
+     * @param sortOrder
+     *         The requested sort order, may be {@code null}.
+     *
+     * @return The sort order to use for the query.
+     */
+    protected String pageSortOrder(String idColumn, Uri uri, String sortOrder)
+    {
+        if (uri.getQueryParameter(TaskContract.AFTER_ID) == null)
+        {
+            return sortOrder;
+        }
+
+        String[] sortTerms = pageSortTerms(idColumn, sortOrder);
+        String direction = sortTerms.length == 2 && "DESC".equalsIgnoreCase(sortTerms[1]) ? " DESC" : " ASC";
+        return idColumn.equals(sortTerms[0]) ? sortTerms[0] + direction : sortTerms[0] + direction + ", " + idColumn + direction;
+    }
+
+
+    /**
+     * Splits the given sort order of a keyset paging query into the sort column and the optional direction. Without any sort order the query is sorted by
+     * id.
+     */
+    private String[] pageSortTerms(String idColumn, String sortOrder)
+    {
+        if (TextUtils.isEmpty(sortOrder))
+        {
+            return new String[] { idColumn };
+        }
+
+        String[] sortTerms = sortOrder.trim().split("\\s+");
+        if (sortTerms.length > 2 || !SORT_COLUMN_PATTERN.matcher(sortTerms[0]).matches()
+                || sortTerms.length == 2 && !"ASC".equalsIgnoreCase(sortTerms[1]) && !"DESC".equalsIgnoreCase(sortTerms[1]))
+        {
+            throw new IllegalArgumentException(String.format("Keyset paging requires a single sort column, but sort order was \"%s\"", sortOrder));
+        }
+        return sortTerms;
+    }
+
+
+    /**
+     * Returns the given value as an SQL literal. Values in the canonical form of an integer are returned as numbers, so they compare properly to columns
+     * without numeric affinity. Anything else, including numbers like "007" or "+5", is returned as a string, because it may have been read from a text
+     * column and a number wouldn't compare equal to it.
+     */
+    private String sqlValue(String value)
+    {
+        try
+        {
+            String number = String.valueOf(Long.parseLong(value));
+            if (number.equals(value))
+            {
+                return number;
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            // not a number
+        }
+        return DatabaseUtils.sqlEscapeString(value);
+    }
+
+
+    /**
+     * Returns the limit clause for the given {@link Uri} or {@code null} if the {@link Uri} doesn't contain a {@link TaskContract#LIMIT} parameter.
+     */
+    protected String getLimit(Uri uri)
+    {
+        String limit = uri.getQueryParameter(TaskContract.LIMIT);
+        if (limit == null)
+        {
+            return null;
+        }
+        String offset = uri.getQueryParameter(TaskContract.OFFSET);
+        return offset == null ? String.valueOf(Integer.parseInt(limit)) : Integer.parseInt(offset) + "," + Integer.parseInt(limit);
+    }
+
+
+    /**
+     * Returns the table expression of a {@link TaskTree} query. It joins the tasks of the subtree (or the ancestors) of the given task with the closure
+     * table, which provides the {@link TaskTree#TREE_DEPTH} and the {@link TaskTree#DESCENDANT_COUNT} of each task.
+     *
+     * @param taskId
+     *         The id of the task to return the tree of.
+     * @param ancestors
+     *         {@code true} to return the ancestors of the task, {@code false} to return its subtree.
+     * @param includeDeleted
+     *         Whether deleted subtasks are counted, this must match the rows that are returned.
+     *
+     * @return A table expression.
+     */
+    private String taskTreeTable(long taskId, boolean ancestors, boolean includeDeleted)
+    {
+        String joinColumn = ancestors ? TaskClosure.ANCESTOR : TaskClosure.DESCENDANT;
+        String keyColumn = ancestors ? TaskClosure.DESCENDANT : TaskClosure.ANCESTOR;
+        // the closure table doesn't know about deleted tasks, so the descendants are joined with the tasks
+        return "(select " + Tables.TASKS_VIEW + ".*, c." + TaskClosure.TREE_DEPTH + ", "
+                + "(select count(*) from " + Tables.TASK_CLOSURE + " d join " + Tables.TASKS + " t on (t." + Tasks._ID + "=d." + TaskClosure.DESCENDANT + ")"
+                + " where d." + TaskClosure.ANCESTOR + "=" + Tables.TASKS_VIEW + "." + Tasks._ID + " and d." + TaskClosure.TREE_DEPTH + ">0"
+                + (includeDeleted ? "" : " and t." + Tasks._DELETED + "=0") + ") as "
+                + TaskTree.DESCENDANT_COUNT
+                + " from " + Tables.TASKS_VIEW + " join " + Tables.TASK_CLOSURE + " c on (c." + joinColumn + "=" + Tables.TASKS_VIEW + "." + Tasks._ID + ")"
+                + " where c." + keyColumn + "=" + taskId + ")";
+    }
+
+
+    /**
+     * Returns the SQL expression of the group key of an {@link InstanceAggregates} query or {@code null} if the result is not grouped.
+     *
+     * @param uri
+     *         The {@link Uri} that contains the {@link InstanceAggregates#BOUNDARIES}, if any.
+     * @param groupBy
+     *         The value of the {@link InstanceAggregates#GROUP_BY} parameter.
+     *
+     * @return The group key expression or {@code null}.
+     */
+    private String aggregateGroupKey(Uri uri, String groupBy)
+    {
+        if (groupBy == null)
+        {
+            return null;
+        }
+
+        String column;
+        switch (groupBy)
+        {
+            case InstanceAggregates.GROUP_BY_LIST:
+                column = Instances.LIST_ID;
+                break;
+            case InstanceAggregates.GROUP_BY_PRIORITY:
+                // a missing priority means "undefined", just like priority 0
+                column = "ifnull(" + Instances.PRIORITY + ", 0)";
+                break;
+            case InstanceAggregates.GROUP_BY_DUE:
+                column = Instances.INSTANCE_DUE_SORTING;
+                break;
+            case InstanceAggregates.GROUP_BY_START:
+                column = Instances.INSTANCE_START_SORTING;
+                break;
+            case InstanceAggregates.GROUP_BY_CATEGORY:
+                column = TaskDatabaseHelper.CategoriesMapping.CATEGORY_ID;
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("Unknown grouping \"%s\"", groupBy));
+        }
+
+        String boundaries = uri.getQueryParameter(InstanceAggregates.BOUNDARIES);
+        if (boundaries == null)
+        {
+            return column;
+        }
+
+        // the index of the range is the number of boundaries less or equal to the value, null values result in null
+        StringBuilder rangeIndex = new StringBuilder(boundaries.length() * 2);
+        for (String boundary : boundaries.split(","))
+        {
+            if (rangeIndex.length() > 0)
+            {
+                rangeIndex.append(" + ");
+            }
+            rangeIndex.append("(").append(column).append(" >= ").append(Long.parseLong(boundary.trim())).append(")");
+        }
+        return rangeIndex.toString();
+    }
+
+
+    /**
+     * Returns the projection map of an {@link InstanceAggregates} query.
+     *
+     * @param groupKey
+     *         The SQL expression of the group key or {@code null} if the result is not grouped.
+     * @param now
+     *         The time stamp to determine overdue instances.
+     */
+    private Map<String, String> aggregateProjectionMap(String groupKey, long now)
+    {
+        Map<String, String> projectionMap = new HashMap<>(8);
+        projectionMap.put(InstanceAggregates.GROUP_KEY, (groupKey == null ? "null" : groupKey) + " as " + InstanceAggregates.GROUP_KEY);
+        projectionMap.put(InstanceAggregates.COUNT, "count(*) as " + InstanceAggregates.COUNT);
+        projectionMap.put(InstanceAggregates.MIN_DUE, "min(" + Instances.INSTANCE_DUE + ") as " + InstanceAggregates.MIN_DUE);
+        projectionMap.put(InstanceAggregates.OVERDUE_COUNT, "count(case when " + Instances.IS_CLOSED + " = 0 and " + Instances.INSTANCE_DUE + " < " + now
+                + " then 1 end) as " + InstanceAggregates.OVERDUE_COUNT);
+        return projectionMap;
+    }
+
+
     /**
      * Append any arbitrary selection string to the selection in <code>sb</code>
      *
@@ -529,14 +908,199 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
 
     @Override
     public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder)
+    {
+        return query(uri, projection, selection, selectionArgs, sortOrder, null);
+    }
+
+
+    /**
+     * Handles queries with {@link Bundle} query arguments. In addition to the SQL arguments this supports {@link ContentResolver#QUERY_ARG_LIMIT}, {@link
+     * ContentResolver#QUERY_ARG_OFFSET} and {@link ContentResolver#QUERY_ARG_SORT_COLUMNS} with {@link ContentResolver#QUERY_ARG_SORT_DIRECTION}.
+     */
+    @TargetApi(Build.VERSION_CODES.O)
+    @Override
+    public Cursor query(Uri uri, String[] projection, Bundle queryArgs, CancellationSignal cancellationSignal)
+    {
+        if (queryArgs == null)
+        {
+            return query(uri, projection, null, null, null, cancellationSignal);
+        }
+
+        List<String> honoredArgs = new ArrayList<>(4);
+        Uri.Builder uriBuilder = uri.buildUpon();
+        if (queryArgs.containsKey(ContentResolver.QUERY_ARG_LIMIT))
+        {
+            uriBuilder.appendQueryParameter(TaskContract.LIMIT, String.valueOf(queryArgs.getInt(ContentResolver.QUERY_ARG_LIMIT)));
+            honoredArgs.add(ContentResolver.QUERY_ARG_LIMIT);
+            if (queryArgs.containsKey(ContentResolver.QUERY_ARG_OFFSET))
+            {
+                uriBuilder.appendQueryParameter(TaskContract.OFFSET, String.valueOf(queryArgs.getInt(ContentResolver.QUERY_ARG_OFFSET)));
+                honoredArgs.add(ContentResolver.QUERY_ARG_OFFSET);
+            }
+        }
+
+        String sortOrder = queryArgs.getString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER);
+        String[] sortColumns = queryArgs.getStringArray(ContentResolver.QUERY_ARG_SORT_COLUMNS);
+        if (sortOrder == null && sortColumns != null && sortColumns.length > 0)
+        {
+            String direction = queryArgs.getInt(ContentResolver.QUERY_ARG_SORT_DIRECTION,
+                    ContentResolver.QUERY_SORT_DIRECTION_ASCENDING) == ContentResolver.QUERY_SORT_DIRECTION_DESCENDING ? " DESC" : " ASC";
+            StringBuilder sortOrderBuilder = new StringBuilder(64);
+            for (String column : sortColumns)
+            {
+                if (sortOrderBuilder.length() > 0)
+                {
+                    sortOrderBuilder.append(", ");
+                }
+                sortOrderBuilder.append(column).append(direction);
+            }
+            sortOrder = sortOrderBuilder.toString();
+            honoredArgs.add(ContentResolver.QUERY_ARG_SORT_COLUMNS);
+            if (queryArgs.containsKey(ContentResolver.QUERY_ARG_SORT_DIRECTION))
+            {
+                honoredArgs.add(ContentResolver.QUERY_ARG_SORT_DIRECTION);
+            }
+        }
+
+        Cursor cursor = query(uriBuilder.build(), projection, queryArgs.getString(ContentResolver.QUERY_ARG_SQL_SELECTION),
+                queryArgs.getStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS), sortOrder, cancellationSignal);
+        if (cursor != null && !honoredArgs.isEmpty())
+        {
+            Bundle extras = new Bundle(1);
+            extras.putStringArray(ContentResolver.EXTRA_HONORED_ARGS, honoredArgs.toArray(new String[0]));
+            cursor.setExtras(extras);
+        }
+        return cursor;
+    }
+
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder, CancellationSignal cancellationSignal)
+    {
+        OperationMetrics metrics = metrics().operation(ProviderMetrics.Operation.QUERY, matchCode(uri), uri);
+        long start = System.nanoTime();
+        try
+        {
+            Cursor cursor = queryCached(uri, projection, selection, selectionArgs, sortOrder, cancellationSignal);
+            // we don't count the rows, that would fill the cursor window right away
+            metrics.record(System.nanoTime() - start, 0);
+            return cursor;
+        }
+        catch (RuntimeException e)
+        {
+            metrics.recordFailure(System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+
+    /**
+     * Returns the result of the given query from the {@link QueryResultCache}, if the {@link Uri} contains the {@link TaskContract#CACHE} parameter and
+     * there is a current result. Otherwise the query is run and its result is cached if possible.
+     */
+    private Cursor queryCached(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder,
+                               CancellationSignal cancellationSignal)
+    {
+        int tables = "true".equals(uri.getQueryParameter(TaskContract.CACHE)) ? cachedTables(uri) : 0;
+        if (tables == 0)
+        {
+            return queryDatabase(uri, projection, selection, selectionArgs, sortOrder, cancellationSignal);
+        }
+
+        ContentResolver resolver = getContext().getContentResolver();
+        QueryResultCache.Key key = new QueryResultCache.Key(uri, projection, selection, selectionArgs, sortOrder);
+        Cursor cached = mQueryResultCache.get(key, resolver);
+        if (cached != null)
+        {
+            return cached;
+        }
+
+        // take the generations before the query runs, so any change committed in the meantime invalidates the result
+        long[] generations = mQueryResultCache.generations();
+        Cursor cursor = queryDatabase(uri, projection, selection, selectionArgs, sortOrder, cancellationSignal);
+        return cursor == null || generations == null ? cursor : mQueryResultCache.put(key, tables, generations, cursor, resolver);
+    }
+
+
+    /**
+     * Returns the {@link QueryResultCache} tables the result of a query on the given {@link Uri} depends on or {@code 0} if the result can't be cached.
+     */
+    private int cachedTables(Uri uri)
+    {
+        switch (mUriMatcher.match(uri))
+        {
+            case LISTS:
+            case LIST_ID:
+                return QueryResultCache.LISTS;
+            case TASKS:
+            case TASK_ID:
+            case INSTANCES:
+            case INSTANCE_ID:
+            case INSTANCE_RANGE:
+            case TASK_SUBTREE:
+            case TASK_ANCESTORS:
+            case SEARCH:
+                // the task views contain list values and properties
+                return QueryResultCache.ALL;
+            case INSTANCE_AGGREGATES:
+                // the aggregates depend on the current time, unless it has been given explicitly
+                return uri.getQueryParameter(InstanceAggregates.NOW) == null ? 0 : QueryResultCache.ALL;
+            case CATEGORIES:
+            case CATEGORY_ID:
+                return QueryResultCache.CATEGORIES;
+            case PROPERTIES:
+            case PROPERTY_ID:
+                return QueryResultCache.PROPERTIES;
+            default:
+                return 0;
+        }
+    }
+
+
+    /**
+     * Returns the {@link QueryResultCache} tables a write to the given {@link Uri} may change, including the tables which are changed by triggers and
+     * processors.
+     */
+    private int writtenTables(Uri uri)
+    {
+        switch (mUriMatcher.match(uri))
+        {
+            case LISTS:
+            case LIST_ID:
+            case TASKS:
+            case TASK_ID:
+            case INSTANCES:
+            case INSTANCE_ID:
+                // task changes mark their lists dirty, remove properties and may add categories
+                return QueryResultCache.ALL;
+            case PROPERTIES:
+            case PROPERTY_ID:
+            case CATEGORY_ID:
+                return QueryResultCache.TASKS | QueryResultCache.PROPERTIES | QueryResultCache.CATEGORIES;
+            default:
+                return 0;
+        }
+    }
+
+
+    @Override
+    protected int matchCode(Uri uri)
+    {
+        return mUriMatcher.match(uri);
+    }
+
+
+    private Cursor queryDatabase(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder,
+                                 CancellationSignal cancellationSignal)
     {
         final SQLiteDatabase db = getDatabaseHelper().getWritableDatabase();
         SQLiteQueryBuilder sqlBuilder = new SQLiteQueryBuilder();
         // initialize appendWhere, this allows us to append all other selections with a preceding "AND"
         sqlBuilder.appendWhere(" 1=1 ");
         boolean isSyncAdapter = isCallerSyncAdapter(uri);
+        int matchCode = mUriMatcher.match(uri);
 
-        switch (mUriMatcher.match(uri))
+        switch (matchCode)
         {
             case SYNCSTATE_ID:
                 // the id is ignored, we only match by account type and name given in the Uri
@@ -592,6 +1156,8 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                 {
                     sortOrder = TaskContract.Tasks.DEFAULT_SORT_ORDER;
                 }
+                selection = DatabaseUtils.concatenateWhere(selection, pageSelection(TaskColumns._ID, uri, sortOrder));
+                sortOrder = pageSortOrder(TaskColumns._ID, uri, sortOrder);
                 break;
 
             case TASK_ID:
@@ -639,6 +1205,8 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                 {
                     sortOrder = TaskContract.Instances.DEFAULT_SORT_ORDER;
                 }
+                selection = DatabaseUtils.concatenateWhere(selection, pageSelection(Instances._ID, uri, sortOrder));
+                sortOrder = pageSortOrder(Instances._ID, uri, sortOrder);
                 break;
 
             case INSTANCE_ID:
@@ -665,6 +1233,85 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                 }
                 break;
 
+            case INSTANCE_RANGE:
+            {
+                String rangeStart = uri.getQueryParameter(Instances.RANGE_START);
+                String rangeEnd = uri.getQueryParameter(Instances.RANGE_END);
+                if (rangeStart == null || rangeEnd == null)
+                {
+                    throw new IllegalArgumentException("instance range uri must contain a range start and a range end: " + uri);
+                }
+                String limit = uri.getQueryParameter(TaskContract.LIMIT);
+                String offset = uri.getQueryParameter(TaskContract.OFFSET);
+                Cursor range = InstanceRangeHelper.getInstanceRangeCursor(db, Long.parseLong(rangeStart), Long.parseLong(rangeEnd), projection, selection,
+                        selectionArgs, isSyncAdapter, offset == null ? 0 : Integer.parseInt(offset), limit == null ? -1 : Integer.parseInt(limit),
+                        cancellationSignal);
+                // the calculated instances depend on the tasks, so we listen to all changes
+                range.setNotificationUri(getContext().getContentResolver(), TaskContract.getContentUri(mAuthority));
+                return range;
+            }
+
+            case INSTANCE_AGGREGATES:
+            {
+                String groupBy = uri.getQueryParameter(InstanceAggregates.GROUP_BY);
+                // the category view contains one row per category of an instance
+                sqlBuilder.setTables(InstanceAggregates.GROUP_BY_CATEGORY.equals(groupBy) ? Tables.INSTANCE_CATEGORY_VIEW : Tables.INSTANCE_CLIENT_VIEW);
+                if (!isSyncAdapter)
+                {
+                    // do not count deleted rows if caller is not a sync adapter
+                    sqlBuilder.appendWhere(" AND ");
+                    sqlBuilder.appendWhere(Tasks._DELETED);
+                    sqlBuilder.appendWhere("=0");
+                }
+                String groupKey = aggregateGroupKey(uri, groupBy);
+                String now = uri.getQueryParameter(InstanceAggregates.NOW);
+                sqlBuilder.setProjectionMap(aggregateProjectionMap(groupKey, now == null ? System.currentTimeMillis() : Long.parseLong(now)));
+                if (sortOrder == null || sortOrder.length() == 0)
+                {
+                    sortOrder = InstanceAggregates.GROUP_KEY;
+                }
+                Cursor aggregates = sqlBuilder.query(db, projection, selection, selectionArgs, groupKey == null ? null : InstanceAggregates.GROUP_KEY, null,
+                        sortOrder, null, cancellationSignal);
+                if (aggregates != null)
+                {
+                    // aggregates depend on tasks, instances, lists and categories, so we listen to all changes
+                    aggregates.setNotificationUri(getContext().getContentResolver(), TaskContract.getContentUri(mAuthority));
+                }
+                return aggregates;
+            }
+
+            case TASK_SUBTREE:
+            case TASK_ANCESTORS:
+            {
+                sqlBuilder.setTables(taskTreeTable(getId(uri), matchCode == TASK_ANCESTORS, isSyncAdapter));
+                if (!isSyncAdapter)
+                {
+                    // do not return deleted rows if caller is not a sync adapter
+                    sqlBuilder.appendWhere(" AND ");
+                    sqlBuilder.appendWhere(Tasks._DELETED);
+                    sqlBuilder.appendWhere("=0");
+                }
+                String maxDepth = uri.getQueryParameter(TaskTree.MAX_DEPTH);
+                if (maxDepth != null)
+                {
+                    sqlBuilder.appendWhere(" AND ");
+                    sqlBuilder.appendWhere(TaskTree.TREE_DEPTH);
+                    sqlBuilder.appendWhere("<=");
+                    sqlBuilder.appendWhere(String.valueOf(Integer.parseInt(maxDepth)));
+                }
+                if (sortOrder == null || sortOrder.length() == 0)
+                {
+                    sortOrder = TaskTree.DEFAULT_SORT_ORDER;
+                }
+                Cursor tree = sqlBuilder.query(db, projection, selection, selectionArgs, null, null, sortOrder, getLimit(uri), cancellationSignal);
+                if (tree != null)
+                {
+                    // the tree changes with any of its tasks
+                    tree.setNotificationUri(getContext().getContentResolver(), Tasks.getContentUri(mAuthority));
+                }
+                return tree;
+            }
+
             case CATEGORIES:
                 selectAccount(sqlBuilder, uri);
                 sqlBuilder.setTables(Tables.CATEGORIES);
@@ -696,7 +1343,8 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
             case SEARCH:
                 String searchString = uri.getQueryParameter(Tasks.SEARCH_QUERY_PARAMETER);
                 searchString = Uri.decode(searchString);
-                Cursor searchCursor = FTSDatabaseHelper.getTaskSearchCursor(db, searchString, projection, selection, selectionArgs, sortOrder);
+                Cursor searchCursor = FTSDatabaseHelper.getTaskSearchCursor(db, searchString, projection, selection, selectionArgs, sortOrder,
+                        cancellationSignal);
                 if (searchCursor != null)
                 {
                     // attach tasks uri for notifications, that way the search results are updated when a task changes
@@ -704,11 +1352,42 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                 }
                 return searchCursor;
 
+            case SEARCH_INDEX:
+                Cursor statisticsCursor = FTSDatabaseHelper.getIndexStatisticsCursor(db, projection);
+                // the statistics change with any task, the removal of orphaned n-grams is notified on the search index uri, which is a descendant
+                statisticsCursor.setNotificationUri(getContext().getContentResolver(), TaskContract.getContentUri(mAuthority));
+                return statisticsCursor;
+
+            case CHANGE_LOG:
+                sqlBuilder.setTables(Tables.CHANGE_LOG);
+                String since = uri.getQueryParameter(ChangeLog.SINCE);
+                if (since != null)
+                {
+                    sqlBuilder.appendWhere(" AND ");
+                    sqlBuilder.appendWhere(ChangeLog.SEQUENCE);
+                    sqlBuilder.appendWhere(">");
+                    sqlBuilder.appendWhere(String.valueOf(Long.parseLong(since)));
+                }
+                if (isSyncAdapter && getAccountName(uri) != null && getAccountType(uri) != null)
+                {
+                    // restrict sync adapters to the changes of their account, each change carries the account, so this includes removed lists
+                    selectAccount(sqlBuilder, uri);
+                }
+                if (sortOrder == null || sortOrder.length() == 0)
+                {
+                    sortOrder = ChangeLog.DEFAULT_SORT_ORDER;
+                }
+                break;
+
+            case CHANGE_LOG_CONSUMERS:
+                sqlBuilder.setTables(Tables.CHANGE_LOG_CONSUMERS);
+                break;
+
             default:
                 throw new IllegalArgumentException("Unknown URI " + uri);
         }
 
-        Cursor c = sqlBuilder.query(db, projection, selection, selectionArgs, null, null, sortOrder);
+        Cursor c = sqlBuilder.query(db, projection, selection, selectionArgs, null, null, sortOrder, getLimit(uri), cancellationSignal);
 
         if (c != null)
         {
@@ -721,6 +1400,7 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
     @Override
     public int deleteInTransaction(final SQLiteDatabase db, Uri uri, String selection, String[] selectionArgs, final boolean isSyncAdapter)
     {
+        mQueryResultCache.written(writtenTables(uri));
         int count = 0;
         String accountName = getAccountName(uri);
         String accountType = getAccountType(uri);
@@ -768,6 +1448,8 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                     {
                         final ListAdapter list = new CursorContentValuesListAdapter(ListAdapter._ID.getFrom(cursor), cursor, new ContentValues());
 
+                        // the tasks of the list are removed by triggers, so we have to remember them and their instances now
+                        postChangedList(db, list.id());
                         mListProcessorChain.delete(db, list, isSyncAdapter);
                         mChanged.set(true);
                         count++;
@@ -809,6 +1491,8 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                     {
                         final TaskAdapter task = new CursorContentValuesTaskAdapter(cursor, new ContentValues());
 
+                        // the instances may be gone after this, so we have to remember them now
+                        postChangedInstances(db, task.id());
                         mTaskProcessorChain.delete(db, task, isSyncAdapter);
 
                         mChanged.set(true);
@@ -834,7 +1518,9 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                 {
                     while (cursor.moveToNext())
                     {
-                        mInstanceProcessorChain.delete(db, new CursorContentValuesInstanceAdapter(cursor, new ContentValues()), isSyncAdapter);
+                        InstanceAdapter instance = new CursorContentValuesInstanceAdapter(cursor, new ContentValues());
+                        postChangedInstance(instance);
+                        mInstanceProcessorChain.delete(db, instance, isSyncAdapter);
                         mChanged.set(true);
                         count++;
                     }
@@ -883,6 +1569,10 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                 postNotifyUri(Properties.getContentUri(mAuthority));
                 break;
 
+            case CHANGE_LOG_CONSUMERS:
+                count = ChangeLogHelper.unregister(db, selection, selectionArgs);
+                break;
+
             default:
                 throw new IllegalArgumentException("Unknown URI " + uri);
         }
@@ -900,6 +1590,7 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
     @Override
     public Uri insertInTransaction(final SQLiteDatabase db, Uri uri, final ContentValues values, final boolean isSyncAdapter)
     {
+        mQueryResultCache.written(writtenTables(uri));
         long rowId;
         Uri result_uri;
 
@@ -950,6 +1641,7 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                 final TaskAdapter task = new ContentValuesTaskAdapter(values);
 
                 mTaskProcessorChain.insert(db, task, isSyncAdapter);
+                postChangedTask(task);
 
                 mChanged.set(true);
 
@@ -1004,6 +1696,11 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                 }
                 break;
 
+            case CHANGE_LOG_CONSUMERS:
+                rowId = ChangeLogHelper.register(db, values);
+                result_uri = ChangeLogConsumers.getContentUri(mAuthority);
+                break;
+
             default:
                 throw new IllegalArgumentException("Unknown URI " + uri);
         }
@@ -1023,6 +1720,7 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
     public int updateInTransaction(final SQLiteDatabase db, Uri uri, final ContentValues values, String selection, String[] selectionArgs,
                                    final boolean isSyncAdapter)
     {
+        mQueryResultCache.written(writtenTables(uri));
         int count = 0;
         boolean dataChanged = false;
         switch (mUriMatcher.match(uri))
@@ -1083,7 +1781,12 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                         if (list.hasUpdates())
                         {
                             mListProcessorChain.update(db, list, isSyncAdapter);
-                            dataChanged |= !TASK_LIST_SYNC_COLUMNS.containsAll(values.keySet());
+                            if (!TASK_LIST_SYNC_COLUMNS.containsAll(values.keySet()))
+                            {
+                                // the list data is part of the tasks and instances, so they have been changed too
+                                postChangedList(db, listId);
+                                dataChanged = true;
+                            }
                         }
                         // note we still count the row even if no update was necessary
                         count++;
@@ -1114,7 +1817,10 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
 
                         if (task.hasUpdates())
                         {
+                            // the instances may be replaced by the update, so we have to remember the current ones now
+                            postChangedInstances(db, task.id());
                             mTaskProcessorChain.update(db, task, isSyncAdapter);
+                            postChangedTask(task);
                             dataChanged |= !TASK_LIST_SYNC_COLUMNS.containsAll(values.keySet());
                         }
                         // note we still count the row even if no update was necessary
@@ -1153,6 +1859,7 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
 
                         if (instance.hasUpdates())
                         {
+                            postChangedInstance(instance);
                             mInstanceProcessorChain.update(db, instance, isSyncAdapter);
                             dataChanged = true;
                         }
@@ -1224,6 +1931,9 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                 validateAlarmValues(values, false, isSyncAdapter);
                 count = db.update(Tables.ALARMS, values, newAlarmSelection, selectionArgs);
                 break;
+            case CHANGE_LOG_CONSUMERS:
+                count = ChangeLogHelper.acknowledge(db, values, selection, selectionArgs);
+                break;
             default:
                 ContentOperation operation = ContentOperation.get(mUriMatcher.match(uri), OPERATIONS);
 
@@ -1232,7 +1942,23 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                     throw new IllegalArgumentException("Unknown URI " + uri);
                 }
 
-                operation.run(getContext(), mAsyncHandler, uri, db, values);
+                if (operation == ContentOperation.UPDATE_TIMEZONE || operation == ContentOperation.UPDATE_INSTANCES)
+                {
+                    // these operations change the tasks outside of our transactions, don't cache anything until they are done
+                    mQueryResultCache.suspend();
+                    try
+                    {
+                        operation.run(getContext(), mAsyncHandler, uri, db, values);
+                    }
+                    finally
+                    {
+                        mAsyncHandler.post(() -> mQueryResultCache.resume(QueryResultCache.ALL));
+                    }
+                }
+                else
+                {
+                    operation.run(getContext(), mAsyncHandler, uri, db, values);
+                }
         }
 
         if (dataChanged)
@@ -1246,6 +1972,119 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
     }
 
 
+    /**
+     * Remember the given task as changed in the current transaction. This includes the master task, in case the given task is an override.
+     *
+     * @param task
+     *         The {@link TaskAdapter} of the changed task.
+     */
+    private void postChangedTask(TaskAdapter task)
+    {
+        mChangedTasks.addTask(task.id());
+        Long originalId = task.valueOf(TaskAdapter.ORIGINAL_INSTANCE_ID);
+        if (originalId != null)
+        {
+            mChangedTasks.addTask(originalId);
+        }
+    }
+
+
+    /**
+     * Remember the given instance, its task and its master task (if any) as changed in the current transaction.
+     *
+     * @param instance
+     *         The {@link InstanceAdapter} of the changed instance.
+     */
+    private void postChangedInstance(InstanceAdapter instance)
+    {
+        mChangedTasks.addInstance(instance.id());
+        Long taskId = instance.valueOf(InstanceAdapter.TASK_ID);
+        if (taskId != null)
+        {
+            mChangedTasks.addTask(taskId);
+        }
+        Long originalId = instance.valueOf(ORIGINAL_INSTANCE_ID);
+        if (originalId != null)
+        {
+            mChangedTasks.addTask(originalId);
+        }
+    }
+
+
+    /**
+     * Remember all current instances of the given task as changed in the current transaction. Use this if the instances may no longer exist at the end of the
+     * transaction.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param taskId
+     *         The id of the task.
+     */
+    private void postChangedInstances(SQLiteDatabase db, long taskId)
+    {
+        try (Cursor cursor = db.query(Tables.INSTANCES, new String[] { Instances._ID }, Instances.TASK_ID + "=" + taskId, null, null, null, null))
+        {
+            while (cursor.moveToNext())
+            {
+                mChangedTasks.addInstance(cursor.getLong(0));
+            }
+        }
+    }
+
+
+    /**
+     * Remember all current instances of all overrides of the given master task as changed in the current transaction. Use this if the overrides may be
+     * removed or detached in the transaction.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param masterId
+     *         The id of the master task.
+     */
+    private void postChangedOverrideInstances(SQLiteDatabase db, long masterId)
+    {
+        try (Cursor cursor = db.query(Tables.INSTANCES, new String[] { Instances._ID },
+                Instances.TASK_ID + " in (select " + Tasks._ID + " from " + Tables.TASKS + " where " + Tasks.ORIGINAL_INSTANCE_ID + "=" + masterId + ")", null,
+                null, null, null))
+        {
+            while (cursor.moveToNext())
+            {
+                mChangedTasks.addInstance(cursor.getLong(0));
+            }
+        }
+    }
+
+
+    /**
+     * Remember all tasks of the given list and all of their current instances as changed in the current transaction. When removing the list, call this
+     * before the list is removed, because its tasks and instances are removed along with it.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param listId
+     *         The id of the list.
+     */
+    private void postChangedList(SQLiteDatabase db, long listId)
+    {
+        try (Cursor cursor = db.query(Tables.TASKS, new String[] { Tasks._ID }, Tasks.LIST_ID + "=" + listId, null, null, null, null))
+        {
+            while (cursor.moveToNext())
+            {
+                mChangedTasks.addTask(cursor.getLong(0));
+            }
+        }
+        try (Cursor cursor = db.query(Tables.INSTANCES, new String[] { Instances._ID },
+                Instances.TASK_ID + " in (select " + Tasks._ID + " from " + Tables.TASKS + " where " + Tasks.LIST_ID + "=" + listId + ")", null, null, null,
+                null))
+        {
+            while (cursor.moveToNext())
+            {
+                mChangedTasks.addInstance(cursor.getLong(0));
+            }
+        }
+    }
+
+
     /**
      * Update task due and task start notifications.
      */
@@ -1324,9 +2163,21 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
             case TASK_ID:
                 return ContentResolver.CURSOR_ITEM_BASE_TYPE + "/org.dmfs.tasks." + Tasks.CONTENT_URI_PATH;
             case INSTANCES:
+            case INSTANCE_RANGE:
                 return ContentResolver.CURSOR_DIR_BASE_TYPE + "/org.dmfs.tasks." + Instances.CONTENT_URI_PATH;
             case INSTANCE_ID:
                 return ContentResolver.CURSOR_ITEM_BASE_TYPE + "/org.dmfs.tasks." + Instances.CONTENT_URI_PATH;
+            case INSTANCE_AGGREGATES:
+                return ContentResolver.CURSOR_DIR_BASE_TYPE + "/org.dmfs.tasks." + InstanceAggregates.CONTENT_URI_PATH;
+            case TASK_SUBTREE:
+            case TASK_ANCESTORS:
+                return ContentResolver.CURSOR_DIR_BASE_TYPE + "/org.dmfs.tasks." + TaskTree.CONTENT_URI_PATH;
+            case SEARCH_INDEX:
+                return ContentResolver.CURSOR_ITEM_BASE_TYPE + "/org.dmfs.tasks." + SearchIndex.CONTENT_URI_PATH;
+            case CHANGE_LOG:
+                return ContentResolver.CURSOR_DIR_BASE_TYPE + "/org.dmfs.tasks." + ChangeLog.CONTENT_URI_PATH;
+            case CHANGE_LOG_CONSUMERS:
+                return ContentResolver.CURSOR_DIR_BASE_TYPE + "/org.dmfs.tasks." + ChangeLogConsumers.CONTENT_URI_PATH;
             default:
                 throw new IllegalArgumentException("Unsupported URI: " + uri);
         }
@@ -1336,11 +2187,25 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
     @Override
     protected void onEndTransaction(boolean callerIsSyncAdapter)
     {
+        // invalidate the cached results before anyone is notified, otherwise clients might re-query the old results
+        mQueryResultCache.commit();
+        if (mChanged.get())
+        {
+            // tasks or lists have been changed, which may have added entries to the change log
+            postNotifyUri(ChangeLog.getContentUri(mAuthority));
+        }
         super.onEndTransaction(callerIsSyncAdapter);
+        long[] changedTaskIds = mChangedTasks.taskIds();
+        long[] changedInstanceIds = mChangedTasks.instanceIds();
+        mChangedTasks.clear();
         if (mChanged.compareAndSet(true, false))
         {
             updateNotifications();
-            Utils.sendActionProviderChangedBroadCast(getContext(), mAuthority);
+            Utils.sendActionProviderChangedBroadCast(getContext(), mAuthority, changedTaskIds, changedInstanceIds);
+
+            // (re-)schedule the removal of orphaned n-grams
+            mAsyncHandler.removeCallbacks(mSearchGarbageCollection);
+            mAsyncHandler.postDelayed(mSearchGarbageCollection, SEARCH_GARBAGE_COLLECTION_DELAY);
         }
 
         if (Boolean.TRUE.equals(mStaleListCreated.get()))
@@ -1378,11 +2243,119 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
     {
         if (oldVersion < 15)
         {
-            mAsyncHandler.post(() -> ContentOperation.UPDATE_TIMEZONE.fire(getContext(), null));
+            mAsyncHandler.post(() -> ContentOperation.UPDATE_INSTANCES.fire(getContext(), null));
         }
     }
 
 
+    /**
+     * Handles {@link Instances#CALL_CLOSE_INSTANCES} in addition to the methods of {@link SQLiteContentProvider}.
+     */
+    @Override
+    public Bundle call(String method, String arg, Bundle extras)
+    {
+        if (CALL_MAINTAIN_DATABASE.equals(method) || CALL_CANCEL_MAINTENANCE.equals(method))
+        {
+            if (getWritePermission() != null)
+            {
+                getContext().enforceCallingOrSelfPermission(getWritePermission(), "database maintenance requires the write permission");
+            }
+            return CALL_MAINTAIN_DATABASE.equals(method) ? maintainDatabase() : cancelMaintenance();
+        }
+        if (!Instances.CALL_CLOSE_INSTANCES.equals(method))
+        {
+            return super.call(method, arg, extras);
+        }
+
+        if (getWritePermission() != null)
+        {
+            getContext().enforceCallingOrSelfPermission(getWritePermission(), "closing instances requires the write permission");
+        }
+        if (arg == null || extras == null || !extras.containsKey(Instances.CLOSE_UNTIL))
+        {
+            throw new IllegalArgumentException("closing instances requires a task id and the CLOSE_UNTIL extra");
+        }
+        long masterId = Long.parseLong(arg);
+        long until = extras.getLong(Instances.CLOSE_UNTIL);
+        Integer status = extras.getBoolean(Instances.CLOSE_SKIP) ? null : extras.getInt(Instances.CLOSE_STATUS, Tasks.STATUS_COMPLETED);
+        if (status != null && status != Tasks.STATUS_COMPLETED && status != Tasks.STATUS_CANCELLED)
+        {
+            throw new IllegalArgumentException("CLOSE_STATUS must be either STATUS_COMPLETED or STATUS_CANCELLED");
+        }
+
+        int count = executeInTransaction(db -> {
+            mQueryResultCache.written(QueryResultCache.ALL);
+            // the instances of the master and of its overrides may be gone after this, so we have to remember them now
+            postChangedInstances(db, masterId);
+            postChangedOverrideInstances(db, masterId);
+            Set<Long> changedTaskIds = new HashSet<>();
+            int closed = mDetaching.closeUntil(db, masterId, until, status, changedTaskIds);
+            if (closed > 0)
+            {
+                for (long taskId : changedTaskIds)
+                {
+                    mChangedTasks.addTask(taskId);
+                }
+                postNotifyUri(Instances.getContentUri(mAuthority));
+                postNotifyUri(Tasks.getContentUri(mAuthority));
+                mChanged.set(true);
+            }
+            return closed;
+        }, false);
+
+        Bundle result = new Bundle(1);
+        result.putInt(Instances.CLOSE_COUNT, count);
+        return result;
+    }
+
+
+    /**
+     * Runs the {@link DatabaseMaintenance} on the calling thread, unless it's already running.
+     *
+     * @return The results of the maintenance or {@code null} if the maintenance was already running.
+     *
+     * @throws android.os.OperationCanceledException
+     *         if the maintenance has been cancelled.
+     */
+    private Bundle maintainDatabase()
+    {
+        CancellationSignal signal = new CancellationSignal();
+        if (!mMaintenanceSignal.compareAndSet(null, signal))
+        {
+            return null;
+        }
+        try
+        {
+            return new DatabaseMaintenance(metrics()).run(getDatabaseHelper().getWritableDatabase(), signal);
+        }
+        finally
+        {
+            mMaintenanceSignal.compareAndSet(signal, null);
+        }
+    }
+
+
+    private Bundle cancelMaintenance()
+    {
+        CancellationSignal signal = mMaintenanceSignal.get();
+        if (signal != null)
+        {
+            signal.cancel();
+        }
+        return null;
+    }
+
+
+    /**
+     * Cancels any running {@link DatabaseMaintenance}, so the writer doesn't have to wait for it.
+     */
+    @Override
+    protected void onBeforeWrite()
+    {
+        cancelMaintenance();
+    }
+
+
     @Override
     protected boolean syncToNetwork(Uri uri)
     {
@@ -1396,6 +2369,14 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
         // cache the known accounts so we can check whether we know accounts for which new lists are added
         mAccountCache.set(new HashSet<>(Arrays.asList(accounts)));
         // TODO: we probably can move the cleanup code here and get rid of the Utils class
-        Utils.cleanUpLists(getContext(), getDatabaseHelper().getWritableDatabase(), accounts, mAuthority);
+        mQueryResultCache.suspend();
+        try
+        {
+            Utils.cleanUpLists(getContext(), getDatabaseHelper().getWritableDatabase(), accounts, mAuthority);
+        }
+        finally
+        {
+            mQueryResultCache.resume(QueryResultCache.ALL);
+        }
     }
 }
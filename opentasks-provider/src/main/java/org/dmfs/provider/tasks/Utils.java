@@ -53,12 +53,37 @@ import java.util.List;
 public class Utils
 {
     public static void sendActionProviderChangedBroadCast(Context context, String authority)
+    {
+        sendActionProviderChangedBroadCast(context, authority, null, null);
+    }
+
+
+    /**
+     * Sends an {@link Intent#ACTION_PROVIDER_CHANGED} broadcast.
+     *
+     * @param context
+     *         A {@link Context}.
+     * @param authority
+     *         The authority of the provider.
+     * @param changedTaskIds
+     *         The ids of the tasks which have been changed or <code>null</code> if they are unknown.
+     * @param changedInstanceIds
+     *         The ids of the instances which have been changed in addition to the instances of the changed tasks or <code>null</code> if they are unknown.
+     */
+    public static void sendActionProviderChangedBroadCast(Context context, String authority, long[] changedTaskIds, long[] changedInstanceIds)
     {
         // TODO: Using the TaskContract content uri results in a "Unknown URI content" error message. Using the Tasks content uri instead will break the
         // broadcast receiver. We have to find away around this
         // TODO: coalesce fast consecutive broadcasts, a delay of up to 1 second should be acceptable
 
-        new With<>(new Intent(Intent.ACTION_PROVIDER_CHANGED, TaskContract.getContentUri(authority)))
+        Intent intent = new Intent(Intent.ACTION_PROVIDER_CHANGED, TaskContract.getContentUri(authority));
+        if (changedTaskIds != null && changedInstanceIds != null)
+        {
+            intent.putExtra(TaskContract.EXTRA_CHANGED_TASK_IDS, changedTaskIds);
+            intent.putExtra(TaskContract.EXTRA_CHANGED_INSTANCE_IDS, changedInstanceIds);
+        }
+
+        new With<>(intent)
                 .process(providerChangedIntent ->
                         new Batch<Intent>(context::sendBroadcast)
                                 .process(new Mapped<>(
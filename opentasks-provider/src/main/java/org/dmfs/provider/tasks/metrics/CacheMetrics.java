@@ -0,0 +1,85 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * The hits and misses of a cache.
+ *
+ * @author agent
+ */
+public final class CacheMetrics
+{
+    private final String mName;
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+
+
+    public CacheMetrics(String name)
+    {
+        mName = name;
+    }
+
+
+    /**
+     * Records a cache hit.
+     */
+    public void recordHit()
+    {
+        mHits.incrementAndGet();
+    }
+
+
+    /**
+     * Records a cache miss, i.e. a lookup that required to compute the value.
+     */
+    public void recordMiss()
+    {
+        mMisses.incrementAndGet();
+    }
+
+
+    public String name()
+    {
+        return mName;
+    }
+
+
+    public long hits()
+    {
+        return mHits.get();
+    }
+
+
+    public long misses()
+    {
+        return mMisses.get();
+    }
+
+
+    /**
+     * Returns the ratio of hits to all lookups, a value between {@code 0} and {@code 1}, or {@code 0} if there were no lookups yet.
+     */
+    public double hitRate()
+    {
+        long hits = mHits.get();
+        long total = hits + mMisses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
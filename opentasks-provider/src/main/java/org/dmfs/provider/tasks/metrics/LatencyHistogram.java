@@ -0,0 +1,149 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * A lock-free histogram of durations in microseconds with logarithmic buckets.
+ * <p>
+ * Each power of two is split into {@value #SUB_BUCKETS} linear sub-buckets, so any recorded value is off by less than 12.5% (like an HDR histogram with a
+ * precision of one significant digit) while the histogram has a fixed size of a few kilobytes. Recording a value is a couple of atomic increments.
+ *
+ * @author agent
+ */
+public final class LatencyHistogram
+{
+    private final static int SUB_BUCKET_BITS = 3;
+    private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private final static int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+
+    /**
+     * Records the given duration.
+     *
+     * @param nanos
+     *         The duration in nanoseconds.
+     */
+    public void record(long nanos)
+    {
+        long micros = Math.max(0, nanos / 1000);
+        mBuckets.incrementAndGet(bucket(micros));
+        mCount.incrementAndGet();
+        mSum.addAndGet(micros);
+        long max = mMax.get();
+        while (micros > max && !mMax.compareAndSet(max, micros))
+        {
+            max = mMax.get();
+        }
+    }
+
+
+    /**
+     * Returns the number of recorded values.
+     */
+    public long count()
+    {
+        return mCount.get();
+    }
+
+
+    /**
+     * Returns the sum of all recorded values in microseconds.
+     */
+    public long sum()
+    {
+        return mSum.get();
+    }
+
+
+    /**
+     * Returns the largest recorded value in microseconds.
+     */
+    public long max()
+    {
+        return mMax.get();
+    }
+
+
+    /**
+     * Returns the given percentile in microseconds. The result is the upper bound of the bucket containing the percentile, but never larger than {@link
+     * #max()}.
+     *
+     * @param percentile
+     *         The percentile, a value between {@code 0} and {@code 100}.
+     *
+     * @return The percentile in microseconds or {@code 0} if no values have been recorded.
+     */
+    public long percentile(double percentile)
+    {
+        // note, concurrent updates may result in slightly inconsistent values, which is fine for our purpose
+        long count = mCount.get();
+        if (count == 0)
+        {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i)
+        {
+            seen += mBuckets.get(i);
+            if (seen >= target)
+            {
+                return Math.min(upperBound(i), mMax.get());
+            }
+        }
+        return mMax.get();
+    }
+
+
+    /**
+     * Returns the bucket index of the given value.
+     */
+    static int bucket(long value)
+    {
+        if (value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+
+    /**
+     * Returns the largest value in the bucket with the given index.
+     */
+    static long upperBound(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+}
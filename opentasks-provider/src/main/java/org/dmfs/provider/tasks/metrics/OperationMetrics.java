@@ -0,0 +1,91 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * The metrics of a single kind of provider operation, i.e. a specific operation on a specific URI.
+ *
+ * @author agent
+ */
+public final class OperationMetrics
+{
+    private final String mName;
+    private final LatencyHistogram mLatency = new LatencyHistogram();
+    private final AtomicLong mRows = new AtomicLong();
+    private final AtomicLong mFailures = new AtomicLong();
+
+
+    public OperationMetrics(String name)
+    {
+        mName = name;
+    }
+
+
+    /**
+     * Records a successful operation.
+     *
+     * @param nanos
+     *         The duration of the operation in nanoseconds.
+     * @param rows
+     *         The number of rows touched by the operation.
+     */
+    public void record(long nanos, long rows)
+    {
+        mLatency.record(nanos);
+        mRows.addAndGet(rows);
+    }
+
+
+    /**
+     * Records a failed operation.
+     *
+     * @param nanos
+     *         The duration of the operation in nanoseconds.
+     */
+    public void recordFailure(long nanos)
+    {
+        mLatency.record(nanos);
+        mFailures.incrementAndGet();
+    }
+
+
+    public String name()
+    {
+        return mName;
+    }
+
+
+    public LatencyHistogram latency()
+    {
+        return mLatency;
+    }
+
+
+    public long rows()
+    {
+        return mRows.get();
+    }
+
+
+    public long failures()
+    {
+        return mFailures.get();
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.metrics;
+
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.SystemClock;
+
+import org.dmfs.jems.iterable.composite.Joined;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A registry of provider metrics. It collects latency histograms and the number of touched rows per URI and operation, as well as the time transactions are
+ * held and the number of yields.
+ * <p>
+ * In addition, it collects the self time and written rows of the individual stages of the entity processor chains. Since that's not free, stage metrics have
+ * to be enabled explicitly with {@link #setStageMetricsEnabled(boolean)}.
+ * <p>
+ * The hit rates of caches used by the provider are included as well, once they have been registered with {@link #addCache(CacheMetrics)}. Same goes for the
+ * steps of the database maintenance, see {@link #maintenance(String)}.
+ * <p>
+ * All methods are lock-free, so recording doesn't add any contention to the provider.
+ *
+ * @author agent
+ */
+public final class ProviderMetrics
+{
+    /**
+     * The kinds of operations we record.
+     */
+    public enum Operation
+    {
+        QUERY, INSERT, BULK_INSERT, UPDATE, DELETE, BATCH
+    }
+
+
+    private final static int OPERATION_COUNT = Operation.values().length;
+
+    private final ConcurrentMap<Integer, OperationMetrics> mOperations = new ConcurrentHashMap<>(32);
+    private final ConcurrentMap<String, OperationMetrics> mStages = new ConcurrentHashMap<>(32);
+    private final ConcurrentMap<String, OperationMetrics> mMaintenance = new ConcurrentHashMap<>(8);
+    private final ConcurrentMap<String, CacheMetrics> mCaches = new ConcurrentHashMap<>(4);
+    private final AtomicBoolean mStageMetricsEnabled = new AtomicBoolean();
+    private final LatencyHistogram mTransactions = new LatencyHistogram();
+    private final AtomicLong mYields = new AtomicLong();
+    private final long mStart = SystemClock.elapsedRealtime();
+
+
+    /**
+     * Returns the {@link OperationMetrics} of the given operation on the given {@link Uri}.
+     *
+     * @param operation
+     *         The {@link Operation}.
+     * @param matchCode
+     *         The code the {@link Uri} matches.
+     * @param uri
+     *         The {@link Uri}, only used to name the metrics.
+     *
+     * @return The {@link OperationMetrics} to record to.
+     */
+    public OperationMetrics operation(Operation operation, int matchCode, Uri uri)
+    {
+        Integer key = matchCode * OPERATION_COUNT + operation.ordinal();
+        OperationMetrics metrics = mOperations.get(key);
+        if (metrics == null)
+        {
+            String path = uri.getPathSegments().isEmpty() ? "" : uri.getPathSegments().get(0);
+            metrics = new OperationMetrics(String.format(Locale.ENGLISH, "%s %s (%d)", operation.name().toLowerCase(Locale.ENGLISH), path, matchCode));
+            OperationMetrics existing = mOperations.putIfAbsent(key, metrics);
+            if (existing != null)
+            {
+                metrics = existing;
+            }
+        }
+        return metrics;
+    }
+
+
+    /**
+     * Returns the {@link OperationMetrics} of the given operation of an entity processor stage.
+     *
+     * @param stage
+     *         The name of the stage.
+     * @param operation
+     *         The {@link Operation}.
+     *
+     * @return The {@link OperationMetrics} to record to.
+     */
+    public OperationMetrics stage(String stage, Operation operation)
+    {
+        String name = String.format(Locale.ENGLISH, "stage %s %s", stage, operation.name().toLowerCase(Locale.ENGLISH));
+        OperationMetrics metrics = mStages.get(name);
+        if (metrics == null)
+        {
+            metrics = new OperationMetrics(name);
+            OperationMetrics existing = mStages.putIfAbsent(name, metrics);
+            if (existing != null)
+            {
+                metrics = existing;
+            }
+        }
+        return metrics;
+    }
+
+
+    /**
+     * Returns the {@link OperationMetrics} of a database maintenance step. The rows of these metrics are the units the step has processed, like pages or
+     * n-grams.
+     *
+     * @param step
+     *         The name of the maintenance step.
+     *
+     * @return The {@link OperationMetrics} to record to.
+     */
+    public OperationMetrics maintenance(String step)
+    {
+        String name = "maintenance " + step;
+        OperationMetrics metrics = mMaintenance.get(name);
+        if (metrics == null)
+        {
+            metrics = new OperationMetrics(name);
+            OperationMetrics existing = mMaintenance.putIfAbsent(name, metrics);
+            if (existing != null)
+            {
+                metrics = existing;
+            }
+        }
+        return metrics;
+    }
+
+
+    /**
+     * Adds the {@link CacheMetrics} of a cache to these metrics. A cache with the same name replaces any previously added one.
+     *
+     * @param cacheMetrics
+     *         The {@link CacheMetrics} of the cache.
+     */
+    public void addCache(CacheMetrics cacheMetrics)
+    {
+        mCaches.put(cacheMetrics.name(), cacheMetrics);
+    }
+
+
+    /**
+     * Returns whether the metrics of the entity processor stages shall be recorded.
+     */
+    public boolean stageMetricsEnabled()
+    {
+        return mStageMetricsEnabled.get();
+    }
+
+
+    /**
+     * Enables or disables recording the metrics of the entity processor stages. Disabling doesn't remove the metrics recorded so far.
+     *
+     * @param enabled
+     *         {@code true} to record stage metrics.
+     */
+    public void setStageMetricsEnabled(boolean enabled)
+    {
+        mStageMetricsEnabled.set(enabled);
+    }
+
+
+    /**
+     * Records the time a write transaction has been held.
+     *
+     * @param nanos
+     *         The duration of the transaction in nanoseconds.
+     */
+    public void recordTransaction(long nanos)
+    {
+        mTransactions.record(nanos);
+    }
+
+
+    /**
+     * Records that a transaction has been yielded to another thread.
+     */
+    public void recordYield()
+    {
+        mYields.incrementAndGet();
+    }
+
+
+    /**
+     * Returns all metrics in a {@link Bundle}. Each operation, each cache and the transactions are stored in a {@link Bundle} of their own, using the names
+     * found in {@link #dump(PrintWriter)} as keys.
+     *
+     * @return A {@link Bundle} with the current metrics.
+     */
+    public Bundle toBundle()
+    {
+        Bundle result = new Bundle();
+        result.putLong("uptime_ms", SystemClock.elapsedRealtime() - mStart);
+        result.putLong("yields", mYields.get());
+        result.putBoolean("stage_metrics_enabled", mStageMetricsEnabled.get());
+        result.putBundle("transactions", toBundle(mTransactions));
+        for (OperationMetrics metrics : new Joined<>(mOperations.values(), mStages.values(), mMaintenance.values()))
+        {
+            Bundle bundle = toBundle(metrics.latency());
+            bundle.putLong("rows", metrics.rows());
+            bundle.putLong("failures", metrics.failures());
+            result.putBundle(metrics.name(), bundle);
+        }
+        for (CacheMetrics cache : mCaches.values())
+        {
+            Bundle bundle = new Bundle();
+            bundle.putLong("hits", cache.hits());
+            bundle.putLong("misses", cache.misses());
+            bundle.putDouble("hit_rate", cache.hitRate());
+            result.putBundle("cache " + cache.name(), bundle);
+        }
+        return result;
+    }
+
+
+    /**
+     * Writes all metrics in a human readable form to the given {@link PrintWriter}.
+     *
+     * @param writer
+     *         The {@link PrintWriter} to write to.
+     */
+    public void dump(PrintWriter writer)
+    {
+        writer.printf(Locale.ENGLISH, "Provider metrics of the last %d seconds, times in microseconds%n", (SystemClock.elapsedRealtime() - mStart) / 1000);
+        writer.printf(Locale.ENGLISH, "%-40s %8s %8s %8s %8s %8s %8s %10s %8s%n", "operation", "count", "mean", "p50", "p90", "p99", "max", "rows", "failed");
+
+        // sort by name to get a stable output
+        Map<String, OperationMetrics> sorted = new TreeMap<>();
+        for (OperationMetrics metrics : new Joined<>(mOperations.values(), mStages.values(), mMaintenance.values()))
+        {
+            sorted.put(metrics.name(), metrics);
+        }
+        for (OperationMetrics metrics : sorted.values())
+        {
+            dump(writer, metrics.name(), metrics.latency());
+            writer.printf(Locale.ENGLISH, " %10d %8d%n", metrics.rows(), metrics.failures());
+        }
+        dump(writer, "transactions", mTransactions);
+        writer.println();
+        writer.printf(Locale.ENGLISH, "yields: %d%n", mYields.get());
+        for (CacheMetrics cache : new TreeMap<>(mCaches).values())
+        {
+            writer.printf(Locale.ENGLISH, "cache %s: %d hits, %d misses, hit rate %.1f%%%n", cache.name(), cache.hits(), cache.misses(),
+                    cache.hitRate() * 100);
+        }
+    }
+
+
+    private void dump(PrintWriter writer, String name, LatencyHistogram histogram)
+    {
+        long count = histogram.count();
+        writer.printf(Locale.ENGLISH, "%-40s %8d %8d %8d %8d %8d %8d", name, count, count == 0 ? 0 : histogram.sum() / count, histogram.percentile(50),
+                histogram.percentile(90), histogram.percentile(99), histogram.max());
+    }
+
+
+    private Bundle toBundle(LatencyHistogram histogram)
+    {
+        Bundle bundle = new Bundle();
+        long count = histogram.count();
+        bundle.putLong("count", count);
+        bundle.putLong("mean_us", count == 0 ? 0 : histogram.sum() / count);
+        bundle.putLong("p50_us", histogram.percentile(50));
+        bundle.putLong("p90_us", histogram.percentile(90));
+        bundle.putLong("p99_us", histogram.percentile(99));
+        bundle.putLong("max_us", histogram.max());
+        return bundle;
+    }
+}
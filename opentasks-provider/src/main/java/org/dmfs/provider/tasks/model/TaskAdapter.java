@@ -257,6 +257,21 @@ public interface TaskAdapter extends EntityAdapter<TaskAdapter>
      */
     BooleanFieldAdapter<TaskAdapter> HAS_PROPERTIES = new BooleanFieldAdapter<TaskAdapter>(TaskContract.Tasks.HAS_PROPERTIES);
 
+    /**
+     * Adapter for the CHILD_COUNT of a task.
+     */
+    IntegerFieldAdapter<TaskAdapter> CHILD_COUNT = new IntegerFieldAdapter<TaskAdapter>(TaskContract.Tasks.CHILD_COUNT);
+
+    /**
+     * Adapter for the CLOSED_CHILD_COUNT of a task.
+     */
+    IntegerFieldAdapter<TaskAdapter> CLOSED_CHILD_COUNT = new IntegerFieldAdapter<TaskAdapter>(TaskContract.Tasks.CLOSED_CHILD_COUNT);
+
+    /**
+     * Adapter for the CHILD_PERCENT_COMPLETE of a task.
+     */
+    IntegerFieldAdapter<TaskAdapter> CHILD_PERCENT_COMPLETE = new IntegerFieldAdapter<TaskAdapter>(TaskContract.Tasks.CHILD_PERCENT_COMPLETE);
+
     /**
      * Adapter for the RRULE of a task.
      */
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.processors;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.provider.tasks.metrics.OperationMetrics;
+import org.dmfs.provider.tasks.metrics.ProviderMetrics;
+import org.dmfs.provider.tasks.model.EntityAdapter;
+
+
+/**
+ * An {@link EntityProcessor} decorator that records the self time of a processor stage, i.e. the time spent in the stage excluding the time spent in the
+ * next stage, and the number of rows the stage writes to the database.
+ * <p>
+ * Recording is only performed while {@link ProviderMetrics#stageMetricsEnabled()} is {@code true}, otherwise this just calls the delegate. Since Android
+ * doesn't allow to intercept the statements executed on an {@link SQLiteDatabase}, the SQL load of a stage is measured by the difference of SQLite's {@code
+ * total_changes()} before and after the stage, which includes rows written by triggers.
+ *
+ * @author agent
+ */
+public final class Timing<T extends EntityAdapter<T>> implements EntityProcessor<T>
+{
+    private final static String PACKAGE_PREFIX = Timing.class.getPackage().getName() + ".";
+
+    /**
+     * The time and changes of the nested stages of the current thread, used to calculate the self time of the enclosing stage.
+     */
+    private final static ThreadLocal<long[]> NESTED = new ThreadLocal<long[]>()
+    {
+        @Override
+        protected long[] initialValue()
+        {
+            return new long[2];
+        }
+    };
+
+    private final ProviderMetrics mMetrics;
+    private final String mStage;
+    private final EntityProcessor<T> mDelegate;
+    private final OperationMetrics[] mOperationMetrics = new OperationMetrics[ProviderMetrics.Operation.values().length];
+
+
+    /**
+     * Creates a {@link Timing} decorator for the given stage. The stage is named after the class of the delegate, relative to the processors package, e.g.
+     * {@code tasks.Instantiating}.
+     *
+     * @param metrics
+     *         The {@link ProviderMetrics} to record to.
+     * @param delegate
+     *         The stage to time.
+     */
+    public Timing(ProviderMetrics metrics, EntityProcessor<T> delegate)
+    {
+        mMetrics = metrics;
+        mDelegate = delegate;
+        String name = delegate.getClass().getName();
+        mStage = name.startsWith(PACKAGE_PREFIX) ? name.substring(PACKAGE_PREFIX.length()) : delegate.getClass().getSimpleName();
+    }
+
+
+    @Override
+    public T insert(SQLiteDatabase db, T entityAdapter, boolean isSyncAdapter)
+    {
+        if (!mMetrics.stageMetricsEnabled())
+        {
+            return mDelegate.insert(db, entityAdapter, isSyncAdapter);
+        }
+
+        Frame frame = new Frame(db);
+        try
+        {
+            T result = mDelegate.insert(db, entityAdapter, isSyncAdapter);
+            frame.close(metrics(ProviderMetrics.Operation.INSERT), true);
+            return result;
+        }
+        catch (RuntimeException e)
+        {
+            frame.close(metrics(ProviderMetrics.Operation.INSERT), false);
+            throw e;
+        }
+    }
+
+
+    @Override
+    public T update(SQLiteDatabase db, T entityAdapter, boolean isSyncAdapter)
+    {
+        if (!mMetrics.stageMetricsEnabled())
+        {
+            return mDelegate.update(db, entityAdapter, isSyncAdapter);
+        }
+
+        Frame frame = new Frame(db);
+        try
+        {
+            T result = mDelegate.update(db, entityAdapter, isSyncAdapter);
+            frame.close(metrics(ProviderMetrics.Operation.UPDATE), true);
+            return result;
+        }
+        catch (RuntimeException e)
+        {
+            frame.close(metrics(ProviderMetrics.Operation.UPDATE), false);
+            throw e;
+        }
+    }
+
+
+    @Override
+    public void delete(SQLiteDatabase db, T entityAdapter, boolean isSyncAdapter)
+    {
+        if (!mMetrics.stageMetricsEnabled())
+        {
+            mDelegate.delete(db, entityAdapter, isSyncAdapter);
+            return;
+        }
+
+        Frame frame = new Frame(db);
+        try
+        {
+            mDelegate.delete(db, entityAdapter, isSyncAdapter);
+            frame.close(metrics(ProviderMetrics.Operation.DELETE), true);
+        }
+        catch (RuntimeException e)
+        {
+            frame.close(metrics(ProviderMetrics.Operation.DELETE), false);
+            throw e;
+        }
+    }
+
+
+    private OperationMetrics metrics(ProviderMetrics.Operation operation)
+    {
+        // races are benign, ProviderMetrics always returns the same instance
+        OperationMetrics metrics = mOperationMetrics[operation.ordinal()];
+        if (metrics == null)
+        {
+            metrics = mMetrics.stage(mStage, operation);
+            mOperationMetrics[operation.ordinal()] = metrics;
+        }
+        return metrics;
+    }
+
+
+    /**
+     * The measurement of a single stage invocation.
+     */
+    private final static class Frame
+    {
+        private final SQLiteDatabase mDb;
+        private final long[] mNested;
+        private final long mOuterNanos;
+        private final long mOuterChanges;
+        private final long mStartChanges;
+        private final long mStart;
+
+
+        Frame(SQLiteDatabase db)
+        {
+            mDb = db;
+            mNested = NESTED.get();
+            // save the values of the enclosing stage and start counting our own nested stages
+            mOuterNanos = mNested[0];
+            mOuterChanges = mNested[1];
+            mNested[0] = 0;
+            mNested[1] = 0;
+            mStartChanges = totalChanges(db);
+            mStart = System.nanoTime();
+        }
+
+
+        void close(OperationMetrics metrics, boolean successful)
+        {
+            long nanos = System.nanoTime() - mStart;
+            long changes = totalChanges(mDb) - mStartChanges;
+            if (successful)
+            {
+                metrics.record(nanos - mNested[0], changes - mNested[1]);
+            }
+            else
+            {
+                metrics.recordFailure(nanos - mNested[0]);
+            }
+            // the total of this stage is nested time of the enclosing stage
+            mNested[0] = mOuterNanos + nanos;
+            mNested[1] = mOuterChanges + changes;
+        }
+
+
+        private static long totalChanges(SQLiteDatabase db)
+        {
+            return DatabaseUtils.longForQuery(db, "select total_changes()", null);
+        }
+    }
+}
@@ -26,14 +26,19 @@ import org.dmfs.jems.iterable.composite.Joined;
 import org.dmfs.jems.optional.adapters.FirstPresent;
 import org.dmfs.jems.optional.elementary.NullSafe;
 import org.dmfs.jems.predicate.composite.AnyOf;
+import org.dmfs.provider.tasks.ChangeLogHelper;
+import org.dmfs.provider.tasks.DirtyLists;
 import org.dmfs.provider.tasks.TaskDatabaseHelper;
 import org.dmfs.provider.tasks.model.CursorContentValuesInstanceAdapter;
 import org.dmfs.provider.tasks.model.CursorContentValuesTaskAdapter;
 import org.dmfs.provider.tasks.model.InstanceAdapter;
 import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.model.adapters.FieldAdapter;
 import org.dmfs.provider.tasks.model.adapters.IntegerFieldAdapter;
 import org.dmfs.provider.tasks.model.adapters.LongFieldAdapter;
 import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.provider.tasks.utils.RecurrencePlan;
+import org.dmfs.provider.tasks.utils.RecurrencePlans;
 import org.dmfs.provider.tasks.utils.Timestamps;
 import org.dmfs.rfc5545.DateTime;
 import org.dmfs.rfc5545.Duration;
@@ -44,7 +49,12 @@ import org.dmfs.rfc5545.recurrenceset.RecurrenceSet;
 import org.dmfs.rfc5545.recurrenceset.RecurrenceSetIterator;
 import org.dmfs.tasks.contract.TaskContract;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 import java.util.TimeZone;
 
 import static java.util.Arrays.asList;
@@ -57,15 +67,21 @@ import static java.util.Arrays.asList;
  */
 public final class Detaching implements EntityProcessor<InstanceAdapter>
 {
+    /**
+     * The maximum number of instances to close in one call of {@link #closeUntil(SQLiteDatabase, long, long, Integer, Set)}.
+     */
+    private final static int MAX_CLOSED_INSTANCES = 500;
 
     private final EntityProcessor<InstanceAdapter> mDelegate;
     private final EntityProcessor<TaskAdapter> mTaskDelegate;
+    private final DirtyLists mDirtyLists;
 
 
-    public Detaching(EntityProcessor<InstanceAdapter> delegate, EntityProcessor<TaskAdapter> taskDelegate)
+    public Detaching(EntityProcessor<InstanceAdapter> delegate, EntityProcessor<TaskAdapter> taskDelegate, DirtyLists dirtyLists)
     {
         mDelegate = delegate;
         mTaskDelegate = taskDelegate;
+        mDirtyLists = dirtyLists;
     }
 
 
@@ -114,6 +130,121 @@ public final class Detaching implements EntityProcessor<InstanceAdapter>
     }
 
 
+    /**
+     * Close all instances of the given recurring task up to the given time in one go.
+     * <p>
+     * Overrides in that range are detached just like {@link #update(SQLiteDatabase, InstanceAdapter, boolean)} detaches a single closed instance, open
+     * overrides are closed (or deleted when skipping) first. Instances without an override are inserted as detached tasks right away, without creating an
+     * override first. Finally the master is moved to its first remaining instance, so it's updated and its instances are recalculated only once.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param masterId
+     *         The id of the recurring task.
+     * @param until
+     *         The time stamp of the last instance to close (by its original time), inclusive.
+     * @param status
+     *         The status of the closed instances or {@code null} to skip them.
+     * @param changedTaskIds
+     *         A {@link Set} which receives the ids of all tasks which have been updated, inserted or removed, including the master task.
+     *
+     * @return The number of closed instances.
+     */
+    public int closeUntil(SQLiteDatabase db, long masterId, long until, Integer status, Set<Long> changedTaskIds)
+    {
+        try (Cursor task = db.query(TaskDatabaseHelper.Tables.TASKS_VIEW,
+                null,
+                String.format("%s == ? and %s == 0", TaskContract.Tasks._ID, TaskContract.Tasks._DELETED),
+                new String[] { String.valueOf(masterId) },
+                null,
+                null,
+                null))
+        {
+            if (!task.moveToFirst())
+            {
+                throw new IllegalArgumentException(String.format(Locale.ENGLISH, "No task with _ID %d found", masterId));
+            }
+            TaskAdapter masterTask = new CursorContentValuesTaskAdapter(task, new ContentValues());
+            if (masterTask.valueOf(TaskAdapter.ORIGINAL_INSTANCE_ID) != null || !masterTask.isRecurring())
+            {
+                throw new IllegalArgumentException(String.format(Locale.ENGLISH, "Task %d is not a recurring master task", masterId));
+            }
+
+            int count = 0;
+            long last = Long.MIN_VALUE;
+            Set<Long> overridden = new HashSet<>();
+
+            // detach the overrides in range, open ones need to be closed (or removed) first
+            try (Cursor instances = db.query(TaskDatabaseHelper.Tables.INSTANCE_VIEW,
+                    null,
+                    String.format("%s == ? and %s <= ?", TaskContract.Instances.ORIGINAL_INSTANCE_ID, TaskContract.Instances.INSTANCE_ORIGINAL_TIME),
+                    new String[] { String.valueOf(masterId), String.valueOf(until) },
+                    null,
+                    null,
+                    null))
+            {
+                while (instances.moveToNext())
+                {
+                    ContentValues values = new ContentValues();
+                    InstanceAdapter instance = new CursorContentValuesInstanceAdapter(instances, values);
+                    long time = instance.valueOf(InstanceAdapter.INSTANCE_ORIGINAL_TIME).getTimestamp();
+                    overridden.add(time);
+                    last = Math.max(last, time);
+                    count += 1;
+                    changedTaskIds.add(instance.valueOf(InstanceAdapter.TASK_ID));
+                    if (instance.valueOf(InstanceAdapter.DISTANCE_FROM_CURRENT) >= 0)
+                    {
+                        if (status == null)
+                        {
+                            mTaskDelegate.delete(db, instance.taskAdapter(), false);
+                            continue;
+                        }
+                        values.put(TaskContract.Tasks.STATUS, status);
+                        mTaskDelegate.update(db, instance.taskAdapter(), false);
+                    }
+                    detachSingle(db, instance);
+                }
+            }
+
+            // insert all other instances in range as detached tasks
+            RecurrencePlan plan = RecurrencePlans.shared().plan(masterTask);
+            DateTime start = plan.start();
+            RecurrenceSetIterator iterator = plan.iterator(until < Long.MAX_VALUE ? until + 1 : until);
+            while (iterator.hasNext())
+            {
+                long time = iterator.next();
+                if (time > until)
+                {
+                    break;
+                }
+                last = Math.max(last, time);
+                if (overridden.contains(time))
+                {
+                    continue;
+                }
+                count += 1;
+                if (count > MAX_CLOSED_INSTANCES)
+                {
+                    // the master is advanced by iterating its instances, so we don't close an arbitrary number of them
+                    throw new IllegalArgumentException(String.format(Locale.ENGLISH, "Can't close more than %d instances at once", MAX_CLOSED_INSTANCES));
+                }
+                if (status != null)
+                {
+                    DateTime instanceStart = new DateTime(start.getTimeZone(), time);
+                    changedTaskIds.add(insertDetached(db, masterTask, start.isAllDay() ? instanceStart.toAllDay() : instanceStart, status));
+                }
+            }
+
+            if (count > 0)
+            {
+                changedTaskIds.add(masterId);
+                advance(db, masterId, new DateTime(last));
+            }
+            return count;
+        }
+    }
+
+
     /**
      * Detach all closed instances preceding the given one.
      * <p>
@@ -142,6 +273,17 @@ public final class Detaching implements EntityProcessor<InstanceAdapter>
             }
         }
 
+        advance(db, masterId, instanceOriginalTime);
+        return entityAdapter;
+    }
+
+
+    /**
+     * Move the start of the given master task to its first instance after the given time and remove all RDATEs and EXDATEs up to that time. The master
+     * task is removed if no instances are left.
+     */
+    private void advance(SQLiteDatabase db, long masterId, DateTime instanceOriginalTime)
+    {
         // move the master to the first incomplete task
         try (Cursor task = db.query(TaskDatabaseHelper.Tables.TASKS_VIEW,
                 null,
@@ -154,15 +296,15 @@ public final class Detaching implements EntityProcessor<InstanceAdapter>
             if (task.moveToFirst())
             {
                 TaskAdapter masterTask = new CursorContentValuesTaskAdapter(task, new ContentValues());
-                DateTime oldStart = new FirstPresent<>(
-                        new NullSafe<>(masterTask.valueOf(TaskAdapter.DTSTART)),
-                        new NullSafe<>(masterTask.valueOf(TaskAdapter.DUE))).value();
+                // the same plan the instances have been created from
+                RecurrencePlan plan = RecurrencePlans.shared().plan(masterTask);
+                DateTime oldStart = plan.start();
 
                 // assume we have no instances left
                 boolean noInstances = true;
 
                 // update RRULE, if existent
-                RecurrenceRule rule = masterTask.valueOf(TaskAdapter.RRULE);
+                RecurrenceRule rule = plan.rule();
                 int count = 0;
                 if (rule != null)
                 {
@@ -171,7 +313,7 @@ public final class Detaching implements EntityProcessor<InstanceAdapter>
                     if (rule.getCount() == null)
                     {
                         // rule has no count limit, allowing us to exclude exdates
-                        ruleSet.addExceptions(new RecurrenceList(new Timestamps(masterTask.valueOf(TaskAdapter.EXDATE)).value()));
+                        ruleSet.addExceptions(new RecurrenceList(plan.exdates()));
                     }
                     RecurrenceSetIterator ruleIterator = ruleSet.iterator(
                             oldStart.getTimeZone(),
@@ -195,7 +337,7 @@ public final class Detaching implements EntityProcessor<InstanceAdapter>
                     {
                         // remove the RRULE but keep a mask for the old start
                         masterTask.set(TaskAdapter.EXDATE,
-                                new Joined<>(new SingletonIterable<>(oldStart), new Sieved<>(oldStart::equals, masterTask.valueOf(TaskAdapter.EXDATE))));
+                                new Joined<>(new SingletonIterable<>(oldStart), new Sieved<>(oldStart::equals, plan.exdatesAfter(oldStart.getTimestamp() - 1))));
                         masterTask.set(TaskAdapter.RRULE, null);
                     }
                     else
@@ -203,8 +345,10 @@ public final class Detaching implements EntityProcessor<InstanceAdapter>
                         // adjust COUNT if present
                         if (rule.getCount() != null)
                         {
-                            rule.setCount(rule.getCount() - count);
-                            masterTask.set(TaskAdapter.RRULE, rule);
+                            // the rule of the plan is shared, so we need a fresh copy to modify it
+                            RecurrenceRule newRule = masterTask.valueOf(TaskAdapter.RRULE);
+                            newRule.setCount(rule.getCount() - count);
+                            masterTask.set(TaskAdapter.RRULE, newRule);
                         }
                     }
                 }
@@ -214,18 +358,33 @@ public final class Detaching implements EntityProcessor<InstanceAdapter>
                         new NullSafe<>(masterTask.valueOf(TaskAdapter.DUE))).value();
 
                 // update RDATE and EXDATE
-                masterTask.set(TaskAdapter.RDATE, new Sieved<>(instanceOriginalTime::before, masterTask.valueOf(TaskAdapter.RDATE)));
-                masterTask.set(TaskAdapter.EXDATE,
-                        new Sieved<>(new AnyOf<>(instanceOriginalTime::before, newStart::equals), masterTask.valueOf(TaskAdapter.EXDATE)));
-
-                // First check if we still have any RDATE instances left
-                // TODO: 6 lines for something we should be able to express in one simple expression, we need to straighten lib-recur!!
-                RecurrenceSet rdateSet = new RecurrenceSet();
-                rdateSet.addInstances(new RecurrenceList(new Timestamps(masterTask.valueOf(TaskAdapter.RDATE)).value()));
-                rdateSet.addExceptions(new RecurrenceList(new Timestamps(masterTask.valueOf(TaskAdapter.EXDATE)).value()));
-                RecurrenceSetIterator iterator = rdateSet.iterator(DateTime.UTC, Long.MIN_VALUE);
-                iterator.fastForward(Long.MIN_VALUE + 1); // skip bogus start
-                noInstances &= !iterator.hasNext();
+                // the dates of the plan are sorted, so we can cut off all dates up to the detached instance without looking at them
+                List<DateTime> rdates = plan.rdatesAfter(instanceOriginalTime.getTimestamp());
+                Iterable<DateTime> exdates = rule != null && noInstances
+                        // the EXDATEs have just been replaced with a mask for the old start
+                        ? masterTask.valueOf(TaskAdapter.EXDATE)
+                        : plan.exdatesAfter(Math.min(instanceOriginalTime.getTimestamp(), newStart.getTimestamp() - 1));
+                List<DateTime> newExdates = new ArrayList<>();
+                for (DateTime exdate : new Sieved<>(new AnyOf<>(instanceOriginalTime::before, newStart::equals), exdates))
+                {
+                    newExdates.add(exdate);
+                }
+                masterTask.set(TaskAdapter.RDATE, rdates);
+                masterTask.set(TaskAdapter.EXDATE, newExdates);
+
+                // check if we still have any RDATE instances left
+                long[] exdateTimestamps = new Timestamps(newExdates).value();
+                Arrays.sort(exdateTimestamps);
+                DateTime firstRdate = null;
+                for (DateTime rdate : rdates)
+                {
+                    if (Arrays.binarySearch(exdateTimestamps, rdate.getTimestamp()) < 0)
+                    {
+                        firstRdate = rdate;
+                        break;
+                    }
+                }
+                noInstances &= firstRdate == null;
 
                 if (noInstances)
                 {
@@ -237,7 +396,7 @@ public final class Detaching implements EntityProcessor<InstanceAdapter>
                     if (masterTask.valueOf(TaskAdapter.RRULE) == null)
                     {
                         // we don't have any RRULE, allowing us to adjust DTSTART/DUE to the first RDATE
-                        DateTime start = new DateTime(iterator.next());
+                        DateTime start = new DateTime(firstRdate.getTimestamp());
                         if (masterTask.valueOf(TaskAdapter.IS_ALLDAY))
                         {
                             start = start.toAllDay();
@@ -249,13 +408,12 @@ public final class Detaching implements EntityProcessor<InstanceAdapter>
                         updateStart(masterTask, start);
                     }
 
-                    // we still have instances, update the database
+                    // we still have instances, cache the new plan so it's not compiled from the serialized dates again, then update the database
+                    RecurrencePlans.shared().plan(masterTask, rdates, newExdates);
                     mTaskDelegate.update(db, masterTask, false);
                 }
             }
         }
-
-        return entityAdapter;
     }
 
 
@@ -282,6 +440,28 @@ public final class Detaching implements EntityProcessor<InstanceAdapter>
     }
 
 
+    /**
+     * Insert the given instance of the given master task as a new detached task with the given status, i.e. an unsynced task which is not related to the
+     * master anymore.
+     *
+     * @return The id of the new task.
+     */
+    private long insertDetached(SQLiteDatabase db, TaskAdapter masterTask, DateTime instanceStart, int status)
+    {
+        TaskAdapter task = masterTask.duplicate();
+        for (FieldAdapter<?, TaskAdapter> specialFieldAdapter : TaskValueDelegate.SPECIAL_FIELD_ADAPTERS)
+        {
+            task.unset(specialFieldAdapter);
+        }
+        task.unset(TaskAdapter._UID);
+        updateStart(task, instanceStart);
+        task.set(TaskAdapter.STATUS, status);
+        TaskAdapter result = mTaskDelegate.insert(db, task, false);
+        TaskValueDelegate.copyProperties(db, masterTask.id(), result.id());
+        return result.id();
+    }
+
+
     /**
      * Detach the given instance.
      * <p>
@@ -313,6 +493,10 @@ public final class Detaching implements EntityProcessor<InstanceAdapter>
         original.set(TaskAdapter.ORIGINAL_INSTANCE_TIME, null);
         original.unset(TaskAdapter.COMPLETED);
         original.commit(db);
+        // this bypasses the task processor chain, so log it and mark the list dirty here
+        ChangeLogHelper.log(db, TaskContract.Tasks.CONTENT_URI_PATH, original.id(), original.valueOf(TaskAdapter.LIST_ID),
+                TaskContract.ChangeLog.OPERATION_UPDATE, false);
+        mDirtyLists.add(original.valueOf(TaskAdapter.LIST_ID), 1);
 
         // wipe INSTANCE_ORIGINAL_TIME from instances entry
         ContentValues noOriginalTime = new ContentValues();
@@ -330,6 +514,9 @@ public final class Detaching implements EntityProcessor<InstanceAdapter>
         cloneAdapter.unset(TaskAdapter.ACCOUNT_NAME);
         cloneAdapter.unset(TaskAdapter.ACCOUNT_TYPE);
         cloneAdapter.commit(db);
+        ChangeLogHelper.log(db, TaskContract.Tasks.CONTENT_URI_PATH, cloneAdapter.id(), cloneAdapter.valueOf(TaskAdapter.LIST_ID),
+                TaskContract.ChangeLog.OPERATION_DELETE, false);
+        mDirtyLists.add(cloneAdapter.valueOf(TaskAdapter.LIST_ID), 1 + (cloneAdapter.valueOf(TaskAdapter._DIRTY) ? 1 : 0));
 
         // note, we don't have to create an instance for the clone because it's deleted
     }
@@ -50,7 +50,7 @@ import java.util.Locale;
  */
 public final class TaskValueDelegate implements EntityProcessor<InstanceAdapter>
 {
-    private final static Iterable<FieldAdapter<?, TaskAdapter>> SPECIAL_FIELD_ADAPTERS = new Seq<>(
+    final static Iterable<FieldAdapter<?, TaskAdapter>> SPECIAL_FIELD_ADAPTERS = new Seq<>(
             TaskAdapter.SYNC1,
             TaskAdapter.SYNC2,
             TaskAdapter.SYNC3,
@@ -76,6 +76,9 @@ public final class TaskValueDelegate implements EntityProcessor<InstanceAdapter>
             TaskAdapter.IS_CLOSED,
             TaskAdapter.HAS_PROPERTIES,
             TaskAdapter.HAS_ALARMS,
+            TaskAdapter.CHILD_COUNT,
+            TaskAdapter.CLOSED_CHILD_COUNT,
+            TaskAdapter.CHILD_PERCENT_COMPLETE,
             TaskAdapter.ORIGINAL_INSTANCE_SYNC_ID, /* this will be resolved automatically */
             // also unset any recurrence fields
             TaskAdapter.RRULE,
@@ -264,7 +267,7 @@ public final class TaskValueDelegate implements EntityProcessor<InstanceAdapter>
      * @param newId
      *         The ID of the task to copy the properties to.
      */
-    private void copyProperties(SQLiteDatabase db, long originalId, long newId)
+    static void copyProperties(SQLiteDatabase db, long originalId, long newId)
     {
         // for each property of the original task
         try (Cursor c = db.query(TaskDatabaseHelper.Tables.PROPERTIES, null /* all */,
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.processors.lists;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.provider.tasks.ChangeLogHelper;
+import org.dmfs.provider.tasks.model.ListAdapter;
+import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.tasks.contract.TaskContract.ChangeLog;
+import org.dmfs.tasks.contract.TaskContract.TaskLists;
+
+
+/**
+ * A processor which records every task list operation in the {@link ChangeLog}.
+ *
+ * @author agent
+ */
+public final class ChangeLogging implements EntityProcessor<ListAdapter>
+{
+    private final EntityProcessor<ListAdapter> mDelegate;
+
+
+    public ChangeLogging(EntityProcessor<ListAdapter> delegate)
+    {
+        mDelegate = delegate;
+    }
+
+
+    @Override
+    public ListAdapter insert(SQLiteDatabase db, ListAdapter list, boolean isSyncAdapter)
+    {
+        ListAdapter result = mDelegate.insert(db, list, isSyncAdapter);
+        ChangeLogHelper.log(db, TaskLists.CONTENT_URI_PATH, result.id(), result.id(), ChangeLog.OPERATION_INSERT, isSyncAdapter);
+        return result;
+    }
+
+
+    @Override
+    public ListAdapter update(SQLiteDatabase db, ListAdapter list, boolean isSyncAdapter)
+    {
+        ListAdapter result = mDelegate.update(db, list, isSyncAdapter);
+        ChangeLogHelper.log(db, TaskLists.CONTENT_URI_PATH, result.id(), result.id(), ChangeLog.OPERATION_UPDATE, isSyncAdapter);
+        return result;
+    }
+
+
+    @Override
+    public void delete(SQLiteDatabase db, ListAdapter list, boolean isSyncAdapter)
+    {
+        long id = list.id();
+        // log before the list is removed, the tasks are removed with it and the log takes the account from the list
+        ChangeLogHelper.logListTasksDeleted(db, id, isSyncAdapter);
+        ChangeLogHelper.log(db, TaskLists.CONTENT_URI_PATH, id, id, ChangeLog.OPERATION_DELETE, isSyncAdapter);
+        mDelegate.delete(db, list, isSyncAdapter);
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.processors.tasks;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.jems.iterable.decorators.Mapped;
+import org.dmfs.jems.single.Single;
+import org.dmfs.provider.tasks.TaskDatabaseHelper;
+import org.dmfs.provider.tasks.model.ContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.utils.InstanceValuesIterable;
+import org.dmfs.provider.tasks.utils.Limited;
+import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+
+/**
+ * Updates the instances of many tasks at once, like after the local time zone has changed or during a database upgrade.
+ * <p>
+ * This is a pipeline of three stages. The calling thread reads the tasks in chunks, the instance values of each chunk are calculated in parallel on a
+ * thread pool (that's pure recurrence math which doesn't need the database) and the results are written by the calling thread, while the next chunk is
+ * being calculated. The results are written with the same in-place update as {@link Instantiating} uses, so the outcome is the same as updating each task
+ * with {@link Instantiating}.
+ * <p>
+ * To keep the memory footprint bounded, the thread pool calculates at most {@link #INSTANCE_LIMIT} instances per task. The instances of tasks with more
+ * instances (like long closed series) are streamed by the calling thread when they are written, just like {@link Instantiating} does.
+ * <p>
+ * Make sure the tasks matching the selection include the master tasks of all overrides matching the selection, since the instances of the master tasks
+ * are not updated for an override.
+ *
+ * @author agent
+ */
+public final class BulkInstantiating
+{
+    /**
+     * The number of tasks per thread we calculate at once.
+     */
+    private final static int CHUNK_SIZE = 64;
+
+    /**
+     * The maximum number of instances per task we calculate in advance. Together with {@link #CHUNK_SIZE} this limits the number of pending instances to
+     * {@code 2 * CHUNK_SIZE * INSTANCE_LIMIT} per thread.
+     */
+    private final static int INSTANCE_LIMIT = 64;
+
+    private final static String LAST_INSTANCE_TIME = "last_instance_time";
+
+    private final static String[] PROJECTION = {
+            Tasks._ID, Tasks.ORIGINAL_INSTANCE_ID, Tasks.DTSTART, Tasks.DUE, Tasks.DURATION, Tasks.IS_CLOSED, Tasks.TZ, Tasks.IS_ALLDAY, Tasks.RRULE,
+            Tasks.RDATE, Tasks.EXDATE, Tasks.ORIGINAL_INSTANCE_TIME, Tasks.ORIGINAL_INSTANCE_ALLDAY,
+            // the time of the last existing instance, see prunedInstances
+            "(select max(" + Instances.INSTANCE_ORIGINAL_TIME + ") from " + TaskDatabaseHelper.Tables.INSTANCE_VIEW + " i where i." + Instances.TASK_ID
+                    + " = " + TaskDatabaseHelper.Tables.TASKS + "." + Tasks._ID + " or i." + Instances.ORIGINAL_INSTANCE_ID + " = "
+                    + TaskDatabaseHelper.Tables.TASKS + "." + Tasks._ID + ") as " + LAST_INSTANCE_TIME };
+
+    private final int mThreads;
+
+
+    /**
+     * Creates a {@link BulkInstantiating} which uses one thread per available processor.
+     */
+    public BulkInstantiating()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+
+    /**
+     * Creates a {@link BulkInstantiating} which uses the given number of threads to calculate the instances. With a single thread all instances are
+     * calculated by the calling thread.
+     *
+     * @param threads
+     *         The number of threads, must be at least 1.
+     */
+    public BulkInstantiating(int threads)
+    {
+        if (threads < 1)
+        {
+            throw new IllegalArgumentException("at least one thread is required");
+        }
+        mThreads = threads;
+    }
+
+
+    /**
+     * Updates the instances of all tasks matching the given selection. The caller is responsible for running this in a transaction.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param selection
+     *         The selection of the tasks to update, may be {@code null} to update all tasks.
+     * @param selectionArgs
+     *         The arguments of the selection.
+     *
+     * @return The number of tasks that have been updated.
+     */
+    public int update(SQLiteDatabase db, String selection, String[] selectionArgs)
+    {
+        ExecutorService executor = mThreads > 1 ? Executors.newFixedThreadPool(mThreads) : null;
+        int count = 0;
+        try (Cursor cursor = db.query(TaskDatabaseHelper.Tables.TASKS, PROJECTION, selection, selectionArgs, null, null, null))
+        {
+            int lastInstanceTimeIdx = cursor.getColumnIndex(LAST_INSTANCE_TIME);
+            List<TaskAdapter> pendingTasks = new ArrayList<>(0);
+            List<Future<List<ContentValues>>> pendingInstances = new ArrayList<>(0);
+            do
+            {
+                // read and submit the next chunk, then write the previous one while the next one is being calculated
+                List<TaskAdapter> tasks = new ArrayList<>(CHUNK_SIZE * mThreads);
+                List<Future<List<ContentValues>>> instances = new ArrayList<>(CHUNK_SIZE * mThreads);
+                while (tasks.size() < CHUNK_SIZE * mThreads && cursor.moveToNext())
+                {
+                    ContentValues values = new ContentValues(PROJECTION.length);
+                    DatabaseUtils.cursorRowToContentValues(cursor, values);
+                    values.remove(LAST_INSTANCE_TIME);
+                    TaskAdapter task = new ContentValuesTaskAdapter(cursor.getLong(0), values);
+                    Long lastInstanceTime = cursor.isNull(lastInstanceTimeIdx) ? null : cursor.getLong(lastInstanceTimeIdx);
+                    Callable<List<ContentValues>> calculation = () -> prunedInstances(task, lastInstanceTime);
+                    tasks.add(task);
+                    if (executor == null)
+                    {
+                        // single threaded, just calculate the instances right now
+                        FutureTask<List<ContentValues>> result = new FutureTask<>(calculation);
+                        result.run();
+                        instances.add(result);
+                    }
+                    else
+                    {
+                        instances.add(executor.submit(calculation));
+                    }
+                }
+                write(db, pendingTasks, pendingInstances);
+                count += pendingTasks.size();
+                pendingTasks = tasks;
+                pendingInstances = instances;
+            }
+            while (!pendingTasks.isEmpty());
+        }
+        finally
+        {
+            if (executor != null)
+            {
+                executor.shutdownNow();
+            }
+        }
+        return count;
+    }
+
+
+    private void write(SQLiteDatabase db, List<TaskAdapter> tasks, List<Future<List<ContentValues>>> instances)
+    {
+        for (int i = 0, count = tasks.size(); i < count; ++i)
+        {
+            TaskAdapter task = tasks.get(i);
+            Iterable<ContentValues> values = result(instances.get(i));
+            if (values == null)
+            {
+                // too many instances to calculate them in advance, stream them instead
+                values = new Mapped<>(Single::value, new Limited<>(Instantiating.MAX_INSTANCES, new InstanceValuesIterable(task)));
+            }
+            if (task.valueOf(TaskAdapter.ORIGINAL_INSTANCE_ID) == null)
+            {
+                Instantiating.updateMasterInstances(db, task, task.id(), values);
+            }
+            else
+            {
+                Instantiating.updateOverrideInstance(db, task, task.id(), values);
+            }
+        }
+    }
+
+
+    /**
+     * Returns the instance values of the given task or {@code null} if the task has more than {@link #INSTANCE_LIMIT} instances.
+     * <p>
+     * Of an open task, {@link Instantiating} only keeps the existing instances and the next upcoming instance. Instances after the last existing instance
+     * (but the first one) are ignored anyway, so we don't calculate them. That saves expanding thousands of instances of infinite rules.
+     */
+    private static List<ContentValues> prunedInstances(TaskAdapter task, Long lastInstanceTime)
+    {
+        boolean prune = !task.valueOf(TaskAdapter.IS_CLOSED);
+        List<ContentValues> result = new ArrayList<>();
+        for (Single<ContentValues> instance : new Limited<>(Instantiating.MAX_INSTANCES, new InstanceValuesIterable(task)))
+        {
+            if (result.size() == INSTANCE_LIMIT)
+            {
+                return null;
+            }
+            ContentValues values = instance.value();
+            result.add(values);
+            if (prune)
+            {
+                Long time = values.getAsLong(Instances.INSTANCE_ORIGINAL_TIME);
+                if (lastInstanceTime == null || (time == null ? 0 : time) > lastInstanceTime)
+                {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+
+    private static <T> T result(Future<T> future)
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("Failed to calculate instances", cause);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while calculating instances", e);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.processors.tasks;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper;
+import org.dmfs.provider.tasks.processors.tasks.instancedata.Dated;
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+
+import java.util.TimeZone;
+
+
+/**
+ * Updates the start and due sorting values of the instances after the local time zone has changed.
+ * <p>
+ * The sorting values are the local date and time of an instance (see {@link Dated}). Only instances of tasks which are not all-day depend on the local time
+ * zone, all-day instances have the same date everywhere. Also, the sorting value of an instance only changes if the offset of the new time zone at the time
+ * of the instance differs from the old one, so after a change to a zone with the same rules or after an update of the time zone database only a few
+ * instances need to be written. The values are calculated from the time stamps of the instances, so unlike {@link BulkInstantiating}, this doesn't need to
+ * expand any recurrence.
+ *
+ * @author agent
+ */
+public final class BulkResorting
+{
+    private final static String SQL_SELECT_TIMED_INSTANCES = "select i." + Instances._ID + ", i." + Instances.INSTANCE_START + ", i."
+            + Instances.INSTANCE_DUE + ", i." + Instances.INSTANCE_START_SORTING + ", i." + Instances.INSTANCE_DUE_SORTING
+            + " from " + TaskDatabaseHelper.Tables.INSTANCES + " i join " + TaskDatabaseHelper.Tables.TASKS + " t on (i." + Instances.TASK_ID + " = t."
+            + Tasks._ID + ") where coalesce(t." + Tasks.IS_ALLDAY + ", 0) = 0 and (i." + Instances.INSTANCE_START + " is not null or i."
+            + Instances.INSTANCE_DUE + " is not null)";
+
+    private final static String SQL_UPDATE_SORTING = "update " + TaskDatabaseHelper.Tables.INSTANCES + " set " + Instances.INSTANCE_START_SORTING + " = ?, "
+            + Instances.INSTANCE_DUE_SORTING + " = ? where " + Instances._ID + " = ?";
+
+
+    /**
+     * Updates the sorting values of all instances which are not all-day. The caller is responsible for running this in a transaction.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param timeZone
+     *         The local {@link TimeZone}.
+     *
+     * @return The number of instances that have been updated.
+     */
+    public int update(SQLiteDatabase db, TimeZone timeZone)
+    {
+        int count = 0;
+        SQLiteStatement statement = db.compileStatement(SQL_UPDATE_SORTING);
+        try (Cursor cursor = db.rawQuery(SQL_SELECT_TIMED_INSTANCES, null))
+        {
+            while (cursor.moveToNext())
+            {
+                Long startSorting = sorting(cursor, 1, timeZone);
+                Long dueSorting = sorting(cursor, 2, timeZone);
+                if (changed(cursor, 3, startSorting) || changed(cursor, 4, dueSorting))
+                {
+                    bind(statement, 1, startSorting);
+                    bind(statement, 2, dueSorting);
+                    statement.bindLong(3, cursor.getLong(0));
+                    statement.executeUpdateDelete();
+                    count += 1;
+                }
+            }
+        }
+        finally
+        {
+            statement.close();
+        }
+        return count;
+    }
+
+
+    /**
+     * Returns the sorting value of the time stamp in the given column, the same value {@link Dated} calculates for a date-time which is not all-day.
+     */
+    private static Long sorting(Cursor cursor, int column, TimeZone timeZone)
+    {
+        return cursor.isNull(column) ? null : new DateTime(timeZone, cursor.getLong(column)).getInstance();
+    }
+
+
+    private static boolean changed(Cursor cursor, int column, Long value)
+    {
+        return cursor.isNull(column) ? value != null : value == null || cursor.getLong(column) != value;
+    }
+
+
+    private static void bind(SQLiteStatement statement, int index, Long value)
+    {
+        if (value == null)
+        {
+            statement.bindNull(index);
+        }
+        else
+        {
+            statement.bindLong(index, value);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.processors.tasks;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.provider.tasks.ChangeLogHelper;
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.tasks.contract.TaskContract.ChangeLog;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+
+
+/**
+ * A processor which records every task operation in the {@link ChangeLog}. This should be the last processor before the {@link TaskCommitProcessor}, so it
+ * sees the final list of a task.
+ *
+ * @author agent
+ */
+public final class ChangeLogging implements EntityProcessor<TaskAdapter>
+{
+    private final EntityProcessor<TaskAdapter> mDelegate;
+
+
+    public ChangeLogging(EntityProcessor<TaskAdapter> delegate)
+    {
+        mDelegate = delegate;
+    }
+
+
+    @Override
+    public TaskAdapter insert(SQLiteDatabase db, TaskAdapter task, boolean isSyncAdapter)
+    {
+        TaskAdapter result = mDelegate.insert(db, task, isSyncAdapter);
+        ChangeLogHelper.log(db, Tasks.CONTENT_URI_PATH, result.id(), result.valueOf(TaskAdapter.LIST_ID), ChangeLog.OPERATION_INSERT, isSyncAdapter);
+        return result;
+    }
+
+
+    @Override
+    public TaskAdapter update(SQLiteDatabase db, TaskAdapter task, boolean isSyncAdapter)
+    {
+        TaskAdapter result = mDelegate.update(db, task, isSyncAdapter);
+        ChangeLogHelper.log(db, Tasks.CONTENT_URI_PATH, result.id(), result.valueOf(TaskAdapter.LIST_ID), ChangeLog.OPERATION_UPDATE, isSyncAdapter);
+        return result;
+    }
+
+
+    @Override
+    public void delete(SQLiteDatabase db, TaskAdapter task, boolean isSyncAdapter)
+    {
+        // take the values before the delegate removes the task
+        long id = task.id();
+        Long listId = task.valueOf(TaskAdapter.LIST_ID);
+        mDelegate.delete(db, task, isSyncAdapter);
+        ChangeLogHelper.log(db, Tasks.CONTENT_URI_PATH, id, listId, ChangeLog.OPERATION_DELETE, isSyncAdapter);
+    }
+}
@@ -28,6 +28,7 @@ import org.dmfs.jems.pair.Pair;
 import org.dmfs.jems.pair.elementary.RightSidedPair;
 import org.dmfs.jems.single.Single;
 import org.dmfs.jems.single.combined.Backed;
+import org.dmfs.jems.single.elementary.ValueSingle;
 import org.dmfs.provider.tasks.TaskDatabaseHelper;
 import org.dmfs.provider.tasks.model.CursorContentValuesTaskAdapter;
 import org.dmfs.provider.tasks.model.TaskAdapter;
@@ -62,6 +63,11 @@ public final class Instantiating implements EntityProcessor<TaskAdapter>
     // for now we only expand the next upcoming instance
     private final static int UPCOMING_INSTANCE_COUNT_LIMIT = 1;
 
+    /**
+     * The maximum number of instances we iterate of any task.
+     */
+    final static int MAX_INSTANCES = 10000;
+
 
     /**
      * Add a pseudo column to the given {@link ContentValues} to request an instances update, even if no time value has changed.
@@ -151,10 +157,40 @@ public final class Instantiating implements EntityProcessor<TaskAdapter>
      *         the row id of the new task.
      */
     private void updateOverrideInstance(SQLiteDatabase db, TaskAdapter taskAdapter, long id)
+    {
+        long origId = taskAdapter.valueOf(TaskAdapter.ORIGINAL_INSTANCE_ID);
+        updateOverrideInstance(db, taskAdapter, id, new Mapped<>(Single::value, new InstanceValuesIterable(taskAdapter)));
+
+        // ensure the distance from current is set properly for all sibling instances
+        try (Cursor c = db.query(TaskDatabaseHelper.Tables.TASKS, null,
+                String.format(Locale.ENGLISH, "(%s = %d)", TaskContract.Tasks._ID, origId), null, null, null, null))
+        {
+            if (c.moveToFirst())
+            {
+                TaskAdapter ta = new CursorContentValuesTaskAdapter(c, new ContentValues());
+                updateMasterInstances(db, ta, ta.id());
+            }
+        }
+    }
+
+
+    /**
+     * Update the instance of an override with the given instance values without updating the instances of the master task.
+     *
+     * @param db
+     *         an {@link SQLiteDatabase}.
+     * @param taskAdapter
+     *         the {@link TaskAdapter} of the override.
+     * @param id
+     *         the row id of the override.
+     * @param instances
+     *         The instance values of the override, this must contain exactly one element.
+     */
+    static void updateOverrideInstance(SQLiteDatabase db, TaskAdapter taskAdapter, long id, Iterable<ContentValues> instances)
     {
         long origId = taskAdapter.valueOf(TaskAdapter.ORIGINAL_INSTANCE_ID);
         int count = 0;
-        for (Single<ContentValues> values : new InstanceValuesIterable(taskAdapter))
+        for (ContentValues values : instances)
         {
             if (count++ > 1)
             {
@@ -172,12 +208,12 @@ public final class Instantiating implements EntityProcessor<TaskAdapter>
             {
                 if (c.moveToFirst())
                 {
-                    db.update(TaskDatabaseHelper.Tables.INSTANCES, new TaskRelated(id, values).value(), String.format(Locale.ENGLISH, "%s = %d",
-                            TaskContract.Instances._ID, c.getLong(0)), null);
+                    db.update(TaskDatabaseHelper.Tables.INSTANCES, new TaskRelated(id, new ValueSingle<>(values)).value(),
+                            String.format(Locale.ENGLISH, "%s = %d", TaskContract.Instances._ID, c.getLong(0)), null);
                 }
                 else
                 {
-                    db.insert(TaskDatabaseHelper.Tables.INSTANCES, "", new TaskRelated(id, values).value());
+                    db.insert(TaskDatabaseHelper.Tables.INSTANCES, "", new TaskRelated(id, new ValueSingle<>(values)).value());
                 }
             }
         }
@@ -185,17 +221,6 @@ public final class Instantiating implements EntityProcessor<TaskAdapter>
         {
             throw new RuntimeException("no instance returned for task which was supposed to have exactly one");
         }
-
-        // ensure the distance from current is set properly for all sibling instances
-        try (Cursor c = db.query(TaskDatabaseHelper.Tables.TASKS, null,
-                String.format(Locale.ENGLISH, "(%s = %d)", TaskContract.Tasks._ID, origId), null, null, null, null))
-        {
-            if (c.moveToFirst())
-            {
-                TaskAdapter ta = new CursorContentValuesTaskAdapter(c, new ContentValues());
-                updateMasterInstances(db, ta, ta.id());
-            }
-        }
     }
 
 
@@ -212,6 +237,26 @@ public final class Instantiating implements EntityProcessor<TaskAdapter>
      *         the row id of the new task
      */
     private void updateMasterInstances(SQLiteDatabase db, TaskAdapter taskAdapter, long id)
+    {
+        // for very long or even infinite series we need to stop iterating at some point.
+        updateMasterInstances(db, taskAdapter, id,
+                new Mapped<>(Single::value, new Limited<>(MAX_INSTANCES /* hard limit for infinite rules*/, new InstanceValuesIterable(taskAdapter))));
+    }
+
+
+    /**
+     * Updates the instances of an existing task with the given instance values.
+     *
+     * @param db
+     *         An {@link SQLiteDatabase}.
+     * @param taskAdapter
+     *         the {@link TaskAdapter} of the task to update
+     * @param id
+     *         the row id of the task
+     * @param instances
+     *         The values of the expected instances of the task in chronological order.
+     */
+    static void updateMasterInstances(SQLiteDatabase db, TaskAdapter taskAdapter, long id, Iterable<ContentValues> instances)
     {
         try (Cursor existingInstances = db.query(
                 TaskDatabaseHelper.Tables.INSTANCE_VIEW,
@@ -236,12 +281,8 @@ public final class Instantiating implements EntityProcessor<TaskAdapter>
             final int isClosedIdx = existingInstances.getColumnIndex(TaskContract.Instances.IS_CLOSED);
             final int distanceIdx = existingInstances.getColumnIndex(TaskContract.Instances.DISTANCE_FROM_CURRENT);
 
-            // get an Iterator of all expected instances
-            // for very long or even infinite series we need to stop iterating at some point.
-
             Iterable<Pair<Optional<ContentValues>, Optional<Integer>>> diff = new Diff<>(
-                    new Mapped<>(Single::value,
-                            new Limited<>(10000 /* hard limit for infinite rules*/, new InstanceValuesIterable(taskAdapter))),
+                    instances,
                     new Range(existingInstances.getCount()),
                     (newInstanceValues, cursorRow) ->
                     {
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.processors.tasks;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.provider.tasks.DirtyLists;
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.EntityProcessor;
+
+
+/**
+ * A processor which records the task lists that receive dirty or deleted tasks in {@link DirtyLists}, which marks them dirty when the transaction ends. Like
+ * the triggers it replaces, it adds one for the dirty flag and one for the deleted flag of every task written.
+ *
+ * @author agent
+ */
+public final class ListDirtying implements EntityProcessor<TaskAdapter>
+{
+    private final DirtyLists mDirtyLists;
+    private final EntityProcessor<TaskAdapter> mDelegate;
+
+
+    public ListDirtying(DirtyLists dirtyLists, EntityProcessor<TaskAdapter> delegate)
+    {
+        mDirtyLists = dirtyLists;
+        mDelegate = delegate;
+    }
+
+
+    @Override
+    public TaskAdapter insert(SQLiteDatabase db, TaskAdapter task, boolean isSyncAdapter)
+    {
+        TaskAdapter result = mDelegate.insert(db, task, isSyncAdapter);
+        // new tasks are dirty by default
+        boolean dirty = !result.isUpdated(TaskAdapter._DIRTY) || result.valueOf(TaskAdapter._DIRTY);
+        mDirtyLists.add(result.valueOf(TaskAdapter.LIST_ID), dirt(dirty, result.valueOf(TaskAdapter._DELETED)));
+        return result;
+    }
+
+
+    @Override
+    public TaskAdapter update(SQLiteDatabase db, TaskAdapter task, boolean isSyncAdapter)
+    {
+        TaskAdapter result = mDelegate.update(db, task, isSyncAdapter);
+        // note, the deleted copies Moving leaves in the old list are added by Moving itself
+        mDirtyLists.add(result.valueOf(TaskAdapter.LIST_ID), dirt(result.valueOf(TaskAdapter._DIRTY), result.valueOf(TaskAdapter._DELETED)));
+        return result;
+    }
+
+
+    @Override
+    public void delete(SQLiteDatabase db, TaskAdapter task, boolean isSyncAdapter)
+    {
+        long listId = task.valueOf(TaskAdapter.LIST_ID);
+        mDelegate.delete(db, task, isSyncAdapter);
+        if (task.isUpdated(TaskAdapter._DELETED))
+        {
+            // the task has only been marked deleted, tasks which have been removed right away don't need to be synced
+            mDirtyLists.add(listId, dirt(task.valueOf(TaskAdapter._DIRTY), true));
+        }
+    }
+
+
+    static int dirt(boolean dirty, boolean deleted)
+    {
+        return (dirty ? 1 : 0) + (deleted ? 1 : 0);
+    }
+}
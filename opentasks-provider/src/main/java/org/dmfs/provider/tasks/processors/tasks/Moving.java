@@ -20,11 +20,14 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 
+import org.dmfs.provider.tasks.ChangeLogHelper;
+import org.dmfs.provider.tasks.DirtyLists;
 import org.dmfs.provider.tasks.TaskDatabaseHelper;
 import org.dmfs.provider.tasks.model.CursorContentValuesTaskAdapter;
 import org.dmfs.provider.tasks.model.TaskAdapter;
 import org.dmfs.provider.tasks.processors.EntityProcessor;
 import org.dmfs.tasks.contract.TaskContract;
+import org.dmfs.tasks.contract.TaskContract.ChangeLog;
 
 
 /**
@@ -38,11 +41,13 @@ import org.dmfs.tasks.contract.TaskContract;
  */
 public final class Moving implements EntityProcessor<TaskAdapter>
 {
+    private final DirtyLists mDirtyLists;
     private final EntityProcessor<TaskAdapter> mDelegate;
 
 
-    public Moving(EntityProcessor<TaskAdapter> delegate)
+    public Moving(DirtyLists dirtyLists, EntityProcessor<TaskAdapter> delegate)
     {
+        mDirtyLists = dirtyLists;
         mDelegate = delegate;
     }
 
@@ -174,8 +179,10 @@ public final class Moving implements EntityProcessor<TaskAdapter>
             deletedTask.unset(TaskAdapter.LIST_ACCESS_LEVEL);
             deletedTask.unset(TaskAdapter.LIST_VISIBLE);
 
-            // create the deleted task
+            // create the deleted task, it bypasses the processor chain, so log it and mark the list dirty here
             deletedTask.commit(db);
+            ChangeLogHelper.log(db, TaskContract.Tasks.CONTENT_URI_PATH, deletedTask.id(), oldList, ChangeLog.OPERATION_DELETE, false);
+            mDirtyLists.add(oldList, ListDirtying.dirt(deletedTask.valueOf(TaskAdapter._DIRTY), true));
 
             result = deletedTask.id();
         }
@@ -197,6 +204,8 @@ public final class Moving implements EntityProcessor<TaskAdapter>
         if (commitTask)
         {
             task.commit(db);
+            ChangeLogHelper.log(db, TaskContract.Tasks.CONTENT_URI_PATH, task.id(), newList, ChangeLog.OPERATION_UPDATE, false);
+            mDirtyLists.add(newList, ListDirtying.dirt(true, task.valueOf(TaskAdapter._DELETED)));
         }
 
         return result;
@@ -21,7 +21,6 @@ import android.database.sqlite.SQLiteDatabase;
 import org.dmfs.provider.tasks.FTSDatabaseHelper;
 import org.dmfs.provider.tasks.model.TaskAdapter;
 import org.dmfs.provider.tasks.processors.EntityProcessor;
-import org.dmfs.provider.tasks.utils.Profiled;
 
 
 /**
@@ -44,7 +43,7 @@ public final class Searchable implements EntityProcessor<TaskAdapter>
     public TaskAdapter insert(SQLiteDatabase db, TaskAdapter task, boolean isSyncAdapter)
     {
         TaskAdapter result = mDelegate.insert(db, task, isSyncAdapter);
-        new Profiled("InsertFTS").run(() -> FTSDatabaseHelper.updateTaskFTSEntries(db, task));
+        FTSDatabaseHelper.updateTaskFTSEntries(db, task);
         return result;
     }
 
@@ -53,7 +52,7 @@ public final class Searchable implements EntityProcessor<TaskAdapter>
     public TaskAdapter update(SQLiteDatabase db, TaskAdapter task, boolean isSyncAdapter)
     {
         TaskAdapter result = mDelegate.update(db, task, isSyncAdapter);
-        new Profiled("UpdateFTS").run(() -> FTSDatabaseHelper.updateTaskFTSEntries(db, task));
+        FTSDatabaseHelper.updateTaskFTSEntries(db, task);
         return result;
     }
 
@@ -61,6 +60,6 @@ public final class Searchable implements EntityProcessor<TaskAdapter>
     @Override
     public void delete(SQLiteDatabase db, TaskAdapter entityAdapter, boolean isSyncAdapter)
     {
-        new Profiled("DeleteFTS").run(() -> mDelegate.delete(db, entityAdapter, isSyncAdapter));
+        mDelegate.delete(db, entityAdapter, isSyncAdapter);
     }
 }
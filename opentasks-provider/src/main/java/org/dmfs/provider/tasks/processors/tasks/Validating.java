@@ -187,6 +187,12 @@ public final class Validating implements EntityProcessor<TaskAdapter>
             throw new IllegalArgumentException("modification of HAS_ALARMS is not allowed");
         }
 
+        // the progress of the subtasks is set automatically
+        if (task.isUpdated(TaskAdapter.CHILD_COUNT) || task.isUpdated(TaskAdapter.CLOSED_CHILD_COUNT) || task.isUpdated(TaskAdapter.CHILD_PERCENT_COMPLETE))
+        {
+            throw new IllegalArgumentException("modification of CHILD_COUNT, CLOSED_CHILD_COUNT and CHILD_PERCENT_COMPLETE is not allowed");
+        }
+
         // only sync adapters are allowed to set modification time
         if (!isSyncAdapter && task.isUpdated(TaskAdapter.LAST_MODIFIED))
         {
@@ -50,11 +50,27 @@ import java.util.Iterator;
 public final class InstanceValuesIterable implements Iterable<Single<ContentValues>>
 {
     private final TaskAdapter mTaskAdapter;
+    private final Iterable<DateTime> mInstances;
 
 
     public InstanceValuesIterable(TaskAdapter taskAdapter)
+    {
+        this(taskAdapter, new TaskInstanceIterable(taskAdapter));
+    }
+
+
+    /**
+     * An {@link Iterable} of the values of the given instances of a task. The instances are ignored if the task is not recurring.
+     *
+     * @param taskAdapter
+     *         The {@link TaskAdapter} of the task.
+     * @param instances
+     *         The instances of the task, usually a {@link TaskInstanceIterable}.
+     */
+    public InstanceValuesIterable(TaskAdapter taskAdapter, Iterable<DateTime> instances)
     {
         mTaskAdapter = taskAdapter;
+        mInstances = instances;
     }
 
 
@@ -93,14 +109,14 @@ public final class InstanceValuesIterable implements Iterable<Single<ContentValu
                     new Overridden(new Present<>(dateTime),
                             new Enduring(new DueDated(new Zipped<>(new Present<>(dateTime), effectiveDuration, this::addDuration),
                                     new StartDated(new Present<>(dateTime), new VanillaInstanceData()))))),
-                    new TaskInstanceIterable(mTaskAdapter).iterator());
+                    mInstances.iterator());
         }
 
         // special treatment for recurring tasks without a DTSTART:
         return new Mapped<>(dateTime -> new Distant(mTaskAdapter.valueOf(TaskAdapter.IS_CLOSED) ? -1 : 0,
                 new Overridden(new Present<>(dateTime),
                         new DueDated(new Present<>(dateTime), new VanillaInstanceData()))),
-                new TaskInstanceIterable(mTaskAdapter).iterator());
+                mInstances.iterator());
 
     }
 
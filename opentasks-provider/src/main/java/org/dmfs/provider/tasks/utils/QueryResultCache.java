@@ -0,0 +1,481 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.utils;
+
+import android.content.ContentResolver;
+import android.database.AbstractWindowedCursor;
+import android.database.Cursor;
+import android.database.CursorWindow;
+import android.net.Uri;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import org.dmfs.provider.tasks.metrics.CacheMetrics;
+import org.dmfs.tasks.contract.TaskContract;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TimeZone;
+
+
+/**
+ * A bounded LRU cache of query results, see {@link TaskContract#CACHE}.
+ * <p>
+ * A result is stored as an immutable {@link CursorWindow}, which is shared by all the {@link Cursor}s that serve it. Every table has a generation, which is
+ * incremented whenever the table has been changed. A result is only returned as long as the generations of the tables it depends on are still the same as
+ * before the query was run. Changes must be recorded with {@link #written(int)} while the transaction is running and published with {@link #commit()} after
+ * the transaction has been committed, but before any notifications are sent.
+ * <p>
+ * Changes which are not made in a transaction of the provider must be enclosed by {@link #suspend()} and {@link #resume(int)}. Nothing is cached or returned
+ * in the meantime.
+ *
+ * @author agent
+ */
+public final class QueryResultCache
+{
+    public final static int LISTS = 1;
+    public final static int TASKS = 1 << 1;
+    public final static int PROPERTIES = 1 << 2;
+    public final static int CATEGORIES = 1 << 3;
+    public final static int ALL = LISTS | TASKS | PROPERTIES | CATEGORIES;
+
+    private final static int TABLE_COUNT = 4;
+
+    /**
+     * The size every entry is accounted with at least. Each {@link CursorWindow} reserves some memory of its own, so this also limits the number of entries.
+     */
+    private final static int MIN_ENTRY_SIZE = 64 * 1024;
+
+    /**
+     * The estimated number of bytes a field takes in a {@link CursorWindow} in addition to its value.
+     */
+    private final static int FIELD_OVERHEAD = 12;
+
+    private final Object mLock = new Object();
+    private final LruCache<Key, Entry> mResults;
+    private final int mMaxEntrySize;
+    private final CacheMetrics mMetrics = new CacheMetrics("query results");
+
+    // the following fields are guarded by mLock
+    private final long[] mGenerations = new long[TABLE_COUNT];
+    private int mWritten;
+    private int mSuspended;
+
+
+    /**
+     * Creates a {@link QueryResultCache}.
+     *
+     * @param maxSize
+     *         The maximum number of bytes all cached results may take.
+     * @param maxEntrySize
+     *         The maximum number of bytes of a single result. Larger results are not cached.
+     */
+    public QueryResultCache(int maxSize, int maxEntrySize)
+    {
+        mMaxEntrySize = maxEntrySize;
+        mResults = new LruCache<Key, Entry>(maxSize)
+        {
+            @Override
+            protected int sizeOf(Key key, Entry entry)
+            {
+                return entry.size;
+            }
+
+
+            @Override
+            protected void entryRemoved(boolean evicted, Key key, Entry oldValue, Entry newValue)
+            {
+                // release the reference of the cache, cursors which still use the window hold their own
+                oldValue.window.close();
+            }
+        };
+    }
+
+
+    /**
+     * Returns a {@link Cursor} with the cached result of the given query or {@code null} if there is no current result.
+     *
+     * @param key
+     *         The {@link Key} of the query.
+     * @param resolver
+     *         The {@link ContentResolver} to register the notification {@link Uri} with.
+     */
+    public Cursor get(Key key, ContentResolver resolver)
+    {
+        synchronized (mLock)
+        {
+            Entry entry = mResults.get(key);
+            if (entry != null && mSuspended == 0 && entry.isCurrent(mGenerations))
+            {
+                mMetrics.recordHit();
+                return entry.cursor(resolver);
+            }
+            if (entry != null && !entry.isCurrent(mGenerations))
+            {
+                mResults.remove(key);
+            }
+            mMetrics.recordMiss();
+            return null;
+        }
+    }
+
+
+    /**
+     * Returns the current generations of all tables or {@code null} if caching is suspended. This must be called before the query is run.
+     */
+    public long[] generations()
+    {
+        synchronized (mLock)
+        {
+            return mSuspended == 0 ? mGenerations.clone() : null;
+        }
+    }
+
+
+    /**
+     * Caches the result of a query, unless it's too large.
+     *
+     * @param key
+     *         The {@link Key} of the query.
+     * @param tables
+     *         The tables the result depends on.
+     * @param generations
+     *         The generations of the tables as returned by {@link #generations()} before the query was run.
+     * @param cursor
+     *         The result of the query.
+     * @param resolver
+     *         The {@link ContentResolver} to register the notification {@link Uri} with.
+     *
+     * @return A {@link Cursor} with the result, this is either the given {@link Cursor} or a {@link Cursor} on the cached result, in which case the given
+     * {@link Cursor} has been closed.
+     */
+    public Cursor put(Key key, int tables, long[] generations, Cursor cursor, ContentResolver resolver)
+    {
+        Entry entry = snapshot(cursor, tables, generations);
+        if (entry == null)
+        {
+            // too large, return the original result from the start
+            cursor.moveToPosition(-1);
+            return cursor;
+        }
+        cursor.close();
+
+        synchronized (mLock)
+        {
+            Cursor result = entry.cursor(resolver);
+            if (mSuspended == 0 && entry.isCurrent(mGenerations))
+            {
+                // the cache takes over the initial reference of the window
+                mResults.put(key, entry);
+            }
+            else
+            {
+                // the tables have been changed while the query was running, the result is still valid for this query but must not be cached
+                entry.window.close();
+            }
+            return result;
+        }
+    }
+
+
+    /**
+     * Records that the given tables have been written in the current transaction.
+     */
+    public void written(int tables)
+    {
+        synchronized (mLock)
+        {
+            mWritten |= tables;
+        }
+    }
+
+
+    /**
+     * Invalidates all results which depend on the tables which have been written since the last commit.
+     */
+    public void commit()
+    {
+        synchronized (mLock)
+        {
+            invalidate(mWritten);
+            mWritten = 0;
+        }
+    }
+
+
+    /**
+     * Stops caching until {@link #resume(int)} is called. Calls may be nested.
+     */
+    public void suspend()
+    {
+        synchronized (mLock)
+        {
+            mSuspended += 1;
+        }
+    }
+
+
+    /**
+     * Invalidates all results which depend on the given tables and resumes caching, unless there are other pending calls to {@link #suspend()}.
+     */
+    public void resume(int tables)
+    {
+        synchronized (mLock)
+        {
+            invalidate(tables);
+            mSuspended -= 1;
+        }
+    }
+
+
+    /**
+     * Returns the {@link CacheMetrics} of this cache.
+     */
+    public CacheMetrics metrics()
+    {
+        return mMetrics;
+    }
+
+
+    private void invalidate(int tables)
+    {
+        if (tables == 0)
+        {
+            return;
+        }
+        for (int i = 0; i < TABLE_COUNT; ++i)
+        {
+            if ((tables & (1 << i)) != 0)
+            {
+                mGenerations[i] += 1;
+            }
+        }
+        // drop the outdated results right away to free their windows
+        for (Map.Entry<Key, Entry> result : mResults.snapshot().entrySet())
+        {
+            if (!result.getValue().isCurrent(mGenerations))
+            {
+                mResults.remove(result.getKey());
+            }
+        }
+    }
+
+
+    /**
+     * Copies the result of the given {@link Cursor} into a new {@link CursorWindow} or returns {@code null} if it exceeds the maximum entry size.
+     */
+    private Entry snapshot(Cursor cursor, int tables, long[] generations)
+    {
+        String[] columns = cursor.getColumnNames();
+        CursorWindow window = new CursorWindow("query result cache");
+        int size = 0;
+        try
+        {
+            window.setNumColumns(columns.length);
+            int row = 0;
+            cursor.moveToPosition(-1);
+            while (cursor.moveToNext())
+            {
+                if (!window.allocRow())
+                {
+                    window.close();
+                    return null;
+                }
+                for (int column = 0; column < columns.length; ++column)
+                {
+                    boolean stored;
+                    switch (cursor.getType(column))
+                    {
+                        case Cursor.FIELD_TYPE_NULL:
+                            stored = window.putNull(row, column);
+                            break;
+                        case Cursor.FIELD_TYPE_INTEGER:
+                            stored = window.putLong(cursor.getLong(column), row, column);
+                            size += 8;
+                            break;
+                        case Cursor.FIELD_TYPE_FLOAT:
+                            stored = window.putDouble(cursor.getDouble(column), row, column);
+                            size += 8;
+                            break;
+                        case Cursor.FIELD_TYPE_BLOB:
+                            byte[] blob = cursor.getBlob(column);
+                            stored = window.putBlob(blob, row, column);
+                            size += blob.length;
+                            break;
+                        default:
+                            String string = cursor.getString(column);
+                            stored = window.putString(string, row, column);
+                            size += string.length() * 2;
+                    }
+                    size += FIELD_OVERHEAD;
+                    if (!stored || size > mMaxEntrySize)
+                    {
+                        window.close();
+                        return null;
+                    }
+                }
+                row += 1;
+            }
+        }
+        catch (RuntimeException e)
+        {
+            window.close();
+            throw e;
+        }
+        return new Entry(window, columns, cursor.getNotificationUri(), tables, generations, Math.max(size, MIN_ENTRY_SIZE));
+    }
+
+
+    /**
+     * The key of a query. Note, the key contains the default time zone, because some results depend on it.
+     */
+    public final static class Key
+    {
+        private final String mUri;
+        private final String[] mProjection;
+        private final String mSelection;
+        private final String[] mSelectionArgs;
+        private final String mSortOrder;
+        private final String mTimeZone;
+        private final int mHashCode;
+
+
+        public Key(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder)
+        {
+            mUri = uri.toString();
+            mProjection = projection == null ? null : projection.clone();
+            mSelection = selection;
+            mSelectionArgs = selectionArgs == null ? null : selectionArgs.clone();
+            mSortOrder = sortOrder;
+            mTimeZone = TimeZone.getDefault().getID();
+            mHashCode = Arrays.hashCode(new Object[] {
+                    mUri, Arrays.hashCode(mProjection), mSelection, Arrays.hashCode(mSelectionArgs), mSortOrder, mTimeZone });
+        }
+
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (!(o instanceof Key))
+            {
+                return false;
+            }
+            Key other = (Key) o;
+            return mHashCode == other.mHashCode
+                    && mUri.equals(other.mUri)
+                    && Arrays.equals(mProjection, other.mProjection)
+                    && TextUtils.equals(mSelection, other.mSelection)
+                    && Arrays.equals(mSelectionArgs, other.mSelectionArgs)
+                    && TextUtils.equals(mSortOrder, other.mSortOrder)
+                    && mTimeZone.equals(other.mTimeZone);
+        }
+
+
+        @Override
+        public int hashCode()
+        {
+            return mHashCode;
+        }
+    }
+
+
+    private final static class Entry
+    {
+        final CursorWindow window;
+        final String[] columns;
+        final Uri notificationUri;
+        final int tables;
+        final long[] generations;
+        final int size;
+
+
+        Entry(CursorWindow window, String[] columns, Uri notificationUri, int tables, long[] generations, int size)
+        {
+            this.window = window;
+            this.columns = columns;
+            this.notificationUri = notificationUri;
+            this.tables = tables;
+            this.generations = generations;
+            this.size = size;
+        }
+
+
+        boolean isCurrent(long[] currentGenerations)
+        {
+            for (int i = 0; i < TABLE_COUNT; ++i)
+            {
+                if ((tables & (1 << i)) != 0 && generations[i] != currentGenerations[i])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+
+        /**
+         * Returns a new {@link Cursor} on the window of this entry. The window must not have been closed yet.
+         */
+        Cursor cursor(ContentResolver resolver)
+        {
+            WindowCursor cursor = new WindowCursor(window, columns);
+            if (notificationUri != null)
+            {
+                cursor.setNotificationUri(resolver, notificationUri);
+            }
+            return cursor;
+        }
+    }
+
+
+    /**
+     * A read-only {@link Cursor} on a shared {@link CursorWindow}.
+     */
+    private final static class WindowCursor extends AbstractWindowedCursor
+    {
+        private final String[] mColumns;
+        private final int mCount;
+
+
+        WindowCursor(CursorWindow window, String[] columns)
+        {
+            // every cursor holds its own reference, so closing it doesn't close the window for everyone else
+            window.acquireReference();
+            setWindow(window);
+            mColumns = columns;
+            mCount = window.getNumRows();
+        }
+
+
+        @Override
+        public int getCount()
+        {
+            return mCount;
+        }
+
+
+        @Override
+        public String[] getColumnNames()
+        {
+            return mColumns;
+        }
+    }
+}
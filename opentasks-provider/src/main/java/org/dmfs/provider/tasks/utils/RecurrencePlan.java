@@ -0,0 +1,322 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.utils;
+
+import org.dmfs.jems.optional.elementary.NullSafe;
+import org.dmfs.jems.single.combined.Backed;
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.rfc5545.recur.RecurrenceRule;
+import org.dmfs.rfc5545.recurrenceset.RecurrenceList;
+import org.dmfs.rfc5545.recurrenceset.RecurrenceRuleAdapter;
+import org.dmfs.rfc5545.recurrenceset.RecurrenceSet;
+import org.dmfs.rfc5545.recurrenceset.RecurrenceSetIterator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TimeZone;
+
+
+/**
+ * The compiled recurrence of a task, i.e. the parsed RRULE, the sorted timestamps of RDATE and EXDATE and the start with its resolved {@link TimeZone}.
+ * <p>
+ * RDATEs and EXDATEs are kept sorted by time stamp, so checking for an EXDATE or cutting off all dates before a certain time is a binary search, even
+ * for series with thousands of dates.
+ * <p>
+ * A plan is immutable and may be shared among threads. Get one from {@link RecurrencePlans}, which saves parsing the same recurrence over and over again.
+ *
+ * @author agent
+ */
+public final class RecurrencePlan
+{
+    private final static Comparator<DateTime> BY_TIMESTAMP = (left, right) -> Long.compare(left.getTimestamp(), right.getTimestamp());
+
+    private final DateTime mStart;
+    private final RecurrenceRule mRule;
+    private final List<DateTime> mRdateTimes;
+    private final long[] mRdates;
+    private final List<DateTime> mExdateTimes;
+    private final long[] mExdates;
+    private final String mTimeZoneId;
+    private final String mDefaultTimeZoneId;
+
+
+    /**
+     * Compiles the recurrence of the given task.
+     *
+     * @param taskAdapter
+     *         The {@link TaskAdapter} of the task, must have a start or a due date.
+     */
+    public RecurrencePlan(TaskAdapter taskAdapter)
+    {
+        this(taskAdapter, taskAdapter.valueOf(TaskAdapter.RDATE), taskAdapter.valueOf(TaskAdapter.EXDATE));
+    }
+
+
+    /**
+     * Compiles the recurrence of the given task with the given RDATEs and EXDATEs, which saves parsing them when they are at hand anyway.
+     *
+     * @param taskAdapter
+     *         The {@link TaskAdapter} of the task, must have a start or a due date.
+     * @param rdates
+     *         The RDATEs of the task.
+     * @param exdates
+     *         The EXDATEs of the task.
+     */
+    RecurrencePlan(TaskAdapter taskAdapter, Iterable<DateTime> rdates, Iterable<DateTime> exdates)
+    {
+        DateTime start = new Backed<DateTime>(new NullSafe<>(taskAdapter.valueOf(TaskAdapter.DTSTART)), () -> taskAdapter.valueOf(TaskAdapter.DUE)).value();
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        RecurrenceRule rule = taskAdapter.valueOf(TaskAdapter.RRULE);
+        if (rule != null && rule.getUntil() != null && start.isFloating() != rule.getUntil().isFloating())
+        {
+            // rule UNTIL date mismatches start. This is merely a workaround for existing users. In future we should make sure
+            // such tasks don't exist
+            if (start.isFloating())
+            {
+                // make until floating too by making it floating in the current time zone
+                rule.setUntil(rule.getUntil().shiftTimeZone(defaultTimeZone).swapTimeZone(null));
+            }
+            else
+            {
+                // anchor UNTIL in the current time zone
+                rule.setUntil(new DateTime(null, rule.getUntil().getTimestamp()).swapTimeZone(defaultTimeZone));
+            }
+        }
+        mStart = start;
+        mRule = rule;
+        mRdateTimes = sorted(rdates);
+        mRdates = timestamps(mRdateTimes);
+        mExdateTimes = sorted(exdates);
+        mExdates = timestamps(mExdateTimes);
+        mTimeZoneId = taskAdapter.valueOf(TaskAdapter.TIMEZONE_RAW);
+        mDefaultTimeZoneId = defaultTimeZone.getID();
+    }
+
+
+    private RecurrencePlan(RecurrencePlan plan, List<DateTime> rdateTimes, List<DateTime> exdateTimes)
+    {
+        mStart = plan.mStart;
+        mRule = plan.mRule;
+        mRdateTimes = rdateTimes;
+        mRdates = timestamps(rdateTimes);
+        mExdateTimes = exdateTimes;
+        mExdates = timestamps(exdateTimes);
+        mTimeZoneId = plan.mTimeZoneId;
+        mDefaultTimeZoneId = plan.mDefaultTimeZoneId;
+    }
+
+
+    /**
+     * Returns a copy of this plan with the given RDATEs and EXDATEs added. This saves parsing all dates again when a task just got a few more of them,
+     * which is the usual way these lists change.
+     *
+     * @param rdates
+     *         The new RDATEs.
+     * @param exdates
+     *         The new EXDATEs.
+     *
+     * @return A new {@link RecurrencePlan}.
+     */
+    RecurrencePlan withAppended(Iterable<DateTime> rdates, Iterable<DateTime> exdates)
+    {
+        return new RecurrencePlan(this, merged(mRdateTimes, rdates), merged(mExdateTimes, exdates));
+    }
+
+
+    /**
+     * Returns the start of the recurrence, i.e. the start of the task or the due date if the task has no start.
+     */
+    public DateTime start()
+    {
+        return mStart;
+    }
+
+
+    /**
+     * Returns the {@link RecurrenceRule} or {@code null} if the task has no RRULE. The rule is shared, so it must not be modified. Get a fresh one from the
+     * task if you need to change it.
+     */
+    public RecurrenceRule rule()
+    {
+        return mRule;
+    }
+
+
+    /**
+     * Returns the sorted timestamps of the RDATEs.
+     */
+    public long[] rdates()
+    {
+        return mRdates.clone();
+    }
+
+
+    /**
+     * Returns the sorted timestamps of the EXDATEs.
+     */
+    public long[] exdates()
+    {
+        return mExdates.clone();
+    }
+
+
+    /**
+     * Returns the RDATEs after the given time stamp in chronological order.
+     *
+     * @param timestamp
+     *         A time stamp, use {@link Long#MIN_VALUE} to get all RDATEs.
+     */
+    public List<DateTime> rdatesAfter(long timestamp)
+    {
+        return mRdateTimes.subList(indexAfter(mRdates, timestamp), mRdates.length);
+    }
+
+
+    /**
+     * Returns the EXDATEs after the given time stamp in chronological order.
+     *
+     * @param timestamp
+     *         A time stamp, use {@link Long#MIN_VALUE} to get all EXDATEs.
+     */
+    public List<DateTime> exdatesAfter(long timestamp)
+    {
+        return mExdateTimes.subList(indexAfter(mExdates, timestamp), mExdates.length);
+    }
+
+
+    /**
+     * Returns whether there is an EXDATE at the given time stamp.
+     */
+    public boolean isExcluded(long timestamp)
+    {
+        return Arrays.binarySearch(mExdates, timestamp) >= 0;
+    }
+
+
+    /**
+     * Returns the time zone id of the task or {@code null} if the task is floating or all-day.
+     */
+    public String timeZoneId()
+    {
+        return mTimeZoneId;
+    }
+
+
+    /**
+     * Returns whether this plan has been compiled with the given default time zone. The UNTIL workaround depends on it, so a plan is stale once the
+     * default time zone has changed.
+     */
+    boolean isValidIn(TimeZone defaultTimeZone)
+    {
+        return mDefaultTimeZoneId.equals(defaultTimeZone.getID());
+    }
+
+
+    /**
+     * Returns a {@link RecurrenceSetIterator} of all instances of this plan, starting at {@link #start()}.
+     *
+     * @param end
+     *         The timestamp to stop at.
+     */
+    public RecurrenceSetIterator iterator(long end)
+    {
+        RecurrenceSet set = new RecurrenceSet();
+        if (mRule != null)
+        {
+            set.addInstances(new RecurrenceRuleAdapter(mRule));
+        }
+        set.addInstances(new RecurrenceList(rdates()));
+        set.addExceptions(new RecurrenceList(exdates()));
+        return set.iterator(mStart.getTimeZone(), mStart.getTimestamp(), end);
+    }
+
+
+    /**
+     * Returns the index of the first element greater than the given value in the given sorted array.
+     */
+    static int indexAfter(long[] sorted, long value)
+    {
+        if (value == Long.MAX_VALUE)
+        {
+            return sorted.length;
+        }
+        int index = Arrays.binarySearch(sorted, value + 1);
+        if (index < 0)
+        {
+            return -index - 1;
+        }
+        // the array may contain the same value multiple times
+        while (index > 0 && sorted[index - 1] > value)
+        {
+            index -= 1;
+        }
+        return index;
+    }
+
+
+    private static List<DateTime> sorted(Iterable<DateTime> dateTimes)
+    {
+        List<DateTime> result = new ArrayList<>();
+        for (DateTime dateTime : dateTimes)
+        {
+            result.add(dateTime);
+        }
+        // this is a stable sort, so dates with the same time stamp keep their order
+        Collections.sort(result, BY_TIMESTAMP);
+        return Collections.unmodifiableList(result);
+    }
+
+
+    private static List<DateTime> merged(List<DateTime> sorted, Iterable<DateTime> dateTimes)
+    {
+        List<DateTime> additions = sorted(dateTimes);
+        if (additions.isEmpty())
+        {
+            return sorted;
+        }
+        List<DateTime> result = new ArrayList<>(sorted.size() + additions.size());
+        int i = 0;
+        int j = 0;
+        while (i < sorted.size() || j < additions.size())
+        {
+            if (j == additions.size() || i < sorted.size() && BY_TIMESTAMP.compare(sorted.get(i), additions.get(j)) <= 0)
+            {
+                result.add(sorted.get(i++));
+            }
+            else
+            {
+                result.add(additions.get(j++));
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+
+    private static long[] timestamps(List<DateTime> dateTimes)
+    {
+        long[] result = new long[dateTimes.size()];
+        for (int i = 0; i < result.length; ++i)
+        {
+            result[i] = dateTimes.get(i).getTimestamp();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.utils;
+
+import android.content.ContentValues;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import org.dmfs.provider.tasks.metrics.CacheMetrics;
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.model.adapters.StringFieldAdapter;
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+
+/**
+ * A bounded LRU cache of {@link RecurrencePlan}s by task id.
+ * <p>
+ * A cached plan is only returned if the raw values it has been compiled from are still the same, so an outdated plan is never returned, not even for a task
+ * which is just being updated. Note, we can't rely on {@link Tasks#VERSION} for that, since the version is incremented by a trigger after the update, while
+ * the new values are already visible to the processors.
+ * <p>
+ * If dates have just been appended to RDATE or EXDATE, the new plan is derived from the cached one, so only the new dates need to be parsed. Code which
+ * removes dates from these lists (like when an instance is completed) can hand in the remaining dates with {@link #plan(TaskAdapter, Iterable, Iterable)}.
+ *
+ * @author agent
+ */
+public final class RecurrencePlans
+{
+    private final static int CAPACITY = 256;
+
+    private final static RecurrencePlans SHARED = new RecurrencePlans(CAPACITY);
+
+    /**
+     * The raw values a {@link RecurrencePlan} depends on.
+     */
+    private final static StringFieldAdapter<TaskAdapter>[] INPUTS = inputs(Tasks.RRULE, Tasks.RDATE, Tasks.EXDATE, Tasks.DTSTART, Tasks.DUE, Tasks.TZ,
+            Tasks.IS_ALLDAY);
+
+    // the indexes of some of the inputs
+    private final static int RDATE = 1;
+    private final static int EXDATE = 2;
+    private final static int TZ = 5;
+
+    private final LruCache<Long, Entry> mPlans;
+    private final CacheMetrics mMetrics = new CacheMetrics("recurrence plans");
+
+
+    /**
+     * Returns the {@link RecurrencePlans} shared by all processors.
+     */
+    public static RecurrencePlans shared()
+    {
+        return SHARED;
+    }
+
+
+    public RecurrencePlans(int capacity)
+    {
+        mPlans = new LruCache<>(capacity);
+    }
+
+
+    /**
+     * Returns the {@link RecurrencePlan} of the given task, either from the cache or a freshly compiled one.
+     *
+     * @param taskAdapter
+     *         The {@link TaskAdapter} of a task with a start or a due date.
+     *
+     * @return The {@link RecurrencePlan} of the task.
+     */
+    public RecurrencePlan plan(TaskAdapter taskAdapter)
+    {
+        long id = taskAdapter.id();
+        if (id < 0)
+        {
+            // a task which has not been inserted yet, there is nothing to cache
+            return new RecurrencePlan(taskAdapter);
+        }
+
+        String[] inputs = rawInputs(taskAdapter);
+        Entry entry = mPlans.get(id);
+        if (entry != null && Arrays.equals(entry.inputs, inputs) && entry.plan.isValidIn(TimeZone.getDefault()))
+        {
+            mMetrics.recordHit();
+            return entry.plan;
+        }
+
+        mMetrics.recordMiss();
+        RecurrencePlan plan = entry != null && entry.plan.isValidIn(TimeZone.getDefault()) ? appended(entry, inputs) : null;
+        if (plan == null)
+        {
+            plan = new RecurrencePlan(taskAdapter);
+        }
+        mPlans.put(id, new Entry(inputs, plan));
+        return plan;
+    }
+
+
+    /**
+     * Compiles and caches the {@link RecurrencePlan} of the given task, which has just been given the given RDATEs and EXDATEs. Unlike {@link
+     * #plan(TaskAdapter)} this doesn't parse the dates, so the next lookup of the task doesn't have to parse them either.
+     *
+     * @param taskAdapter
+     *         The {@link TaskAdapter} of a task with a start or a due date.
+     * @param rdates
+     *         The RDATEs the task has just been given, in chronological order.
+     * @param exdates
+     *         The EXDATEs the task has just been given, in chronological order.
+     *
+     * @return The {@link RecurrencePlan} of the task.
+     */
+    public RecurrencePlan plan(TaskAdapter taskAdapter, Iterable<DateTime> rdates, Iterable<DateTime> exdates)
+    {
+        RecurrencePlan plan = new RecurrencePlan(taskAdapter, rdates, exdates);
+        long id = taskAdapter.id();
+        if (id >= 0)
+        {
+            mPlans.put(id, new Entry(rawInputs(taskAdapter), plan));
+        }
+        return plan;
+    }
+
+
+    /**
+     * Returns the plan of the given entry with the dates which have been appended to RDATE and EXDATE or {@code null} if the inputs have been changed
+     * otherwise.
+     */
+    private RecurrencePlan appended(Entry entry, String[] inputs)
+    {
+        for (int i = 0; i < INPUTS.length; ++i)
+        {
+            if (i != RDATE && i != EXDATE && !TextUtils.equals(entry.inputs[i], inputs[i]))
+            {
+                return null;
+            }
+        }
+        String rdateTail = tail(entry.inputs[RDATE], inputs[RDATE]);
+        String exdateTail = tail(entry.inputs[EXDATE], inputs[EXDATE]);
+        if (rdateTail == null || exdateTail == null)
+        {
+            return null;
+        }
+        ContentValues tails = new ContentValues(3);
+        tails.put(Tasks.RDATE, rdateTail.isEmpty() ? null : rdateTail);
+        tails.put(Tasks.EXDATE, exdateTail.isEmpty() ? null : exdateTail);
+        tails.put(Tasks.TZ, inputs[TZ]);
+        return entry.plan.withAppended(TaskAdapter.RDATE.getFrom(tails), TaskAdapter.EXDATE.getFrom(tails));
+    }
+
+
+    /**
+     * Returns the dates which have been appended to the given old list, an empty String if nothing has been appended or {@code null} if the list has been
+     * changed otherwise.
+     */
+    private static String tail(String oldList, String newList)
+    {
+        if (TextUtils.equals(oldList, newList))
+        {
+            return "";
+        }
+        if (TextUtils.isEmpty(oldList))
+        {
+            return newList;
+        }
+        if (newList != null && newList.length() > oldList.length() + 1 && newList.startsWith(oldList) && newList.charAt(oldList.length()) == ',')
+        {
+            return newList.substring(oldList.length() + 1);
+        }
+        return null;
+    }
+
+
+    /**
+     * Returns the {@link CacheMetrics} of this cache.
+     */
+    public CacheMetrics metrics()
+    {
+        return mMetrics;
+    }
+
+
+    private static String[] rawInputs(TaskAdapter taskAdapter)
+    {
+        String[] result = new String[INPUTS.length];
+        for (int i = 0; i < INPUTS.length; ++i)
+        {
+            result[i] = taskAdapter.valueOf(INPUTS[i]);
+        }
+        return result;
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static StringFieldAdapter<TaskAdapter>[] inputs(String... columns)
+    {
+        StringFieldAdapter<TaskAdapter>[] result = new StringFieldAdapter[columns.length];
+        for (int i = 0; i < columns.length; ++i)
+        {
+            result[i] = new StringFieldAdapter<>(columns[i]);
+        }
+        return result;
+    }
+
+
+    private final static class Entry
+    {
+        final String[] inputs;
+        final RecurrencePlan plan;
+
+
+        Entry(String[] inputs, RecurrencePlan plan)
+        {
+            this.inputs = inputs;
+            this.plan = plan;
+        }
+    }
+}
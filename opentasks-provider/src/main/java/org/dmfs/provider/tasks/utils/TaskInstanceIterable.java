@@ -16,69 +16,66 @@
 
 package org.dmfs.provider.tasks.utils;
 
-import org.dmfs.jems.optional.elementary.NullSafe;
-import org.dmfs.jems.single.combined.Backed;
 import org.dmfs.provider.tasks.model.TaskAdapter;
 import org.dmfs.rfc5545.DateTime;
-import org.dmfs.rfc5545.recur.RecurrenceRule;
-import org.dmfs.rfc5545.recurrenceset.RecurrenceList;
-import org.dmfs.rfc5545.recurrenceset.RecurrenceRuleAdapter;
-import org.dmfs.rfc5545.recurrenceset.RecurrenceSet;
 import org.dmfs.rfc5545.recurrenceset.RecurrenceSetIterator;
 
 import java.util.Iterator;
-import java.util.TimeZone;
 
 
 /**
  * An {@link Iterable} of all the instances of a task.
+ * <p>
+ * The recurrence is taken from the shared {@link RecurrencePlans}, so iterating the instances of a task again doesn't parse its recurrence again.
  *
  * @author Marten Gajda
  */
 public final class TaskInstanceIterable implements Iterable<DateTime>
 {
     private final TaskAdapter mTaskAdapter;
+    private final long mFrom;
+    private final long mUntil;
 
 
+    /**
+     * An {@link Iterable} of the instances of a task until 3560 hours (about 148 days) from now.
+     *
+     * @param taskAdapter
+     *         The {@link TaskAdapter} of the task.
+     */
     public TaskInstanceIterable(TaskAdapter taskAdapter)
+    {
+        this(taskAdapter, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+
+    /**
+     * An {@link Iterable} of the instances of a task in the given range.
+     *
+     * @param taskAdapter
+     *         The {@link TaskAdapter} of the task.
+     * @param from
+     *         The time stamp of the first instance to return (inclusive).
+     * @param until
+     *         The time stamp to stop at (exclusive), {@link Long#MAX_VALUE} to stop 3560 hours (about 148 days) from now.
+     */
+    public TaskInstanceIterable(TaskAdapter taskAdapter, long from, long until)
     {
         mTaskAdapter = taskAdapter;
+        mFrom = from;
+        mUntil = until;
     }
 
 
     @Override
     public Iterator<DateTime> iterator()
     {
-        DateTime dtstart = new Backed<DateTime>(new NullSafe<>(mTaskAdapter.valueOf(TaskAdapter.DTSTART)), () -> mTaskAdapter.valueOf(TaskAdapter.DUE)).value();
-
-        RecurrenceSet set = new RecurrenceSet();
-        RecurrenceRule rule = mTaskAdapter.valueOf(TaskAdapter.RRULE);
-        if (rule != null)
+        RecurrencePlan plan = RecurrencePlans.shared().plan(mTaskAdapter);
+        RecurrenceSetIterator iterator = plan.iterator(mUntil == Long.MAX_VALUE ? System.currentTimeMillis() + 10L * 356L * 3600L * 1000L : mUntil);
+        if (mFrom != Long.MIN_VALUE)
         {
-            if (rule.getUntil() != null && dtstart.isFloating() != rule.getUntil().isFloating())
-            {
-                // rule UNTIL date mismatches start. This is merely a workaround for existing users. In future we should make sure
-                // such tasks don't exist
-                if (dtstart.isFloating())
-                {
-                    // make until floating too by making it floating in the current time zone
-                    rule.setUntil(rule.getUntil().shiftTimeZone(TimeZone.getDefault()).swapTimeZone(null));
-                }
-                else
-                {
-                    // anchor UNTIL in the current time zone
-                    rule.setUntil(new DateTime(null, rule.getUntil().getTimestamp()).swapTimeZone(TimeZone.getDefault()));
-                }
-            }
-            set.addInstances(new RecurrenceRuleAdapter(rule));
+            iterator.fastForward(mFrom);
         }
-
-        set.addInstances(new RecurrenceList(new Timestamps(mTaskAdapter.valueOf(TaskAdapter.RDATE)).value()));
-        set.addExceptions(new RecurrenceList(new Timestamps(mTaskAdapter.valueOf(TaskAdapter.EXDATE)).value()));
-
-        RecurrenceSetIterator setIterator = set.iterator(dtstart.getTimeZone(), dtstart.getTimestamp(),
-                System.currentTimeMillis() + 10L * 356L * 3600L * 1000L);
-
-        return new TaskInstanceIterator(dtstart, setIterator, mTaskAdapter.valueOf(TaskAdapter.TIMEZONE_RAW));
+        return new TaskInstanceIterator(plan.start(), iterator, plan.timeZoneId());
     }
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * Unit tests for {@link FTSDatabaseHelper}.
+ *
+ * @author agent
+ */
+public class FTSDatabaseHelperTest
+{
+    @Test
+    public void testPrefixUpperBound()
+    {
+        assertThat(FTSDatabaseHelper.prefixUpperBound(" "), is("!"));
+        assertThat(FTSDatabaseHelper.prefixUpperBound(" a"), is(" b"));
+        assertThat(FTSDatabaseHelper.prefixUpperBound(" z"), is(" {"));
+        assertThat(FTSDatabaseHelper.prefixUpperBound(" \u00ff"), is(" \u0100"));
+        assertThat(FTSDatabaseHelper.prefixUpperBound(" \ufffe"), is(" \uffff"));
+        // Character.MAX_VALUE can't be incremented, the preceding character is incremented instead
+        assertThat(FTSDatabaseHelper.prefixUpperBound(" \uffff"), is("!"));
+        assertThat(FTSDatabaseHelper.prefixUpperBound(" a\uffff\uffff"), is(" b"));
+    }
+
+
+    @Test
+    public void testPrefixUpperBoundIsUpperBound()
+    {
+        for (String prefix : new String[] { " ", " a", " \uffff", " a\uffff" })
+        {
+            String upperBound = FTSDatabaseHelper.prefixUpperBound(prefix);
+            assertThat(prefix.compareTo(upperBound), lessThan(0));
+            for (String suffix : new String[] { "", "a", "\u0000", "\uffff", "\uffff\uffff" })
+            {
+                assertThat(prefix + suffix, startsWith(prefix));
+                assertThat((prefix + suffix).compareTo(upperBound), lessThan(0));
+            }
+            // the upper bound itself doesn't start with the prefix
+            assertThat(upperBound.startsWith(prefix), is(false));
+        }
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPrefixUpperBoundWithoutUpperBound()
+    {
+        FTSDatabaseHelper.prefixUpperBound("\uffff");
+    }
+
+
+    @Test
+    public void testSelectiveNgramsFewNgrams()
+    {
+        // with 3 n-grams a single match is sufficient, so all of them are selective
+        Map<String, long[]> frequencies = new HashMap<>();
+        frequencies.put("abc", new long[] { 1, 100 });
+        frequencies.put("bcd", new long[] { 2, 10 });
+
+        assertThat(FTSDatabaseHelper.selectiveNgrams(ngrams("abc", "bcd", "cde"), frequencies), contains("cde", "bcd", "abc"));
+    }
+
+
+    @Test
+    public void testSelectiveNgramsByFrequency()
+    {
+        // with 10 n-grams at least 4 have to match, so the 3 most frequent n-grams are not selective
+        Map<String, long[]> frequencies = new HashMap<>();
+        frequencies.put("n0", new long[] { 10, 1000 });
+        frequencies.put("n1", new long[] { 11, 1 });
+        frequencies.put("n2", new long[] { 12, 500 });
+        frequencies.put("n3", new long[] { 13, 2 });
+        frequencies.put("n4", new long[] { 14, 800 });
+        frequencies.put("n5", new long[] { 15, 3 });
+        frequencies.put("n6", new long[] { 16, 4 });
+        frequencies.put("n7", new long[] { 17, 5 });
+        // n8 and n9 are unknown
+
+        Set<String> ngrams = ngrams("n0", "n1", "n2", "n3", "n4", "n5", "n6", "n7", "n8", "n9");
+        assertThat(FTSDatabaseHelper.selectiveNgrams(ngrams, frequencies).size(), is(7));
+        assertThat(FTSDatabaseHelper.selectiveNgrams(ngrams, frequencies).subList(0, 2), containsInAnyOrder("n8", "n9"));
+        assertThat(FTSDatabaseHelper.selectiveNgrams(ngrams, frequencies).subList(2, 7), contains("n1", "n3", "n5", "n6", "n7"));
+    }
+
+
+    @Test
+    public void testSelectiveNgramsUnknown()
+    {
+        // unknown n-grams are always the most selective ones
+        Set<String> ngrams = ngrams("n0", "n1", "n2", "n3", "n4", "n5");
+        Map<String, long[]> frequencies = new HashMap<>();
+        frequencies.put("n0", new long[] { 10, 0 });
+        frequencies.put("n1", new long[] { 11, 1 });
+
+        assertThat(FTSDatabaseHelper.selectiveNgrams(ngrams, frequencies).size(), is(5));
+        assertThat(FTSDatabaseHelper.selectiveNgrams(ngrams, frequencies).subList(0, 4), containsInAnyOrder("n2", "n3", "n4", "n5"));
+        assertThat(FTSDatabaseHelper.selectiveNgrams(ngrams, frequencies).get(4), is("n0"));
+    }
+
+
+    private static Set<String> ngrams(String... ngrams)
+    {
+        return new HashSet<>(Arrays.asList(ngrams));
+    }
+}
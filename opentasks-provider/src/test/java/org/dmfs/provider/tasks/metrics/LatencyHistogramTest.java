@@ -0,0 +1,72 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmfs.provider.tasks.metrics;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+
+/**
+ * Unit test for {@link LatencyHistogram}.
+ *
+ * @author agent
+ */
+public class LatencyHistogramTest
+{
+    @Test
+    public void testBuckets()
+    {
+        for (long value = 0; value < 100000; ++value)
+        {
+            int bucket = LatencyHistogram.bucket(value);
+            // the value is in its bucket
+            assertThat(LatencyHistogram.upperBound(bucket), greaterThanOrEqualTo(value));
+            if (bucket > 0)
+            {
+                assertThat(LatencyHistogram.upperBound(bucket - 1), lessThanOrEqualTo(value - 1));
+            }
+            // and the bucket is precise enough
+            assertThat(LatencyHistogram.upperBound(bucket) - value, lessThanOrEqualTo(value / 8));
+        }
+        assertThat(LatencyHistogram.upperBound(LatencyHistogram.bucket(Long.MAX_VALUE)), is(Long.MAX_VALUE));
+    }
+
+
+    @Test
+    public void testPercentiles()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.percentile(50), is(0L));
+
+        for (int i = 1; i <= 1000; ++i)
+        {
+            // record i microseconds
+            histogram.record(i * 1000L);
+        }
+
+        assertThat(histogram.count(), is(1000L));
+        assertThat(histogram.sum(), is(500500L));
+        assertThat(histogram.max(), is(1000L));
+        assertThat(histogram.percentile(50), allOf(greaterThanOrEqualTo(500L), lessThanOrEqualTo(500L + 500 / 8)));
+        assertThat(histogram.percentile(99), allOf(greaterThanOrEqualTo(990L), lessThanOrEqualTo(1000L)));
+        assertThat(histogram.percentile(100), is(1000L));
+    }
+}
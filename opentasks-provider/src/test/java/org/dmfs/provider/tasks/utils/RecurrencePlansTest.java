@@ -0,0 +1,188 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.utils;
+
+import android.content.ContentValues;
+
+import org.dmfs.provider.tasks.model.ContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.rfc5545.recur.RecurrenceRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * Unit test for {@link RecurrencePlans}.
+ *
+ * @author agent
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class RecurrencePlansTest
+{
+    @Test
+    public void testHit() throws Exception
+    {
+        RecurrencePlans plans = new RecurrencePlans(10);
+        RecurrencePlan plan = plans.plan(task(1, "FREQ=DAILY;COUNT=10"));
+
+        assertThat(plans.plan(task(1, "FREQ=DAILY;COUNT=10")), sameInstance(plan));
+        assertThat(plans.metrics().hits(), is(1L));
+        assertThat(plans.metrics().misses(), is(1L));
+    }
+
+
+    @Test
+    public void testChangedRecurrence() throws Exception
+    {
+        RecurrencePlans plans = new RecurrencePlans(10);
+        RecurrencePlan plan = plans.plan(task(1, "FREQ=DAILY;COUNT=10"));
+
+        assertThat(plans.plan(task(1, "FREQ=DAILY;COUNT=5")), not(sameInstance(plan)));
+        assertThat(plans.plan(task(1, "FREQ=DAILY;COUNT=5")).rule().getCount(), is(5));
+        assertThat(plans.metrics().hits(), is(1L));
+        assertThat(plans.metrics().misses(), is(2L));
+    }
+
+
+    @Test
+    public void testEviction() throws Exception
+    {
+        RecurrencePlans plans = new RecurrencePlans(1);
+        RecurrencePlan plan = plans.plan(task(1, "FREQ=DAILY;COUNT=10"));
+        plans.plan(task(2, "FREQ=DAILY;COUNT=10"));
+
+        assertThat(plans.plan(task(1, "FREQ=DAILY;COUNT=10")), not(sameInstance(plan)));
+        assertThat(plans.metrics().hits(), is(0L));
+    }
+
+
+    @Test
+    public void testNewTask() throws Exception
+    {
+        RecurrencePlans plans = new RecurrencePlans(10);
+        RecurrencePlan plan = plans.plan(task(-1, "FREQ=DAILY;COUNT=10"));
+
+        assertThat(plans.plan(task(-1, "FREQ=DAILY;COUNT=10")), not(sameInstance(plan)));
+        assertThat(plans.metrics().hits() + plans.metrics().misses(), is(0L));
+    }
+
+
+    @Test
+    public void testSortedDates() throws Exception
+    {
+        TaskAdapter task = task(1, "FREQ=DAILY;COUNT=10");
+        task.set(TaskAdapter.RDATE, asList(DateTime.parse("Europe/Berlin", "20170620T121314"), DateTime.parse("Europe/Berlin", "20170610T121314")));
+        task.set(TaskAdapter.EXDATE, asList(DateTime.parse("Europe/Berlin", "20170609T121314"), DateTime.parse("Europe/Berlin", "20170607T121314")));
+
+        RecurrencePlan plan = new RecurrencePlans(10).plan(task);
+
+        assertArrayEquals(
+                new long[] {
+                        DateTime.parse("Europe/Berlin", "20170610T121314").getTimestamp(),
+                        DateTime.parse("Europe/Berlin", "20170620T121314").getTimestamp() },
+                plan.rdates());
+        assertArrayEquals(
+                new long[] {
+                        DateTime.parse("Europe/Berlin", "20170607T121314").getTimestamp(),
+                        DateTime.parse("Europe/Berlin", "20170609T121314").getTimestamp() },
+                plan.exdates());
+    }
+
+
+    @Test
+    public void testAppendedDates() throws Exception
+    {
+        DateTime exdate1 = DateTime.parse("Europe/Berlin", "20170612T121314");
+        DateTime exdate2 = DateTime.parse("Europe/Berlin", "20170608T121314");
+        DateTime exdate3 = DateTime.parse("Europe/Berlin", "20170610T121314");
+        RecurrencePlans plans = new RecurrencePlans(10);
+
+        TaskAdapter task = task(1, "FREQ=DAILY;COUNT=10");
+        task.set(TaskAdapter.EXDATE, asList(exdate1, exdate2));
+        RecurrencePlan plan = plans.plan(task);
+
+        task = task(1, "FREQ=DAILY;COUNT=10");
+        task.set(TaskAdapter.EXDATE, asList(exdate1, exdate2, exdate3));
+        RecurrencePlan appendedPlan = plans.plan(task);
+
+        assertThat(appendedPlan, not(sameInstance(plan)));
+        assertArrayEquals(new long[] { exdate2.getTimestamp(), exdate3.getTimestamp(), exdate1.getTimestamp() }, appendedPlan.exdates());
+        assertThat(appendedPlan.isExcluded(exdate3.getTimestamp()), is(true));
+        assertThat(appendedPlan.isExcluded(exdate3.getTimestamp() + 1), is(false));
+        assertThat(appendedPlan.exdatesAfter(exdate2.getTimestamp()).size(), is(2));
+        assertThat(appendedPlan.exdatesAfter(exdate2.getTimestamp()).get(0).getTimestamp(), is(exdate3.getTimestamp()));
+        assertThat(appendedPlan.rdatesAfter(Long.MIN_VALUE).isEmpty(), is(true));
+    }
+
+
+    @Test
+    public void testRemainingDates() throws Exception
+    {
+        DateTime exdate1 = DateTime.parse("Europe/Berlin", "20170608T121314");
+        DateTime exdate2 = DateTime.parse("Europe/Berlin", "20170610T121314");
+        DateTime exdate3 = DateTime.parse("Europe/Berlin", "20170612T121314");
+        RecurrencePlans plans = new RecurrencePlans(10);
+
+        TaskAdapter task = task(1, "FREQ=DAILY;COUNT=10");
+        task.set(TaskAdapter.EXDATE, asList(exdate1, exdate2, exdate3));
+        RecurrencePlan plan = plans.plan(task);
+
+        // remove the first EXDATE, like Detaching does when an instance has been completed
+        task = task(1, "FREQ=DAILY;COUNT=10");
+        task.set(TaskAdapter.EXDATE, plan.exdatesAfter(exdate1.getTimestamp()));
+        RecurrencePlan remainingPlan = plans.plan(task, plan.rdatesAfter(Long.MIN_VALUE), plan.exdatesAfter(exdate1.getTimestamp()));
+
+        assertArrayEquals(new long[] { exdate2.getTimestamp(), exdate3.getTimestamp() }, remainingPlan.exdates());
+        assertThat(plans.plan(task), sameInstance(remainingPlan));
+        assertThat(plans.metrics().hits(), is(1L));
+        assertThat(plans.metrics().misses(), is(1L));
+    }
+
+
+    @Test
+    public void testIndexAfter() throws Exception
+    {
+        long[] sorted = { 1, 3, 3, 3, 5 };
+        assertThat(RecurrencePlan.indexAfter(sorted, Long.MIN_VALUE), is(0));
+        assertThat(RecurrencePlan.indexAfter(sorted, 1), is(1));
+        assertThat(RecurrencePlan.indexAfter(sorted, 2), is(1));
+        assertThat(RecurrencePlan.indexAfter(sorted, 3), is(4));
+        assertThat(RecurrencePlan.indexAfter(sorted, 4), is(4));
+        assertThat(RecurrencePlan.indexAfter(sorted, 5), is(5));
+        assertThat(RecurrencePlan.indexAfter(sorted, Long.MAX_VALUE), is(5));
+    }
+
+
+    private static TaskAdapter task(long id, String rrule)
+    {
+        TaskAdapter taskAdapter = new ContentValuesTaskAdapter(id, new ContentValues());
+        taskAdapter.set(TaskAdapter.DTSTART, DateTime.parse("Europe/Berlin", "20170606T121314"));
+        taskAdapter.set(TaskAdapter.RRULE, new RecurrenceRule(rrule));
+        return taskAdapter;
+    }
+}
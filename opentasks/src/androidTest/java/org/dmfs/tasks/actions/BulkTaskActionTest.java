@@ -0,0 +1,262 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.tasks.actions;
+
+import android.content.ContentProviderClient;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Build;
+
+import org.dmfs.android.contentpal.Operation;
+import org.dmfs.android.contentpal.OperationsQueue;
+import org.dmfs.android.contentpal.RowDataSnapshot;
+import org.dmfs.android.contentpal.operations.BulkDelete;
+import org.dmfs.android.contentpal.operations.Put;
+import org.dmfs.android.contentpal.operations.Update;
+import org.dmfs.android.contentpal.predicates.EqArg;
+import org.dmfs.android.contentpal.queues.BasicOperationsQueue;
+import org.dmfs.android.contentpal.references.RowUriReference;
+import org.dmfs.android.contentpal.rowsnapshots.VirtualRowSnapshot;
+import org.dmfs.jems.iterable.elementary.Seq;
+import org.dmfs.opentaskspal.readdata.EffectiveDueDate;
+import org.dmfs.opentaskspal.readdata.Id;
+import org.dmfs.opentaskspal.tables.LocalTaskListsTable;
+import org.dmfs.opentaskspal.tasklists.NameData;
+import org.dmfs.opentaskspal.tasks.ListData;
+import org.dmfs.opentaskspal.tasks.StatusData;
+import org.dmfs.provider.tasks.AuthorityUtil;
+import org.dmfs.rfc5545.Duration;
+import org.dmfs.tasks.actions.utils.DeferredDueData;
+import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.contract.TaskContract.TaskLists;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Test for {@link BulkTaskAction}, running the actions of the task list against the task provider.
+ *
+ * @author agent
+ */
+@RunWith(AndroidJUnit4.class)
+public class BulkTaskActionTest
+{
+    private final static String LIST1 = "BulkTaskActionTest list 1";
+    private final static String LIST2 = "BulkTaskActionTest list 2";
+
+    private final static long DUE = 1515069296000L; // 20180104T123456Z
+    private final static long ONE_DAY = 24 * 3600 * 1000;
+
+    private String mAuthority;
+    private ContentProviderClient mClient;
+    private long mList1;
+    private long mList2;
+
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Context context = InstrumentationRegistry.getTargetContext();
+        mAuthority = AuthorityUtil.taskAuthority(context);
+        mClient = context.getContentResolver().acquireContentProviderClient(mAuthority);
+
+        OperationsQueue queue = new BasicOperationsQueue(mClient);
+        queue.enqueue(new Seq<Operation<?>>(
+                new Put<>(new VirtualRowSnapshot<>(new LocalTaskListsTable(mAuthority)), new NameData(LIST1)),
+                new Put<>(new VirtualRowSnapshot<>(new LocalTaskListsTable(mAuthority)), new NameData(LIST2))));
+        queue.flush();
+
+        mList1 = listId(LIST1);
+        mList2 = listId(LIST2);
+    }
+
+
+    @After
+    public void tearDown() throws Exception
+    {
+        // remove the test lists only, other local lists are left alone
+        OperationsQueue queue = new BasicOperationsQueue(mClient);
+        queue.enqueue(new Seq<Operation<?>>(
+                new BulkDelete<>(new LocalTaskListsTable(mAuthority), new EqArg<>(TaskLists.LIST_NAME, LIST1)),
+                new BulkDelete<>(new LocalTaskListsTable(mAuthority), new EqArg<>(TaskLists.LIST_NAME, LIST2))));
+        queue.flush();
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N)
+        {
+            mClient.close();
+        }
+        else
+        {
+            mClient.release();
+        }
+    }
+
+
+    /**
+     * Complete several instances at once.
+     */
+    @Test
+    public void testComplete() throws Exception
+    {
+        insertTasks(3, DUE);
+
+        new BulkTaskAction(snapshot -> new Update<>(instanceReference(snapshot), new StatusData<>(Tasks.STATUS_COMPLETED)))
+                .execute(mClient, mAuthority, instanceIds());
+
+        assertEquals(3, count(Tasks.LIST_ID + "=" + mList1 + " AND " + Tasks.STATUS + "=" + Tasks.STATUS_COMPLETED));
+    }
+
+
+    /**
+     * Complete more instances than SQLite supports variables in a single statement.
+     */
+    @Test
+    public void testCompleteMany() throws Exception
+    {
+        insertTasks(1200, DUE);
+
+        new BulkTaskAction(snapshot -> new Update<>(instanceReference(snapshot), new StatusData<>(Tasks.STATUS_COMPLETED)))
+                .execute(mClient, mAuthority, instanceIds());
+
+        assertEquals(1200, count(Tasks.LIST_ID + "=" + mList1 + " AND " + Tasks.STATUS + "=" + Tasks.STATUS_COMPLETED));
+    }
+
+
+    /**
+     * Move several instances to another list.
+     */
+    @Test
+    public void testMove() throws Exception
+    {
+        insertTasks(3, DUE);
+
+        BulkTaskAction.perTask(snapshot -> new Update<>(
+                new RowUriReference<Tasks>(ContentUris.withAppendedId(Tasks.getContentUri(mAuthority),
+                        snapshot.data(Instances.TASK_ID, Long::valueOf).value())),
+                new ListData<>(mList2)))
+                .execute(mClient, mAuthority, instanceIds());
+
+        assertEquals(0, count(Tasks.LIST_ID + "=" + mList1));
+        assertEquals(3, count(Tasks.LIST_ID + "=" + mList2));
+    }
+
+
+    /**
+     * Defer several instances, only the ones with a due date are changed.
+     */
+    @Test
+    public void testDefer() throws Exception
+    {
+        insertTasks(3, DUE);
+        insertTasks(2, null);
+
+        new BulkTaskAction(
+                snapshot -> new EffectiveDueDate(snapshot).isPresent(),
+                snapshot -> new Update<>(instanceReference(snapshot), new DeferredDueData(new Duration(1, 1, 0)).value(snapshot)))
+                .execute(mClient, mAuthority, instanceIds());
+
+        assertEquals(3, count(Tasks.LIST_ID + "=" + mList1 + " AND " + Tasks.DUE + "=" + (DUE + ONE_DAY)));
+        assertEquals(2, count(Tasks.LIST_ID + "=" + mList1 + " AND " + Tasks.DUE + " is null"));
+    }
+
+
+    private RowUriReference<Instances> instanceReference(RowDataSnapshot<Instances> snapshot)
+    {
+        return new RowUriReference<>(ContentUris.withAppendedId(Instances.getContentUri(mAuthority), new Id(snapshot).value()));
+    }
+
+
+    private void insertTasks(int count, Long due) throws Exception
+    {
+        ContentValues[] values = new ContentValues[count];
+        for (int i = 0; i < count; ++i)
+        {
+            values[i] = new ContentValues();
+            values[i].put(Tasks.LIST_ID, mList1);
+            values[i].put(Tasks.TITLE, "task " + i);
+            if (due != null)
+            {
+                values[i].put(Tasks.DUE, due);
+                values[i].put(Tasks.TZ, "UTC");
+                values[i].put(Tasks.IS_ALLDAY, 0);
+            }
+        }
+        mClient.bulkInsert(Tasks.getContentUri(mAuthority), values);
+    }
+
+
+    private List<Long> instanceIds() throws Exception
+    {
+        List<Long> result = new ArrayList<>();
+        Cursor cursor = mClient.query(Instances.getContentUri(mAuthority), new String[] { Instances._ID }, Tasks.LIST_ID + "=" + mList1, null, null);
+        try
+        {
+            while (cursor.moveToNext())
+            {
+                result.add(cursor.getLong(0));
+            }
+        }
+        finally
+        {
+            cursor.close();
+        }
+        return result;
+    }
+
+
+    private int count(String selection) throws Exception
+    {
+        Cursor cursor = mClient.query(Tasks.getContentUri(mAuthority), new String[] { Tasks._ID }, selection, null, null);
+        try
+        {
+            return cursor.getCount();
+        }
+        finally
+        {
+            cursor.close();
+        }
+    }
+
+
+    private long listId(String name) throws Exception
+    {
+        Cursor cursor = mClient.query(TaskLists.getContentUri(mAuthority), new String[] { TaskLists._ID }, TaskLists.LIST_NAME + "=?", new String[] { name },
+                null);
+        try
+        {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        }
+        finally
+        {
+            cursor.close();
+        }
+    }
+}
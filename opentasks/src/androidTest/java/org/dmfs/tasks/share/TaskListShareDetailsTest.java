@@ -0,0 +1,111 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.tasks.share;
+
+import android.content.Context;
+import android.database.MatrixCursor;
+
+import org.dmfs.tasks.R;
+import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.groupings.AbstractGroupingFactory;
+import org.dmfs.tasks.utils.DateFormatter;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test for {@link TaskListShareDetails}, rendering the list template with the {@link CachedCarrotEngine}.
+ *
+ * @author agent
+ */
+@RunWith(AndroidJUnit4.class)
+public class TaskListShareDetailsTest
+{
+
+    @Test
+    public void testValue()
+    {
+        Context context = InstrumentationRegistry.getTargetContext();
+        DateFormatter dateFormatter = new DateFormatter(context);
+
+        MatrixCursor cursor = new MatrixCursor(AbstractGroupingFactory.INSTANCE_PROJECTION);
+        cursor.addRow(row(1, "open task", null, 0));
+        cursor.addRow(row(2, "closed task", null, 1));
+        cursor.addRow(row(3, "due task", 1515069296000L, 0));
+
+        List<TaskRowBindings> tasks = new ArrayList<>();
+        while (cursor.moveToNext())
+        {
+            tasks.add(new TaskRowBindings(dateFormatter, cursor));
+        }
+        cursor.close();
+
+        String text = new TaskListShareDetails("My Tasks", tasks, context).value().toString();
+        String[] lines = text.split("\n");
+
+        assertEquals("My Tasks", lines[0]);
+        assertTrue(text, text.contains("\n[ ] open task\n"));
+        assertTrue(text, text.contains("\n[X] closed task\n"));
+        assertTrue(text, text.contains("\n[ ] due task (" + context.getString(R.string.task_due) + ": "));
+        assertEquals(context.getString(R.string.opentasks_share_footer), lines[lines.length - 1]);
+
+        // the template is cached, rendering it again must give the same result
+        assertEquals(text, new TaskListShareDetails("My Tasks", tasks, context).value().toString());
+    }
+
+
+    private Object[] row(long id, String title, Long due, int closed)
+    {
+        Object[] row = new Object[AbstractGroupingFactory.INSTANCE_PROJECTION.length];
+        for (int i = 0; i < row.length; ++i)
+        {
+            switch (AbstractGroupingFactory.INSTANCE_PROJECTION[i])
+            {
+                case Instances._ID:
+                    row[i] = id;
+                    break;
+                case Instances.TITLE:
+                    row[i] = title;
+                    break;
+                case Instances.INSTANCE_DUE:
+                    row[i] = due;
+                    break;
+                case Instances.TZ:
+                    row[i] = "UTC";
+                    break;
+                case Instances.IS_ALLDAY:
+                    row[i] = 0;
+                    break;
+                case Instances.IS_CLOSED:
+                    row[i] = closed;
+                    break;
+                default:
+                    row[i] = null;
+            }
+        }
+        return row;
+    }
+}
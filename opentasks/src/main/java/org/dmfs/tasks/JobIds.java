@@ -33,4 +33,5 @@ public interface JobIds
 
     int NOTIFICATION_SERVICE = BASE + 1;
     int NOTIFICATION_ACTION_SERVICE = BASE + 2;
+    int ICALENDAR_SERVICE = BASE + 3;
 }
@@ -100,9 +100,9 @@ public class TaskListActivity extends BaseActivity implements TaskListFragment.C
     private final static int REQUEST_CODE_NEW_TASK = 2924;
 
     /**
-     * The time to wait for a new key before updating the search view.
+     * The time to wait for a new key before updating the search view. Outdated searches are cancelled by the provider, so this can be rather short.
      */
-    private final static int SEARCH_UPDATE_DELAY = 400; // ms
+    private final static int SEARCH_UPDATE_DELAY = 150; // ms
 
     private final static String DETAILS_FRAGMENT_TAG = "details_fragment_tag";
 
@@ -20,6 +20,7 @@ import android.accounts.Account;
 import android.accounts.AccountManager;
 import android.app.Activity;
 import android.app.AlertDialog;
+import android.content.ContentProviderClient;
 import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
@@ -27,6 +28,7 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.DialogInterface.OnClickListener;
 import android.content.Intent;
+import android.content.OperationApplicationException;
 import android.content.res.Resources;
 import android.database.Cursor;
 import android.database.MatrixCursor;
@@ -34,12 +36,16 @@ import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.RemoteException;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AdapterView;
+import android.widget.AdapterView.OnItemLongClickListener;
 import android.widget.ExpandableListAdapter;
 import android.widget.ExpandableListView;
 import android.widget.ExpandableListView.OnChildClickListener;
@@ -51,18 +57,34 @@ import com.google.android.material.snackbar.Snackbar;
 
 import org.dmfs.android.bolts.color.Color;
 import org.dmfs.android.bolts.color.elementary.ValueColor;
+import org.dmfs.android.contentpal.RowDataSnapshot;
+import org.dmfs.android.contentpal.operations.Delete;
+import org.dmfs.android.contentpal.operations.Update;
+import org.dmfs.android.contentpal.references.RowUriReference;
 import org.dmfs.android.retentionmagic.SupportFragment;
 import org.dmfs.android.retentionmagic.annotations.Parameter;
 import org.dmfs.android.retentionmagic.annotations.Retain;
+import org.dmfs.opentaskspal.readdata.EffectiveDueDate;
+import org.dmfs.opentaskspal.readdata.Id;
+import org.dmfs.opentaskspal.tasks.ListData;
+import org.dmfs.opentaskspal.tasks.PinnedData;
+import org.dmfs.opentaskspal.tasks.StatusData;
 import org.dmfs.provider.tasks.AuthorityUtil;
+import org.dmfs.rfc5545.Duration;
+import org.dmfs.tasks.actions.BulkTaskAction;
+import org.dmfs.tasks.actions.utils.DeferredDueData;
 import org.dmfs.tasks.contract.TaskContract;
 import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.contract.TaskContract.TaskLists;
 import org.dmfs.tasks.contract.TaskContract.Tasks;
 import org.dmfs.tasks.groupings.filters.AbstractFilter;
 import org.dmfs.tasks.groupings.filters.ConstantFilter;
 import org.dmfs.tasks.model.Model;
 import org.dmfs.tasks.model.Sources;
 import org.dmfs.tasks.model.TaskFieldAdapters;
+import org.dmfs.tasks.share.TaskListShareDetails;
+import org.dmfs.tasks.share.TaskRowBindings;
+import org.dmfs.tasks.utils.DateFormatter;
 import org.dmfs.tasks.utils.ExpandableGroupDescriptor;
 import org.dmfs.tasks.utils.ExpandableGroupDescriptorAdapter;
 import org.dmfs.tasks.utils.FlingDetector;
@@ -73,8 +95,16 @@ import org.dmfs.tasks.utils.RetainExpandableListView;
 import org.dmfs.tasks.utils.SafeFragmentUiRunnable;
 import org.dmfs.tasks.utils.SearchHistoryDatabaseHelper.SearchHistoryColumns;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.view.ActionMode;
 import androidx.loader.app.LoaderManager;
+import androidx.loader.content.CursorLoader;
 import androidx.loader.content.Loader;
 
 
@@ -97,6 +127,13 @@ public class TaskListFragment extends SupportFragment
 
     private static final long INTERVAL_LISTVIEW_REDRAW = 60000;
 
+    private final static Duration ONE_DAY = new Duration(1, 1, 0);
+
+    /**
+     * The maximum length of the text of a shared list. The text is sent in an {@link Intent}, which must not exceed the Binder transaction limit of 1 MB.
+     */
+    private final static int MAX_SHARE_TEXT_LENGTH = 100000;
+
     /**
      * A filter to hide completed tasks.
      */
@@ -144,12 +181,28 @@ public class TaskListFragment extends SupportFragment
     @Retain
     private int mPageId = -1;
 
+    /**
+     * The ids of the instances selected in multi-select mode.
+     */
+    private final Set<Long> mSelectedInstanceIds = new HashSet<>();
+
+    /**
+     * The {@link ActionMode} of the multi-select mode or {@code null} if multi-select mode is not active.
+     */
+    private ActionMode mSelectionMode;
+
     private final OnChildClickListener mTaskItemClickListener = new OnChildClickListener()
     {
 
         @Override
         public boolean onChildClick(ExpandableListView parent, View v, int groupPosition, int childPosition, long id)
         {
+            if (mSelectionMode != null)
+            {
+                toggleSelection(groupPosition, childPosition);
+                return true;
+            }
+
             selectChildView(parent, groupPosition, childPosition, true);
 
             mActivatedPositionGroup = groupPosition;
@@ -163,6 +216,98 @@ public class TaskListFragment extends SupportFragment
 
     };
 
+    private final OnItemLongClickListener mTaskItemLongClickListener = new OnItemLongClickListener()
+    {
+
+        @Override
+        public boolean onItemLongClick(AdapterView<?> parent, View view, int position, long id)
+        {
+            long packedPos = mExpandableListView.getExpandableListPosition(position);
+            if (ExpandableListView.getPackedPositionType(packedPos) != ExpandableListView.PACKED_POSITION_TYPE_CHILD)
+            {
+                return false;
+            }
+
+            if (mSelectionMode == null)
+            {
+                mExpandableListView.clearChoices();
+                mExpandableListView.setChoiceMode(ListView.CHOICE_MODE_MULTIPLE);
+                mSelectionMode = ((AppCompatActivity) getActivity()).startSupportActionMode(mSelectionModeCallback);
+            }
+            toggleSelection(ExpandableListView.getPackedPositionGroup(packedPos), ExpandableListView.getPackedPositionChild(packedPos));
+            return true;
+        }
+    };
+
+    private final ActionMode.Callback mSelectionModeCallback = new ActionMode.Callback()
+    {
+
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu)
+        {
+            mode.getMenuInflater().inflate(R.menu.task_list_selection_menu, menu);
+            return true;
+        }
+
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu)
+        {
+            return false;
+        }
+
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item)
+        {
+            int itemId = item.getItemId();
+            if (itemId == R.id.menu_selection_complete)
+            {
+                executeOnSelection(new BulkTaskAction(
+                        snapshot -> new Update<>(instanceReference(snapshot), new StatusData<>(Tasks.STATUS_COMPLETED))));
+            }
+            else if (itemId == R.id.menu_selection_pin)
+            {
+                executeOnSelection(new BulkTaskAction(
+                        snapshot -> new Update<>(instanceReference(snapshot), new PinnedData<>(true))));
+            }
+            else if (itemId == R.id.menu_selection_defer)
+            {
+                // tasks without a date can't be deferred, skip them
+                executeOnSelection(new BulkTaskAction(
+                        snapshot -> new EffectiveDueDate(snapshot).isPresent(),
+                        snapshot -> new Update<>(instanceReference(snapshot), new DeferredDueData(ONE_DAY).value(snapshot))));
+            }
+            else if (itemId == R.id.menu_selection_move)
+            {
+                moveSelection();
+                return true;
+            }
+            else if (itemId == R.id.menu_selection_delete)
+            {
+                removeSelection();
+                return true;
+            }
+            else
+            {
+                return false;
+            }
+            mode.finish();
+            return true;
+        }
+
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode)
+        {
+            mSelectionMode = null;
+            mSelectedInstanceIds.clear();
+            mExpandableListView.clearChoices();
+            setActivateOnItemClick(mTwoPaneLayout);
+            setActivatedItem(mActivatedPositionGroup, mActivatedPositionChild);
+        }
+    };
+
     private final OnGroupCollapseListener mTaskListCollapseListener = new OnGroupCollapseListener()
     {
 
@@ -414,6 +559,11 @@ public class TaskListFragment extends SupportFragment
             doSyncNow();
             return true;
         }
+        else if (itemId == R.id.menu_share_list)
+        {
+            shareList();
+            return true;
+        }
         else
         {
             return super.onOptionsItemSelected(item);
@@ -518,6 +668,7 @@ public class TaskListFragment extends SupportFragment
         mAdapter = new ExpandableGroupDescriptorAdapter(new MatrixCursor(new String[] { "_id" }), getActivity(), getLoaderManager(), mGroupDescriptor);
         mExpandableListView.setAdapter(mAdapter);
         mExpandableListView.setOnChildClickListener(mTaskItemClickListener);
+        mExpandableListView.setOnItemLongClickListener(mTaskItemLongClickListener);
         mExpandableListView.setOnGroupCollapseListener(mTaskListCollapseListener);
         mAdapter.setOnChildLoadedListener(this);
         mAdapter.setChildCursorFilter(COMPLETED_FILTER);
@@ -564,6 +715,216 @@ public class TaskListFragment extends SupportFragment
     }
 
 
+    /**
+     * Share the tasks of the current view as plain text. The tasks are loaded using the child loaders of all groups, because the adapter only knows the tasks
+     * of the groups which have been loaded.
+     */
+    private void shareList()
+    {
+        Cursor groups = mAdapter.getCursor();
+        if (groups == null || mGroupDescriptor == null)
+        {
+            return;
+        }
+
+        final Context context = mAppContext;
+        final String title = getString(R.string.opentasks_share_list_title);
+        final String chooserTitle = getString(R.string.menu_share_list);
+
+        // the loaders take the group values from the cursor, so create them on the UI thread, while the cursor is still valid
+        final List<CursorLoader> childLoaders = new ArrayList<>(groups.getCount());
+        for (int i = 0, count = groups.getCount(); i < count; ++i)
+        {
+            groups.moveToPosition(i);
+            childLoaders.add(mGroupDescriptor.getChildCursorLoader(context, groups, mSavedCompletedFilter ? null : COMPLETED_FILTER));
+        }
+
+        AsyncTask.execute(() ->
+        {
+            DateFormatter dateFormatter = new DateFormatter(context);
+            List<TaskRowBindings> tasks = new ArrayList<>();
+            Set<Long> instanceIds = new HashSet<>();
+            for (CursorLoader childLoader : childLoaders)
+            {
+                try (Cursor cursor = childLoader.loadInBackground())
+                {
+                    int idColumn = cursor == null ? -1 : cursor.getColumnIndex(Instances._ID);
+                    while (cursor != null && cursor.moveToNext())
+                    {
+                        // a task may show up in more than one group, share it only once
+                        if (instanceIds.add(cursor.getLong(idColumn)))
+                        {
+                            tasks.add(new TaskRowBindings(dateFormatter, cursor));
+                        }
+                    }
+                }
+            }
+
+            String text = new TaskListShareDetails(title, tasks, context).value().toString();
+            if (text.length() > MAX_SHARE_TEXT_LENGTH)
+            {
+                // the Intent must not exceed the Binder transaction limit, cut the text at the last complete line
+                int lineEnd = text.lastIndexOf('\n', MAX_SHARE_TEXT_LENGTH);
+                text = text.substring(0, lineEnd < 0 ? MAX_SHARE_TEXT_LENGTH : lineEnd) + "\n\u2026";
+            }
+
+            final Intent sendIntent = new Intent(Intent.ACTION_SEND);
+            sendIntent.putExtra(Intent.EXTRA_SUBJECT, title);
+            sendIntent.putExtra(Intent.EXTRA_TEXT, text);
+            sendIntent.setType("text/plain");
+            mHandler.post(new SafeFragmentUiRunnable(this, () -> startActivity(Intent.createChooser(sendIntent, chooserTitle))));
+        });
+    }
+
+
+    /**
+     * Add the given child to the selection or remove it, if it's already selected. Finishes multi-select mode when the last task has been removed from the
+     * selection.
+     */
+    private void toggleSelection(int groupPosition, int childPosition)
+    {
+        Cursor cursor = mAdapter.getChild(groupPosition, childPosition);
+        if (cursor == null)
+        {
+            return;
+        }
+
+        long instanceId = cursor.getLong(cursor.getColumnIndex(Instances._ID));
+        boolean selected = !mSelectedInstanceIds.remove(instanceId);
+        if (selected)
+        {
+            mSelectedInstanceIds.add(instanceId);
+        }
+        mExpandableListView.setItemChecked(
+                mExpandableListView.getFlatListPosition(ExpandableListView.getPackedPositionForChild(groupPosition, childPosition)), selected);
+
+        if (mSelectedInstanceIds.isEmpty())
+        {
+            mSelectionMode.finish();
+        }
+        else
+        {
+            mSelectionMode.setTitle(getString(R.string.menu_selection_count, mSelectedInstanceIds.size()));
+        }
+    }
+
+
+    private RowUriReference<Instances> instanceReference(RowDataSnapshot<Instances> snapshot)
+    {
+        return new RowUriReference<>(ContentUris.withAppendedId(Instances.getContentUri(mAuthority), new Id(snapshot).value()));
+    }
+
+
+    /**
+     * Executes the given {@link BulkTaskAction} on all selected instances in the background. All changes are committed in a single transaction.
+     */
+    private void executeOnSelection(BulkTaskAction action)
+    {
+        final Context context = mAppContext;
+        final String authority = mAuthority;
+        final List<Long> instanceIds = new ArrayList<>(mSelectedInstanceIds);
+        AsyncTask.execute(() ->
+        {
+            ContentProviderClient client = context.getContentResolver().acquireContentProviderClient(authority);
+            try
+            {
+                action.execute(client, authority, instanceIds);
+            }
+            catch (RemoteException | OperationApplicationException e)
+            {
+                Log.e(TAG, String.format("Unable to update %d tasks", instanceIds.size()), e);
+            }
+            finally
+            {
+                client.release();
+            }
+        });
+    }
+
+
+    /**
+     * Ask for a task list and move all selected tasks to it. The task lists are loaded in the background.
+     */
+    private void moveSelection()
+    {
+        final Context context = mAppContext;
+        final String authority = mAuthority;
+        AsyncTask.execute(() ->
+        {
+            final List<Long> listIds = new ArrayList<>();
+            final List<String> listNames = new ArrayList<>();
+            Cursor lists = context.getContentResolver().query(TaskLists.getContentUri(authority),
+                    new String[] { TaskLists._ID, TaskLists.LIST_NAME }, TaskLists.SYNC_ENABLED + "=1", null, TaskLists.LIST_NAME);
+            if (lists == null)
+            {
+                return;
+            }
+            try
+            {
+                while (lists.moveToNext())
+                {
+                    listIds.add(lists.getLong(0));
+                    listNames.add(lists.getString(1));
+                }
+            }
+            finally
+            {
+                lists.close();
+            }
+
+            mHandler.post(new SafeFragmentUiRunnable(this, () -> new AlertDialog.Builder(getActivity()).setTitle(R.string.menu_selection_move)
+                    .setCancelable(true)
+                    .setItems(listNames.toArray(new String[0]), new OnClickListener()
+                    {
+                        @Override
+                        public void onClick(DialogInterface dialog, int which)
+                        {
+                            long listId = listIds.get(which);
+                            // the list is a property of the task, update each task only once, even if several of its instances are selected
+                            executeOnSelection(BulkTaskAction.perTask(
+                                    snapshot -> new Update<>(
+                                            new RowUriReference<Tasks>(ContentUris.withAppendedId(Tasks.getContentUri(authority),
+                                                    snapshot.data(Instances.TASK_ID, Long::valueOf).value())),
+                                            new ListData<>(listId))));
+                            if (mSelectionMode != null)
+                            {
+                                mSelectionMode.finish();
+                            }
+                        }
+                    })
+                    .create().show()));
+        });
+    }
+
+
+    /**
+     * Remove all selected tasks, asking for confirmation first.
+     */
+    private void removeSelection()
+    {
+        new AlertDialog.Builder(getActivity()).setTitle(R.string.confirm_delete_title).setCancelable(true)
+                .setNegativeButton(android.R.string.cancel, new OnClickListener()
+                {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which)
+                    {
+                        // nothing to do here
+                    }
+                }).setPositiveButton(android.R.string.ok, new OnClickListener()
+        {
+            @Override
+            public void onClick(DialogInterface dialog, int which)
+            {
+                executeOnSelection(new BulkTaskAction(snapshot -> new Delete<>(instanceReference(snapshot))));
+                if (mSelectionMode != null)
+                {
+                    mSelectionMode.finish();
+                }
+            }
+        }).setMessage(getString(R.string.confirm_delete_message_multiple, mSelectedInstanceIds.size())).create().show();
+    }
+
+
     /**
      * Remove the task with the given {@link Uri} and title, asking for confirmation first.
      *
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmfs.tasks.actions;
+
+import android.content.ContentProviderClient;
+import android.content.OperationApplicationException;
+import android.os.RemoteException;
+
+import org.dmfs.android.contentpal.Operation;
+import org.dmfs.android.contentpal.Projection;
+import org.dmfs.android.contentpal.RowDataSnapshot;
+import org.dmfs.android.contentpal.RowSnapshot;
+import org.dmfs.android.contentpal.View;
+import org.dmfs.android.contentpal.predicates.In;
+import org.dmfs.android.contentpal.projections.Composite;
+import org.dmfs.android.contentpal.projections.SingleColProjection;
+import org.dmfs.android.contentpal.rowsets.QueryRowSet;
+import org.dmfs.android.contentpal.transactions.BaseTransaction;
+import org.dmfs.jems.function.Function;
+import org.dmfs.jems.predicate.Predicate;
+import org.dmfs.opentaskspal.readdata.EffectiveDueDate;
+import org.dmfs.opentaskspal.readdata.Id;
+import org.dmfs.opentaskspal.readdata.TaskPin;
+import org.dmfs.opentaskspal.readdata.TaskStart;
+import org.dmfs.opentaskspal.views.InstancesView;
+import org.dmfs.tasks.contract.TaskContract;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * An action carried out on a number of task instances at once.
+ * <p>
+ * In contrast to executing a {@link TaskAction} for each task, all operations are committed in a single transaction. That means the provider runs only one
+ * transaction, recomputes the alarms once and sends only one change notification, regardless of the number of tasks.
+ *
+ * @author agent
+ */
+public final class BulkTaskAction
+{
+    /**
+     * The values available to the operation function.
+     */
+    public final static Projection<TaskContract.Instances> PROJECTION = new Composite<>(
+            Id.PROJECTION,
+            new SingleColProjection<>(TaskContract.Instances.TASK_ID),
+            EffectiveDueDate.PROJECTION,
+            TaskStart.PROJECTION,
+            TaskPin.PROJECTION);
+
+    /**
+     * The maximum number of instance ids per query. SQLite doesn't support more than 999 variables per statement.
+     */
+    private final static int MAX_IDS_PER_QUERY = 500;
+
+    private final Predicate<RowDataSnapshot<TaskContract.Instances>> mPredicate;
+    private final Function<RowDataSnapshot<TaskContract.Instances>, Operation<?>> mOperationFunction;
+    private final boolean mOncePerTask;
+
+
+    /**
+     * Creates a {@link BulkTaskAction} which executes the {@link Operation} returned by the given {@link Function} for each instance.
+     *
+     * @param operationFunction
+     *         a {@link Function} returning the {@link Operation} for a specific instance. The snapshot contains the values of {@link #PROJECTION}.
+     */
+    public BulkTaskAction(Function<RowDataSnapshot<TaskContract.Instances>, Operation<?>> operationFunction)
+    {
+        this(snapshot -> true, operationFunction);
+    }
+
+
+    /**
+     * Creates a {@link BulkTaskAction} which executes the {@link Operation} returned by the given {@link Function} for each instance that satisfies the
+     * given {@link Predicate}. Other instances are skipped.
+     *
+     * @param predicate
+     *         a {@link Predicate} to select the instances the action applies to. The snapshot contains the values of {@link #PROJECTION}.
+     * @param operationFunction
+     *         a {@link Function} returning the {@link Operation} for a specific instance. The snapshot contains the values of {@link #PROJECTION}.
+     */
+    public BulkTaskAction(Predicate<RowDataSnapshot<TaskContract.Instances>> predicate,
+                          Function<RowDataSnapshot<TaskContract.Instances>, Operation<?>> operationFunction)
+    {
+        this(predicate, operationFunction, false);
+    }
+
+
+    private BulkTaskAction(Predicate<RowDataSnapshot<TaskContract.Instances>> predicate,
+                           Function<RowDataSnapshot<TaskContract.Instances>, Operation<?>> operationFunction,
+                           boolean oncePerTask)
+    {
+        mPredicate = predicate;
+        mOperationFunction = operationFunction;
+        mOncePerTask = oncePerTask;
+    }
+
+
+    /**
+     * Creates a {@link BulkTaskAction} which executes the {@link Operation} returned by the given {@link Function} only once per task, even if multiple
+     * instances of the same task have been selected. Use this for operations which update the task rather than the instance, like moving it to another list.
+     *
+     * @param operationFunction
+     *         a {@link Function} returning the {@link Operation} for a specific task. The snapshot contains the values of {@link #PROJECTION}.
+     *
+     * @return A {@link BulkTaskAction}.
+     */
+    public static BulkTaskAction perTask(Function<RowDataSnapshot<TaskContract.Instances>, Operation<?>> operationFunction)
+    {
+        return new BulkTaskAction(snapshot -> true, operationFunction, true);
+    }
+
+
+    public void execute(ContentProviderClient contentProviderClient, String authority, Iterable<Long> instanceIds) throws RemoteException, OperationApplicationException
+    {
+        View<TaskContract.Instances> instancesView = new InstancesView<>(authority, contentProviderClient);
+        List<Operation<?>> operations = new ArrayList<>();
+        Set<Long> taskIds = new HashSet<>();
+        List<Long> chunk = new ArrayList<>(MAX_IDS_PER_QUERY);
+        for (Long instanceId : instanceIds)
+        {
+            chunk.add(instanceId);
+            if (chunk.size() == MAX_IDS_PER_QUERY)
+            {
+                addOperations(operations, taskIds, instancesView, chunk);
+                chunk = new ArrayList<>(MAX_IDS_PER_QUERY);
+            }
+        }
+        if (!chunk.isEmpty())
+        {
+            addOperations(operations, taskIds, instancesView, chunk);
+        }
+
+        new BaseTransaction().with(operations).commit(contentProviderClient);
+    }
+
+
+    private void addOperations(List<Operation<?>> operations, Set<Long> taskIds, View<TaskContract.Instances> instancesView, List<Long> instanceIds)
+    {
+        for (RowSnapshot<TaskContract.Instances> snapshot : new QueryRowSet<>(instancesView, PROJECTION, new In<>(TaskContract.Instances._ID, instanceIds)))
+        {
+            RowDataSnapshot<TaskContract.Instances> values = snapshot.values();
+            if (mPredicate.satisfiedBy(values)
+                    && (!mOncePerTask || taskIds.add(values.data(TaskContract.Instances.TASK_ID, Long::valueOf).value())))
+            {
+                operations.add(mOperationFunction.value(values));
+            }
+        }
+    }
+}
@@ -16,14 +16,8 @@
 
 package org.dmfs.tasks.actions;
 
-import org.dmfs.jems.optional.Optional;
-import org.dmfs.opentaskspal.readdata.EffectiveDueDate;
-import org.dmfs.opentaskspal.readdata.TaskDateTime;
-import org.dmfs.opentaskspal.tasks.DueData;
-import org.dmfs.opentaskspal.tasks.TimeData;
-import org.dmfs.rfc5545.DateTime;
 import org.dmfs.rfc5545.Duration;
-import org.dmfs.tasks.contract.TaskContract;
+import org.dmfs.tasks.actions.utils.DeferredDueData;
 
 
 /**
@@ -35,16 +29,6 @@ public final class DeferDueAction extends DelegatingTaskAction
 {
     public DeferDueAction(Duration duration)
     {
-        super(new UpdateAction((data) -> {
-            Optional<DateTime> start = new TaskDateTime(TaskContract.Tasks.DTSTART, data);
-            if (start.isPresent())
-            {
-                return new TimeData<>(start.value(), new EffectiveDueDate(data).value().addDuration(duration));
-            }
-            else
-            {
-                return new DueData<>(new EffectiveDueDate(data).value().addDuration(duration));
-            }
-        }));
+        super(new UpdateAction(new DeferredDueData(duration)));
     }
 }
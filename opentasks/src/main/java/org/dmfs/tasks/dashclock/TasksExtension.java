@@ -30,6 +30,7 @@ import org.dmfs.provider.tasks.AuthorityUtil;
 import org.dmfs.tasks.EditTaskActivity;
 import org.dmfs.tasks.R;
 import org.dmfs.tasks.contract.TaskContract;
+import org.dmfs.tasks.contract.TaskContract.InstanceAggregates;
 import org.dmfs.tasks.contract.TaskContract.Instances;
 import org.dmfs.tasks.contract.TaskContract.Tasks;
 import org.dmfs.tasks.model.TaskFieldAdapters;
@@ -107,55 +108,58 @@ public class TasksExtension extends DashClockExtension
 
     protected void publishRecentTaskUpdate()
     {
+        TaskQuery recentTasks = null;
+        TaskQuery allDayTasks = null;
+        TaskQuery pinnedTasks = null;
 
-        // get next task that is due
-        Cursor recentTaskCursor = null;
-        Cursor allDayTaskCursor = null;
-        Cursor pinnedTaskCursor = null;
-
-        try
+        switch (mDisplayMode)
         {
+            case DashClockPreferenceActivity.DISPLAY_MODE_DUE:
+                recentTasks = recentDueTasks();
+                allDayTasks = allDayTasksDueToday();
+                break;
+
+            case DashClockPreferenceActivity.DISPLAY_MODE_START:
+                recentTasks = recentStartTasks();
+                allDayTasks = allDayTasksStartToday();
+                break;
+
+            case DashClockPreferenceActivity.DISPLAY_MODE_PINNED:
+                pinnedTasks = pinnedTasks();
+                break;
+
+            default:
+                recentTasks = recentStartDueTasks();
+                allDayTasks = allDayTasksStartDueToday();
+                pinnedTasks = pinnedTasks();
+                break;
+        }
 
-            switch (mDisplayMode)
+        // we only need the numbers of tasks and the first task to show, so count in the provider and load a single task
+        int recentTaskCount = count(recentTasks);
+        int allDayTaskCount = count(allDayTasks);
+        int pinnedTaskCount = count(pinnedTasks);
+        if ((recentTaskCount + allDayTaskCount + pinnedTaskCount) > 0)
+        {
+            // select the right query
+            TaskQuery query;
+            if (pinnedTaskCount > 0)
+            {
+                query = pinnedTasks;
+            }
+            else
             {
-                case DashClockPreferenceActivity.DISPLAY_MODE_DUE:
-                    recentTaskCursor = loadRecentDueTaskCursor();
-                    allDayTaskCursor = loadAllDayTasksDueTodayCursor();
-                    break;
-
-                case DashClockPreferenceActivity.DISPLAY_MODE_START:
-                    recentTaskCursor = loadRecentStartTaskCursor();
-                    allDayTaskCursor = loadAllDayTasksStartTodayCursor();
-                    break;
-
-                case DashClockPreferenceActivity.DISPLAY_MODE_PINNED:
-                    pinnedTaskCursor = loadPinnedTaskCursor();
-                    break;
-
-                default:
-                    recentTaskCursor = loadRecentStartDueTaskCursor();
-                    allDayTaskCursor = loadAllDayTasksStartDueTodayCursor();
-                    pinnedTaskCursor = loadPinnedTaskCursor();
-                    break;
+                query = recentTaskCount > 0 ? recentTasks : allDayTasks;
             }
 
-            int recentTaskCount = recentTaskCursor == null ? 0 : recentTaskCursor.getCount();
-            int allDayTaskCount = allDayTaskCursor == null ? 0 : allDayTaskCursor.getCount();
-            int pinnedTaskCount = pinnedTaskCursor == null ? 0 : pinnedTaskCursor.getCount();
-            if ((recentTaskCount + allDayTaskCount + pinnedTaskCount) > 0)
+            Cursor c = first(query);
+            try
             {
-                // select the right cursor
-                Cursor c = null;
-                if (pinnedTaskCount > 0)
+                if (c == null || !c.moveToFirst())
                 {
-                    c = pinnedTaskCursor;
+                    // the task has been removed in the meantime, we'll be notified about that
+                    return;
                 }
-                else if ((recentTaskCount + allDayTaskCount) > 0)
-                {
-                    c = recentTaskCount > 0 ? recentTaskCursor : allDayTaskCursor;
-                }
-
-                c.moveToFirst();
 
                 boolean isAllDay = allDayTaskCount > 0;
 
@@ -176,19 +180,48 @@ public class TasksExtension extends DashClockExtension
                         .status(String.valueOf(allDayTaskCount + recentTaskCount + pinnedTaskCount)).expandedTitle(title).expandedBody(description)
                         .clickIntent(clickIntent));
             }
-            else
+            finally
             {
-                // no upcoming task -> empty update
-                publishUpdate(null);
+                closeCursor(c);
             }
         }
+        else
+        {
+            // no upcoming task -> empty update
+            publishUpdate(null);
+        }
+    }
+
+
+    /**
+     * Returns the number of instances matching the given {@link TaskQuery} or {@code 0} if the query is {@code null}.
+     */
+    private int count(TaskQuery query)
+    {
+        if (query == null)
+        {
+            return 0;
+        }
+        Cursor cursor = getContentResolver().query(InstanceAggregates.getContentUri(mAuthority), new String[] { InstanceAggregates.COUNT },
+                query.selection, query.selectionArgs, null);
+        try
+        {
+            return cursor != null && cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }
         finally
         {
-            closeCursor(recentTaskCursor);
-            closeCursor(allDayTaskCursor);
-            closeCursor(pinnedTaskCursor);
+            closeCursor(cursor);
         }
+    }
+
 
+    /**
+     * Loads the first instance of the given {@link TaskQuery}.
+     */
+    private Cursor first(TaskQuery query)
+    {
+        return getContentResolver().query(Instances.getContentUri(mAuthority).buildUpon().appendQueryParameter(TaskContract.LIMIT, "1").build(),
+                INSTANCE_PROJECTION, query.selection, query.selectionArgs, query.sortOrder);
     }
 
 
@@ -320,48 +353,45 @@ public class TasksExtension extends DashClockExtension
     }
 
 
-    private Cursor loadPinnedTaskCursor()
+    private TaskQuery pinnedTasks()
     {
-        return getContentResolver().query(Instances.getContentUri(mAuthority), INSTANCE_PROJECTION, INSTANCE_PINNED_SELECTION, null,
-                Tasks.PRIORITY + " is not null, " + Tasks.PRIORITY + " DESC");
+        return new TaskQuery(INSTANCE_PINNED_SELECTION, null, Tasks.PRIORITY + " is not null, " + Tasks.PRIORITY + " DESC");
     }
 
 
-    private Cursor loadRecentDueTaskCursor()
+    private TaskQuery recentDueTasks()
     {
         Calendar calendar = Calendar.getInstance();
         calendar.add(Calendar.HOUR_OF_DAY, RECENT_HOURS); // clear would not reset the hour of day
         long later = calendar.getTimeInMillis();
 
-        return getContentResolver().query(Instances.getContentUri(mAuthority), INSTANCE_PROJECTION, INSTANCE_DUE_SELECTION,
-                new String[] { String.valueOf(mNow), String.valueOf(later) }, Instances.DUE);
+        return new TaskQuery(INSTANCE_DUE_SELECTION, new String[] { String.valueOf(mNow), String.valueOf(later) }, Instances.DUE);
     }
 
 
-    private Cursor loadRecentStartTaskCursor()
+    private TaskQuery recentStartTasks()
     {
         Calendar calendar = Calendar.getInstance();
         calendar.add(Calendar.HOUR_OF_DAY, RECENT_HOURS); // clear would not reset the hour of day
         long later = calendar.getTimeInMillis();
 
-        return getContentResolver().query(Instances.getContentUri(mAuthority), INSTANCE_PROJECTION, INSTANCE_START_SELECTION,
-                new String[] { String.valueOf(mNow), String.valueOf(later) }, Instances.DTSTART);
+        return new TaskQuery(INSTANCE_START_SELECTION, new String[] { String.valueOf(mNow), String.valueOf(later) }, Instances.DTSTART);
     }
 
 
-    private Cursor loadRecentStartDueTaskCursor()
+    private TaskQuery recentStartDueTasks()
     {
         Calendar calendar = Calendar.getInstance();
         calendar.add(Calendar.HOUR_OF_DAY, RECENT_HOURS); // clear would not reset the hour of day
         long later = calendar.getTimeInMillis();
 
-        return getContentResolver().query(Instances.getContentUri(mAuthority), INSTANCE_PROJECTION, INSTANCE_START_DUE_SELECTION,
+        return new TaskQuery(INSTANCE_START_DUE_SELECTION,
                 new String[] { String.valueOf(mNow), String.valueOf(later), String.valueOf(mNow), String.valueOf(later) },
                 Instances.INSTANCE_DUE_SORTING + " is null, " + Instances.INSTANCE_DUE_SORTING);
     }
 
 
-    private Cursor loadAllDayTasksDueTodayCursor()
+    private TaskQuery allDayTasksDueToday()
     {
         // get start of today in UTC
         Calendar calendar = Calendar.getInstance();
@@ -372,12 +402,11 @@ public class TasksExtension extends DashClockExtension
         calendar.setTimeZone(TimeZone.getTimeZone("UTC"));
         long todayUTC = calendar.getTimeInMillis();
 
-        return getContentResolver().query(Instances.getContentUri(mAuthority), INSTANCE_PROJECTION, INSTANCE_DUE_SELECTION_ALL_DAY,
-                new String[] { String.valueOf(todayUTC) }, Instances.DUE);
+        return new TaskQuery(INSTANCE_DUE_SELECTION_ALL_DAY, new String[] { String.valueOf(todayUTC) }, Instances.DUE);
     }
 
 
-    private Cursor loadAllDayTasksStartTodayCursor()
+    private TaskQuery allDayTasksStartToday()
     {
         // get start of today in UTC
         Calendar calendar = Calendar.getInstance();
@@ -388,12 +417,11 @@ public class TasksExtension extends DashClockExtension
         calendar.setTimeZone(TimeZone.getTimeZone("UTC"));
         long todayUTC = calendar.getTimeInMillis();
 
-        return getContentResolver().query(Instances.getContentUri(mAuthority), INSTANCE_PROJECTION, INSTANCE_START_SELECTION_ALL_DAY,
-                new String[] { String.valueOf(todayUTC) }, Instances.DTSTART);
+        return new TaskQuery(INSTANCE_START_SELECTION_ALL_DAY, new String[] { String.valueOf(todayUTC) }, Instances.DTSTART);
     }
 
 
-    private Cursor loadAllDayTasksStartDueTodayCursor()
+    private TaskQuery allDayTasksStartDueToday()
     {
         // get start of today in UTC
         Calendar calendar = Calendar.getInstance();
@@ -404,7 +432,25 @@ public class TasksExtension extends DashClockExtension
         calendar.setTimeZone(TimeZone.getTimeZone("UTC"));
         long todayUTC = calendar.getTimeInMillis();
 
-        return getContentResolver().query(Instances.getContentUri(mAuthority), INSTANCE_PROJECTION, INSTANCE_START_DUE_SELECTION_ALL_DAY,
-                new String[] { String.valueOf(todayUTC), String.valueOf(todayUTC) }, Instances.DUE);
+        return new TaskQuery(INSTANCE_START_DUE_SELECTION_ALL_DAY, new String[] { String.valueOf(todayUTC), String.valueOf(todayUTC) }, Instances.DUE);
+    }
+
+
+    /**
+     * The selection and sort order of the instances to show.
+     */
+    private static final class TaskQuery
+    {
+        private final String selection;
+        private final String[] selectionArgs;
+        private final String sortOrder;
+
+
+        private TaskQuery(String selection, String[] selectionArgs, String sortOrder)
+        {
+            this.selection = selection;
+            this.selectionArgs = selectionArgs;
+            this.sortOrder = sortOrder;
+        }
     }
 }
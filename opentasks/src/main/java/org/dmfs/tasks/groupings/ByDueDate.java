@@ -27,7 +27,9 @@ import android.widget.TextView;
 import org.dmfs.jems.optional.elementary.NullSafe;
 import org.dmfs.jems.single.combined.Backed;
 import org.dmfs.tasks.R;
+import org.dmfs.tasks.contract.TaskContract.InstanceAggregates;
 import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.groupings.cursorloaders.TimeRangeCountsLoaderFactory;
 import org.dmfs.tasks.groupings.cursorloaders.TimeRangeCursorFactory;
 import org.dmfs.tasks.groupings.cursorloaders.TimeRangeCursorLoaderFactory;
 import org.dmfs.tasks.groupings.cursorloaders.TimeRangeShortCursorFactory;
@@ -183,8 +185,8 @@ public class ByDueDate extends AbstractGroupingFactory
 
             // set list elements
             TextView text2 = (TextView) view.findViewById(android.R.id.text2);
-            int childrenCount = adapter.getChildrenCount(position);
-            if (text2 != null && ((ExpandableGroupDescriptorAdapter) adapter).childCursorLoaded(position))
+            int childrenCount = ((ExpandableGroupDescriptorAdapter) adapter).groupChildrenCount(position);
+            if (text2 != null && childrenCount >= 0)
             {
                 Resources res = view.getContext().getResources();
                 text2.setText(res.getQuantityString(R.plurals.number_of_tasks, childrenCount, childrenCount));
@@ -308,7 +310,8 @@ public class ByDueDate extends AbstractGroupingFactory
     ExpandableGroupDescriptor makeExpandableGroupDescriptor(String authority)
     {
         return new ExpandableGroupDescriptor(new TimeRangeCursorLoaderFactory(TimeRangeShortCursorFactory.DEFAULT_PROJECTION),
-                makeExpandableChildDescriptor(authority)).setViewDescriptor(GROUP_VIEW_DESCRIPTOR);
+                makeExpandableChildDescriptor(authority)).setViewDescriptor(GROUP_VIEW_DESCRIPTOR)
+                .setGroupCountsLoaderFactory(new TimeRangeCountsLoaderFactory(authority, InstanceAggregates.GROUP_BY_DUE));
     }
 
 
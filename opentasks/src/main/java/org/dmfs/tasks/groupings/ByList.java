@@ -32,6 +32,7 @@ import org.dmfs.tasks.R;
 import org.dmfs.tasks.contract.TaskContract.Instances;
 import org.dmfs.tasks.contract.TaskContract.TaskLists;
 import org.dmfs.tasks.groupings.cursorloaders.CursorLoaderFactory;
+import org.dmfs.tasks.groupings.cursorloaders.ListCountsLoaderFactory;
 import org.dmfs.tasks.model.TaskFieldAdapters;
 import org.dmfs.tasks.utils.ExpandableChildDescriptor;
 import org.dmfs.tasks.utils.ExpandableGroupDescriptor;
@@ -183,8 +184,8 @@ public class ByList extends AbstractGroupingFactory
 
             // set list elements
             TextView text2 = (TextView) view.findViewById(android.R.id.text2);
-            int childrenCount = adapter.getChildrenCount(position);
-            if (text2 != null && ((ExpandableGroupDescriptorAdapter) adapter).childCursorLoaded(position))
+            int childrenCount = ((ExpandableGroupDescriptorAdapter) adapter).groupChildrenCount(position);
+            if (text2 != null && childrenCount >= 0)
             {
                 Resources res = view.getContext().getResources();
 
@@ -339,7 +340,8 @@ public class ByList extends AbstractGroupingFactory
                 TaskLists._ID, TaskLists.LIST_NAME,
                 TaskLists.LIST_COLOR, TaskLists.ACCOUNT_NAME }, TaskLists.VISIBLE + ">0 and " + TaskLists.SYNC_ENABLED + ">0", null,
                 TaskLists.ACCOUNT_NAME + ", "
-                        + TaskLists.LIST_NAME), makeExpandableChildDescriptor(authority)).setViewDescriptor(GROUP_VIEW_DESCRIPTOR);
+                        + TaskLists.LIST_NAME), makeExpandableChildDescriptor(authority)).setViewDescriptor(GROUP_VIEW_DESCRIPTOR)
+                .setGroupCountsLoaderFactory(new ListCountsLoaderFactory(authority));
     }
 
 
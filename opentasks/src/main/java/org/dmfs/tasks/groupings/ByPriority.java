@@ -32,6 +32,7 @@ import org.dmfs.tasks.QuickAddDialogFragment;
 import org.dmfs.tasks.R;
 import org.dmfs.tasks.contract.TaskContract.Instances;
 import org.dmfs.tasks.contract.TaskContract.Tasks;
+import org.dmfs.tasks.groupings.cursorloaders.PriorityCountsLoaderFactory;
 import org.dmfs.tasks.groupings.cursorloaders.PriorityCursorFactory;
 import org.dmfs.tasks.groupings.cursorloaders.PriorityCursorLoaderFactory;
 import org.dmfs.tasks.model.ContentSet;
@@ -168,8 +169,8 @@ public class ByPriority extends AbstractGroupingFactory
 
             // set list elements
             TextView text2 = (TextView) view.findViewById(android.R.id.text2);
-            int childrenCount = adapter.getChildrenCount(position);
-            if (text2 != null && ((ExpandableGroupDescriptorAdapter) adapter).childCursorLoaded(position))
+            int childrenCount = ((ExpandableGroupDescriptorAdapter) adapter).groupChildrenCount(position);
+            if (text2 != null && childrenCount >= 0)
             {
                 Resources res = view.getContext().getResources();
 
@@ -324,7 +325,8 @@ public class ByPriority extends AbstractGroupingFactory
     ExpandableGroupDescriptor makeExpandableGroupDescriptor(String authority)
     {
         return new ExpandableGroupDescriptor(new PriorityCursorLoaderFactory(PriorityCursorFactory.DEFAULT_PROJECTION),
-                makeExpandableChildDescriptor(authority)).setViewDescriptor(GROUP_VIEW_DESCRIPTOR);
+                makeExpandableChildDescriptor(authority)).setViewDescriptor(GROUP_VIEW_DESCRIPTOR)
+                .setGroupCountsLoaderFactory(new PriorityCountsLoaderFactory(authority));
     }
 
 
@@ -184,8 +184,8 @@ public class BySearch extends AbstractGroupingFactory
 
             // set list elements
             TextView text2 = (TextView) view.findViewById(android.R.id.text2);
-            int childrenCount = adapter.getChildrenCount(position);
-            if (text2 != null && ((ExpandableGroupDescriptorAdapter) adapter).childCursorLoaded(position))
+            int childrenCount = ((ExpandableGroupDescriptorAdapter) adapter).groupChildrenCount(position);
+            if (text2 != null && childrenCount >= 0)
             {
                 Resources res = view.getContext().getResources();
 
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.tasks.groupings.cursorloaders;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.util.SparseIntArray;
+
+import org.dmfs.tasks.contract.TaskContract.InstanceAggregates;
+import org.dmfs.tasks.groupings.filters.AbstractFilter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.loader.content.CursorLoader;
+import androidx.loader.content.Loader;
+
+
+/**
+ * An abstract factory that creates {@link Loader}s for the number of tasks in each group of a grouping. The counts are loaded from {@link
+ * InstanceAggregates}, so the children of a group don't have to be loaded to know how many there are.
+ *
+ * @author agent
+ */
+public abstract class GroupCountsLoaderFactory
+{
+    private final static String[] PROJECTION = new String[] { InstanceAggregates.GROUP_KEY, InstanceAggregates.COUNT };
+
+    private final Uri mUri;
+    private final String mSelection;
+
+
+    /**
+     * Create a new factory.
+     *
+     * @param uri
+     *         The {@link InstanceAggregates} {@link Uri} including the grouping.
+     * @param selection
+     *         The selection of the children, without the group specific part.
+     */
+    public GroupCountsLoaderFactory(Uri uri, String selection)
+    {
+        mUri = uri;
+        mSelection = selection;
+    }
+
+
+    /**
+     * Get a new {@link Loader} for the counts of the given groups.
+     *
+     * @param context
+     *         A {@link Context}.
+     * @param groups
+     *         The {@link Cursor} of the groups.
+     * @param filter
+     *         An additional filter to filter the children, may be {@code null}.
+     *
+     * @return A brand new {@link Loader} for the {@link InstanceAggregates}.
+     */
+    public Loader<Cursor> getLoader(Context context, Cursor groups, AbstractFilter filter)
+    {
+        Uri uri = mUri;
+        String boundaries = boundaries(groups);
+        if (boundaries != null)
+        {
+            uri = uri.buildUpon().appendQueryParameter(InstanceAggregates.BOUNDARIES, boundaries).build();
+        }
+
+        StringBuilder selection = new StringBuilder(mSelection.length() + 64);
+        selection.append("(").append(mSelection).append(")");
+        List<String> selectionArgs = new ArrayList<String>();
+        if (filter != null)
+        {
+            selection.append(" and (");
+            filter.getSelection(selection);
+            selection.append(")");
+            filter.getSelectionArgs(selectionArgs);
+        }
+        return new CursorLoader(context, uri, PROJECTION, selection.toString(), selectionArgs.toArray(new String[selectionArgs.size()]), null);
+    }
+
+
+    /**
+     * Returns the number of tasks of each group by the position of the group.
+     *
+     * @param groups
+     *         The {@link Cursor} of the groups.
+     * @param aggregates
+     *         A {@link Cursor} returned by a {@link Loader} of this factory.
+     *
+     * @return A {@link SparseIntArray} that maps group positions to task counts.
+     */
+    public SparseIntArray groupCounts(Cursor groups, Cursor aggregates)
+    {
+        Map<Long, Integer> counts = new HashMap<Long, Integer>(aggregates.getCount() * 2);
+        aggregates.moveToPosition(-1);
+        while (aggregates.moveToNext())
+        {
+            counts.put(aggregates.isNull(0) ? null : aggregates.getLong(0), aggregates.getInt(1));
+        }
+
+        SparseIntArray result = new SparseIntArray(groups.getCount());
+        int position = groups.getPosition();
+        groups.moveToPosition(-1);
+        while (groups.moveToNext())
+        {
+            result.put(groups.getPosition(), groupCount(groups, counts));
+        }
+        groups.moveToPosition(position);
+        return result;
+    }
+
+
+    /**
+     * Returns the {@link InstanceAggregates#BOUNDARIES} for the given groups or {@code null} to count by distinct values.
+     *
+     * @param groups
+     *         The {@link Cursor} of the groups.
+     *
+     * @return A comma separated list of boundaries or {@code null}.
+     */
+    protected String boundaries(Cursor groups)
+    {
+        return null;
+    }
+
+
+    /**
+     * Returns the number of tasks in the group at the current position of the given {@link Cursor}.
+     *
+     * @param group
+     *         A {@link Cursor} pointing to a group.
+     * @param counts
+     *         The counts by {@link InstanceAggregates#GROUP_KEY}.
+     *
+     * @return The number of tasks in the group.
+     */
+    protected abstract int groupCount(Cursor group, Map<Long, Integer> counts);
+
+
+    /**
+     * Returns the count with the given key or {@code 0} if there is no such key.
+     */
+    protected static int count(Map<Long, Integer> counts, Long key)
+    {
+        Integer count = counts.get(key);
+        return count == null ? 0 : count;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.tasks.groupings.cursorloaders;
+
+import android.database.Cursor;
+
+import org.dmfs.tasks.contract.TaskContract.InstanceAggregates;
+import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.contract.TaskContract.TaskLists;
+
+import java.util.Map;
+
+
+/**
+ * A {@link GroupCountsLoaderFactory} for groups of task lists. The group {@link Cursor} must contain the {@link TaskLists#_ID} column.
+ *
+ * @author agent
+ */
+public final class ListCountsLoaderFactory extends GroupCountsLoaderFactory
+{
+
+    public ListCountsLoaderFactory(String authority)
+    {
+        super(InstanceAggregates.getContentUri(authority, InstanceAggregates.GROUP_BY_LIST), Instances.VISIBLE + "=1");
+    }
+
+
+    @Override
+    protected int groupCount(Cursor group, Map<Long, Integer> counts)
+    {
+        return count(counts, group.getLong(group.getColumnIndex(TaskLists._ID)));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.tasks.groupings.cursorloaders;
+
+import android.database.Cursor;
+import android.text.TextUtils;
+
+import org.dmfs.tasks.contract.TaskContract.InstanceAggregates;
+import org.dmfs.tasks.contract.TaskContract.Instances;
+
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+
+/**
+ * A {@link GroupCountsLoaderFactory} for the groups of a {@link PriorityCursorFactory}.
+ * <p>
+ * The lower priority bounds of the groups are used as boundaries, so each group is counted in a range of its own. The group without a lower bound contains
+ * all tasks with an undefined priority.
+ *
+ * @author agent
+ */
+public final class PriorityCountsLoaderFactory extends GroupCountsLoaderFactory
+{
+
+    public PriorityCountsLoaderFactory(String authority)
+    {
+        super(InstanceAggregates.getContentUri(authority, InstanceAggregates.GROUP_BY_PRIORITY), Instances.VISIBLE + "=1");
+    }
+
+
+    @Override
+    protected String boundaries(Cursor groups)
+    {
+        SortedSet<Long> lowerBounds = lowerBounds(groups);
+        return lowerBounds.isEmpty() ? null : TextUtils.join(",", lowerBounds);
+    }
+
+
+    @Override
+    protected int groupCount(Cursor group, Map<Long, Integer> counts)
+    {
+        int column = group.getColumnIndex(PriorityCursorFactory.PRIORITY_MIN_STATUS);
+        if (group.isNull(column))
+        {
+            return count(counts, 0L);
+        }
+        // the key of a range is the number of boundaries less or equal to its lower bound
+        return count(counts, (long) lowerBounds(group).headSet(group.getLong(column) + 1).size());
+    }
+
+
+    private SortedSet<Long> lowerBounds(Cursor groups)
+    {
+        SortedSet<Long> result = new TreeSet<>();
+        int column = groups.getColumnIndex(PriorityCursorFactory.PRIORITY_MIN_STATUS);
+        int position = groups.getPosition();
+        groups.moveToPosition(-1);
+        while (groups.moveToNext())
+        {
+            if (!groups.isNull(column))
+            {
+                result.add(groups.getLong(column));
+            }
+        }
+        groups.moveToPosition(position);
+        return result;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.tasks.groupings.cursorloaders;
+
+import android.database.Cursor;
+import android.text.TextUtils;
+import android.util.SparseIntArray;
+
+import org.dmfs.tasks.contract.TaskContract.InstanceAggregates;
+import org.dmfs.tasks.contract.TaskContract.Instances;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+
+/**
+ * A {@link GroupCountsLoaderFactory} for the groups of a {@link TimeRangeCursorFactory}.
+ * <p>
+ * The range starts are converted to local time, because that's what the {@link InstanceAggregates} compare to when grouping by a date. Tasks without a date
+ * are counted in the group without an end, which is either the open future or the explicit null row, just like the children are selected.
+ *
+ * @author agent
+ */
+public final class TimeRangeCountsLoaderFactory extends GroupCountsLoaderFactory
+{
+    /**
+     * The {@link InstanceAggregates#GROUP_KEY}s by local range start of the groups which are currently counted. This is only used during {@link
+     * #groupCounts(Cursor, Cursor)}, which is called on the main thread.
+     */
+    private Map<Long, Long> mRangeKeys;
+
+
+    /**
+     * Create a new factory.
+     *
+     * @param authority
+     *         The authority of the task provider.
+     * @param groupBy
+     *         Either {@link InstanceAggregates#GROUP_BY_DUE} or {@link InstanceAggregates#GROUP_BY_START}.
+     */
+    public TimeRangeCountsLoaderFactory(String authority, String groupBy)
+    {
+        super(InstanceAggregates.getContentUri(authority, groupBy), Instances.VISIBLE + "=1");
+    }
+
+
+    @Override
+    protected String boundaries(Cursor groups)
+    {
+        SortedSet<Long> starts = localStarts(groups);
+        return starts.isEmpty() ? null : TextUtils.join(",", starts);
+    }
+
+
+    @Override
+    public SparseIntArray groupCounts(Cursor groups, Cursor aggregates)
+    {
+        // the key of a range is the number of boundaries less or equal to its start, determine them once instead of for every group
+        Map<Long, Long> rangeKeys = new HashMap<>();
+        long key = 0;
+        for (Long start : localStarts(groups))
+        {
+            rangeKeys.put(start, ++key);
+        }
+        mRangeKeys = rangeKeys;
+        try
+        {
+            return super.groupCounts(groups, aggregates);
+        }
+        finally
+        {
+            mRangeKeys = null;
+        }
+    }
+
+
+    @Override
+    protected int groupCount(Cursor group, Map<Long, Integer> counts)
+    {
+        int count = 0;
+        Long start = localStart(group);
+        if (start != null)
+        {
+            // starts which are not a boundary (i.e. MIN_TIME) are before all boundaries
+            Long key = mRangeKeys.get(start);
+            count += count(counts, key == null ? 0L : key);
+        }
+        if (group.isNull(group.getColumnIndex(TimeRangeCursorFactory.RANGE_END)))
+        {
+            count += count(counts, null);
+        }
+        return count;
+    }
+
+
+    private SortedSet<Long> localStarts(Cursor groups)
+    {
+        SortedSet<Long> result = new TreeSet<>();
+        int position = groups.getPosition();
+        groups.moveToPosition(-1);
+        while (groups.moveToNext())
+        {
+            Long start = localStart(groups);
+            if (start != null && start > TimeRangeCursorFactory.MIN_TIME)
+            {
+                result.add(start);
+            }
+        }
+        groups.moveToPosition(position);
+        return result;
+    }
+
+
+    /**
+     * Returns the start of the range at the current position in local time or {@code null} if the range has no start.
+     */
+    private Long localStart(Cursor group)
+    {
+        int startColumn = group.getColumnIndex(TimeRangeCursorFactory.RANGE_START);
+        if (group.isNull(startColumn))
+        {
+            return null;
+        }
+        long start = group.getLong(startColumn);
+        if (start <= TimeRangeCursorFactory.MIN_TIME)
+        {
+            return start;
+        }
+        return start + group.getLong(group.getColumnIndex(TimeRangeCursorFactory.RANGE_START_TZ_OFFSET));
+    }
+}
@@ -25,6 +25,7 @@ import android.content.Intent;
 import android.content.res.Resources;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.graphics.Color;
 import android.net.Uri;
 import androidx.loader.content.CursorLoader;
 import android.text.format.Time;
@@ -62,6 +63,12 @@ public class TaskListWidgetUpdaterService extends RemoteViewsService
 {
     private final static String TAG = "TaskListWidgetUpdaterService";
 
+    /**
+     * The maximum number of tasks to show in a widget. Nobody scrolls through hundreds of tasks in a widget, so we don't load more than that. If there are
+     * more tasks, the last row of the widget says so.
+     */
+    private final static int MAX_WIDGET_ITEMS = 200;
+
 
     /*
      * Return an instance of {@link TaskListViewsFactory}
@@ -87,6 +94,11 @@ public class TaskListWidgetUpdaterService extends RemoteViewsService
          */
         private TaskListWidgetItem[] mItems = null;
 
+        /**
+         * Whether there are more tasks than {@link #mItems}.
+         */
+        private boolean mTruncated;
+
         /**
          * The {@link Context} of the {@link Application} to which this widget belongs.
          */
@@ -193,7 +205,8 @@ public class TaskListWidgetUpdaterService extends RemoteViewsService
             {
                 return 0;
             }
-            return (mItems.length);
+            // add a row to indicate more tasks
+            return (mItems.length + (mTruncated ? 1 : 0));
         }
 
 
@@ -208,12 +221,21 @@ public class TaskListWidgetUpdaterService extends RemoteViewsService
             TaskListWidgetItem[] items = mItems;
 
             /** We use this check because there is a small gap between when the database is updated and the widget is notified */
-            if (items == null || position < 0 || position >= items.length)
+            if (items == null || position < 0 || position > items.length || position == items.length && !mTruncated)
             {
                 return null;
             }
             RemoteViews row = new RemoteViews(mContext.getPackageName(), R.layout.task_list_widget_item);
 
+            if (position == items.length)
+            {
+                // the tasks didn't fit, tell the user there is more in the app
+                row.setTextViewText(android.R.id.title, mResources.getString(R.string.task_list_widget_more_tasks));
+                row.setTextViewText(android.R.id.text1, null);
+                row.setInt(R.id.task_list_color, "setBackgroundColor", Color.TRANSPARENT);
+                return row;
+            }
+
             String taskTitle = items[position].getTaskTitle();
             row.setTextViewText(android.R.id.title, taskTitle);
             row.setInt(R.id.task_list_color, "setBackgroundColor", items[position].getTaskColor());
@@ -354,13 +376,27 @@ public class TaskListWidgetUpdaterService extends RemoteViewsService
          * @return the widget items
          */
         public static TaskListWidgetItem[] getWidgetItems(Cursor mTasksCursor)
+        {
+            return getWidgetItems(mTasksCursor, mTasksCursor.getCount());
+        }
+
+
+        /**
+         * Gets the array of the first {@link TaskListWidgetItem}s.
+         *
+         * @param maxItems
+         *         The maximum number of items to return.
+         *
+         * @return the widget items
+         */
+        public static TaskListWidgetItem[] getWidgetItems(Cursor mTasksCursor, int maxItems)
         {
             if (mTasksCursor.getCount() > 0)
             {
-                TaskListWidgetItem[] items = new TaskListWidgetItem[mTasksCursor.getCount()];
+                TaskListWidgetItem[] items = new TaskListWidgetItem[Math.min(mTasksCursor.getCount(), maxItems)];
                 int itemIndex = 0;
 
-                while (mTasksCursor.moveToNext())
+                while (itemIndex < items.length && mTasksCursor.moveToNext())
                 {
                     items[itemIndex] = new TaskListWidgetItem(TaskFieldAdapters.TASK_ID.get(mTasksCursor), TaskFieldAdapters.TITLE.get(mTasksCursor),
                             TaskFieldAdapters.DUE.get(mTasksCursor), TaskFieldAdapters.LIST_COLOR.get(mTasksCursor),
@@ -414,9 +450,10 @@ public class TaskListWidgetUpdaterService extends RemoteViewsService
                     }
                 }
 
-                // load all upcoming non-completed tasks
+                // load the first page of upcoming non-completed tasks, one more row tells us whether there are more tasks
                 Cursor c = mContext.getContentResolver().query(
-                        TaskContract.Instances.getContentUri(mAuthority),
+                        TaskContract.Instances.getContentUri(mAuthority).buildUpon()
+                                .appendQueryParameter(TaskContract.LIMIT, String.valueOf(MAX_WIDGET_ITEMS + 1)).build(),
                         null,
                         selection.toString(),
                         null,
@@ -429,7 +466,8 @@ public class TaskListWidgetUpdaterService extends RemoteViewsService
                 {
                     try
                     {
-                        mItems = getWidgetItems(c);
+                        mTruncated = c.getCount() > MAX_WIDGET_ITEMS;
+                        mItems = getWidgetItems(c, MAX_WIDGET_ITEMS);
                     }
                     finally
                     {
@@ -438,6 +476,7 @@ public class TaskListWidgetUpdaterService extends RemoteViewsService
                 }
                 else
                 {
+                    mTruncated = false;
                     mItems = new TaskListWidgetItem[0];
                 }
 
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.tasks.ical;
+
+import android.content.ContentProviderClient;
+import android.content.Context;
+import android.content.Intent;
+import android.content.OperationApplicationException;
+import android.net.Uri;
+import android.os.RemoteException;
+import android.util.Log;
+
+import org.dmfs.opentaskspal.ical.VTodoExporter;
+import org.dmfs.opentaskspal.ical.VTodoImporter;
+import org.dmfs.provider.tasks.AuthorityUtil;
+import org.dmfs.tasks.JobIds;
+import org.dmfs.tasks.contract.TaskContract;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.app.JobIntentService;
+
+
+/**
+ * A {@link JobIntentService} which imports or exports tasks from or to an iCalendar file in the background, see {@link VTodoImporter} and {@link
+ * VTodoExporter}. The file is given by the data {@link Uri} of the {@link Intent}, usually a document {@link Uri}.
+ *
+ * @author agent
+ */
+public final class ICalendarService extends JobIntentService
+{
+    private final static String TAG = "ICalendarService";
+
+    public static final String ACTION_IMPORT = "org.dmfs.tasks.action.ICALENDAR_IMPORT";
+    public static final String ACTION_EXPORT = "org.dmfs.tasks.action.ICALENDAR_EXPORT";
+
+    /**
+     * The row id of the task list to import to or to export. If this is missing, an export contains all task lists.
+     */
+    public static final String EXTRA_LIST_ID = "org.dmfs.tasks.extra.LIST_ID";
+
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+
+    /**
+     * Imports the iCalendar file with the given {@link Uri} into the given task list.
+     */
+    public static void importTasks(@NonNull Context context, @NonNull Uri file, long listId)
+    {
+        enqueueWork(context, new Intent(ACTION_IMPORT).setData(file).putExtra(EXTRA_LIST_ID, listId));
+    }
+
+
+    /**
+     * Exports the given task list or all task lists to the iCalendar file with the given {@link Uri}.
+     */
+    public static void exportTasks(@NonNull Context context, @NonNull Uri file, @Nullable Long listId)
+    {
+        Intent intent = new Intent(ACTION_EXPORT).setData(file);
+        if (listId != null)
+        {
+            intent.putExtra(EXTRA_LIST_ID, listId.longValue());
+        }
+        enqueueWork(context, intent);
+    }
+
+
+    public static void enqueueWork(@NonNull Context context, @NonNull Intent work)
+    {
+        enqueueWork(context, ICalendarService.class, JobIds.ICALENDAR_SERVICE, work);
+    }
+
+
+    @Override
+    protected void onHandleWork(@NonNull Intent intent)
+    {
+        Uri file = intent.getData();
+        if (file == null)
+        {
+            Log.e(TAG, "no file given");
+            return;
+        }
+
+        String authority = AuthorityUtil.taskAuthority(this);
+        ContentProviderClient client = getContentResolver().acquireContentProviderClient(TaskContract.getContentUri(authority));
+        if (client == null)
+        {
+            Log.e(TAG, "task provider not available");
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        try
+        {
+            if (ACTION_IMPORT.equals(intent.getAction()) && intent.hasExtra(EXTRA_LIST_ID))
+            {
+                InputStream in = getContentResolver().openInputStream(file);
+                if (in == null)
+                {
+                    throw new IOException("can't open " + file);
+                }
+                try (Reader reader = new BufferedReader(new InputStreamReader(in, UTF_8)))
+                {
+                    VTodoImporter importer = new VTodoImporter(client, authority);
+                    int count = importer.importTasks(intent.getLongExtra(EXTRA_LIST_ID, -1), reader);
+                    Log.i(TAG, String.format("imported %d tasks (%d overrides skipped) in %d ms", count, importer.skipped(),
+                            System.currentTimeMillis() - start));
+                }
+            }
+            else if (ACTION_EXPORT.equals(intent.getAction()))
+            {
+                OutputStream out = getContentResolver().openOutputStream(file, "wt");
+                if (out == null)
+                {
+                    throw new IOException("can't open " + file);
+                }
+                try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF_8)))
+                {
+                    int count = new VTodoExporter(client, authority).export(
+                            intent.hasExtra(EXTRA_LIST_ID) ? intent.getLongExtra(EXTRA_LIST_ID, -1) : null, writer);
+                    Log.i(TAG, String.format("exported %d tasks in %d ms", count, System.currentTimeMillis() - start));
+                }
+            }
+        }
+        catch (IOException | RemoteException | OperationApplicationException | IllegalArgumentException e)
+        {
+            Log.e(TAG, "iCalendar " + intent.getAction() + " of " + file + " failed", e);
+        }
+        finally
+        {
+            client.release();
+        }
+    }
+}
@@ -18,12 +18,15 @@ package org.dmfs.tasks.notification;
 
 import android.app.Notification;
 import android.app.Service;
+import android.content.ContentProviderClient;
 import android.content.ContentUris;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.net.Uri;
 
+import org.dmfs.android.contentpal.Predicate;
+import org.dmfs.android.contentpal.RowSnapshot;
 import org.dmfs.android.contentpal.predicates.AnyOf;
 import org.dmfs.android.contentpal.predicates.EqArg;
 import org.dmfs.android.contentpal.predicates.In;
@@ -32,6 +35,7 @@ import org.dmfs.android.contentpal.rowsets.QueryRowSet;
 import org.dmfs.android.contentpal.views.Sorted;
 import org.dmfs.jems.iterable.composite.Diff;
 import org.dmfs.jems.iterable.decorators.Mapped;
+import org.dmfs.jems.iterable.decorators.Sieved;
 import org.dmfs.jems.optional.Optional;
 import org.dmfs.jems.pair.Pair;
 import org.dmfs.opentaskspal.readdata.EffectiveDueDate;
@@ -51,6 +55,10 @@ import org.dmfs.tasks.notification.state.RowState;
 import org.dmfs.tasks.notification.state.StateInfo;
 import org.dmfs.tasks.notification.state.TaskNotificationState;
 
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
 import androidx.annotation.NonNull;
 import androidx.core.app.JobIntentService;
 import androidx.core.app.NotificationManagerCompat;
@@ -69,6 +77,17 @@ public class TaskNotificationService extends JobIntentService
     }
 
 
+    /**
+     * Orders {@link TaskNotificationState}s by their instance id.
+     */
+    private final static Comparator<TaskNotificationState> STATE_COMPARATOR =
+            (o, o2) -> Long.compare(ContentUris.parseId(o.instance()), ContentUris.parseId(o2.instance()));
+
+    /**
+     * The maximum number of changed instances to synchronize selectively. This must not exceed the SQLite variable limit.
+     */
+    private final static int MAX_CHANGED_IDS = 900;
+
     private SharedPreferences mNotificationPrefs;
 
 
@@ -104,63 +123,167 @@ public class TaskNotificationService extends JobIntentService
                  * Notifications of tasks which have been unpinned are removed.
                  * Notifications of tasks which have changed otherwise are updated.
                  */
-                String authority = getString(R.string.opentasks_authority);
+                long[] changedTaskIds = intent.getLongArrayExtra(TaskContract.EXTRA_CHANGED_TASK_IDS);
+                long[] changedInstanceIds = intent.getLongArrayExtra(TaskContract.EXTRA_CHANGED_INSTANCE_IDS);
+                if (changedTaskIds == null || changedInstanceIds == null)
+                {
+                    syncAll();
+                }
+                else if (changedTaskIds.length > 0 || changedInstanceIds.length > 0)
+                {
+                    syncChanged(changedTaskIds, changedInstanceIds);
+                }
+        }
+    }
+
 
-                Iterable<TaskNotificationState> currentNotifications = new org.dmfs.tasks.utils.Sorted<>(
-                        (o, o2) -> (int) (ContentUris.parseId(o.instance()) - ContentUris.parseId(o2.instance())),
+    /**
+     * Synchronize all notifications with the database.
+     */
+    private void syncAll()
+    {
+        String authority = getString(R.string.opentasks_authority);
+
+        Iterable<TaskNotificationState> currentNotifications = new org.dmfs.tasks.utils.Sorted<>(
+                STATE_COMPARATOR,
+                new Mapped<>(
+                        PrefState::new,
+                        mNotificationPrefs.getAll().entrySet()));
+
+        sync(currentNotifications,
+                new AnyOf<>(
+                        // task is either pinned or has a notification
+                        new EqArg<>(Tasks.PINNED, 1),
+                        new In<>(Tasks._ID, new Mapped<>(p -> ContentUris.parseId(p.instance()), currentNotifications))),
+                authority);
+    }
+
+
+    /**
+     * Synchronize the notifications of the given instances and of all instances of the given tasks with the database. All other notifications are left
+     * alone.
+     *
+     * @param changedTaskIds
+     *         The ids of the tasks which have been changed.
+     * @param changedInstanceIds
+     *         The ids of the instances which have been changed in addition to the instances of the changed tasks.
+     */
+    private void syncChanged(long[] changedTaskIds, long[] changedInstanceIds)
+    {
+        String authority = getString(R.string.opentasks_authority);
+
+        Set<Long> changedIds = new HashSet<>(changedInstanceIds.length * 2);
+        for (long id : changedInstanceIds)
+        {
+            changedIds.add(id);
+        }
+
+        if (changedTaskIds.length > 0)
+        {
+            // resolve the current instances of the changed tasks, the provider leaves that to us
+            Set<Long> taskIds = new HashSet<>(changedTaskIds.length * 2);
+            for (long id : changedTaskIds)
+            {
+                taskIds.add(id);
+            }
+            ContentProviderClient client = getContentResolver().acquireContentProviderClient(authority);
+            try
+            {
+                for (RowSnapshot<TaskContract.Instances> snapshot : new QueryRowSet<>(
+                        new InstancesView<>(authority, client),
+                        Id.PROJECTION,
+                        new In<>(TaskContract.Instances.TASK_ID, taskIds)))
+                {
+                    changedIds.add(new Id(snapshot.values()).value());
+                }
+            }
+            finally
+            {
+                client.release();
+            }
+        }
+
+        if (changedIds.size() > MAX_CHANGED_IDS)
+        {
+            // too many instances for a single query
+            syncAll();
+            return;
+        }
+
+        // only take the notifications of changed instances into account
+        Iterable<TaskNotificationState> currentNotifications = new org.dmfs.tasks.utils.Sorted<>(
+                STATE_COMPARATOR,
+                new Sieved<>(
+                        state -> changedIds.contains(ContentUris.parseId(state.instance())),
                         new Mapped<>(
                                 PrefState::new,
-                                mNotificationPrefs.getAll().entrySet()));
-
-                for (Pair<Optional<TaskNotificationState>, Optional<RowState>> diff : new Diff<>(
-                        currentNotifications,
-                        new Mapped<>(snapShot -> new RowState(authority, snapShot.values()),
-                                new QueryRowSet<>(
-                                        new Sorted<>(TaskContract.Instances._ID,
-                                                new InstancesView<>(authority, getContentResolver().acquireContentProviderClient(authority))),
-                                        new Composite<>(Id.PROJECTION, TaskVersion.PROJECTION, TaskPin.PROJECTION, TaskIsClosed.PROJECTION,
-                                                EffectiveDueDate.PROJECTION, TaskStart.PROJECTION),
-                                        new AnyOf<>(
-                                                // task is either pinned or has a notification
-                                                new EqArg<>(Tasks.PINNED, 1),
-                                                new In<>(Tasks._ID, new Mapped<>(p -> ContentUris.parseId(p.instance()), currentNotifications))))),
-                        (o, o2) -> (int) (ContentUris.parseId(o.instance()) - ContentUris.parseId(o2.instance()))))
+                                mNotificationPrefs.getAll().entrySet())));
+
+        sync(currentNotifications, new In<>(Tasks._ID, changedIds), authority);
+    }
+
+
+    /**
+     * Synchronize the given notifications with the instances matching the given {@link Predicate}.
+     *
+     * @param currentNotifications
+     *         The current notifications, sorted by instance id.
+     * @param predicate
+     *         The {@link Predicate} to select the instances to compare the notifications to. This must select at least the instances of all the given
+     *         notifications.
+     * @param authority
+     *         The authority of the provider.
+     */
+    private void sync(Iterable<TaskNotificationState> currentNotifications, Predicate<? super TaskContract.Instances> predicate, String authority)
+    {
+        for (Pair<Optional<TaskNotificationState>, Optional<RowState>> diff : new Diff<>(
+                currentNotifications,
+                new Mapped<>(snapShot -> new RowState(authority, snapShot.values()),
+                        new QueryRowSet<>(
+                                new Sorted<>(TaskContract.Instances._ID,
+                                        new InstancesView<>(authority, getContentResolver().acquireContentProviderClient(authority))),
+                                new Composite<>(Id.PROJECTION, TaskVersion.PROJECTION, TaskPin.PROJECTION, TaskIsClosed.PROJECTION,
+                                        EffectiveDueDate.PROJECTION, TaskStart.PROJECTION),
+                                predicate)),
+                STATE_COMPARATOR))
+        {
+            if (!diff.left().isPresent())
+            {
+                if (diff.right().value().info().pinned())
                 {
-                    if (!diff.left().isPresent())
-                    {
-                        // new task not notified yet, must be pinned
-                        ActionService.startAction(this, ActionService.ACTION_RENOTIFY, diff.right().value().instance());
-                    }
-                    else if (!diff.right().isPresent())
+                    // new task not notified yet, but pinned
+                    ActionService.startAction(this, ActionService.ACTION_RENOTIFY, diff.right().value().instance());
+                }
+            }
+            else if (!diff.right().isPresent())
+            {
+                // task no longer present, remove notification
+                removeTaskNotification(diff.left().value().instance());
+            }
+            else
+            {
+                if (diff.left().value().taskVersion() != diff.right().value().taskVersion())
+                {
+                    // the task has been updated -> update the notification if necessary
+                    StateInfo before = diff.left().value().info();
+                    StateInfo now = diff.right().value().info();
+                    if (!now.pinned() && // don't remove pinned notifications
+                            (before.pinned() // pin was removed
+                                    || before.started() && !now.started() // start was deferred or removed
+                                    || !now.started() && before.due() && !now.due() // due was deferred or removed
+                                    || !before.done() && now.done() // task was closed
+                            ))
                     {
-                        // task no longer present, remove notification
+                        // notification is obsolete
                         removeTaskNotification(diff.left().value().instance());
                     }
                     else
                     {
-                        if (diff.left().value().taskVersion() != diff.right().value().taskVersion())
-                        {
-                            // the task has been updated -> update the notification if necessary
-                            StateInfo before = diff.left().value().info();
-                            StateInfo now = diff.right().value().info();
-                            if (!now.pinned() && // don't remove pinned notifications
-                                    (before.pinned() // pin was removed
-                                            || before.started() && !now.started() // start was deferred or removed
-                                            || !now.started() && before.due() && !now.due() // due was deferred or removed
-                                            || !before.done() && now.done() // task was closed
-                                    ))
-                            {
-                                // notification is obsolete
-                                removeTaskNotification(diff.left().value().instance());
-                            }
-                            else
-                            {
-                                // task was updated, also update the notification
-                                ActionService.startAction(this, ActionService.ACTION_RENOTIFY, diff.left().value().instance());
-                            }
-                        }
+                        // task was updated, also update the notification
+                        ActionService.startAction(this, ActionService.ACTION_RENOTIFY, diff.left().value().instance());
                     }
                 }
+            }
         }
     }
 
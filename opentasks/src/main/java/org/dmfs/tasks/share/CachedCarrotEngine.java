@@ -0,0 +1,68 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.tasks.share;
+
+import android.content.Context;
+
+import org.dmfs.android.carrot.locaters.RawResourceLocator;
+import org.dmfs.jems.single.Single;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import au.com.codeka.carrot.CarrotEngine;
+import au.com.codeka.carrot.Configuration;
+
+
+/**
+ * A process wide {@link CarrotEngine} for the current {@link Locale} of the given {@link Context}.
+ * <p>
+ * {@link CarrotEngine} keeps the parsed templates in an internal cache, so sharing one engine avoids re-reading and re-parsing a template every time a task
+ * is shared. Engines are cached per {@link Locale}, so a configuration change doesn't render templates resolved for another locale.
+ *
+ * @author agent
+ */
+public final class CachedCarrotEngine implements Single<CarrotEngine>
+{
+    private final static Map<Locale, CarrotEngine> ENGINES = new HashMap<>(4);
+
+    private final Context mContext;
+
+
+    public CachedCarrotEngine(Context context)
+    {
+        mContext = context.getApplicationContext();
+    }
+
+
+    @Override
+    public CarrotEngine value()
+    {
+        Locale locale = mContext.getResources().getConfiguration().locale;
+        synchronized (ENGINES)
+        {
+            CarrotEngine engine = ENGINES.get(locale);
+            if (engine == null)
+            {
+                engine = new CarrotEngine(new Configuration.Builder().setResourceLocator(new RawResourceLocator.Builder(mContext)).build());
+                ENGINES.put(locale, engine);
+            }
+            return engine;
+        }
+    }
+}
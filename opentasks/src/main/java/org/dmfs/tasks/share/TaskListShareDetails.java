@@ -0,0 +1,83 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.tasks.share;
+
+import android.content.Context;
+
+import org.dmfs.android.carrot.bindings.AndroidBindings;
+import org.dmfs.jems.single.Single;
+import org.dmfs.tasks.R;
+
+import java.io.StringWriter;
+
+import au.com.codeka.carrot.CarrotException;
+import au.com.codeka.carrot.bindings.Composite;
+import au.com.codeka.carrot.bindings.SingletonBindings;
+
+/*
+ <title>
+ ============
+
+ [ ] <task title> (Due: <due date time> <timezone>)
+ [X] <task title>
+
+ --
+ Shared by OpenTasks
+ */
+
+
+/**
+ * {@link CharSequence} listing a number of tasks, used when sharing an entire list.
+ * <p>
+ * All tasks are rendered in a single pass of the template, which is compiled only once per process, see {@link CachedCarrotEngine}.
+ *
+ * @author agent
+ */
+public final class TaskListShareDetails implements Single<CharSequence>
+{
+    private final CharSequence mTitle;
+    private final Iterable<TaskRowBindings> mTasks;
+    private final Context mContext;
+
+
+    public TaskListShareDetails(CharSequence title, Iterable<TaskRowBindings> tasks, Context context)
+    {
+        mTitle = title;
+        mTasks = tasks;
+        mContext = context.getApplicationContext();
+    }
+
+
+    @Override
+    public CharSequence value()
+    {
+        StringWriter writer = new StringWriter(2048);
+        try
+        {
+            new CachedCarrotEngine(mContext).value().process(writer, String.valueOf(R.raw.sharelist),
+                    new Composite(
+                            new AndroidBindings(mContext),
+                            new SingletonBindings("$title", mTitle),
+                            new SingletonBindings("$tasks", mTasks)));
+            return writer.toString();
+        }
+        catch (CarrotException e)
+        {
+            throw new RuntimeException("Failed to process template with carrot", e);
+        }
+    }
+}
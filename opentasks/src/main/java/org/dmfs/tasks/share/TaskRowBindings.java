@@ -0,0 +1,87 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.tasks.share;
+
+import android.database.Cursor;
+import android.text.format.Time;
+
+import org.dmfs.tasks.groupings.AbstractGroupingFactory;
+import org.dmfs.tasks.model.TaskFieldAdapters;
+import org.dmfs.tasks.utils.DateFormatter;
+
+import java.util.TimeZone;
+
+import androidx.annotation.Nullable;
+import au.com.codeka.carrot.Bindings;
+
+
+/**
+ * {@link Bindings} for accessing values of a single task row of a list cursor.
+ * <p>
+ * The values are taken from the current row of the cursor at construction time, so the cursor may be moved on afterwards. The cursor is expected to contain
+ * the columns of {@link AbstractGroupingFactory#INSTANCE_PROJECTION}. See the <code>switch-case</code> for the supported properties. Dates are returned
+ * already formatted.
+ *
+ * @author agent
+ */
+public final class TaskRowBindings implements Bindings
+{
+    private final DateFormatter mDateFormatter;
+    private final String mTitle;
+    private final Time mDue;
+    private final TimeZone mTimeZone;
+    private final boolean mClosed;
+
+
+    public TaskRowBindings(DateFormatter dateFormatter, Cursor cursor)
+    {
+        mDateFormatter = dateFormatter;
+        mTitle = TaskFieldAdapters.TITLE.get(cursor);
+        mDue = AbstractGroupingFactory.INSTANCE_DUE_ADAPTER.get(cursor);
+        mTimeZone = TaskFieldAdapters.TIMEZONE.get(cursor);
+        Boolean closed = TaskFieldAdapters.IS_CLOSED.get(cursor);
+        mClosed = closed != null && closed;
+    }
+
+
+    @Nullable
+    @Override
+    public Object resolve(String key)
+    {
+        switch (key)
+        {
+            case "title":
+                return mTitle;
+
+            case "due":
+                return mDue == null ? null : new TimeFormatter(mDateFormatter, DateFormatter.DateFormatContext.LIST_VIEW, mTimeZone).apply(mDue);
+
+            case "closed":
+                return mClosed;
+
+            default:
+                return null;
+        }
+    }
+
+
+    @Override
+    public boolean isEmpty()
+    {
+        return false;
+    }
+}
@@ -17,18 +17,16 @@
 package org.dmfs.tasks.share;
 
 import android.content.Context;
-import android.util.Log;
 
 import org.dmfs.android.carrot.bindings.AndroidBindings;
-import org.dmfs.android.carrot.locaters.RawResourceLocator;
 import org.dmfs.jems.single.Single;
 import org.dmfs.tasks.R;
 import org.dmfs.tasks.model.ContentSet;
 import org.dmfs.tasks.model.Model;
 
-import au.com.codeka.carrot.CarrotEngine;
+import java.io.StringWriter;
+
 import au.com.codeka.carrot.CarrotException;
-import au.com.codeka.carrot.Configuration;
 import au.com.codeka.carrot.bindings.Composite;
 import au.com.codeka.carrot.bindings.SingletonBindings;
 
@@ -58,7 +56,7 @@ import au.com.codeka.carrot.bindings.SingletonBindings;
 /**
  * {@link CharSequence} detailing information about the task, used when sharing.
  * <p>
- * Implementation uses <code>carrot</code> template engine.
+ * Implementation uses <code>carrot</code> template engine. The template is compiled only once per process, see {@link CachedCarrotEngine}.
  *
  * @author Gabor Keszthelyi
  */
@@ -80,17 +78,15 @@ public final class TaskShareDetails implements Single<CharSequence>
     @Override
     public CharSequence value()
     {
-        CarrotEngine engine = new CarrotEngine(new Configuration.Builder().setResourceLocator(new RawResourceLocator.Builder(mContext)).build());
+        StringWriter writer = new StringWriter(512);
         try
         {
-            String output = engine.process(String.valueOf(R.raw.sharetask),
+            new CachedCarrotEngine(mContext).value().process(writer, String.valueOf(R.raw.sharetask),
                     new Composite(
                             new AndroidBindings(mContext),
                             new SingletonBindings("$task", new TaskBindings(mContentSet, mModel)),
                             new SingletonBindings("tformat", new TimeFormatter(mContext, mContentSet))));
-
-            Log.v("TaskShareDetails", output);
-            return output;
+            return writer.toString();
         }
         catch (CarrotException e)
         {
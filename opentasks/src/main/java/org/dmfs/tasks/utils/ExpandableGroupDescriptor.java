@@ -18,10 +18,12 @@ package org.dmfs.tasks.utils;
 
 import android.content.Context;
 import android.database.Cursor;
+import android.util.SparseIntArray;
 import androidx.loader.content.CursorLoader;
 import androidx.loader.content.Loader;
 
 import org.dmfs.tasks.groupings.cursorloaders.AbstractCursorLoaderFactory;
+import org.dmfs.tasks.groupings.cursorloaders.GroupCountsLoaderFactory;
 import org.dmfs.tasks.groupings.filters.AbstractFilter;
 
 
@@ -35,6 +37,7 @@ public class ExpandableGroupDescriptor
     private final AbstractCursorLoaderFactory mLoaderFactory;
     private final ExpandableChildDescriptor mChildDescriptor;
     private ViewDescriptor mGroupViewDescriptor;
+    private GroupCountsLoaderFactory mGroupCountsLoaderFactory;
 
 
     /**
@@ -74,9 +77,9 @@ public class ExpandableGroupDescriptor
      * @param cursor
      *         A {@link Cursor} that points to the group to load.
      *
-     * @return A {@link Loader}.
+     * @return A {@link CursorLoader}.
      */
-    public Loader<Cursor> getChildCursorLoader(Context context, Cursor cursor)
+    public CursorLoader getChildCursorLoader(Context context, Cursor cursor)
     {
         return mChildDescriptor.getCursorLoader(context, cursor);
     }
@@ -92,14 +95,75 @@ public class ExpandableGroupDescriptor
      * @param filter
      *         An additional filter to filter the children.
      *
-     * @return A {@link Loader}.
+     * @return A {@link CursorLoader}.
      */
-    public Loader<Cursor> getChildCursorLoader(Context context, Cursor cursor, AbstractFilter filter)
+    public CursorLoader getChildCursorLoader(Context context, Cursor cursor, AbstractFilter filter)
     {
         return mChildDescriptor.getCursorLoader(context, cursor, filter);
     }
 
 
+    /**
+     * Set a {@link GroupCountsLoaderFactory} that knows how to count the children of the groups without loading them.
+     *
+     * @param factory
+     *         The {@link GroupCountsLoaderFactory} for the groups.
+     *
+     * @return This instance.
+     */
+    public ExpandableGroupDescriptor setGroupCountsLoaderFactory(GroupCountsLoaderFactory factory)
+    {
+        mGroupCountsLoaderFactory = factory;
+        return this;
+    }
+
+
+    /**
+     * Returns whether the children of the groups can be counted without loading them.
+     *
+     * @return {@code true} if there is a {@link GroupCountsLoaderFactory}.
+     */
+    public boolean hasGroupCounts()
+    {
+        return mGroupCountsLoaderFactory != null;
+    }
+
+
+    /**
+     * Get a {@link Loader} that loads the number of children of the given groups. Must only be called if {@link #hasGroupCounts()} returns {@code true}.
+     *
+     * @param context
+     *         A {@link Context}.
+     * @param groups
+     *         The {@link Cursor} of the groups.
+     * @param filter
+     *         An additional filter to filter the children.
+     *
+     * @return A {@link Loader}.
+     */
+    public Loader<Cursor> getGroupCountsLoader(Context context, Cursor groups, AbstractFilter filter)
+    {
+        return mGroupCountsLoaderFactory.getLoader(context, groups, filter);
+    }
+
+
+    /**
+     * Returns the number of children of each group, as loaded by a {@link Loader} returned by {@link #getGroupCountsLoader(Context, Cursor,
+     * AbstractFilter)}.
+     *
+     * @param groups
+     *         The {@link Cursor} of the groups.
+     * @param counts
+     *         The {@link Cursor} returned by the counts {@link Loader}.
+     *
+     * @return A {@link SparseIntArray} that maps group positions to the number of children.
+     */
+    public SparseIntArray getGroupCounts(Cursor groups, Cursor counts)
+    {
+        return mGroupCountsLoaderFactory.groupCounts(groups, counts);
+    }
+
+
     /**
      * Set the {@link ViewDescriptor} that knows how to populate the group views.
      *
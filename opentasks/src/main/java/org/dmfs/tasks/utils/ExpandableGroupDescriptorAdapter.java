@@ -20,6 +20,7 @@ import android.content.Context;
 import android.database.Cursor;
 import android.os.Bundle;
 import android.os.Handler;
+import android.util.SparseIntArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -48,6 +49,11 @@ import androidx.loader.content.Loader;
  */
 public class ExpandableGroupDescriptorAdapter extends CursorTreeAdapter implements LoaderManager.LoaderCallbacks<Cursor>
 {
+    /**
+     * The id of the group counts loader. Positive ids are used by the children loaders and the owner of the {@link LoaderManager} uses -1 for the groups.
+     */
+    private final static int GROUP_COUNTS_LOADER_ID = -2;
+
     private final Context mContext;
     private final LayoutInflater mLayoutInflater;
     private final LoaderManager mLoaderManager;
@@ -57,6 +63,37 @@ public class ExpandableGroupDescriptorAdapter extends CursorTreeAdapter implemen
     private OnChildLoadedListener mOnChildLoadedListener;
     private AbstractFilter mChildCursorFilter;
     private Handler mHandler = new Handler();
+    private SparseIntArray mGroupCounts;
+
+    private final LoaderManager.LoaderCallbacks<Cursor> mGroupCountsCallbacks = new LoaderManager.LoaderCallbacks<Cursor>()
+    {
+        @NonNull
+        @Override
+        public Loader<Cursor> onCreateLoader(int id, Bundle args)
+        {
+            return mDescriptor.getGroupCountsLoader(mContext, getCursor(), mChildCursorFilter);
+        }
+
+
+        @Override
+        public void onLoadFinished(@NonNull Loader<Cursor> loader, Cursor cursor)
+        {
+            Cursor groups = getCursor();
+            if (cursor != null && groups != null && !groups.isClosed())
+            {
+                mGroupCounts = mDescriptor.getGroupCounts(groups, cursor);
+                // don't release the children, we only need to update the group views
+                notifyDataSetChanged(false);
+            }
+        }
+
+
+        @Override
+        public void onLoaderReset(@NonNull Loader<Cursor> loader)
+        {
+            mGroupCounts = null;
+        }
+    };
 
 
     public ExpandableGroupDescriptorAdapter(@NonNull Cursor cursor, @NonNull Context context, @NonNull LoaderManager loaderManager, @NonNull ExpandableGroupDescriptor descriptor)
@@ -78,6 +115,7 @@ public class ExpandableGroupDescriptorAdapter extends CursorTreeAdapter implemen
     public void setChildCursorFilter(AbstractFilter filter)
     {
         mChildCursorFilter = filter;
+        reloadGroupCounts();
     }
 
 
@@ -87,6 +125,47 @@ public class ExpandableGroupDescriptorAdapter extends CursorTreeAdapter implemen
     }
 
 
+    /**
+     * Returns the number of children of the group at the given position or {@code -1} if that number is not known yet.
+     * <p>
+     * If the {@link ExpandableGroupDescriptor} can count the children of the groups, this doesn't load the children. Otherwise the children are loaded.
+     *
+     * @param position
+     *         The position of the group.
+     *
+     * @return The number of children or {@code -1}.
+     */
+    public int groupChildrenCount(int position)
+    {
+        if (mDescriptor.hasGroupCounts())
+        {
+            return mGroupCounts == null ? -1 : mGroupCounts.get(position, -1);
+        }
+        int childrenCount = getChildrenCount(position);
+        return childCursorLoaded(position) ? childrenCount : -1;
+    }
+
+
+    @Override
+    public void setGroupCursor(Cursor cursor)
+    {
+        super.setGroupCursor(cursor);
+        reloadGroupCounts();
+    }
+
+
+    /**
+     * Reloads the number of children of all groups, if the {@link ExpandableGroupDescriptor} supports that.
+     */
+    public void reloadGroupCounts()
+    {
+        if (mDescriptor.hasGroupCounts() && getCursor() != null && getCursor().getCount() > 0)
+        {
+            mLoaderManager.restartLoader(GROUP_COUNTS_LOADER_ID, null, mGroupCountsCallbacks);
+        }
+    }
+
+
     @NonNull
     @Override
     public Loader<Cursor> onCreateLoader(int pos, Bundle arguments)
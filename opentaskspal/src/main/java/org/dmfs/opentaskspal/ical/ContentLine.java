@@ -0,0 +1,203 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.opentaskspal.ical;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+
+/**
+ * An unfolded content line of an iCalendar file as specified in <a href="https://tools.ietf.org/html/rfc5545#section-3.1">RFC 5545 section 3.1</a>.
+ * <p>
+ * Names of properties and parameters are case-insensitive, so they are converted to upper case. Parameter values are returned without quotes.
+ *
+ * @author agent
+ */
+public final class ContentLine
+{
+    private final String mName;
+    private final Map<String, String> mParameters;
+    private final String mValue;
+
+
+    public ContentLine(@NonNull String name, @NonNull Map<String, String> parameters, @NonNull String value)
+    {
+        mName = name;
+        mParameters = parameters;
+        mValue = value;
+    }
+
+
+    /**
+     * Parses an unfolded content line.
+     *
+     * @param line
+     *         The content line.
+     *
+     * @return The {@link ContentLine}.
+     *
+     * @throws IllegalArgumentException
+     *         if the line is not a valid content line.
+     */
+    @NonNull
+    public static ContentLine parse(@NonNull String line)
+    {
+        Map<String, String> parameters = Collections.emptyMap();
+        int length = line.length();
+        int nameEnd = 0;
+        while (nameEnd < length && line.charAt(nameEnd) != ';' && line.charAt(nameEnd) != ':')
+        {
+            ++nameEnd;
+        }
+        if (nameEnd == 0 || nameEnd == length)
+        {
+            throw new IllegalArgumentException(String.format(Locale.ENGLISH, "invalid content line \"%s\"", line));
+        }
+        String name = line.substring(0, nameEnd).toUpperCase(Locale.ENGLISH);
+
+        int pos = nameEnd;
+        while (line.charAt(pos) == ';')
+        {
+            // a parameter, the value may be quoted and contain ';' and ':'
+            int equals = line.indexOf('=', pos);
+            if (equals < 0)
+            {
+                throw new IllegalArgumentException(String.format(Locale.ENGLISH, "invalid parameter in content line \"%s\"", line));
+            }
+            String parameterName = line.substring(pos + 1, equals).toUpperCase(Locale.ENGLISH);
+            StringBuilder parameterValue = new StringBuilder(16);
+            boolean quoted = false;
+            pos = equals + 1;
+            while (pos < length && (quoted || line.charAt(pos) != ';' && line.charAt(pos) != ':'))
+            {
+                char c = line.charAt(pos++);
+                if (c == '"')
+                {
+                    quoted = !quoted;
+                }
+                else
+                {
+                    parameterValue.append(c);
+                }
+            }
+            if (pos == length)
+            {
+                throw new IllegalArgumentException(String.format(Locale.ENGLISH, "missing value in content line \"%s\"", line));
+            }
+            if (parameters.isEmpty())
+            {
+                parameters = new HashMap<>(4);
+            }
+            parameters.put(parameterName, parameterValue.toString());
+        }
+        return new ContentLine(name, parameters, line.substring(pos + 1));
+    }
+
+
+    /**
+     * The upper case name of the property.
+     */
+    @NonNull
+    public String name()
+    {
+        return mName;
+    }
+
+
+    /**
+     * Returns the value of the parameter with the given upper case name or {@code null} if this line has no such parameter.
+     */
+    @Nullable
+    public String parameter(@NonNull String name)
+    {
+        return mParameters.get(name);
+    }
+
+
+    /**
+     * The raw value of the property.
+     */
+    @NonNull
+    public String value()
+    {
+        return mValue;
+    }
+
+
+    /**
+     * Returns the value of this line as a TEXT value, i.e. with all escape sequences resolved.
+     */
+    @NonNull
+    public String text()
+    {
+        return unescape(mValue, 0, mValue.length());
+    }
+
+
+    /**
+     * Returns the value of this line as a list of TEXT values, like the value of a {@code CATEGORIES} property.
+     */
+    @NonNull
+    public List<String> texts()
+    {
+        List<String> result = new ArrayList<>(4);
+        int start = 0;
+        for (int i = 0, length = mValue.length(); i < length; ++i)
+        {
+            char c = mValue.charAt(i);
+            if (c == '\\')
+            {
+                // skip the escaped character
+                ++i;
+            }
+            else if (c == ',')
+            {
+                result.add(unescape(mValue, start, i));
+                start = i + 1;
+            }
+        }
+        result.add(unescape(mValue, start, mValue.length()));
+        return result;
+    }
+
+
+    private static String unescape(String value, int start, int end)
+    {
+        StringBuilder result = new StringBuilder(end - start);
+        for (int i = start; i < end; ++i)
+        {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < end)
+            {
+                char next = value.charAt(++i);
+                result.append(next == 'n' || next == 'N' ? '\n' : next);
+            }
+            else
+            {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.opentaskspal.ical;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+
+/**
+ * Reads the unfolded {@link ContentLine}s of an iCalendar stream one at a time, so the size of the stream doesn't matter. Empty lines are skipped.
+ *
+ * @author agent
+ */
+public final class ContentLineReader
+{
+    private final BufferedReader mReader;
+    private String mNextLine;
+
+
+    public ContentLineReader(@NonNull Reader reader)
+    {
+        mReader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+
+    /**
+     * Returns the next {@link ContentLine} or {@code null} if the end of the stream has been reached.
+     *
+     * @throws IOException
+     *         if the stream can't be read.
+     * @throws IllegalArgumentException
+     *         if the stream contains an invalid content line.
+     */
+    @Nullable
+    public ContentLine next() throws IOException
+    {
+        String line = mNextLine == null ? mReader.readLine() : mNextLine;
+        while (line != null && line.isEmpty())
+        {
+            line = mReader.readLine();
+        }
+        if (line == null)
+        {
+            mNextLine = null;
+            return null;
+        }
+
+        // append all continuation lines
+        StringBuilder unfolded = null;
+        String next;
+        while ((next = mReader.readLine()) != null && !next.isEmpty() && (next.charAt(0) == ' ' || next.charAt(0) == '\t'))
+        {
+            if (unfolded == null)
+            {
+                unfolded = new StringBuilder(line);
+            }
+            unfolded.append(next, 1, next.length());
+        }
+        mNextLine = next;
+        return ContentLine.parse(unfolded == null ? line : unfolded.toString());
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.opentaskspal.ical;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.Writer;
+
+
+/**
+ * Writes iCalendar content lines to a {@link Writer}. Lines are terminated by CRLF and folded, so no line exceeds 75 octets, see <a
+ * href="https://tools.ietf.org/html/rfc5545#section-3.1">RFC 5545 section 3.1</a>.
+ *
+ * @author agent
+ */
+public final class ContentLineWriter
+{
+    private final static int MAX_LINE_OCTETS = 75;
+
+    private final Writer mWriter;
+
+
+    public ContentLineWriter(@NonNull Writer writer)
+    {
+        mWriter = writer;
+    }
+
+
+    /**
+     * Writes a content line with a raw value.
+     *
+     * @param name
+     *         The name of the property.
+     * @param parameters
+     *         The parameters including the leading {@code ';'}, may be empty.
+     * @param value
+     *         The value, which must already be formatted according to its value type.
+     */
+    public void line(@NonNull String name, @NonNull String parameters, @NonNull String value) throws IOException
+    {
+        String line = name + parameters + ":" + value;
+        int octets = 0;
+        for (int i = 0, length = line.length(); i < length; ++i)
+        {
+            char c = line.charAt(i);
+            int charOctets = octets(c);
+            if (octets + charOctets > MAX_LINE_OCTETS)
+            {
+                // fold, the leading space of the continuation line counts as well
+                mWriter.write("\r\n ");
+                octets = 1;
+            }
+            mWriter.write(c);
+            if (Character.isHighSurrogate(c) && i + 1 < length)
+            {
+                // never split a surrogate pair
+                mWriter.write(line.charAt(++i));
+            }
+            octets += charOctets;
+        }
+        mWriter.write("\r\n");
+    }
+
+
+    /**
+     * Writes a content line with a raw value and no parameters.
+     */
+    public void line(@NonNull String name, @NonNull String value) throws IOException
+    {
+        line(name, "", value);
+    }
+
+
+    /**
+     * Writes a content line with a TEXT value.
+     */
+    public void text(@NonNull String name, @NonNull String text) throws IOException
+    {
+        line(name, "", escape(text));
+    }
+
+
+    /**
+     * Returns the given text escaped as a TEXT value.
+     */
+    @NonNull
+    public static String escape(@NonNull String text)
+    {
+        StringBuilder result = new StringBuilder(text.length() + 8);
+        for (int i = 0, length = text.length(); i < length; ++i)
+        {
+            char c = text.charAt(i);
+            switch (c)
+            {
+                case '\\':
+                case ';':
+                case ',':
+                    result.append('\\').append(c);
+                    break;
+                case '\n':
+                    result.append("\\n");
+                    break;
+                case '\r':
+                    // line breaks are represented by \n alone
+                    break;
+                default:
+                    result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+
+    public void flush() throws IOException
+    {
+        mWriter.flush();
+    }
+
+
+    /**
+     * Returns the number of octets of the UTF-8 encoding of the given character. A surrogate pair takes 4 octets, so the high surrogate takes all of them.
+     */
+    private static int octets(char c)
+    {
+        if (c < 0x80)
+        {
+            return 1;
+        }
+        if (c < 0x800)
+        {
+            return 2;
+        }
+        if (Character.isHighSurrogate(c))
+        {
+            return 4;
+        }
+        return Character.isLowSurrogate(c) ? 0 : 3;
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.opentaskspal.ical;
+
+import android.content.ContentProviderClient;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.RemoteException;
+import android.text.TextUtils;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.tasks.contract.TaskContract;
+import org.dmfs.tasks.contract.TaskContract.Properties;
+import org.dmfs.tasks.contract.TaskContract.Property.Category;
+import org.dmfs.tasks.contract.TaskContract.Property.Relation;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+
+/**
+ * Exports tasks as an iCalendar stream of VTODO components, see <a href="https://tools.ietf.org/html/rfc5545#section-3.6.2">RFC 5545 section 3.6.2</a>.
+ * <p>
+ * The tasks are read in pages of {@link #PAGE_SIZE} rows (using keyset paging on the row id) and written right away, so the memory needed doesn't depend on
+ * the number of tasks. Categories and relations of the tasks are read per page.
+ * <p>
+ * Time zones are referred to by their Olson ids, no VTIMEZONE components are written. Times of tasks without a time zone are written as floating
+ * times. Tasks without a UID get a UID derived from their row id, so overrides and relations can still refer to them.
+ *
+ * @author agent
+ */
+public final class VTodoExporter
+{
+    private final static int PAGE_SIZE = 200;
+
+    private final static String PRODID = "-//dmfs.org//OpenTasks//EN";
+
+    private final static String[] TASK_PROJECTION = {
+            Tasks._ID, Tasks._UID, Tasks.TITLE, Tasks.DESCRIPTION, Tasks.LOCATION, Tasks.URL, Tasks.DTSTART, Tasks.DUE, Tasks.DURATION, Tasks.TZ,
+            Tasks.IS_ALLDAY, Tasks.RRULE, Tasks.RDATE, Tasks.EXDATE, Tasks.ORIGINAL_INSTANCE_ID, Tasks.ORIGINAL_INSTANCE_TIME,
+            Tasks.ORIGINAL_INSTANCE_ALLDAY, Tasks.STATUS, Tasks.PERCENT_COMPLETE, Tasks.PRIORITY, Tasks.CLASSIFICATION, Tasks.COMPLETED, Tasks.CREATED,
+            Tasks.LAST_MODIFIED };
+
+    private final static int COLUMN_ID = 0;
+    private final static int COLUMN_UID = 1;
+    private final static int COLUMN_TITLE = 2;
+    private final static int COLUMN_DESCRIPTION = 3;
+    private final static int COLUMN_LOCATION = 4;
+    private final static int COLUMN_URL = 5;
+    private final static int COLUMN_DTSTART = 6;
+    private final static int COLUMN_DUE = 7;
+    private final static int COLUMN_DURATION = 8;
+    private final static int COLUMN_TZ = 9;
+    private final static int COLUMN_IS_ALLDAY = 10;
+    private final static int COLUMN_RRULE = 11;
+    private final static int COLUMN_RDATE = 12;
+    private final static int COLUMN_EXDATE = 13;
+    private final static int COLUMN_ORIGINAL_INSTANCE_ID = 14;
+    private final static int COLUMN_ORIGINAL_INSTANCE_TIME = 15;
+    private final static int COLUMN_ORIGINAL_INSTANCE_ALLDAY = 16;
+    private final static int COLUMN_STATUS = 17;
+    private final static int COLUMN_PERCENT_COMPLETE = 18;
+    private final static int COLUMN_PRIORITY = 19;
+    private final static int COLUMN_CLASSIFICATION = 20;
+    private final static int COLUMN_COMPLETED = 21;
+    private final static int COLUMN_CREATED = 22;
+    private final static int COLUMN_LAST_MODIFIED = 23;
+
+    private final static String[] PROPERTY_PROJECTION = {
+            Properties.TASK_ID, Properties.MIMETYPE, Category.CATEGORY_NAME, Relation.RELATED_ID, Relation.RELATED_TYPE, Relation.RELATED_UID };
+
+    private final static String[] STATUS = { "NEEDS-ACTION", "IN-PROCESS", "COMPLETED", "CANCELLED" };
+    private final static String[] CLASSIFICATION = { "PUBLIC", "PRIVATE", "CONFIDENTIAL" };
+    private final static String[] RELTYPE = { "PARENT", "CHILD", "SIBLING" };
+
+    private final ContentProviderClient mClient;
+    private final String mAuthority;
+
+
+    public VTodoExporter(@NonNull ContentProviderClient client, @NonNull String authority)
+    {
+        mClient = client;
+        mAuthority = authority;
+    }
+
+
+    /**
+     * Writes a VCALENDAR with the tasks of the given task list (or of all task lists) to the given {@link Writer}. Deleted tasks are not exported.
+     *
+     * @param listId
+     *         The row id of the task list to export or {@code null} to export all task lists.
+     * @param writer
+     *         The {@link Writer} to write to. It's flushed, but not closed.
+     *
+     * @return The number of exported tasks.
+     */
+    public int export(@Nullable Long listId, @NonNull Writer writer) throws RemoteException, IOException
+    {
+        ContentLineWriter out = new ContentLineWriter(writer);
+        out.line("BEGIN", "VCALENDAR");
+        out.line("VERSION", "2.0");
+        out.line("PRODID", PRODID);
+
+        Uri tasksUri = Tasks.getContentUri(mAuthority).buildUpon().appendQueryParameter(TaskContract.LIMIT, String.valueOf(PAGE_SIZE)).build();
+        String selection = Tasks._ID + " > ? and " + Tasks._DELETED + " = 0" + (listId == null ? "" : " and " + Tasks.LIST_ID + " = " + listId);
+        String dtstamp = DateTime.now().toString();
+        long lastId = -1;
+        int count = 0;
+        int pageSize;
+        do
+        {
+            pageSize = 0;
+            try (Cursor cursor = mClient.query(tasksUri, TASK_PROJECTION, selection, new String[] { String.valueOf(lastId) }, Tasks._ID))
+            {
+                if (cursor == null)
+                {
+                    break;
+                }
+                PageProperties properties = new PageProperties(cursor);
+                while (cursor.moveToNext())
+                {
+                    writeTask(out, cursor, properties, dtstamp);
+                    lastId = cursor.getLong(COLUMN_ID);
+                    ++pageSize;
+                }
+            }
+            count += pageSize;
+        }
+        while (pageSize == PAGE_SIZE);
+
+        out.line("END", "VCALENDAR");
+        out.flush();
+        return count;
+    }
+
+
+    private void writeTask(ContentLineWriter out, Cursor cursor, PageProperties properties, String dtstamp) throws IOException
+    {
+        long id = cursor.getLong(COLUMN_ID);
+        boolean allDay = cursor.getInt(COLUMN_IS_ALLDAY) != 0;
+        String tz = cursor.getString(COLUMN_TZ);
+
+        out.line("BEGIN", "VTODO");
+        if (cursor.isNull(COLUMN_ORIGINAL_INSTANCE_ID))
+        {
+            out.line("UID", ContentLineWriter.escape(uid(cursor.getString(COLUMN_UID), id)));
+        }
+        else
+        {
+            // an override always has the UID of its master
+            long masterId = cursor.getLong(COLUMN_ORIGINAL_INSTANCE_ID);
+            out.line("UID", ContentLineWriter.escape(uid(properties.masterUid(masterId), masterId)));
+            if (!cursor.isNull(COLUMN_ORIGINAL_INSTANCE_TIME))
+            {
+                writeDateTime(out, "RECURRENCE-ID", cursor.getLong(COLUMN_ORIGINAL_INSTANCE_TIME), cursor.getInt(COLUMN_ORIGINAL_INSTANCE_ALLDAY) != 0, tz);
+            }
+        }
+        out.line("DTSTAMP", dtstamp);
+        if (!cursor.isNull(COLUMN_CREATED))
+        {
+            out.line("CREATED", new DateTime(cursor.getLong(COLUMN_CREATED)).toString());
+        }
+        if (!cursor.isNull(COLUMN_LAST_MODIFIED))
+        {
+            out.line("LAST-MODIFIED", new DateTime(cursor.getLong(COLUMN_LAST_MODIFIED)).toString());
+        }
+        writeText(out, "SUMMARY", cursor.getString(COLUMN_TITLE));
+        writeText(out, "DESCRIPTION", cursor.getString(COLUMN_DESCRIPTION));
+        writeText(out, "LOCATION", cursor.getString(COLUMN_LOCATION));
+        if (!TextUtils.isEmpty(cursor.getString(COLUMN_URL)))
+        {
+            out.line("URL", cursor.getString(COLUMN_URL));
+        }
+
+        if (!cursor.isNull(COLUMN_DTSTART))
+        {
+            writeDateTime(out, "DTSTART", cursor.getLong(COLUMN_DTSTART), allDay, tz);
+        }
+        if (!cursor.isNull(COLUMN_DUE))
+        {
+            writeDateTime(out, "DUE", cursor.getLong(COLUMN_DUE), allDay, tz);
+        }
+        else if (!TextUtils.isEmpty(cursor.getString(COLUMN_DURATION)))
+        {
+            out.line("DURATION", cursor.getString(COLUMN_DURATION));
+        }
+        if (!TextUtils.isEmpty(cursor.getString(COLUMN_RRULE)))
+        {
+            out.line("RRULE", cursor.getString(COLUMN_RRULE));
+        }
+        // the date lists are stored in UTC, as floating times or as dates already
+        String dateListParameters = allDay ? ";VALUE=DATE" : "";
+        if (!TextUtils.isEmpty(cursor.getString(COLUMN_RDATE)))
+        {
+            out.line("RDATE", dateListParameters, cursor.getString(COLUMN_RDATE));
+        }
+        if (!TextUtils.isEmpty(cursor.getString(COLUMN_EXDATE)))
+        {
+            out.line("EXDATE", dateListParameters, cursor.getString(COLUMN_EXDATE));
+        }
+
+        int status = cursor.getInt(COLUMN_STATUS);
+        if (status >= 0 && status < STATUS.length)
+        {
+            out.line("STATUS", STATUS[status]);
+        }
+        if (!cursor.isNull(COLUMN_PERCENT_COMPLETE))
+        {
+            out.line("PERCENT-COMPLETE", cursor.getString(COLUMN_PERCENT_COMPLETE));
+        }
+        if (!cursor.isNull(COLUMN_PRIORITY) && cursor.getInt(COLUMN_PRIORITY) != 0)
+        {
+            out.line("PRIORITY", cursor.getString(COLUMN_PRIORITY));
+        }
+        if (!cursor.isNull(COLUMN_CLASSIFICATION))
+        {
+            int classification = cursor.getInt(COLUMN_CLASSIFICATION);
+            if (classification >= 0 && classification < CLASSIFICATION.length)
+            {
+                out.line("CLASS", CLASSIFICATION[classification]);
+            }
+        }
+        if (!cursor.isNull(COLUMN_COMPLETED))
+        {
+            out.line("COMPLETED", new DateTime(cursor.getLong(COLUMN_COMPLETED)).toString());
+        }
+
+        List<String> categories = properties.categories(id);
+        if (!categories.isEmpty())
+        {
+            StringBuilder value = new StringBuilder(64);
+            for (String category : categories)
+            {
+                if (value.length() > 0)
+                {
+                    value.append(',');
+                }
+                value.append(ContentLineWriter.escape(category));
+            }
+            out.line("CATEGORIES", value.toString());
+        }
+        for (String[] relation : properties.relations(id))
+        {
+            out.line("RELATED-TO", ";RELTYPE=" + relation[0], ContentLineWriter.escape(relation[1]));
+        }
+        out.line("END", "VTODO");
+    }
+
+
+    private static void writeText(ContentLineWriter out, String name, String text) throws IOException
+    {
+        if (!TextUtils.isEmpty(text))
+        {
+            out.text(name, text);
+        }
+    }
+
+
+    private static void writeDateTime(ContentLineWriter out, String name, long timestamp, boolean allDay, String tz) throws IOException
+    {
+        if (allDay)
+        {
+            out.line(name, ";VALUE=DATE", new DateTime(DateTime.UTC, timestamp).toAllDay().toString());
+        }
+        else if (tz == null)
+        {
+            // the provider stores floating times like UTC times
+            out.line(name, new DateTime(DateTime.UTC, timestamp).swapTimeZone(null).toString());
+        }
+        else if ("UTC".equals(tz))
+        {
+            out.line(name, new DateTime(timestamp).toString());
+        }
+        else
+        {
+            out.line(name, ";TZID=" + tz, new DateTime(TimeZone.getTimeZone(tz), timestamp).toString());
+        }
+    }
+
+
+    /**
+     * Returns the UID of a task, which is derived from its row id if the task doesn't have one.
+     */
+    private String uid(String uid, long id)
+    {
+        return uid == null ? id + "@" + mAuthority : uid;
+    }
+
+
+    /**
+     * The categories and relations of the tasks of a page and the UIDs of the masters of the overrides in this page.
+     */
+    private final class PageProperties
+    {
+        private final Map<Long, List<String>> mCategories = new HashMap<>();
+        private final Map<Long, List<String[]>> mRelations = new HashMap<>();
+        private final Map<Long, String> mMasterUids = new HashMap<>();
+
+
+        PageProperties(Cursor page) throws RemoteException
+        {
+            List<String> ids = new ArrayList<>(page.getCount());
+            List<String> masterIds = new ArrayList<>();
+            while (page.moveToNext())
+            {
+                ids.add(page.getString(COLUMN_ID));
+                if (!page.isNull(COLUMN_ORIGINAL_INSTANCE_ID))
+                {
+                    masterIds.add(page.getString(COLUMN_ORIGINAL_INSTANCE_ID));
+                }
+            }
+            page.moveToPosition(-1);
+            if (ids.isEmpty())
+            {
+                return;
+            }
+
+            try (Cursor cursor = mClient.query(Properties.getContentUri(mAuthority), PROPERTY_PROJECTION,
+                    Properties.TASK_ID + " in (" + TextUtils.join(",", ids) + ") and " + Properties.MIMETYPE + " in (?, ?)",
+                    new String[] { Category.CONTENT_ITEM_TYPE, Relation.CONTENT_ITEM_TYPE }, null))
+            {
+                while (cursor != null && cursor.moveToNext())
+                {
+                    long taskId = cursor.getLong(0);
+                    if (Category.CONTENT_ITEM_TYPE.equals(cursor.getString(1)))
+                    {
+                        list(mCategories, taskId).add(cursor.getString(2));
+                    }
+                    else if (!cursor.isNull(4) && cursor.getInt(4) >= 0 && cursor.getInt(4) < RELTYPE.length
+                            && (!cursor.isNull(3) || !cursor.isNull(5)))
+                    {
+                        list(mRelations, taskId).add(new String[] {
+                                RELTYPE[cursor.getInt(4)], cursor.isNull(5) ? uid(null, cursor.getLong(3)) : cursor.getString(5) });
+                    }
+                }
+            }
+
+            if (!masterIds.isEmpty())
+            {
+                try (Cursor cursor = mClient.query(Tasks.getContentUri(mAuthority), new String[] { Tasks._ID, Tasks._UID },
+                        Tasks._ID + " in (" + TextUtils.join(",", masterIds) + ")", null, null))
+                {
+                    while (cursor != null && cursor.moveToNext())
+                    {
+                        mMasterUids.put(cursor.getLong(0), cursor.getString(1));
+                    }
+                }
+            }
+        }
+
+
+        List<String> categories(long taskId)
+        {
+            List<String> result = mCategories.get(taskId);
+            return result == null ? new ArrayList<>(0) : result;
+        }
+
+
+        List<String[]> relations(long taskId)
+        {
+            List<String[]> result = mRelations.get(taskId);
+            return result == null ? new ArrayList<>(0) : result;
+        }
+
+
+        String masterUid(long masterId)
+        {
+            return mMasterUids.get(masterId);
+        }
+
+
+        private <T> List<T> list(Map<Long, List<T>> map, long taskId)
+        {
+            List<T> list = map.get(taskId);
+            if (list == null)
+            {
+                list = new ArrayList<>(4);
+                map.put(taskId, list);
+            }
+            return list;
+        }
+    }
+}
@@ -0,0 +1,451 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.opentaskspal.ical;
+
+import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.RemoteException;
+import android.text.TextUtils;
+import androidx.annotation.NonNull;
+
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.rfc5545.Duration;
+import org.dmfs.rfc5545.recur.InvalidRecurrenceRuleException;
+import org.dmfs.rfc5545.recur.RecurrenceRule;
+import org.dmfs.tasks.contract.TaskContract.Properties;
+import org.dmfs.tasks.contract.TaskContract.Property.Category;
+import org.dmfs.tasks.contract.TaskContract.Property.Relation;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+
+/**
+ * Imports the VTODO components of an iCalendar stream into a task list, see <a href="https://tools.ietf.org/html/rfc5545#section-3.6.2">RFC 5545 section
+ * 3.6.2</a>.
+ * <p>
+ * The stream is parsed one content line at a time. The tasks are written with {@link ContentProviderClient#applyBatch(ArrayList)} in batches of about
+ * {@link #BATCH_SIZE} operations. The first operation of each task allows the provider to yield the transaction, so an import of any size never blocks
+ * other writers for long, and the memory needed doesn't depend on the number of tasks.
+ * <p>
+ * Overrides of recurring tasks are linked to the task with the same UID in the same batch or, if that has been written already, in the task list. Overrides
+ * without a master are skipped. TZIDs are expected to be Olson ids, VTIMEZONE and VALARM components are ignored.
+ *
+ * @author agent
+ */
+public final class VTodoImporter
+{
+    /**
+     * The number of operations we send in one batch. This must stay below the number of operations the provider allows between yield points.
+     */
+    private final static int BATCH_SIZE = 200;
+
+    private final static List<String> STATUS = Arrays.asList("NEEDS-ACTION", "IN-PROCESS", "COMPLETED", "CANCELLED");
+    private final static List<String> CLASSIFICATION = Arrays.asList("PUBLIC", "PRIVATE", "CONFIDENTIAL");
+    private final static List<String> RELTYPE = Arrays.asList("PARENT", "CHILD", "SIBLING");
+
+    private final ContentProviderClient mClient;
+    private final String mAuthority;
+
+    private final ArrayList<ContentProviderOperation> mBatch = new ArrayList<>(BATCH_SIZE + 16);
+
+    /**
+     * The index of the insert operation of each master task in the current batch by UID.
+     */
+    private final Map<String, Integer> mBatchMasters = new HashMap<>(64);
+
+    private int mSkipped;
+
+
+    public VTodoImporter(@NonNull ContentProviderClient client, @NonNull String authority)
+    {
+        mClient = client;
+        mAuthority = authority;
+    }
+
+
+    /**
+     * Imports all VTODOs of the given iCalendar stream into the given task list.
+     *
+     * @param listId
+     *         The row id of the task list to import to.
+     * @param reader
+     *         The {@link Reader} of the iCalendar stream, which is not closed by this method.
+     *
+     * @return The number of imported tasks.
+     *
+     * @throws IllegalArgumentException
+     *         if the stream contains an invalid content line.
+     */
+    public int importTasks(long listId, @NonNull Reader reader) throws IOException, RemoteException, OperationApplicationException
+    {
+        ContentLineReader lines = new ContentLineReader(reader);
+        int count = 0;
+        // the nesting level of components within a VTODO, like VALARMs
+        int nested = 0;
+        VTodo todo = null;
+        ContentLine line;
+        while ((line = lines.next()) != null)
+        {
+            if (todo == null)
+            {
+                if ("BEGIN".equals(line.name()) && "VTODO".equalsIgnoreCase(line.value()))
+                {
+                    todo = new VTodo(listId);
+                }
+            }
+            else if ("BEGIN".equals(line.name()))
+            {
+                ++nested;
+            }
+            else if ("END".equals(line.name()))
+            {
+                if (nested > 0)
+                {
+                    --nested;
+                }
+                else
+                {
+                    if (enqueue(listId, todo))
+                    {
+                        ++count;
+                    }
+                    todo = null;
+                    if (mBatch.size() >= BATCH_SIZE)
+                    {
+                        flush();
+                    }
+                }
+            }
+            else if (nested == 0)
+            {
+                todo.add(line);
+            }
+        }
+        flush();
+        return count;
+    }
+
+
+    /**
+     * Returns the number of overrides which have been skipped, because their master task could not be found.
+     */
+    public int skipped()
+    {
+        return mSkipped;
+    }
+
+
+    private boolean enqueue(long listId, VTodo todo) throws RemoteException, OperationApplicationException
+    {
+        Integer masterIndex = null;
+        Long masterId = null;
+        if (todo.mRecurrenceId != null)
+        {
+            masterIndex = mBatchMasters.get(todo.mUid);
+            if (masterIndex == null)
+            {
+                // the master has been written already (if it exists)
+                flush();
+                masterId = masterId(listId, todo.mUid);
+                if (masterId == null)
+                {
+                    ++mSkipped;
+                    return false;
+                }
+            }
+        }
+
+        int taskIndex = mBatch.size();
+        ContentProviderOperation.Builder task = ContentProviderOperation.newInsert(Tasks.getContentUri(mAuthority))
+                .withValues(todo.mValues)
+                .withYieldAllowed(true);
+        if (masterIndex != null)
+        {
+            task.withValueBackReference(Tasks.ORIGINAL_INSTANCE_ID, masterIndex);
+        }
+        else if (masterId != null)
+        {
+            task.withValue(Tasks.ORIGINAL_INSTANCE_ID, masterId);
+        }
+        mBatch.add(task.build());
+        if (todo.mRecurrenceId == null && todo.mUid != null)
+        {
+            mBatchMasters.put(todo.mUid, taskIndex);
+        }
+
+        Uri propertiesUri = Properties.getContentUri(mAuthority);
+        for (String category : todo.mCategories)
+        {
+            mBatch.add(ContentProviderOperation.newInsert(propertiesUri)
+                    .withValueBackReference(Properties.TASK_ID, taskIndex)
+                    .withValue(Properties.MIMETYPE, Category.CONTENT_ITEM_TYPE)
+                    .withValue(Category.CATEGORY_NAME, category)
+                    .build());
+        }
+        for (Object[] relation : todo.mRelations)
+        {
+            mBatch.add(ContentProviderOperation.newInsert(propertiesUri)
+                    .withValueBackReference(Properties.TASK_ID, taskIndex)
+                    .withValue(Properties.MIMETYPE, Relation.CONTENT_ITEM_TYPE)
+                    .withValue(Relation.RELATED_TYPE, relation[0])
+                    .withValue(Relation.RELATED_UID, relation[1])
+                    .build());
+        }
+        return true;
+    }
+
+
+    private void flush() throws RemoteException, OperationApplicationException
+    {
+        if (!mBatch.isEmpty())
+        {
+            mClient.applyBatch(mBatch);
+            mBatch.clear();
+            mBatchMasters.clear();
+        }
+    }
+
+
+    private Long masterId(long listId, String uid) throws RemoteException
+    {
+        if (uid == null)
+        {
+            return null;
+        }
+        try (Cursor cursor = mClient.query(Tasks.getContentUri(mAuthority), new String[] { Tasks._ID },
+                Tasks.LIST_ID + " = ? and " + Tasks._UID + " = ? and " + Tasks.ORIGINAL_INSTANCE_ID + " is null",
+                new String[] { String.valueOf(listId), uid }, null))
+        {
+            return cursor != null && cursor.moveToFirst() ? cursor.getLong(0) : null;
+        }
+    }
+
+
+    /**
+     * The values of a single VTODO.
+     */
+    private final static class VTodo
+    {
+        private final ContentValues mValues = new ContentValues(24);
+        private final List<String> mCategories = new ArrayList<>(4);
+        private final List<Object[]> mRelations = new ArrayList<>(2);
+        private String mUid;
+        private DateTime mRecurrenceId;
+        private DateTime mStart;
+        private DateTime mDue;
+
+
+        VTodo(long listId)
+        {
+            mValues.put(Tasks.LIST_ID, listId);
+        }
+
+
+        void add(ContentLine line)
+        {
+            switch (line.name())
+            {
+                case "UID":
+                    mUid = line.text();
+                    mValues.put(Tasks._UID, mUid);
+                    break;
+                case "SUMMARY":
+                    mValues.put(Tasks.TITLE, line.text());
+                    break;
+                case "DESCRIPTION":
+                    mValues.put(Tasks.DESCRIPTION, line.text());
+                    break;
+                case "LOCATION":
+                    mValues.put(Tasks.LOCATION, line.text());
+                    break;
+                case "URL":
+                    mValues.put(Tasks.URL, line.value());
+                    break;
+                case "DTSTART":
+                    mStart = dateTime(line);
+                    updateTimes();
+                    break;
+                case "DUE":
+                    mDue = dateTime(line);
+                    updateTimes();
+                    break;
+                case "DURATION":
+                    mValues.put(Tasks.DURATION, Duration.parse(line.value()).toString());
+                    break;
+                case "RRULE":
+                    mValues.put(Tasks.RRULE, recurrenceRule(line.value()));
+                    break;
+                case "RDATE":
+                    mValues.put(Tasks.RDATE, dateList(line, mValues.getAsString(Tasks.RDATE)));
+                    break;
+                case "EXDATE":
+                    mValues.put(Tasks.EXDATE, dateList(line, mValues.getAsString(Tasks.EXDATE)));
+                    break;
+                case "RECURRENCE-ID":
+                    mRecurrenceId = dateTime(line);
+                    mValues.put(Tasks.ORIGINAL_INSTANCE_TIME, mRecurrenceId.getTimestamp());
+                    mValues.put(Tasks.ORIGINAL_INSTANCE_ALLDAY, mRecurrenceId.isAllDay() ? 1 : 0);
+                    break;
+                case "STATUS":
+                    putIndex(Tasks.STATUS, STATUS, line.value());
+                    break;
+                case "CLASS":
+                    putIndex(Tasks.CLASSIFICATION, CLASSIFICATION, line.value());
+                    break;
+                case "PERCENT-COMPLETE":
+                    mValues.put(Tasks.PERCENT_COMPLETE, Integer.parseInt(line.value().trim()));
+                    break;
+                case "PRIORITY":
+                    mValues.put(Tasks.PRIORITY, Integer.parseInt(line.value().trim()));
+                    break;
+                case "COMPLETED":
+                    // this should be a UTC time, but we take floating times as local times
+                    mValues.put(Tasks.COMPLETED, absolute(dateTime(line), TimeZone.getDefault()).getTimestamp());
+                    break;
+                case "CATEGORIES":
+                    for (String category : line.texts())
+                    {
+                        if (!category.isEmpty())
+                        {
+                            mCategories.add(category);
+                        }
+                    }
+                    break;
+                case "RELATED-TO":
+                    String reltype = line.parameter("RELTYPE");
+                    int type = RELTYPE.indexOf(reltype == null ? "PARENT" : reltype.toUpperCase(Locale.ENGLISH));
+                    if (type >= 0)
+                    {
+                        mRelations.add(new Object[] { type, line.text() });
+                    }
+                    break;
+                default:
+                    // not supported
+            }
+        }
+
+
+        /**
+         * Updates the time values. The provider stores a single time zone per task, so a floating due date of a task with a time zone is taken as a local
+         * time and vice versa.
+         */
+        private void updateTimes()
+        {
+            DateTime reference = mStart != null ? mStart : mDue;
+            mValues.put(Tasks.IS_ALLDAY, reference.isAllDay() ? 1 : 0);
+            mValues.put(Tasks.TZ, reference.isAllDay() ? "UTC" : reference.isFloating() ? null : reference.getTimeZone().getID());
+            if (mStart != null)
+            {
+                mValues.put(Tasks.DTSTART, mStart.getTimestamp());
+            }
+            if (mDue != null)
+            {
+                DateTime due = mDue;
+                if (!reference.isAllDay() && !due.isAllDay() && reference.isFloating() != due.isFloating())
+                {
+                    due = reference.isFloating()
+                            ? due.shiftTimeZone(TimeZone.getDefault()).swapTimeZone(null)
+                            : absolute(due, TimeZone.getDefault());
+                }
+                mValues.put(Tasks.DUE, due.getTimestamp());
+            }
+        }
+
+
+        private void putIndex(String column, List<String> values, String value)
+        {
+            int index = values.indexOf(value.trim().toUpperCase(Locale.ENGLISH));
+            if (index >= 0)
+            {
+                mValues.put(column, index);
+            }
+        }
+
+
+        /**
+         * Parses a DATE or DATE-TIME value. Floating times stay floating, the provider stores them like UTC times without a time zone.
+         */
+        private static DateTime dateTime(ContentLine line)
+        {
+            String tzId = line.parameter("TZID");
+            return tzId == null || line.value().endsWith("Z") ? DateTime.parse(line.value()) : DateTime.parse(tzId, line.value());
+        }
+
+
+        /**
+         * Returns the given value, taking floating times as times in the given {@link TimeZone}.
+         */
+        private static DateTime absolute(DateTime dateTime, TimeZone timeZone)
+        {
+            return dateTime.isFloating() && !dateTime.isAllDay() ? dateTime.swapTimeZone(timeZone) : dateTime;
+        }
+
+
+        /**
+         * Returns the given list of DATE or DATE-TIME values in the form the provider stores them, i.e. date-times in UTC or floating, appended to the
+         * existing list.
+         */
+        private static String dateList(ContentLine line, String existing)
+        {
+            String tzId = line.parameter("TZID");
+            List<String> result = new ArrayList<>(8);
+            if (existing != null)
+            {
+                result.add(existing);
+            }
+            for (String value : line.value().split(","))
+            {
+                if (value.isEmpty())
+                {
+                    continue;
+                }
+                DateTime dateTime = tzId == null || value.endsWith("Z") ? DateTime.parse(value) : DateTime.parse(tzId, value);
+                result.add((dateTime.isFloating() ? dateTime : dateTime.shiftTimeZone(DateTime.UTC)).toString());
+            }
+            return result.isEmpty() ? null : TextUtils.join(",", result);
+        }
+
+
+        /**
+         * Returns the given recurrence rule in its canonical form. This also makes sure we don't store anything the provider can't expand.
+         */
+        private static String recurrenceRule(String value)
+        {
+            try
+            {
+                return new RecurrenceRule(value, RecurrenceRule.RfcMode.RFC5545_LAX).toString();
+            }
+            catch (InvalidRecurrenceRuleException e)
+            {
+                throw new IllegalArgumentException(String.format(Locale.ENGLISH, "invalid recurrence rule \"%s\"", value), e);
+            }
+        }
+    }
+}
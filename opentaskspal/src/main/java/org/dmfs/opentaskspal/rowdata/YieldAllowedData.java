@@ -0,0 +1,46 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.opentaskspal.rowdata;
+
+import android.content.ContentProviderOperation;
+
+import org.dmfs.android.contentpal.RowData;
+import org.dmfs.android.contentpal.TransactionContext;
+
+import androidx.annotation.NonNull;
+
+
+/**
+ * {@link RowData} that allows the provider to yield the transaction before the operation, see {@link ContentProviderOperation.Builder#withYieldAllowed(boolean)}.
+ * <p>
+ * Only add this to operations which don't depend on uncommitted results of other operations in the same transaction, i.e. to the first operation of a
+ * logical unit.
+ *
+ * @param <Contract>
+ *         The contract of the table this row data goes to.
+ *
+ * @author agent
+ */
+public final class YieldAllowedData<Contract> implements RowData<Contract>
+{
+    @NonNull
+    @Override
+    public ContentProviderOperation.Builder updatedBuilder(@NonNull TransactionContext transactionContext, @NonNull ContentProviderOperation.Builder builder)
+    {
+        return builder.withYieldAllowed(true);
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmfs.opentaskspal.tasks;
+
+import android.content.ContentProviderOperation;
+
+import org.dmfs.android.contentpal.RowData;
+import org.dmfs.android.contentpal.TransactionContext;
+import org.dmfs.tasks.contract.TaskContract;
+
+import androidx.annotation.NonNull;
+
+
+/**
+ * {@link RowData} for {@link TaskContract.Tasks#LIST_ID}, i.e. the task list of a task.
+ * <p>
+ * Note, this is meant for moving existing tasks to another list. To insert a new task into a list use {@link org.dmfs.opentaskspal.operations.TaskListTask}.
+ *
+ * @author agent
+ */
+public final class ListData<T extends TaskContract.TaskColumns> implements RowData<T>
+{
+    private final long mListId;
+
+
+    public ListData(long listId)
+    {
+        mListId = listId;
+    }
+
+
+    @NonNull
+    @Override
+    public ContentProviderOperation.Builder updatedBuilder(@NonNull TransactionContext transactionContext, @NonNull ContentProviderOperation.Builder builder)
+    {
+        return builder.withValue(TaskContract.Tasks.LIST_ID, mListId);
+    }
+}
@@ -0,0 +1,406 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.opentaskstestpal;
+
+import android.accounts.Account;
+
+import org.dmfs.android.bolts.color.elementary.ValueColor;
+import org.dmfs.android.contentpal.Operation;
+import org.dmfs.android.contentpal.RowData;
+import org.dmfs.android.contentpal.RowSnapshot;
+import org.dmfs.android.contentpal.operations.Insert;
+import org.dmfs.android.contentpal.operations.Put;
+import org.dmfs.android.contentpal.rowdata.CharSequenceRowData;
+import org.dmfs.android.contentpal.rowdata.Composite;
+import org.dmfs.android.contentpal.rowdata.EmptyRowData;
+import org.dmfs.android.contentpal.rowdata.RawRowData;
+import org.dmfs.android.contentpal.rowdata.Referring;
+import org.dmfs.android.contentpal.rowsnapshots.VirtualRowSnapshot;
+import org.dmfs.android.contentpal.tables.Synced;
+import org.dmfs.opentaskspal.rowdata.YieldAllowedData;
+import org.dmfs.opentaskspal.tables.PropertiesTable;
+import org.dmfs.opentaskspal.tables.TaskListScoped;
+import org.dmfs.opentaskspal.tables.TaskListsTable;
+import org.dmfs.opentaskspal.tables.TasksTable;
+import org.dmfs.opentaskspal.tasklists.ColorData;
+import org.dmfs.opentaskspal.tasklists.NameData;
+import org.dmfs.opentaskspal.tasklists.SyncStatusData;
+import org.dmfs.opentaskspal.tasklists.VisibilityData;
+import org.dmfs.opentaskspal.tasks.ExDatesTaskData;
+import org.dmfs.opentaskspal.tasks.OriginalInstanceData;
+import org.dmfs.opentaskspal.tasks.ParentTaskRelationData;
+import org.dmfs.opentaskspal.tasks.PropertyData;
+import org.dmfs.opentaskspal.tasks.RRuleTaskData;
+import org.dmfs.opentaskspal.tasks.StatusData;
+import org.dmfs.opentaskspal.tasks.TimeData;
+import org.dmfs.opentaskspal.tasks.TitleData;
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.rfc5545.Duration;
+import org.dmfs.rfc5545.recur.InvalidRecurrenceRuleException;
+import org.dmfs.rfc5545.recur.RecurrenceRule;
+import org.dmfs.rfc5545.recur.RecurrenceRuleIterator;
+import org.dmfs.tasks.contract.TaskContract;
+import org.dmfs.tasks.contract.TaskContract.Property;
+import org.dmfs.tasks.contract.TaskContract.TaskLists;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TimeZone;
+
+import androidx.annotation.NonNull;
+
+
+/**
+ * A synthetic, production scale dataset of task lists and tasks, meant to reproduce performance problems in benchmarks and tests.
+ * <p>
+ * The dataset is an {@link Iterable} of batches, each batch contains the {@link Operation}s of a single task tree, i.e. a top level task with its subtasks,
+ * instance overrides and properties. The first batch of each list also creates the list. Each batch is meant to be enqueued into an {@link
+ * org.dmfs.android.contentpal.OperationsQueue} as a whole, the first operation of each batch allows the provider to yield, so the transaction can only be
+ * yielded between task trees:
+ * <pre>
+ * OperationsQueue queue = new BasicOperationsQueue(client);
+ * for (Iterable&lt;Operation&lt;?&gt;&gt; batch : new SyntheticDataset(authority, account, 42))
+ * {
+ *     queue.enqueue(batch);
+ * }
+ * queue.flush();
+ * </pre>
+ * <p>
+ * The dataset is derived from the seed only, iterating it twice or iterating two instances with the same seed and parameters results in the same data. All
+ * dates are relative to a fixed point in time, so the data doesn't depend on the current time either.
+ *
+ * @author agent
+ */
+public final class SyntheticDataset implements Iterable<Iterable<Operation<?>>>
+{
+    private final static String[] WORDS = new String[] {
+            "call", "buy", "milk", "report", "meeting", "review", "dentist", "birthday", "present", "taxes", "invoice", "garden", "laundry", "groceries",
+            "project", "release", "backup", "email", "doctor", "flight", "hotel", "insurance", "car", "repair", "library", "books", "school", "homework",
+            "plan", "budget", "prepare", "slides", "renew", "passport", "clean", "kitchen", "order", "tickets", "update", "contract" };
+
+    private final static String[] CATEGORIES = new String[] {
+            "work", "home", "family", "errands", "finance", "health", "travel", "school", "shopping", "car", "garden", "friends", "sports", "reading",
+            "projects", "admin", "urgent", "someday", "waiting", "calls" };
+
+    private final static String[] RULES = new String[] {
+            "FREQ=DAILY;COUNT=30", "FREQ=WEEKLY;COUNT=52", "FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,TH", "FREQ=MONTHLY;BYMONTHDAY=1", "FREQ=MONTHLY;COUNT=24",
+            "FREQ=YEARLY" };
+
+    private final static String[] TIMEZONES = new String[] { "Europe/Berlin", "America/New_York", "Asia/Tokyo", "UTC" };
+
+    /**
+     * The point in time all dates are relative to, 2018-01-01T00:00:00Z.
+     */
+    private final static DateTime EPOCH = new DateTime(DateTime.UTC, 2018, 0, 1, 0, 0, 0);
+
+    /**
+     * The maximum depth of subtask trees.
+     */
+    private final static int MAX_DEPTH = 6;
+
+    private final static Duration HOUR = new Duration(1, 0, 3600);
+
+    private final String mAuthority;
+    private final Account mAccount;
+    private final long mSeed;
+    private final int mLists;
+    private final int mTasks;
+    private final float mRecurringRatio;
+
+
+    /**
+     * Creates a production scale dataset with 50000 tasks across 40 lists, 10% of which are recurring.
+     */
+    public SyntheticDataset(@NonNull String authority, @NonNull Account account, long seed)
+    {
+        this(authority, account, seed, 40, 50000, 0.1f);
+    }
+
+
+    /**
+     * Creates a dataset of the given size.
+     *
+     * @param authority
+     *         The authority of the task provider.
+     * @param account
+     *         The {@link Account} to create the lists in.
+     * @param seed
+     *         The seed of the dataset.
+     * @param lists
+     *         The number of lists.
+     * @param tasks
+     *         The total number of tasks, including subtasks and excluding instance overrides.
+     * @param recurringRatio
+     *         The ratio of recurring top level tasks.
+     */
+    public SyntheticDataset(@NonNull String authority, @NonNull Account account, long seed, int lists, int tasks, float recurringRatio)
+    {
+        if (lists < 1 || tasks < lists)
+        {
+            throw new IllegalArgumentException(String.format("Can't distribute %d tasks across %d lists", tasks, lists));
+        }
+        mAuthority = authority;
+        mAccount = account;
+        mSeed = seed;
+        mLists = lists;
+        mTasks = tasks;
+        mRecurringRatio = recurringRatio;
+    }
+
+
+    @NonNull
+    @Override
+    public Iterator<Iterable<Operation<?>>> iterator()
+    {
+        return new DatasetIterator();
+    }
+
+
+    private final class DatasetIterator implements Iterator<Iterable<Operation<?>>>
+    {
+        private final Random mRandom = new Random(mSeed);
+        private int mList = -1;
+        private int mListTasksLeft;
+        private int mTasksLeft = mTasks;
+        private RowSnapshot<TaskLists> mListRow;
+
+
+        @Override
+        public boolean hasNext()
+        {
+            return mTasksLeft > 0;
+        }
+
+
+        @Override
+        public Iterable<Operation<?>> next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException("No more task trees to generate");
+            }
+
+            List<Operation<?>> batch = new ArrayList<>(32);
+            RowData<Tasks> yield = new YieldAllowedData<>();
+            if (mListTasksLeft <= 0 && mList < mLists - 1)
+            {
+                // start a new list, the last list gets the remainder
+                mList += 1;
+                mListTasksLeft = mList == mLists - 1 ? mTasksLeft : mTasks / mLists;
+                mListRow = new VirtualRowSnapshot<>(new Synced<>(mAccount, new TaskListsTable(mAuthority)));
+                batch.add(new Put<>(mListRow,
+                        new Composite<>(
+                                new YieldAllowedData<>(),
+                                new NameData("List " + (mList + 1)),
+                                new ColorData(new ValueColor(0xff000000 | mRandom.nextInt(0x1000000))),
+                                new VisibilityData(true),
+                                new SyncStatusData(true))));
+                // the list operation is the yield point of this batch
+                yield = new EmptyRowData<>();
+            }
+
+            int size = Math.min(mListTasksLeft, treeSize());
+            if (size == 1 && mRandom.nextFloat() < mRecurringRatio)
+            {
+                recurringTask(batch, yield);
+            }
+            else
+            {
+                task(batch, yield, size, 1);
+            }
+            mListTasksLeft -= size;
+            mTasksLeft -= size;
+            return batch;
+        }
+
+
+        /**
+         * Returns the number of tasks of the next tree. Most tasks don't have any subtasks, a few have large trees.
+         */
+        private int treeSize()
+        {
+            float r = mRandom.nextFloat();
+            if (r < 0.02f)
+            {
+                return 10 + mRandom.nextInt(50);
+            }
+            if (r < 0.1f)
+            {
+                return 2 + mRandom.nextInt(5);
+            }
+            return 1;
+        }
+
+
+        /**
+         * Adds the operations of a task and the given number of descendants to the batch.
+         *
+         * @return The {@link RowSnapshot} of the task.
+         */
+        private RowSnapshot<Tasks> task(List<Operation<?>> batch, RowData<Tasks> extra, int size, int depth)
+        {
+            RowSnapshot<Tasks> task = new VirtualRowSnapshot<>(new TaskListScoped(mListRow, new TasksTable(mAuthority)));
+            DateTime start = EPOCH.addDuration(new Duration(1, mRandom.nextInt(365) - 60, mRandom.nextInt(24) * 3600))
+                    .swapTimeZone(TimeZone.getTimeZone(TIMEZONES[mRandom.nextInt(TIMEZONES.length)]));
+            batch.add(new Put<>(task,
+                    new Composite<>(
+                            extra,
+                            new TitleData(words(2 + mRandom.nextInt(4))),
+                            new CharSequenceRowData<>(Tasks.DESCRIPTION, description()),
+                            new RawRowData<>(Tasks.PRIORITY, mRandom.nextInt(10)),
+                            mRandom.nextFloat() < 0.7f ? new TimeData<Tasks>(start, start.addDuration(HOUR)) : new EmptyRowData<Tasks>(),
+                            mRandom.nextFloat() < 0.2f ? new StatusData<Tasks>(Tasks.STATUS_COMPLETED) : new EmptyRowData<Tasks>())));
+            properties(batch, task);
+
+            // distribute the remaining tasks among 1 to 3 children, below MAX_DEPTH all remaining tasks become leaves
+            int remaining = size - 1;
+            int children = depth >= MAX_DEPTH ? remaining : Math.min(remaining, 1 + mRandom.nextInt(3));
+            for (int i = 0; i < children; ++i)
+            {
+                int childSize = children == remaining ? 1 : i == children - 1 ? remaining : 1 + mRandom.nextInt(remaining - (children - i - 1));
+                RowSnapshot<Tasks> child = task(batch, new EmptyRowData<Tasks>(), childSize, depth + 1);
+                batch.add(new Insert<>(new PropertiesTable(mAuthority), new ParentTaskRelationData(task, child)));
+                remaining -= childSize;
+            }
+            return task;
+        }
+
+
+        /**
+         * Adds categories and alarms to the given task.
+         */
+        private void properties(List<Operation<?>> batch, RowSnapshot<Tasks> task)
+        {
+            if (mRandom.nextFloat() < 0.3f)
+            {
+                int categories = 1 + mRandom.nextInt(2);
+                for (int i = 0; i < categories; ++i)
+                {
+                    batch.add(new Insert<>(new PropertiesTable(mAuthority),
+                            new PropertyData(Property.Category.CONTENT_ITEM_TYPE,
+                                    new Composite<>(
+                                            new Referring<>(Property.Category.TASK_ID, task),
+                                            new CharSequenceRowData<>(Property.Category.CATEGORY_NAME,
+                                                    CATEGORIES[mRandom.nextInt(CATEGORIES.length)])))));
+                }
+            }
+            if (mRandom.nextFloat() < 0.2f)
+            {
+                batch.add(new Insert<>(new PropertiesTable(mAuthority),
+                        new PropertyData(Property.Alarm.CONTENT_ITEM_TYPE,
+                                new Composite<>(
+                                        new Referring<>(Property.Alarm.TASK_ID, task),
+                                        new RawRowData<>(Property.Alarm.MINUTES_BEFORE, 15 * (1 + mRandom.nextInt(8))),
+                                        new RawRowData<>(Property.Alarm.REFERENCE, Property.Alarm.ALARM_REFERENCE_DUE_DATE),
+                                        new RawRowData<>(Property.Alarm.ALARM_TYPE, Property.Alarm.ALARM_TYPE_MESSAGE)))));
+            }
+        }
+
+
+        /**
+         * Adds the operations of a recurring task with a few exdates and instance overrides to the batch.
+         */
+        private void recurringTask(List<Operation<?>> batch, RowData<Tasks> extra)
+        {
+            RecurrenceRule rule = rule(RULES[mRandom.nextInt(RULES.length)]);
+            DateTime start = EPOCH.addDuration(new Duration(1, mRandom.nextInt(90), (8 + mRandom.nextInt(10)) * 3600))
+                    .swapTimeZone(TimeZone.getTimeZone(TIMEZONES[mRandom.nextInt(TIMEZONES.length)]));
+
+            // take the first instances to pick the exdates and overrides from
+            List<DateTime> instances = new ArrayList<>(10);
+            RecurrenceRuleIterator iterator = rule.iterator(start);
+            while (iterator.hasNext() && instances.size() < 10)
+            {
+                instances.add(iterator.nextDateTime());
+            }
+            List<DateTime> exdates = new ArrayList<>(3);
+            for (int i = 1; i < instances.size(); ++i)
+            {
+                if (mRandom.nextFloat() < 0.15f)
+                {
+                    exdates.add(instances.get(i));
+                }
+            }
+            instances.removeAll(exdates);
+
+            RowSnapshot<Tasks> task = new VirtualRowSnapshot<>(new TaskListScoped(mListRow, new TasksTable(mAuthority)));
+            batch.add(new Put<>(task,
+                    new Composite<>(
+                            extra,
+                            new TitleData(words(2 + mRandom.nextInt(4))),
+                            new CharSequenceRowData<>(Tasks.DESCRIPTION, description()),
+                            new TimeData<>(start, start.addDuration(HOUR)),
+                            new RRuleTaskData(rule),
+                            new ExDatesTaskData(exdates))));
+            properties(batch, task);
+
+            int overrides = Math.min(instances.size(), mRandom.nextInt(3));
+            for (int i = 0; i < overrides; ++i)
+            {
+                // remove the instance, so we don't override it twice
+                DateTime instance = instances.remove(mRandom.nextInt(instances.size()));
+                DateTime overrideStart = instance.addDuration(HOUR);
+                batch.add(new Put<>(new VirtualRowSnapshot<>(new TaskListScoped(mListRow, new TasksTable(mAuthority))),
+                        new Composite<>(
+                                new TitleData(words(3)),
+                                new TimeData<>(overrideStart, overrideStart.addDuration(HOUR)),
+                                mRandom.nextFloat() < 0.5f ? new StatusData<Tasks>(Tasks.STATUS_COMPLETED) : new EmptyRowData<Tasks>(),
+                                new OriginalInstanceData(task, instance))));
+            }
+        }
+
+
+        private String description()
+        {
+            // most descriptions are short, 10% are long
+            int words = mRandom.nextFloat() < 0.1f ? 50 + mRandom.nextInt(350) : mRandom.nextInt(20);
+            return words == 0 ? null : words(words);
+        }
+
+
+        private String words(int count)
+        {
+            StringBuilder result = new StringBuilder(count * 8);
+            for (int i = 0; i < count; ++i)
+            {
+                if (i > 0)
+                {
+                    result.append(' ');
+                }
+                result.append(WORDS[mRandom.nextInt(WORDS.length)]);
+            }
+            return result.toString();
+        }
+    }
+
+
+    private static RecurrenceRule rule(String rule)
+    {
+        try
+        {
+            return new RecurrenceRule(rule);
+        }
+        catch (InvalidRecurrenceRuleException e)
+        {
+            throw new IllegalArgumentException(String.format("Invalid rule %s", rule), e);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.opentaskspal.ical;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+
+/**
+ * Unit test for {@link ContentLineReader}.
+ *
+ * @author agent
+ */
+public final class ContentLineReaderTest
+{
+    @Test
+    public void testNext() throws Exception
+    {
+        ContentLineReader reader = new ContentLineReader(
+                new StringReader("BEGIN:VTODO\r\nSUMMARY:a long\r\n  summary\r\n\tfolded twice\r\n\r\nEND:VTODO\nDESCRIPTION:x\n"));
+        assertThat(reader.next().value(), is("VTODO"));
+        assertThat(reader.next().value(), is("a long summaryfolded twice"));
+        assertThat(reader.next().name(), is("END"));
+        assertThat(reader.next().value(), is("x"));
+        assertThat(reader.next(), is(nullValue()));
+        assertThat(reader.next(), is(nullValue()));
+    }
+}
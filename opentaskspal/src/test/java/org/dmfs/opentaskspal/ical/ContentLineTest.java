@@ -0,0 +1,75 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.opentaskspal.ical;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+
+/**
+ * Unit test for {@link ContentLine}.
+ *
+ * @author agent
+ */
+public final class ContentLineTest
+{
+    @Test
+    public void testSimple()
+    {
+        ContentLine line = ContentLine.parse("summary:Buy milk");
+        assertThat(line.name(), is("SUMMARY"));
+        assertThat(line.parameter("TZID"), is(nullValue()));
+        assertThat(line.value(), is("Buy milk"));
+    }
+
+
+    @Test
+    public void testParameters()
+    {
+        ContentLine line = ContentLine.parse("DTSTART;tzid=Europe/Berlin;X-TEST=\"a;b:c\":20171212T123456");
+        assertThat(line.name(), is("DTSTART"));
+        assertThat(line.parameter("TZID"), is("Europe/Berlin"));
+        assertThat(line.parameter("X-TEST"), is("a;b:c"));
+        assertThat(line.value(), is("20171212T123456"));
+    }
+
+
+    @Test
+    public void testText()
+    {
+        assertThat(ContentLine.parse("DESCRIPTION:a\\, b\\; c\\nd\\\\e:f").text(), is("a, b; c\nd\\e:f"));
+    }
+
+
+    @Test
+    public void testTexts()
+    {
+        assertThat(ContentLine.parse("CATEGORIES:a\\,b,c,\\\\").texts(), is(Arrays.asList("a,b", "c", "\\")));
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalid()
+    {
+        ContentLine.parse("SUMMARY");
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.opentaskspal.ical;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+
+/**
+ * Unit test for {@link ContentLineWriter}.
+ *
+ * @author agent
+ */
+public final class ContentLineWriterTest
+{
+    @Test
+    public void testShortLine() throws Exception
+    {
+        StringWriter out = new StringWriter();
+        new ContentLineWriter(out).line("DTSTART", ";TZID=Europe/Berlin", "20171212T123456");
+        assertThat(out.toString(), is("DTSTART;TZID=Europe/Berlin:20171212T123456\r\n"));
+    }
+
+
+    @Test
+    public void testText() throws Exception
+    {
+        StringWriter out = new StringWriter();
+        new ContentLineWriter(out).text("DESCRIPTION", "a, b; c\r\nd\\e");
+        assertThat(out.toString(), is("DESCRIPTION:a\\, b\\; c\\nd\\\\e\r\n"));
+    }
+
+
+    @Test
+    public void testFolding() throws Exception
+    {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; ++i)
+        {
+            text.append("\u00e4b\u20ac\ud83d\ude00");
+        }
+        StringWriter out = new StringWriter();
+        new ContentLineWriter(out).text("SUMMARY", text.toString());
+
+        for (String line : out.toString().split("\r\n"))
+        {
+            assertThat(line.getBytes(Charset.forName("UTF-8")).length, lessThanOrEqualTo(75));
+        }
+        // unfolding returns the original text
+        assertThat(new ContentLineReader(new StringReader(out.toString())).next().text(), is(text.toString()));
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.opentaskspal.ical;
+
+import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentValues;
+import android.database.MatrixCursor;
+import android.net.Uri;
+
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.tasks.contract.TaskContract;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+
+/**
+ * Test {@link VTodoImporter} and {@link VTodoExporter} by importing and exporting tasks.
+ *
+ * @author agent
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public final class VTodoRoundTripTest
+{
+    private final static String AUTHORITY = "org.dmfs.tasks";
+
+
+    @Test
+    public void testFloating() throws Exception
+    {
+        List<String> times = asList(
+                "DTSTART:20170606T121314",
+                "DUE:20170606T141314",
+                "RRULE:FREQ=DAILY;COUNT=10",
+                "RDATE:20170620T121314,20170621T121314",
+                "EXDATE:20170608T121314");
+
+        List<ContentValues> tasks = imported(times);
+
+        assertThat(tasks.size(), is(1));
+        assertThat(tasks.get(0).getAsString(Tasks.TZ), nullValue());
+        assertThat(tasks.get(0).getAsLong(Tasks.DTSTART), is(DateTime.parse("20170606T121314").getTimestamp()));
+        assertThat(tasks.get(0).getAsLong(Tasks.DUE), is(DateTime.parse("20170606T141314").getTimestamp()));
+        assertThat(exported(tasks), is(times));
+    }
+
+
+    @Test
+    public void testTimeZone() throws Exception
+    {
+        List<ContentValues> tasks = imported(asList(
+                "DTSTART;TZID=Europe/Berlin:20170606T121314",
+                "DUE;TZID=Europe/Berlin:20170606T141314",
+                "RRULE:FREQ=DAILY;COUNT=10",
+                "EXDATE;TZID=Europe/Berlin:20170608T121314"));
+
+        assertThat(tasks.get(0).getAsString(Tasks.TZ), is("Europe/Berlin"));
+        // the date lists are stored and exported in UTC
+        assertThat(exported(tasks), is(asList(
+                "DTSTART;TZID=Europe/Berlin:20170606T121314",
+                "DUE;TZID=Europe/Berlin:20170606T141314",
+                "RRULE:FREQ=DAILY;COUNT=10",
+                "EXDATE:20170608T101314Z")));
+    }
+
+
+    @Test
+    public void testUtc() throws Exception
+    {
+        List<String> times = asList("DTSTART:20170606T121314Z", "DUE:20170606T141314Z");
+
+        List<ContentValues> tasks = imported(times);
+
+        assertThat(tasks.get(0).getAsString(Tasks.TZ), is("UTC"));
+        assertThat(exported(tasks), is(times));
+    }
+
+
+    @Test
+    public void testAllDay() throws Exception
+    {
+        List<String> times = asList("DTSTART;VALUE=DATE:20170606", "DUE;VALUE=DATE:20170607", "EXDATE;VALUE=DATE:20170608");
+
+        List<ContentValues> tasks = imported(times);
+
+        assertThat(tasks.get(0).getAsInteger(Tasks.IS_ALLDAY), is(1));
+        assertThat(exported(tasks), is(times));
+    }
+
+
+    /**
+     * Imports a VTODO with the given time lines and returns the values of the inserted tasks.
+     */
+    private static List<ContentValues> imported(List<String> times) throws Exception
+    {
+        StringBuilder ics = new StringBuilder("BEGIN:VCALENDAR\r\nVERSION:2.0\r\nBEGIN:VTODO\r\nUID:1234\r\nSUMMARY:test\r\n");
+        for (String time : times)
+        {
+            ics.append(time).append("\r\n");
+        }
+        ics.append("END:VTODO\r\nEND:VCALENDAR\r\n");
+
+        List<ContentValues> result = new ArrayList<>();
+        ContentProviderClient client = mock(ContentProviderClient.class);
+        doAnswer(invocation ->
+        {
+            List<ContentProviderOperation> operations = invocation.getArgument(0);
+            for (ContentProviderOperation operation : operations)
+            {
+                if (operation.getUri().equals(Tasks.getContentUri(AUTHORITY)))
+                {
+                    result.add(operation.resolveValueBackReferences(new ContentProviderResult[0], 0));
+                }
+            }
+            return new ContentProviderResult[0];
+        }).when(client).applyBatch(any());
+
+        new VTodoImporter(client, AUTHORITY).importTasks(1, new StringReader(ics.toString()));
+        return result;
+    }
+
+
+    /**
+     * Exports the given tasks and returns the time lines of the VTODOs.
+     */
+    private static List<String> exported(List<ContentValues> tasks) throws Exception
+    {
+        ContentProviderClient client = mock(ContentProviderClient.class);
+        doAnswer(invocation ->
+        {
+            Uri uri = invocation.getArgument(0);
+            String[] projection = invocation.getArgument(1);
+            MatrixCursor cursor = new MatrixCursor(projection);
+            if (uri.getQueryParameter(TaskContract.LIMIT) != null)
+            {
+                // the page of tasks
+                for (int i = 0; i < tasks.size(); ++i)
+                {
+                    Object[] row = new Object[projection.length];
+                    for (int j = 0; j < projection.length; ++j)
+                    {
+                        row[j] = Tasks._ID.equals(projection[j]) ? i + 1 : tasks.get(i).get(projection[j]);
+                    }
+                    cursor.addRow(row);
+                }
+            }
+            return cursor;
+        }).when(client).query(any(), any(), any(), any(), any());
+
+        StringWriter out = new StringWriter();
+        new VTodoExporter(client, AUTHORITY).export(1L, out);
+
+        List<String> result = new ArrayList<>();
+        for (String line : out.toString().split("\r\n"))
+        {
+            if (line.matches("(DTSTART|DUE|RRULE|RDATE|EXDATE|RECURRENCE-ID)[;:].*"))
+            {
+                result.add(line);
+            }
+        }
+        return result;
+    }
+}
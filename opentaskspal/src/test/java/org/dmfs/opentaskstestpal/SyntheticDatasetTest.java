@@ -0,0 +1,87 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.opentaskstestpal;
+
+import android.accounts.Account;
+
+import org.dmfs.android.contentpal.Operation;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * @author agent
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class SyntheticDatasetTest
+{
+    private final Account mAccount = new Account("foo", "bar");
+
+
+    @Test
+    public void testReproducible()
+    {
+        SyntheticDataset dataset = new SyntheticDataset("org.dmfs.tasks", mAccount, 42, 3, 500, 0.1f);
+
+        // same instance, same seed and different seed
+        assertThat(batchSizes(dataset), is(batchSizes(dataset)));
+        assertThat(batchSizes(dataset), is(batchSizes(new SyntheticDataset("org.dmfs.tasks", mAccount, 42, 3, 500, 0.1f))));
+        assertThat(batchSizes(dataset), is(not(batchSizes(new SyntheticDataset("org.dmfs.tasks", mAccount, 43, 3, 500, 0.1f)))));
+    }
+
+
+    @Test
+    public void testTinyDataset()
+    {
+        // one list with one task results in a single batch, creating the list and the task
+        List<Integer> sizes = batchSizes(new SyntheticDataset("org.dmfs.tasks", mAccount, 1, 1, 1, 0f));
+        assertThat(sizes.size(), is(1));
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyLists()
+    {
+        new SyntheticDataset("org.dmfs.tasks", mAccount, 1, 10, 5, 0.1f);
+    }
+
+
+    private static List<Integer> batchSizes(Iterable<Iterable<Operation<?>>> dataset)
+    {
+        List<Integer> result = new ArrayList<>();
+        for (Iterable<Operation<?>> batch : dataset)
+        {
+            int size = 0;
+            for (Operation<?> ignored : batch)
+            {
+                size += 1;
+            }
+            result.add(size);
+        }
+        return result;
+    }
+}